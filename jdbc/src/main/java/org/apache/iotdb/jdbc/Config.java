@@ -54,4 +54,14 @@ public class Config {
 
   public static boolean rpcThriftCompressionEnable = false;
 
+  /**
+   * ask the server to send raw data query results as encoded and compressed columns.
+   */
+  public static boolean rpcEncodedResultEnable = false;
+
+  /**
+   * how many batches of a result set to fetch in the background while the current one is read.
+   */
+  public static int rpcPrefetchBatchNum = 0;
+
 }
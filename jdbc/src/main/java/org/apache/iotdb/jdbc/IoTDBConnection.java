@@ -38,6 +38,7 @@ import java.time.ZoneId;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import org.apache.iotdb.rpc.RpcUtils;
 import org.apache.iotdb.rpc.StatementExecutionException;
 import org.apache.iotdb.service.rpc.thrift.*;
@@ -63,6 +64,10 @@ public class IoTDBConnection implements Connection {
   private SQLWarning warningChain = null;
   private TTransport transport;
   private ZoneId zoneId;
+  // shared by the result sets of this connection to fetch results in the background, its thread
+  // exits when idle, so it is not shut down and the result sets outliving the connection are not
+  // rejected
+  private ExecutorService prefetchExecutor;
   private boolean autoCommit;
 
   public IoTDBConnection() {
@@ -459,6 +464,13 @@ public class IoTDBConnection implements Connection {
     isClosed = false;
   }
 
+  synchronized ExecutorService getPrefetchExecutor() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = RpcUtils.newPrefetchExecutor("IoTDB-JDBC-Prefetch-" + sessionId);
+    }
+    return prefetchExecutor;
+  }
+
   boolean reconnect() {
     boolean flag = false;
     for (int i = 1; i <= Config.RETRY_NUM; i++) {
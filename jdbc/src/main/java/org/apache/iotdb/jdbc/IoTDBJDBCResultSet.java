@@ -37,6 +37,11 @@ public class IoTDBJDBCResultSet extends AbstractIoTDBJDBCResultSet {
       throws SQLException {
     super(statement, columnNameList, columnTypeList, columnNameIndex, ignoreTimeStamp, client, sql,
         queryId, sessionId);
+    ioTDBRpcDataSet.prefetchBatchNum = Config.rpcPrefetchBatchNum;
+    if (statement != null && statement.getConnection() instanceof IoTDBConnection) {
+      ioTDBRpcDataSet.prefetchExecutor =
+          ((IoTDBConnection) statement.getConnection()).getPrefetchExecutor();
+    }
     ioTDBRpcDataSet.setTsQueryDataSet(dataset);
   }
 
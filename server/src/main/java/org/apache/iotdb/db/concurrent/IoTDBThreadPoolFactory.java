@@ -20,9 +20,11 @@ package org.apache.iotdb.db.concurrent;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.apache.thrift.server.TThreadPoolServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -118,6 +120,17 @@ public class IoTDBThreadPoolFactory {
     return Executors.newScheduledThreadPool(corePoolSize, new IoTThreadFactory(poolName, handler));
   }
 
+  /**
+   * function for creating the worker pool of a non-blocking thrift server. The requests queue up
+   * without a bound, but a connection has at most one request in the queue.
+   */
+  public static ThreadPoolExecutor createThriftRpcWorkerThreadPool(int workerThreads,
+      String poolName) {
+    logger.info("new thrift rpc worker thread pool: {}", poolName);
+    return new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), new IoTThreadFactory(poolName));
+  }
+
   /**
    * function for creating thrift rpc client thread pool.
    */
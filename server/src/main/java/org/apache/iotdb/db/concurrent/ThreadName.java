@@ -37,13 +37,17 @@ public enum ThreadName {
   HOT_COMPACTION_SERVICE("HotCompaction-ServerServiceImpl"),
   WAL_DAEMON("IoTDB-MultiFileLogNodeManager-Sync-Thread"),
   WAL_FORCE_DAEMON("IoTDB-MultiFileLogNodeManager-Force-Thread"),
+  WAL_GROUP_COMMIT("IoTDB-WriteLogNode-GroupCommit-Thread"),
   INDEX_SERVICE("Index-ServerServiceImpl"),
   SYNC_CLIENT("Sync-Client"),
   SYNC_SERVER("Sync-Server"),
   SYNC_MONITOR("Sync-Monitor"),
   LOAD_TSFILE("Load TsFile"),
   TIME_COST_STATSTIC("TIME_COST_STATSTIC"),
-  QUERY_SERVICE("Query-ServerServiceImpl");
+  QUERY_SERVICE("Query-ServerServiceImpl"),
+  QUERY_READ_AHEAD("Query-ReadAhead"),
+  RECOVER_PARTITION("Recover-Partition"),
+  LOAD_MTREE_SNAPSHOT("Load-MTree-Snapshot");
 
   private String name;
 
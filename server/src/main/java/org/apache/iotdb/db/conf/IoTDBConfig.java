@@ -31,6 +31,7 @@ import org.apache.iotdb.db.engine.tsfilemanagement.TsFileManagementStrategy;
 import org.apache.iotdb.db.exception.LoadConfigurationException;
 import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.service.TSServiceImpl;
+import org.apache.iotdb.db.service.thrift.ThriftServerType;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.common.constant.TsFileConstant;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -113,6 +114,12 @@ public class IoTDBConfig {
    */
   private boolean rpcThriftCompressionEnable = false;
 
+  /**
+   * whether to fill the next batch of a query in the background once a batch is returned, so that
+   * it is ready when the client fetches it.
+   */
+  private boolean rpcFetchReadAheadEnable = false;
+
   /**
    * Port which the JDBC server listens to.
    */
@@ -123,6 +130,22 @@ public class IoTDBConfig {
    */
   private int rpcMaxConcurrentClientNum = 65535;
 
+  /**
+   * The kind of thrift server of the rpc service. THREAD_POOL binds a thread to each connection,
+   * HSHA and THREADED_SELECTOR serve all connections with a fixed number of workers.
+   */
+  private ThriftServerType rpcThriftServerType = ThriftServerType.THREAD_POOL;
+
+  /**
+   * Number of selector threads, only used by the THREADED_SELECTOR server
+   */
+  private int rpcSelectorThreadNum = 2;
+
+  /**
+   * Number of worker threads of the HSHA and THREADED_SELECTOR servers
+   */
+  private int rpcWorkerThreadNum = Runtime.getRuntime().availableProcessors() * 2;
+
   /**
    * Memory allocated for the read process
    */
@@ -164,6 +187,20 @@ public class IoTDBConfig {
    */
   private long forceWalPeriodInMs = 100;
 
+  /**
+   * Whether to write ahead logs by group commit. If enabled, inserting threads only put their logs
+   * into the buffer of a log node and a dedicated sync thread of the node writes the logs of many
+   * inserting threads to disk at once. When forceWalPeriodInMs is 0, inserting threads wait until
+   * their logs are forced to disk.
+   */
+  private boolean enableWalGroupCommit = false;
+
+  /**
+   * Only works when enableWalGroupCommit is true. The longest time (in milliseconds) the sync thread
+   * of a log node waits for more logs before writing a batch. 0 means writing at once.
+   */
+  private long walGroupCommitMaxLatencyInMs = 0;
+
   /**
    * Size of log buffer in each log node(in byte). If WAL is enabled and the size of a insert plan
    * is smaller than this parameter, then the insert plan will be rejected by WAL.
@@ -232,11 +269,53 @@ public class IoTDBConfig {
    */
   private int concurrentFlushThread = Runtime.getRuntime().availableProcessors();
 
+  /**
+   * How many time partitions can be recovered concurrently at startup, shared by all storage
+   * groups. When <= 0, use CPU core number.
+   */
+  private int concurrentRecoverPartitionThread = Runtime.getRuntime().availableProcessors();
+
   /**
    * How many threads can concurrently query. When <= 0, use CPU core number.
    */
   private int concurrentQueryThread = Runtime.getRuntime().availableProcessors();
 
+  /**
+   * How many sub tasks of one flush task can concurrently sort and encode series. When <= 0, use
+   * CPU core number. 1 means series are encoded one by one.
+   */
+  private int concurrentFlushEncodingThread = 1;
+
+  /**
+   * How many threads, including the query thread itself, one aggregation query can use to
+   * aggregate its series concurrently. When <= 0, use the number of query threads. 1 means series
+   * are aggregated one by one.
+   */
+  private int concurrentAggregationThreadPerQuery = 1;
+
+  /**
+   * Whether to keep a rollup of the statistics of each chunk in fixed time buckets beside every
+   * sealed TsFile, used by GROUP BY time queries whose windows are aligned to the buckets.
+   */
+  private boolean enableRollup = false;
+
+  /**
+   * The bucket width of the rollup in ms. Changing it makes existing rollup files unused.
+   */
+  private long rollupIntervalInMs = 60_000L;
+
+  /**
+   * Whether to keep an index of the values of each numeric chunk beside every sealed TsFile, used
+   * by queries with value filters to skip the chunks and pages that cannot satisfy them.
+   */
+  private boolean enableValueIndex = false;
+
+  /**
+   * How many device-striped locks each storage group uses to let insertions of different devices
+   * run concurrently. 0 means every insertion holds the storage group's exclusive insert lock.
+   */
+  private int insertLockStripeNum = 0;
+
   private ZoneId zoneID = ZoneId.systemDefault();
 
   /**
@@ -296,6 +375,31 @@ public class IoTDBConfig {
    */
   private long allocateMemoryForChunkCache = allocateMemoryForRead / 10;
 
+  /**
+   * Number of independently locked segments of the chunk cache and the timeseries metadata cache,
+   * rounded up to a power of two. More segments let more query threads hit the cache at the same
+   * time.
+   */
+  private int cacheSegmentNum = 16;
+
+  /**
+   * How many closed TsFiles of each series a raw data query reads TimeseriesMetadata from in
+   * advance, in the query thread pool. 0 means no prefetching.
+   */
+  private int timeseriesMetadataPrefetchFileNum = 0;
+
+  /**
+   * Direct memory allocated for the cache of raw chunk bytes below the chunk cache, 0 means the
+   * off-heap chunk cache is disabled.
+   */
+  private long allocateMemoryForOffHeapChunkCache = 0;
+
+  /**
+   * Total size of the sealed TsFiles that may be mapped into memory by the query file readers at
+   * the same time, 0 means the files are not mapped.
+   */
+  private long maxMappedTsFileSize = 0;
+
   /**
    * Whether to enable Last cache
    */
@@ -616,6 +720,24 @@ public class IoTDBConfig {
    */
   private int primitiveArraySize = 128;
 
+  /**
+   * whether the points of numeric series in memtables are stored in direct memory, which is
+   * reused as a whole after a memtable is flushed, rather than in primitive arrays on the heap
+   */
+  private boolean enableOffHeapMemtable = false;
+
+  /**
+   * Direct memory that the off-heap memtables may use in total, beyond which their points are
+   * stored in heap buffers
+   */
+  private long offHeapMemtableMaxMemory = Runtime.getRuntime().maxMemory() * 6 / 10;
+
+  /**
+   * Direct memory that is kept for reuse after the off-heap memtables using it are released, the
+   * rest is left to the GC
+   */
+  private long offHeapMemtableRetainedMemory = Runtime.getRuntime().maxMemory() / 10;
+
   /**
    * whether enable data partition. If disabled, all data belongs to partition 0
    */
@@ -632,6 +754,32 @@ public class IoTDBConfig {
    */
   private int mtreeSnapshotThresholdTime = 3600;
 
+  /**
+   * Whether to keep the MTree in the compact representation: small children sets are kept in
+   * sorted arrays, equal props of timeseries are shared and last values are kept in primitive
+   * arrays. It saves memory for a huge number of timeseries at some cost of reading.
+   */
+  private boolean enableCompactMTree = false;
+
+  /**
+   * The maximum number of children of an MNode kept in a sorted array in the compact MTree. Nodes
+   * with more children keep them in a hash map.
+   */
+  private int compactMTreeMaxArrayChildren = 256;
+
+  /**
+   * Whether to page the measurements of devices out of the heap into a file under the schema
+   * directory, so that the number of timeseries is not limited by the heap. The devices written or
+   * queried recently stay in memory.
+   */
+  private boolean enableMTreeDiskStore = false;
+
+  /**
+   * The number of devices whose measurements stay in memory when the MTree disk store is enabled,
+   * the least recently used devices beyond it are paged out.
+   */
+  private int mtreeMaxResidentDevices = 100000;
+
   /**
    * Time range for partitioning data inside each storage group, the unit is second
    */
@@ -667,7 +815,7 @@ public class IoTDBConfig {
     return concurrentWritingTimePartition;
   }
 
-  void setConcurrentWritingTimePartition(int concurrentWritingTimePartition) {
+  public void setConcurrentWritingTimePartition(int concurrentWritingTimePartition) {
     this.concurrentWritingTimePartition = concurrentWritingTimePartition;
   }
 
@@ -703,6 +851,38 @@ public class IoTDBConfig {
     this.mtreeSnapshotThresholdTime = mtreeSnapshotThresholdTime;
   }
 
+  public boolean isEnableCompactMTree() {
+    return enableCompactMTree;
+  }
+
+  public void setEnableCompactMTree(boolean enableCompactMTree) {
+    this.enableCompactMTree = enableCompactMTree;
+  }
+
+  public int getCompactMTreeMaxArrayChildren() {
+    return compactMTreeMaxArrayChildren;
+  }
+
+  public void setCompactMTreeMaxArrayChildren(int compactMTreeMaxArrayChildren) {
+    this.compactMTreeMaxArrayChildren = compactMTreeMaxArrayChildren;
+  }
+
+  public boolean isEnableMTreeDiskStore() {
+    return enableMTreeDiskStore;
+  }
+
+  public void setEnableMTreeDiskStore(boolean enableMTreeDiskStore) {
+    this.enableMTreeDiskStore = enableMTreeDiskStore;
+  }
+
+  public int getMtreeMaxResidentDevices() {
+    return mtreeMaxResidentDevices;
+  }
+
+  public void setMtreeMaxResidentDevices(int mtreeMaxResidentDevices) {
+    this.mtreeMaxResidentDevices = mtreeMaxResidentDevices;
+  }
+
   public long getPartitionInterval() {
     return partitionInterval;
   }
@@ -889,6 +1069,22 @@ public class IoTDBConfig {
     this.forceWalPeriodInMs = forceWalPeriodInMs;
   }
 
+  public boolean isEnableWalGroupCommit() {
+    return enableWalGroupCommit;
+  }
+
+  public void setEnableWalGroupCommit(boolean enableWalGroupCommit) {
+    this.enableWalGroupCommit = enableWalGroupCommit;
+  }
+
+  public long getWalGroupCommitMaxLatencyInMs() {
+    return walGroupCommitMaxLatencyInMs;
+  }
+
+  public void setWalGroupCommitMaxLatencyInMs(long walGroupCommitMaxLatencyInMs) {
+    this.walGroupCommitMaxLatencyInMs = walGroupCommitMaxLatencyInMs;
+  }
+
   public String getSystemDir() {
     return systemDir;
   }
@@ -969,6 +1165,14 @@ public class IoTDBConfig {
     this.concurrentFlushThread = concurrentFlushThread;
   }
 
+  public int getConcurrentRecoverPartitionThread() {
+    return concurrentRecoverPartitionThread;
+  }
+
+  void setConcurrentRecoverPartitionThread(int concurrentRecoverPartitionThread) {
+    this.concurrentRecoverPartitionThread = concurrentRecoverPartitionThread;
+  }
+
   public int getConcurrentQueryThread() {
     return concurrentQueryThread;
   }
@@ -977,6 +1181,54 @@ public class IoTDBConfig {
     this.concurrentQueryThread = concurrentQueryThread;
   }
 
+  public int getConcurrentFlushEncodingThread() {
+    return concurrentFlushEncodingThread;
+  }
+
+  public void setConcurrentFlushEncodingThread(int concurrentFlushEncodingThread) {
+    this.concurrentFlushEncodingThread = concurrentFlushEncodingThread;
+  }
+
+  public int getConcurrentAggregationThreadPerQuery() {
+    return concurrentAggregationThreadPerQuery;
+  }
+
+  public void setConcurrentAggregationThreadPerQuery(int concurrentAggregationThreadPerQuery) {
+    this.concurrentAggregationThreadPerQuery = concurrentAggregationThreadPerQuery;
+  }
+
+  public boolean isEnableRollup() {
+    return enableRollup;
+  }
+
+  public void setEnableRollup(boolean enableRollup) {
+    this.enableRollup = enableRollup;
+  }
+
+  public long getRollupIntervalInMs() {
+    return rollupIntervalInMs;
+  }
+
+  public void setRollupIntervalInMs(long rollupIntervalInMs) {
+    this.rollupIntervalInMs = rollupIntervalInMs;
+  }
+
+  public boolean isEnableValueIndex() {
+    return enableValueIndex;
+  }
+
+  public void setEnableValueIndex(boolean enableValueIndex) {
+    this.enableValueIndex = enableValueIndex;
+  }
+
+  public int getInsertLockStripeNum() {
+    return insertLockStripeNum;
+  }
+
+  public void setInsertLockStripeNum(int insertLockStripeNum) {
+    this.insertLockStripeNum = insertLockStripeNum;
+  }
+
   public long getTsFileSizeThreshold() {
     return tsFileSizeThreshold;
   }
@@ -1009,6 +1261,30 @@ public class IoTDBConfig {
     this.rpcMaxConcurrentClientNum = rpcMaxConcurrentClientNum;
   }
 
+  public ThriftServerType getRpcThriftServerType() {
+    return rpcThriftServerType;
+  }
+
+  public void setRpcThriftServerType(ThriftServerType rpcThriftServerType) {
+    this.rpcThriftServerType = rpcThriftServerType;
+  }
+
+  public int getRpcSelectorThreadNum() {
+    return rpcSelectorThreadNum;
+  }
+
+  public void setRpcSelectorThreadNum(int rpcSelectorThreadNum) {
+    this.rpcSelectorThreadNum = rpcSelectorThreadNum;
+  }
+
+  public int getRpcWorkerThreadNum() {
+    return rpcWorkerThreadNum;
+  }
+
+  public void setRpcWorkerThreadNum(int rpcWorkerThreadNum) {
+    this.rpcWorkerThreadNum = rpcWorkerThreadNum;
+  }
+
   public int getStatMonitorDetectFreqSec() {
     return statMonitorDetectFreqSec;
   }
@@ -1332,6 +1608,14 @@ public class IoTDBConfig {
     this.rpcThriftCompressionEnable = rpcThriftCompressionEnable;
   }
 
+  public boolean isRpcFetchReadAheadEnable() {
+    return rpcFetchReadAheadEnable;
+  }
+
+  public void setRpcFetchReadAheadEnable(boolean rpcFetchReadAheadEnable) {
+    this.rpcFetchReadAheadEnable = rpcFetchReadAheadEnable;
+  }
+
   public boolean isMetaDataCacheEnable() {
     return metaDataCacheEnable;
   }
@@ -1365,6 +1649,38 @@ public class IoTDBConfig {
     this.allocateMemoryForChunkCache = allocateMemoryForChunkCache;
   }
 
+  public int getCacheSegmentNum() {
+    return cacheSegmentNum;
+  }
+
+  public void setCacheSegmentNum(int cacheSegmentNum) {
+    this.cacheSegmentNum = cacheSegmentNum;
+  }
+
+  public int getTimeseriesMetadataPrefetchFileNum() {
+    return timeseriesMetadataPrefetchFileNum;
+  }
+
+  public void setTimeseriesMetadataPrefetchFileNum(int timeseriesMetadataPrefetchFileNum) {
+    this.timeseriesMetadataPrefetchFileNum = timeseriesMetadataPrefetchFileNum;
+  }
+
+  public long getAllocateMemoryForOffHeapChunkCache() {
+    return allocateMemoryForOffHeapChunkCache;
+  }
+
+  public void setAllocateMemoryForOffHeapChunkCache(long allocateMemoryForOffHeapChunkCache) {
+    this.allocateMemoryForOffHeapChunkCache = allocateMemoryForOffHeapChunkCache;
+  }
+
+  public long getMaxMappedTsFileSize() {
+    return maxMappedTsFileSize;
+  }
+
+  public void setMaxMappedTsFileSize(long maxMappedTsFileSize) {
+    this.maxMappedTsFileSize = maxMappedTsFileSize;
+  }
+
   public boolean isLastCacheEnabled() {
     return lastCacheEnable;
   }
@@ -1773,6 +2089,30 @@ public class IoTDBConfig {
     this.primitiveArraySize = primitiveArraySize;
   }
 
+  public boolean isEnableOffHeapMemtable() {
+    return enableOffHeapMemtable;
+  }
+
+  public void setEnableOffHeapMemtable(boolean enableOffHeapMemtable) {
+    this.enableOffHeapMemtable = enableOffHeapMemtable;
+  }
+
+  public long getOffHeapMemtableMaxMemory() {
+    return offHeapMemtableMaxMemory;
+  }
+
+  public void setOffHeapMemtableMaxMemory(long offHeapMemtableMaxMemory) {
+    this.offHeapMemtableMaxMemory = offHeapMemtableMaxMemory;
+  }
+
+  public long getOffHeapMemtableRetainedMemory() {
+    return offHeapMemtableRetainedMemory;
+  }
+
+  public void setOffHeapMemtableRetainedMemory(long offHeapMemtableRetainedMemory) {
+    this.offHeapMemtableRetainedMemory = offHeapMemtableRetainedMemory;
+  }
+
   public String getOpenIdProviderUrl() {
     return openIdProviderUrl;
   }
@@ -189,12 +189,12 @@ public class IoTDBConfigCheck {
     // need to upgrade from 0.9 to 0.10
     if (!properties.containsKey(IOTDB_VERSION_STRING)) {
       checkUnClosedTsFileV1();
-      MLogWriter.upgradeMLog(SCHEMA_DIR, MetadataConstant.METADATA_LOG);
+      MLogWriter.upgradeMLog(SCHEMA_DIR, MetadataConstant.METADATA_TXT_LOG);
       upgradePropertiesFile();
 
       // upgrade mlog finished, delete old mlog file
       File mlogFile = SystemFileFactory.INSTANCE.getFile(SCHEMA_DIR + File.separator
-          + MetadataConstant.METADATA_LOG);
+          + MetadataConstant.METADATA_TXT_LOG);
       File tmpMLogFile = SystemFileFactory.INSTANCE.getFile(mlogFile.getAbsolutePath()
           + ".tmp");
 
@@ -204,6 +204,9 @@ public class IoTDBConfigCheck {
       // rename tmpLogFile to mlog
       FileUtils.moveFile(tmpMLogFile, mlogFile);
     }
+    // need to upgrade the text mlog to the binary one
+    MLogWriter.upgradeTxtToBin(SCHEMA_DIR, MetadataConstant.METADATA_TXT_LOG,
+        MetadataConstant.METADATA_LOG);
     checkProperties();
   }
 
@@ -36,6 +36,7 @@ import org.apache.commons.cli.ParseException;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
 import org.apache.iotdb.db.engine.tsfilemanagement.TsFileManagementStrategy;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.service.thrift.ThriftServerType;
 import org.apache.iotdb.db.utils.FilePathUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -192,9 +193,35 @@ public class IoTDBDescriptor {
           Boolean.parseBoolean(properties.getProperty("rpc_thrift_compression_enable",
               Boolean.toString(conf.isRpcThriftCompressionEnable()))));
 
+      conf.setRpcFetchReadAheadEnable(
+          Boolean.parseBoolean(properties.getProperty("rpc_fetch_read_ahead_enable",
+              Boolean.toString(conf.isRpcFetchReadAheadEnable()))));
+
       conf.setRpcPort(Integer.parseInt(properties.getProperty("rpc_port",
           Integer.toString(conf.getRpcPort()))));
 
+      String thriftServerType = properties.getProperty("rpc_thrift_server_type",
+          conf.getRpcThriftServerType().toString()).trim().toUpperCase();
+      try {
+        conf.setRpcThriftServerType(ThriftServerType.valueOf(thriftServerType));
+      } catch (IllegalArgumentException e) {
+        logger.warn("Unknown rpc_thrift_server_type {}, use {} instead", thriftServerType,
+            ThriftServerType.THREAD_POOL);
+        conf.setRpcThriftServerType(ThriftServerType.THREAD_POOL);
+      }
+
+      int selectorThreadNum = Integer.parseInt(properties.getProperty("rpc_selector_thread_num",
+          Integer.toString(conf.getRpcSelectorThreadNum())).trim());
+      if (selectorThreadNum > 0) {
+        conf.setRpcSelectorThreadNum(selectorThreadNum);
+      }
+
+      int workerThreadNum = Integer.parseInt(properties.getProperty("rpc_worker_thread_num",
+          Integer.toString(conf.getRpcWorkerThreadNum())).trim());
+      if (workerThreadNum > 0) {
+        conf.setRpcWorkerThreadNum(workerThreadNum);
+      }
+
       conf.setTimestampPrecision(properties.getProperty("timestamp_precision",
           conf.getTimestampPrecision()));
 
@@ -206,6 +233,24 @@ public class IoTDBDescriptor {
           Boolean.parseBoolean(properties.getProperty("meta_data_cache_enable",
               Boolean.toString(conf.isMetaDataCacheEnable()))));
 
+      int cacheSegmentNum = Integer.parseInt(properties.getProperty(
+          "cache_segment_num", Integer.toString(conf.getCacheSegmentNum())));
+      if (cacheSegmentNum > 0) {
+        conf.setCacheSegmentNum(cacheSegmentNum);
+      }
+
+      conf.setTimeseriesMetadataPrefetchFileNum(Math.max(0, Integer.parseInt(properties
+          .getProperty("timeseries_metadata_prefetch_file_num",
+              Integer.toString(conf.getTimeseriesMetadataPrefetchFileNum())))));
+
+      conf.setAllocateMemoryForOffHeapChunkCache(Math.max(0, Long.parseLong(properties
+          .getProperty("allocate_memory_for_off_heap_chunk_cache",
+              Long.toString(conf.getAllocateMemoryForOffHeapChunkCache())))));
+
+      conf.setMaxMappedTsFileSize(Math.max(0, Long.parseLong(properties
+          .getProperty("max_mapped_tsfile_size",
+              Long.toString(conf.getMaxMappedTsFileSize())))));
+
       conf.setEnableLastCache(Boolean.parseBoolean(properties.getProperty("enable_last_cache",
               Boolean.toString(conf.isLastCacheEnabled()))));
 
@@ -305,6 +350,14 @@ public class IoTDBDescriptor {
         conf.setConcurrentFlushThread(Runtime.getRuntime().availableProcessors());
       }
 
+      conf.setConcurrentRecoverPartitionThread(Integer
+          .parseInt(properties.getProperty("concurrent_recover_partition_thread",
+              Integer.toString(conf.getConcurrentRecoverPartitionThread()))));
+
+      if (conf.getConcurrentRecoverPartitionThread() <= 0) {
+        conf.setConcurrentRecoverPartitionThread(Runtime.getRuntime().availableProcessors());
+      }
+
       conf.setConcurrentQueryThread(Integer
           .parseInt(properties.getProperty("concurrent_query_thread",
               Integer.toString(conf.getConcurrentQueryThread()))));
@@ -313,6 +366,44 @@ public class IoTDBDescriptor {
         conf.setConcurrentQueryThread(Runtime.getRuntime().availableProcessors());
       }
 
+      conf.setConcurrentFlushEncodingThread(Integer
+          .parseInt(properties.getProperty("concurrent_flush_encoding_thread",
+              Integer.toString(conf.getConcurrentFlushEncodingThread()))));
+
+      if (conf.getConcurrentFlushEncodingThread() <= 0) {
+        conf.setConcurrentFlushEncodingThread(Runtime.getRuntime().availableProcessors());
+      }
+
+      conf.setConcurrentAggregationThreadPerQuery(Integer
+          .parseInt(properties.getProperty("concurrent_aggregation_thread_per_query",
+              Integer.toString(conf.getConcurrentAggregationThreadPerQuery()))));
+
+      if (conf.getConcurrentAggregationThreadPerQuery() <= 0
+          || conf.getConcurrentAggregationThreadPerQuery() > conf.getConcurrentQueryThread()) {
+        conf.setConcurrentAggregationThreadPerQuery(conf.getConcurrentQueryThread());
+      }
+
+      conf.setEnableRollup(Boolean.parseBoolean(properties
+          .getProperty("enable_rollup", Boolean.toString(conf.isEnableRollup()))));
+
+      conf.setRollupIntervalInMs(Long.parseLong(properties
+          .getProperty("rollup_interval_in_ms", Long.toString(conf.getRollupIntervalInMs()))));
+
+      if (conf.getRollupIntervalInMs() <= 0) {
+        conf.setEnableRollup(false);
+      }
+
+      conf.setEnableValueIndex(Boolean.parseBoolean(properties
+          .getProperty("enable_value_index", Boolean.toString(conf.isEnableValueIndex()))));
+
+      conf.setInsertLockStripeNum(Integer
+          .parseInt(properties.getProperty("insert_lock_stripe_num",
+              Integer.toString(conf.getInsertLockStripeNum()))));
+
+      if (conf.getInsertLockStripeNum() < 0) {
+        conf.setInsertLockStripeNum(0);
+      }
+
       conf.setmManagerCacheSize(Integer
           .parseInt(properties.getProperty("metadata_node_cache_size",
               Integer.toString(conf.getmManagerCacheSize())).trim()));
@@ -367,6 +458,15 @@ public class IoTDBDescriptor {
       conf.setMtreeSnapshotThresholdTime(Integer.parseInt(properties.getProperty(
           "mtree_snapshot_threshold_time",
           Integer.toString(conf.getMtreeSnapshotThresholdTime()))));
+      conf.setEnableCompactMTree(Boolean.parseBoolean(properties.getProperty(
+          "enable_compact_mtree", Boolean.toString(conf.isEnableCompactMTree()))));
+      conf.setCompactMTreeMaxArrayChildren(Math.max(1, Integer.parseInt(properties.getProperty(
+          "compact_mtree_max_array_children",
+          Integer.toString(conf.getCompactMTreeMaxArrayChildren())))));
+      conf.setEnableMTreeDiskStore(Boolean.parseBoolean(properties.getProperty(
+          "enable_mtree_disk_store", Boolean.toString(conf.isEnableMTreeDiskStore()))));
+      conf.setMtreeMaxResidentDevices(Math.max(1, Integer.parseInt(properties.getProperty(
+          "mtree_max_resident_devices", Integer.toString(conf.getMtreeMaxResidentDevices())))));
 
       conf.setEnablePerformanceStat(Boolean
           .parseBoolean(properties.getProperty("enable_performance_stat",
@@ -456,6 +556,16 @@ public class IoTDBDescriptor {
           properties.getProperty(
               "primitive_array_size", String.valueOf(conf.getPrimitiveArraySize())))));
 
+      conf.setEnableOffHeapMemtable(Boolean.parseBoolean(properties
+          .getProperty("enable_off_heap_memtable",
+              Boolean.toString(conf.isEnableOffHeapMemtable()))));
+      conf.setOffHeapMemtableMaxMemory(Math.max(0, Long.parseLong(properties
+          .getProperty("off_heap_memtable_max_memory",
+              Long.toString(conf.getOffHeapMemtableMaxMemory())))));
+      conf.setOffHeapMemtableRetainedMemory(Math.max(0, Long.parseLong(properties
+          .getProperty("off_heap_memtable_retained_memory",
+              Long.toString(conf.getOffHeapMemtableRetainedMemory())))));
+
       // mqtt
       if (properties.getProperty(IoTDBConstant.MQTT_HOST_NAME) != null) {
         conf.setMqttHost(properties.getProperty(IoTDBConstant.MQTT_HOST_NAME));
@@ -543,6 +653,13 @@ public class IoTDBDescriptor {
         .parseLong(properties.getProperty("force_wal_period_in_ms",
             Long.toString(conf.getForceWalPeriodInMs()))));
 
+    conf.setEnableWalGroupCommit(Boolean.parseBoolean(properties.getProperty(
+        "enable_wal_group_commit", Boolean.toString(conf.isEnableWalGroupCommit()))));
+
+    conf.setWalGroupCommitMaxLatencyInMs(Long
+        .parseLong(properties.getProperty("wal_group_commit_max_latency_in_ms",
+            Long.toString(conf.getWalGroupCommitMaxLatencyInMs()))));
+
     conf.setEnableDiscardOutOfOrderData(Boolean.parseBoolean(
         properties.getProperty("enable_discard_out_of_order_data",
         Boolean.toString(conf.isEnableDiscardOutOfOrderData()))));
@@ -35,6 +35,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
 import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
 import org.apache.iotdb.db.conf.IoTDBConfig;
@@ -68,6 +69,7 @@ import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.control.QueryFileManager;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.IoTDB;
+import org.apache.iotdb.db.service.JMXService;
 import org.apache.iotdb.db.service.ServiceType;
 import org.apache.iotdb.db.utils.FilePathUtils;
 import org.apache.iotdb.db.utils.TestOnly;
@@ -78,7 +80,7 @@ import org.apache.iotdb.tsfile.read.expression.impl.SingleSeriesExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class StorageEngine implements IService {
+public class StorageEngine implements IService, StorageEngineMBean {
 
   private final Logger logger;
   private static final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
@@ -98,6 +100,7 @@ public class StorageEngine implements IService {
   private static final ExecutorService recoveryThreadPool = IoTDBThreadPoolFactory
       .newFixedThreadPool(Runtime.getRuntime().availableProcessors(), "Recovery-Thread-Pool");
 
+  @Override
   public boolean isAllSgReady() {
     return isAllSgReady.get();
   }
@@ -108,6 +111,8 @@ public class StorageEngine implements IService {
 
   private AtomicBoolean isAllSgReady = new AtomicBoolean(false);
   private ExecutorService recoverAllSgThreadPool;
+  private final AtomicInteger storageGroupNumToRecover = new AtomicInteger();
+  private final AtomicInteger recoveredStorageGroupNum = new AtomicInteger();
 
   static class InstanceHolder {
 
@@ -173,6 +178,7 @@ public class StorageEngine implements IService {
      * recover all storage group processors.
      */
     List<StorageGroupMNode> sgNodes = IoTDB.metaManager.getAllStorageGroupNodes();
+    storageGroupNumToRecover.set(sgNodes.size());
     List<Future> futures = new ArrayList<>();
     for (StorageGroupMNode storageGroup : sgNodes) {
       futures.add(recoveryThreadPool.submit((Callable<Void>) () -> {
@@ -187,6 +193,7 @@ public class StorageEngine implements IService {
           logger
               .error("meet error when recovering storage group: {}", storageGroup.getFullPath(), e);
         }
+        recoveredStorageGroupNum.incrementAndGet();
         return null;
       }));
     }
@@ -225,8 +232,29 @@ public class StorageEngine implements IService {
     return result;
   }
 
+  @Override
+  public int getStorageGroupNumToRecover() {
+    return storageGroupNumToRecover.get();
+  }
+
+  @Override
+  public int getRecoveredStorageGroupNum() {
+    return recoveredStorageGroupNum.get();
+  }
+
+  @Override
+  public long getTsFileNumToRecover() {
+    return StorageGroupProcessor.getTsFileNumToRecover();
+  }
+
+  @Override
+  public long getRecoveredTsFileNum() {
+    return StorageGroupProcessor.getRecoveredTsFileNum();
+  }
+
   @Override
   public void start() {
+    JMXService.registerMBean(this, ServiceType.STORAGE_ENGINE_SERVICE.getJmxName());
     ttlCheckThread = Executors.newSingleThreadScheduledExecutor();
     ttlCheckThread.scheduleAtFixedRate(this::checkTTL, TTL_CHECK_INTERVAL, TTL_CHECK_INTERVAL
         , TimeUnit.MILLISECONDS);
@@ -250,6 +278,7 @@ public class StorageEngine implements IService {
 
   @Override
   public void stop() {
+    JMXService.deregisterMBean(ServiceType.STORAGE_ENGINE_SERVICE.getJmxName());
     syncCloseAllProcessor();
     if (ttlCheckThread != null) {
       ttlCheckThread.shutdownNow();
@@ -270,6 +299,7 @@ public class StorageEngine implements IService {
 
   @Override
   public void shutdown(long millseconds) throws ShutdownException {
+    JMXService.deregisterMBean(ServiceType.STORAGE_ENGINE_SERVICE.getJmxName());
     try {
       forceCloseAllProcessor();
     } catch (TsFileProcessorException e) {
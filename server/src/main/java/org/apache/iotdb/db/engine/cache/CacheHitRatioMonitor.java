@@ -102,6 +102,26 @@ public class CacheHitRatioMonitor implements CacheHitRatioMonitorMXBean, IServic
     return ChunkCache.getInstance().getAverageSize();
   }
 
+  @Override
+  public double getOffHeapChunkHitRatio() {
+    return OffHeapChunkCache.getInstance().calculateHitRatio();
+  }
+
+  @Override
+  public long getOffHeapChunkCacheUsedMemory() {
+    return OffHeapChunkCache.getInstance().getUsedMemory();
+  }
+
+  @Override
+  public long getOffHeapChunkCacheMaxMemory() {
+    return OffHeapChunkCache.getInstance().getMaxMemory();
+  }
+
+  @Override
+  public double getOffHeapChunkCacheUsedMemoryProportion() {
+    return OffHeapChunkCache.getInstance().getUsedMemoryProportion();
+  }
+
   @Override
   public double getTimeSeriesMetadataHitRatio() {
     return TimeSeriesMetadataCache.getInstance().calculateTimeSeriesMetadataHitRatio();
@@ -41,6 +41,14 @@ public interface CacheHitRatioMonitorMXBean {
 
   long getChunkCacheAverageSize();
 
+  double getOffHeapChunkHitRatio();
+
+  long getOffHeapChunkCacheUsedMemory();
+
+  long getOffHeapChunkCacheMaxMemory();
+
+  double getOffHeapChunkCacheUsedMemoryProportion();
+
 
   double getTimeSeriesMetadataHitRatio();
 
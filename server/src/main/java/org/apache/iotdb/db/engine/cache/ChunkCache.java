@@ -20,9 +20,8 @@
 package org.apache.iotdb.db.engine.cache;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.utils.TestOnly;
@@ -35,7 +34,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class is used to cache <code>Chunk</code> of <code>ChunkMetaData</code> in IoTDB. The
- * caching strategy is LRU.
+ * cache is split into independently locked segments and uses W-TinyLFU as the caching strategy,
+ * see {@link SegmentedTinyLFUCache}.
  */
 public class ChunkCache {
 
@@ -45,19 +45,18 @@ public class ChunkCache {
       .getAllocateMemoryForChunkCache();
   private static final boolean CACHE_ENABLE = config.isMetaDataCacheEnable();
 
-  private final LRULinkedHashMap<ChunkMetadata, Chunk> lruCache;
+  private final SegmentedTinyLFUCache<ChunkMetadata, Chunk> cache;
 
   private final AtomicLong cacheHitNum = new AtomicLong();
   private final AtomicLong cacheRequestNum = new AtomicLong();
 
-  private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-
   private ChunkCache() {
     if (CACHE_ENABLE) {
-      logger.info("ChunkCache size = " + MEMORY_THRESHOLD_IN_CHUNK_CACHE);
+      logger.info("ChunkCache size = " + MEMORY_THRESHOLD_IN_CHUNK_CACHE + ", segment num = "
+          + config.getCacheSegmentNum());
     }
-    lruCache = new LRULinkedHashMap<ChunkMetadata, Chunk>(MEMORY_THRESHOLD_IN_CHUNK_CACHE) {
+    cache = new SegmentedTinyLFUCache<ChunkMetadata, Chunk>(MEMORY_THRESHOLD_IN_CHUNK_CACHE,
+        config.getCacheSegmentNum()) {
 
       @Override
       protected long calEntrySize(ChunkMetadata key, Chunk value) {
@@ -90,35 +89,45 @@ public class ChunkCache {
 
     cacheRequestNum.incrementAndGet();
 
-    Chunk chunk;
-    lock.readLock().lock();
-    try {
-      chunk = lruCache.get(chunkMetaData);
-    } finally {
-      lock.readLock().unlock();
-    }
+    Chunk chunk = cache.get(chunkMetaData);
     if (chunk != null) {
       cacheHitNum.incrementAndGet();
       printCacheLog(true);
     } else {
       printCacheLog(false);
-      try {
-        chunk = reader.readMemChunk(chunkMetaData);
-      } catch (IOException e) {
-        logger.error("something wrong happened while reading {}", reader.getFileName());
-        throw e;
-      }
-      lock.writeLock().lock();
-      try {
-        lruCache.put(chunkMetaData, chunk);
-      } finally {
-        lock.writeLock().unlock();
+      chunk = OffHeapChunkCache.getInstance().get(reader.getFileName(), chunkMetaData);
+      if (chunk == null) {
+        try {
+          chunk = reader.readMemChunk(chunkMetaData);
+        } catch (IOException e) {
+          logger.error("something wrong happened while reading {}", reader.getFileName());
+          throw e;
+        }
+        OffHeapChunkCache.getInstance().put(reader.getFileName(), chunkMetaData, chunk);
+        chunk = copyIfMapped(chunk);
       }
+      cache.put(chunkMetaData, chunk);
     }
     return new Chunk(chunk.getHeader(), chunk.getData().duplicate(), chunk.getDeleteIntervalList());
 
   }
 
+  /**
+   * The data of a chunk read from a mapped TsFile is a slice of the mapping, which would keep the
+   * mapping alive after the reader is closed and its size is no longer counted against
+   * max_mapped_tsfile_size, so it is copied to the heap before being cached.
+   */
+  private static Chunk copyIfMapped(Chunk chunk) {
+    ByteBuffer data = chunk.getData();
+    if (!data.isDirect()) {
+      return chunk;
+    }
+    ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+    copy.put(data.duplicate());
+    copy.flip();
+    return new Chunk(chunk.getHeader(), copy, chunk.getDeleteIntervalList());
+  }
+
   private void printCacheLog(boolean isHit) {
     if (!logger.isDebugEnabled()) {
       return;
@@ -138,19 +147,19 @@ public class ChunkCache {
   }
 
   public long getUsedMemory() {
-    return lruCache.getUsedMemory();
+    return cache.getUsedMemory();
   }
 
   public long getMaxMemory() {
-    return lruCache.getMaxMemory();
+    return cache.getMaxMemory();
   }
 
   public double getUsedMemoryProportion() {
-    return lruCache.getUsedMemoryProportion();
+    return cache.getUsedMemoryProportion();
   }
 
   public long getAverageSize() {
-    return lruCache.getAverageSize();
+    return cache.getAverageSize();
   }
 
 
@@ -158,24 +167,20 @@ public class ChunkCache {
    * clear LRUCache.
    */
   public void clear() {
-    lock.writeLock().lock();
-    if (lruCache != null) {
-      lruCache.clear();
+    if (cache != null) {
+      cache.clear();
     }
-    lock.writeLock().unlock();
   }
 
   public void remove(ChunkMetadata chunkMetaData) {
-    lock.writeLock().lock();
     if (chunkMetaData != null) {
-      lruCache.remove(chunkMetaData);
+      cache.remove(chunkMetaData);
     }
-    lock.writeLock().unlock();
   }
 
   @TestOnly
   public boolean isEmpty() {
-    return lruCache.isEmpty();
+    return cache.isEmpty();
   }
 
   /**
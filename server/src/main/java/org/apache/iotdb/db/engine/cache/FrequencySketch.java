@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.engine.cache;
+
+import java.util.Arrays;
+
+/**
+ * A count-min sketch of 4-bit counters estimating how often a key has been accessed recently.
+ * Counters are halved once the number of recorded accesses reaches ten times the capacity, so
+ * keys that were popular long ago age out. <b>Note: It's not thread safe.</b>
+ */
+class FrequencySketch {
+
+  private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAX_FREQUENCY = 15;
+  static final int MAX_TABLE_LENGTH = 1 << 24;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  /**
+   * @param capacity about how many keys the sketch should tell apart
+   */
+  FrequencySketch(int capacity) {
+    int length = Math.max(16, Math.min(capacity, MAX_TABLE_LENGTH));
+    length = Integer.bitCount(length) == 1 ? length : Integer.highestOneBit(length) << 1;
+    table = new long[length];
+    tableMask = length - 1;
+    sampleSize = 10 * length;
+  }
+
+  int getTableLength() {
+    return table.length;
+  }
+
+  /**
+   * @return the estimated number of recent accesses of the key, at most 15
+   */
+  int frequency(int hash) {
+    int start = (hash & 3) << 2;
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * record one access of the key.
+   */
+  void increment(int hash) {
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  void clear() {
+    Arrays.fill(table, 0L);
+    size = 0;
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * halve all counters, the counters that were odd are subtracted from size.
+   */
+  private void reset() {
+    int oddCount = 0;
+    for (int i = 0; i < table.length; i++) {
+      oddCount += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (oddCount >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEED[i]) * SEED[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+}
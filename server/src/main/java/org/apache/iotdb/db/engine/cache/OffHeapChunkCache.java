@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.engine.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.utils.TestOnly;
+import org.apache.iotdb.tsfile.file.header.ChunkHeader;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is the second-level cache below {@link ChunkCache}. It keeps the raw bytes of chunks
+ * in direct memory, keyed by the file path and the offset of the chunk, so that a chunk evicted
+ * from ChunkCache is copied back from memory instead of being read from disk.
+ *
+ * The memory is split into segments like ChunkCache. Each segment allocates direct buffers of 4MB
+ * on demand up to its share of the memory, and cuts them into blocks of 8KB. A chunk occupies as
+ * many blocks as its size needs, and the least recently used chunks are evicted when there is no
+ * free block.
+ */
+public class OffHeapChunkCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(OffHeapChunkCache.class);
+  private static final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+
+  private static final int BLOCK_SIZE = 8 * 1024;
+  private static final int BLOCKS_PER_REGION = 512;
+
+  private final long maxMemory;
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  private final AtomicLong cacheHitNum = new AtomicLong();
+  private final AtomicLong cacheRequestNum = new AtomicLong();
+
+  private OffHeapChunkCache() {
+    this(config.isMetaDataCacheEnable() ? config.getAllocateMemoryForOffHeapChunkCache() : 0,
+        config.getCacheSegmentNum());
+  }
+
+  OffHeapChunkCache(long maxMemory, int segmentNum) {
+    int num = Math.max(1, segmentNum);
+    num = Integer.bitCount(num) == 1 ? num : Integer.highestOneBit(num) << 1;
+    long maxBlockNumPerSegment = maxMemory / num / BLOCK_SIZE;
+    if (maxBlockNumPerSegment <= 0) {
+      this.maxMemory = 0;
+      this.segments = new Segment[0];
+      this.segmentMask = 0;
+      return;
+    }
+    maxBlockNumPerSegment = Math.min(maxBlockNumPerSegment, Integer.MAX_VALUE / BLOCK_SIZE);
+    this.maxMemory = maxBlockNumPerSegment * BLOCK_SIZE * num;
+    this.segments = new Segment[num];
+    this.segmentMask = num - 1;
+    for (int i = 0; i < num; i++) {
+      segments[i] = new Segment((int) maxBlockNumPerSegment);
+    }
+    logger.info("OffHeapChunkCache size = {}, segment num = {}", this.maxMemory, num);
+  }
+
+  public static OffHeapChunkCache getInstance() {
+    return OffHeapChunkCacheHolder.INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return maxMemory > 0;
+  }
+
+  /**
+   * @return a chunk whose data is copied to the heap, or null if the chunk is not cached
+   */
+  public Chunk get(String filePath, ChunkMetadata chunkMetaData) {
+    if (!isEnabled()) {
+      return null;
+    }
+    cacheRequestNum.incrementAndGet();
+    ChunkKey key = new ChunkKey(filePath, chunkMetaData);
+    Chunk chunk = segmentFor(key).get(key, chunkMetaData);
+    if (chunk != null) {
+      cacheHitNum.incrementAndGet();
+    }
+    return chunk;
+  }
+
+  public void put(String filePath, ChunkMetadata chunkMetaData, Chunk chunk) {
+    if (!isEnabled()) {
+      return;
+    }
+    ChunkKey key = new ChunkKey(filePath, chunkMetaData);
+    segmentFor(key).put(key, chunk);
+  }
+
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  public double calculateHitRatio() {
+    if (cacheRequestNum.get() != 0) {
+      return cacheHitNum.get() * 1.0 / cacheRequestNum.get();
+    } else {
+      return 0;
+    }
+  }
+
+  public long getUsedMemory() {
+    long usedBlockNum = 0;
+    for (Segment segment : segments) {
+      usedBlockNum += segment.usedBlockNum;
+    }
+    return usedBlockNum * BLOCK_SIZE;
+  }
+
+  public long getMaxMemory() {
+    return maxMemory;
+  }
+
+  public double getUsedMemoryProportion() {
+    return maxMemory == 0 ? 0 : getUsedMemory() * 1.0 / maxMemory;
+  }
+
+  @TestOnly
+  public boolean isEmpty() {
+    return getUsedMemory() == 0;
+  }
+
+  private Segment segmentFor(ChunkKey key) {
+    int h = key.hashCode();
+    return segments[(h ^ (h >>> 16)) & segmentMask];
+  }
+
+  private static class Segment {
+
+    private final int maxBlockNum;
+    private final List<ByteBuffer> regions = new ArrayList<>();
+    private final LinkedHashMap<ChunkKey, CachedChunk> chunks = new LinkedHashMap<>(16, 0.75f,
+        true);
+
+    private int[] freeBlocks = new int[0];
+    private int freeBlockNum;
+    private int allocatedBlockNum;
+    private volatile int usedBlockNum;
+
+    private Segment(int maxBlockNum) {
+      this.maxBlockNum = maxBlockNum;
+    }
+
+    private synchronized Chunk get(ChunkKey key, ChunkMetadata chunkMetaData) {
+      CachedChunk cachedChunk = chunks.get(key);
+      if (cachedChunk == null) {
+        return null;
+      }
+      ByteBuffer data = ByteBuffer.allocate(cachedChunk.length);
+      int remaining = cachedChunk.length;
+      for (int block : cachedChunk.blocks) {
+        int length = Math.min(remaining, BLOCK_SIZE);
+        ByteBuffer src = blockBuffer(block);
+        src.limit(src.position() + length);
+        data.put(src);
+        remaining -= length;
+      }
+      data.flip();
+      return new Chunk(cachedChunk.header, data, chunkMetaData.getDeleteIntervalList());
+    }
+
+    private synchronized void put(ChunkKey key, Chunk chunk) {
+      if (chunks.containsKey(key)) {
+        return;
+      }
+      ByteBuffer data = chunk.getData().duplicate();
+      int length = data.remaining();
+      int blockNum = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      if (blockNum > maxBlockNum) {
+        return;
+      }
+      int[] blocks = new int[blockNum];
+      for (int i = 0; i < blockNum; i++) {
+        blocks[i] = allocateBlock();
+        ByteBuffer dest = blockBuffer(blocks[i]);
+        int blockLength = Math.min(data.remaining(), BLOCK_SIZE);
+        ByteBuffer src = data.duplicate();
+        src.limit(src.position() + blockLength);
+        dest.put(src);
+        data.position(data.position() + blockLength);
+      }
+      chunks.put(key, new CachedChunk(chunk.getHeader(), blocks, length));
+      usedBlockNum += blockNum;
+    }
+
+    private synchronized void clear() {
+      chunks.clear();
+      // keep the allocated regions, all their blocks become free
+      if (freeBlocks.length < allocatedBlockNum) {
+        freeBlocks = new int[allocatedBlockNum];
+      }
+      for (int i = 0; i < allocatedBlockNum; i++) {
+        freeBlocks[i] = i;
+      }
+      freeBlockNum = allocatedBlockNum;
+      usedBlockNum = 0;
+    }
+
+    /**
+     * take a free block, allocate a new region if all blocks are in use and the segment is not
+     * full yet, otherwise evict the least recently used chunks.
+     */
+    private int allocateBlock() {
+      if (freeBlockNum == 0 && allocatedBlockNum < maxBlockNum) {
+        allocateRegion();
+      }
+      if (freeBlockNum == 0) {
+        Iterator<Entry<ChunkKey, CachedChunk>> iterator = chunks.entrySet().iterator();
+        while (freeBlockNum == 0) {
+          CachedChunk evicted = iterator.next().getValue();
+          iterator.remove();
+          for (int block : evicted.blocks) {
+            freeBlocks[freeBlockNum++] = block;
+          }
+          usedBlockNum -= evicted.blocks.length;
+        }
+      }
+      return freeBlocks[--freeBlockNum];
+    }
+
+    private void allocateRegion() {
+      int blockNum = Math.min(BLOCKS_PER_REGION, maxBlockNum - allocatedBlockNum);
+      regions.add(ByteBuffer.allocateDirect(blockNum * BLOCK_SIZE));
+      if (freeBlocks.length < allocatedBlockNum + blockNum) {
+        int[] newFreeBlocks = new int[allocatedBlockNum + blockNum];
+        System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeBlockNum);
+        freeBlocks = newFreeBlocks;
+      }
+      for (int i = blockNum - 1; i >= 0; i--) {
+        freeBlocks[freeBlockNum++] = allocatedBlockNum + i;
+      }
+      allocatedBlockNum += blockNum;
+    }
+
+    /**
+     * @return a buffer positioned at the beginning of the block and limited to its end
+     */
+    private ByteBuffer blockBuffer(int block) {
+      ByteBuffer buffer = regions.get(block / BLOCKS_PER_REGION).duplicate();
+      int offset = (block % BLOCKS_PER_REGION) * BLOCK_SIZE;
+      buffer.limit(offset + BLOCK_SIZE);
+      buffer.position(offset);
+      return buffer;
+    }
+  }
+
+  private static class CachedChunk {
+
+    private final ChunkHeader header;
+    private final int[] blocks;
+    private final int length;
+
+    private CachedChunk(ChunkHeader header, int[] blocks, int length) {
+      this.header = header;
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+  /**
+   * the version is part of the key because merge may write new chunks at an offset of a file that
+   * used to hold other data.
+   */
+  private static class ChunkKey {
+
+    private final String filePath;
+    private final long offset;
+    private final long version;
+
+    private ChunkKey(String filePath, ChunkMetadata chunkMetaData) {
+      this.filePath = filePath;
+      this.offset = chunkMetaData.getOffsetOfChunkHeader();
+      this.version = chunkMetaData.getVersion();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ChunkKey that = (ChunkKey) o;
+      return offset == that.offset && version == that.version && filePath.equals(that.filePath);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(filePath, offset, version);
+    }
+  }
+
+  /**
+   * singleton pattern.
+   */
+  private static class OffHeapChunkCacheHolder {
+
+    private static final OffHeapChunkCache INSTANCE = new OffHeapChunkCache();
+  }
+}
@@ -0,0 +1,464 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.engine.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A memory bounded cache that is split into hash-striped segments, each guarded by its own lock,
+ * so that threads reading different keys do not block each other.
+ *
+ * Each segment follows W-TinyLFU: a new entry first enters a small LRU window (1% of the segment
+ * memory). Entries leaving the window compete with the least recently used entry of the main
+ * space, and are admitted only if they have been accessed more often recently, as estimated by a
+ * {@link FrequencySketch}. So a large scan that reads every chunk once cannot push out the
+ * entries that are read again and again. The main space is a segmented LRU: entries hit in the
+ * probation part (20%) are promoted to the protected part (80%).
+ */
+public abstract class SegmentedTinyLFUCache<K, V> {
+
+  private static final int MAP_ENTRY_SIZE = 40;
+  private static final float WINDOW_PERCENT = 0.01f;
+  private static final float PROTECTED_PERCENT = 0.8f;
+  private static final int MAX_SEGMENT_NUM = 1 << 16;
+  private static final int INITIAL_SKETCH_CAPACITY = 16;
+
+  private static final byte WINDOW = 0;
+  private static final byte PROBATION = 1;
+  private static final byte PROTECTED = 2;
+
+  private final Segment<K, V>[] segments;
+  private final int segmentMask;
+
+  /**
+   * maximum memory threshold.
+   */
+  private final long maxMemory;
+
+  protected int count = 0;
+  protected volatile long averageSize = 0;
+
+  @SuppressWarnings("unchecked")
+  public SegmentedTinyLFUCache(long maxMemory, int segmentNum) {
+    this.maxMemory = maxMemory;
+    int num = Math.max(1, Math.min(segmentNum, MAX_SEGMENT_NUM));
+    num = Integer.bitCount(num) == 1 ? num : Integer.highestOneBit(num) << 1;
+    this.segments = new Segment[num];
+    this.segmentMask = num - 1;
+    for (int i = 0; i < num; i++) {
+      segments[i] = new Segment<>(maxMemory / num);
+    }
+  }
+
+  public V get(K key) {
+    int hash = spread(key.hashCode());
+    return segmentFor(hash).get(key, hash);
+  }
+
+  /**
+   * unlike get(), this does not count as an access of the key.
+   */
+  public boolean containsKey(K key) {
+    int hash = spread(key.hashCode());
+    return segmentFor(hash).containsKey(key);
+  }
+
+  /**
+   * put the entry into the window of its segment. The entry may be evicted right away if it is
+   * larger than the segment or is accessed less often than the entries it competes with.
+   */
+  public void put(K key, V value) {
+    long size = estimateEntrySize(key, value);
+    int hash = spread(key.hashCode());
+    segmentFor(hash).put(key, value, size, hash);
+  }
+
+  public V remove(K key) {
+    int hash = spread(key.hashCode());
+    return segmentFor(hash).remove(key);
+  }
+
+  public void clear() {
+    for (Segment<K, V> segment : segments) {
+      segment.clear();
+    }
+    synchronized (this) {
+      count = 0;
+      averageSize = 0;
+    }
+  }
+
+  /**
+   * approximately estimate the additional size of key and value.
+   */
+  protected abstract long calEntrySize(K key, V value);
+
+  /**
+   * calEntrySize() of subclasses updates count and averageSize, so calls from different
+   * segments are serialized. It is only called on cache misses.
+   */
+  private synchronized long estimateEntrySize(K key, V value) {
+    return calEntrySize(key, value) + MAP_ENTRY_SIZE;
+  }
+
+  /**
+   * calculate the proportion of used memory.
+   */
+  public double getUsedMemoryProportion() {
+    return getUsedMemory() * 1.0 / maxMemory;
+  }
+
+  public long getUsedMemory() {
+    long usedMemory = 0;
+    for (Segment<K, V> segment : segments) {
+      usedMemory += segment.usedMemory;
+    }
+    return usedMemory;
+  }
+
+  public long getMaxMemory() {
+    return maxMemory;
+  }
+
+  public long getAverageSize() {
+    return averageSize;
+  }
+
+  public int getSegmentNum() {
+    return segments.length;
+  }
+
+  public boolean isEmpty() {
+    for (Segment<K, V> segment : segments) {
+      if (segment.usedMemory != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Segment<K, V> segmentFor(int hash) {
+    return segments[(hash >>> 16) & segmentMask];
+  }
+
+  private static int spread(int hashCode) {
+    int h = ((hashCode >>> 16) ^ hashCode) * 0x45d9f3b;
+    h = ((h >>> 16) ^ h) * 0x45d9f3b;
+    return (h >>> 16) ^ h;
+  }
+
+  private static class Segment<K, V> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private FrequencySketch sketch = new FrequencySketch(INITIAL_SKETCH_CAPACITY);
+
+    private final NodeQueue<K, V> window = new NodeQueue<>();
+    private final NodeQueue<K, V> probation = new NodeQueue<>();
+    private final NodeQueue<K, V> protectedQueue = new NodeQueue<>();
+
+    private final long maxWindowMemory;
+    private final long maxMainMemory;
+    private final long maxProtectedMemory;
+
+    private long windowMemory;
+    private long probationMemory;
+    private long protectedMemory;
+    private volatile long usedMemory;
+
+    private Segment(long maxMemory) {
+      this.maxWindowMemory = (long) (maxMemory * WINDOW_PERCENT);
+      this.maxMainMemory = maxMemory - maxWindowMemory;
+      this.maxProtectedMemory = (long) (maxMainMemory * PROTECTED_PERCENT);
+    }
+
+    private V get(K key, int hash) {
+      lock.lock();
+      try {
+        sketch.increment(hash);
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+          return null;
+        }
+        onHit(node);
+        return node.value;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private boolean containsKey(K key) {
+      lock.lock();
+      try {
+        return data.containsKey(key);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void put(K key, V value, long size, int hash) {
+      lock.lock();
+      try {
+        Node<K, V> old = data.remove(key);
+        if (old != null) {
+          unlink(old);
+        }
+        if (size > maxWindowMemory + maxMainMemory) {
+          return;
+        }
+        Node<K, V> node = new Node<>(key, value, size, hash);
+        data.put(key, node);
+        window.addLast(node);
+        windowMemory += size;
+        evictFromWindow();
+        if (data.size() > sketch.getTableLength()
+            && sketch.getTableLength() < FrequencySketch.MAX_TABLE_LENGTH) {
+          growSketch();
+        }
+      } finally {
+        usedMemory = windowMemory + probationMemory + protectedMemory;
+        lock.unlock();
+      }
+    }
+
+    private V remove(K key) {
+      lock.lock();
+      try {
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+          return null;
+        }
+        unlink(node);
+        return node.value;
+      } finally {
+        usedMemory = windowMemory + probationMemory + protectedMemory;
+        lock.unlock();
+      }
+    }
+
+    private void clear() {
+      lock.lock();
+      try {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedQueue.clear();
+        sketch.clear();
+        windowMemory = 0;
+        probationMemory = 0;
+        protectedMemory = 0;
+        usedMemory = 0;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * replace the sketch with a larger one when the segment holds more keys than the sketch can
+     * tell apart. The frequencies of the cached keys are carried over.
+     */
+    private void growSketch() {
+      FrequencySketch grown = new FrequencySketch(data.size() * 2);
+      for (Node<K, V> node : data.values()) {
+        int frequency = sketch.frequency(node.hash);
+        for (int i = 0; i < frequency; i++) {
+          grown.increment(node.hash);
+        }
+      }
+      sketch = grown;
+    }
+
+    private void onHit(Node<K, V> node) {
+      switch (node.region) {
+        case WINDOW:
+          window.moveToLast(node);
+          break;
+        case PROBATION:
+          probation.remove(node);
+          probationMemory -= node.size;
+          node.region = PROTECTED;
+          protectedQueue.addLast(node);
+          protectedMemory += node.size;
+          demoteFromProtected();
+          break;
+        default:
+          protectedQueue.moveToLast(node);
+          break;
+      }
+    }
+
+    /**
+     * move the least recently used protected entries back to probation while the protected part
+     * is too large.
+     */
+    private void demoteFromProtected() {
+      while (protectedMemory > maxProtectedMemory) {
+        Node<K, V> node = protectedQueue.pollFirst();
+        protectedMemory -= node.size;
+        node.region = PROBATION;
+        probation.addLast(node);
+        probationMemory += node.size;
+      }
+    }
+
+    /**
+     * let the least recently used window entries compete for the main space until the window
+     * fits its memory.
+     */
+    private void evictFromWindow() {
+      while (windowMemory > maxWindowMemory) {
+        Node<K, V> candidate = window.pollFirst();
+        windowMemory -= candidate.size;
+        if (admit(candidate)) {
+          candidate.region = PROBATION;
+          probation.addLast(candidate);
+          probationMemory += candidate.size;
+        } else {
+          data.remove(candidate.key);
+        }
+      }
+    }
+
+    /**
+     * evict main entries for the candidate as long as each victim is accessed less often than
+     * the candidate. Probation entries are evicted before protected ones.
+     *
+     * @return whether the candidate is admitted
+     */
+    private boolean admit(Node<K, V> candidate) {
+      if (candidate.size > maxMainMemory) {
+        return false;
+      }
+      int candidateFrequency = -1;
+      while (probationMemory + protectedMemory + candidate.size > maxMainMemory) {
+        Node<K, V> victim = probation.peekFirst();
+        if (victim == null) {
+          victim = protectedQueue.peekFirst();
+        }
+        if (candidateFrequency < 0) {
+          candidateFrequency = sketch.frequency(candidate.hash);
+        }
+        if (candidateFrequency <= sketch.frequency(victim.hash)) {
+          return false;
+        }
+        data.remove(victim.key);
+        unlink(victim);
+      }
+      return true;
+    }
+
+    private void unlink(Node<K, V> node) {
+      switch (node.region) {
+        case WINDOW:
+          window.remove(node);
+          windowMemory -= node.size;
+          break;
+        case PROBATION:
+          probation.remove(node);
+          probationMemory -= node.size;
+          break;
+        default:
+          protectedQueue.remove(node);
+          protectedMemory -= node.size;
+          break;
+      }
+    }
+  }
+
+  private static class Node<K, V> {
+
+    private final K key;
+    private final V value;
+    private final long size;
+    private final int hash;
+    private byte region = WINDOW;
+
+    private Node<K, V> prev;
+    private Node<K, V> next;
+
+    private Node(K key, V value, long size, int hash) {
+      this.key = key;
+      this.value = value;
+      this.size = size;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * a doubly linked list of nodes, from the least recently used to the most recently used.
+   */
+  private static class NodeQueue<K, V> {
+
+    private Node<K, V> head;
+    private Node<K, V> tail;
+
+    private Node<K, V> peekFirst() {
+      return head;
+    }
+
+    private Node<K, V> pollFirst() {
+      Node<K, V> node = head;
+      if (node != null) {
+        remove(node);
+      }
+      return node;
+    }
+
+    private void addLast(Node<K, V> node) {
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+    }
+
+    private void moveToLast(Node<K, V> node) {
+      if (node != tail) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+    private void remove(Node<K, V> node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+    }
+
+    private void clear() {
+      head = null;
+      tail = null;
+    }
+  }
+}
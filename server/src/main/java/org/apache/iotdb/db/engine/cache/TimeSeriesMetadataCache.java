@@ -20,29 +20,45 @@
 package org.apache.iotdb.db.engine.cache;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.query.control.FileReaderManager;
+import org.apache.iotdb.db.query.pool.QueryTaskPoolManager;
 import org.apache.iotdb.db.utils.TestOnly;
 import org.apache.iotdb.tsfile.common.cache.Accountable;
 import org.apache.iotdb.tsfile.file.metadata.TimeseriesMetadata;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.utils.BloomFilter;
+import org.apache.iotdb.tsfile.utils.Pair;
 import org.apache.iotdb.tsfile.utils.RamUsageEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class is used to cache <code>TimeSeriesMetadata</code> in IoTDB. The caching strategy is
- * LRU.
+ * This class is used to cache <code>TimeSeriesMetadata</code> in IoTDB. The cache is split into
+ * independently locked segments and uses W-TinyLFU as the caching strategy, see {@link
+ * SegmentedTinyLFUCache}.
+ *
+ * On a miss, the metadata of all the queried sensors of the device in the file is loaded at once.
+ * Concurrent misses of the same device in the same file share one load. {@link #prefetch(Map)}
+ * loads the metadata of many devices of one file together in the query thread pool.
  */
 public class TimeSeriesMetadataCache {
 
@@ -52,21 +68,24 @@ public class TimeSeriesMetadataCache {
       .getAllocateMemoryForTimeSeriesMetaDataCache();
   private static final boolean CACHE_ENABLE = config.isMetaDataCacheEnable();
 
-  private final LRULinkedHashMap<TimeSeriesMetadataCacheKey, TimeseriesMetadata> lruCache;
+  private final SegmentedTinyLFUCache<TimeSeriesMetadataCacheKey, TimeseriesMetadata> cache;
+
+  /**
+   * (file path, device) -> the load of the device's metadata in the file that is running or
+   * waiting in the query thread pool
+   */
+  private final Map<Pair<String, String>, DeviceLoad> loadingDevices = new ConcurrentHashMap<>();
 
   private final AtomicLong cacheHitNum = new AtomicLong();
   private final AtomicLong cacheRequestNum = new AtomicLong();
 
-  private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-
   private TimeSeriesMetadataCache() {
     if (CACHE_ENABLE) {
       logger
           .info("TimeseriesMetadataCache size = " + MEMORY_THRESHOLD_IN_TIME_SERIES_METADATA_CACHE);
     }
-    lruCache = new LRULinkedHashMap<TimeSeriesMetadataCacheKey, TimeseriesMetadata>(
-        MEMORY_THRESHOLD_IN_TIME_SERIES_METADATA_CACHE) {
+    cache = new SegmentedTinyLFUCache<TimeSeriesMetadataCacheKey, TimeseriesMetadata>(
+        MEMORY_THRESHOLD_IN_TIME_SERIES_METADATA_CACHE, config.getCacheSegmentNum()) {
 
       @Override
       protected long calEntrySize(TimeSeriesMetadataCacheKey key, TimeseriesMetadata value) {
@@ -97,7 +116,6 @@ public class TimeSeriesMetadataCache {
     return TimeSeriesMetadataCache.TimeSeriesMetadataCacheHolder.INSTANCE;
   }
 
-  @SuppressWarnings("squid:S1860") // Suppress synchronize warning
   public TimeseriesMetadata get(TimeSeriesMetadataCacheKey key, Set<String> allSensors)
       throws IOException {
     if (!CACHE_ENABLE) {
@@ -113,53 +131,13 @@ public class TimeSeriesMetadataCache {
 
     cacheRequestNum.incrementAndGet();
 
-    TimeseriesMetadata timeseriesMetadata;
-    lock.readLock().lock();
-    try {
-      timeseriesMetadata = lruCache.get(key);
-    } finally {
-      lock.readLock().unlock();
-    }
-
+    TimeseriesMetadata timeseriesMetadata = cache.get(key);
     if (timeseriesMetadata != null) {
       cacheHitNum.incrementAndGet();
       printCacheLog(true);
     } else {
-      // allow for the parallelism of different devices
-      synchronized (key.device.intern()) {
-        // double check
-        lock.readLock().lock();
-        try {
-          timeseriesMetadata = lruCache.get(key);
-        } finally {
-          lock.readLock().unlock();
-        }
-        if (timeseriesMetadata != null) {
-          cacheHitNum.incrementAndGet();
-          printCacheLog(true);
-        } else {
-          printCacheLog(false);
-          // bloom filter part
-          TsFileSequenceReader reader = FileReaderManager.getInstance().get(key.filePath, true);
-          BloomFilter bloomFilter = reader.readBloomFilter();
-          if (bloomFilter != null && !bloomFilter
-              .contains(key.device + IoTDBConstant.PATH_SEPARATOR + key.measurement)) {
-            return null;
-          }
-          List<TimeseriesMetadata> timeSeriesMetadataList = reader
-              .readTimeseriesMetadata(key.device, allSensors);
-          // put TimeSeriesMetadata of all sensors used in this query into cache
-          lock.writeLock().lock();
-          try {
-            timeSeriesMetadataList.forEach(metadata ->
-                lruCache.put(new TimeSeriesMetadataCacheKey(key.filePath, key.device,
-                    metadata.getMeasurementId()), metadata));
-            timeseriesMetadata = lruCache.get(key);
-          } finally {
-            lock.writeLock().unlock();
-          }
-        }
-      }
+      printCacheLog(false);
+      timeseriesMetadata = load(key, allSensors);
     }
     if (timeseriesMetadata == null) {
       return null;
@@ -168,6 +146,140 @@ public class TimeSeriesMetadataCache {
     }
   }
 
+  /**
+   * load the metadata of all sensors of the device used in this query, or wait for a running load
+   * of the device in the same file that contains the sensor.
+   */
+  private TimeseriesMetadata load(TimeSeriesMetadataCacheKey key, Set<String> allSensors)
+      throws IOException {
+    Set<String> measurements = new HashSet<>(allSensors);
+    measurements.add(key.measurement);
+    DeviceLoad newLoad = new DeviceLoad(key.device, measurements);
+    DeviceLoad load = loadingDevices.putIfAbsent(new Pair<>(key.filePath, key.device), newLoad);
+    if (load == null || !load.measurements.contains(key.measurement)) {
+      load = newLoad;
+    }
+    // run the load here if it is still waiting in the query thread pool
+    loadDevices(key.filePath, Collections.singletonList(load));
+    return load.await().get(key.measurement);
+  }
+
+  /**
+   * load the TimeseriesMetadata of the given devices in each given file in the background. The
+   * metadata of all devices in one file is read by one task in the query thread pool, so that
+   * the index nodes shared by the devices are read only once. Devices that are cached or being
+   * loaded are skipped.
+   *
+   * @param fileDeviceMeasurements closed file -> device -> measurements
+   */
+  public void prefetch(Map<TsFileResource, Map<String, Set<String>>> fileDeviceMeasurements) {
+    if (!CACHE_ENABLE) {
+      return;
+    }
+    for (Entry<TsFileResource, Map<String, Set<String>>> fileEntry : fileDeviceMeasurements
+        .entrySet()) {
+      TsFileResource resource = fileEntry.getKey();
+      String filePath = resource.getTsFilePath();
+      List<DeviceLoad> loads = new ArrayList<>();
+      for (Entry<String, Set<String>> deviceEntry : fileEntry.getValue().entrySet()) {
+        String device = deviceEntry.getKey();
+        if (isCached(filePath, device, deviceEntry.getValue())) {
+          continue;
+        }
+        DeviceLoad load = new DeviceLoad(device, deviceEntry.getValue());
+        if (loadingDevices.putIfAbsent(new Pair<>(filePath, device), load) == null) {
+          loads.add(load);
+        }
+      }
+      if (!loads.isEmpty()) {
+        QueryTaskPoolManager.getInstance().submit(() -> prefetchDevices(resource, loads));
+      }
+    }
+  }
+
+  /**
+   * load the devices in a background task, which holds a reference of the file like a query does,
+   * so that the reader of the file is not closed while it is read. The reference is taken and
+   * released in the task as it locks the file for the thread.
+   */
+  private void prefetchDevices(TsFileResource resource, List<DeviceLoad> loads) {
+    FileReaderManager.getInstance().increaseFileReaderReference(resource, true);
+    try {
+      loadDevices(resource.getTsFilePath(), loads);
+    } finally {
+      FileReaderManager.getInstance().decreaseFileReaderReference(resource, true);
+    }
+  }
+
+  private boolean isCached(String filePath, String device, Set<String> measurements) {
+    for (String measurement : measurements) {
+      if (!cache.containsKey(new TimeSeriesMetadataCacheKey(filePath, device, measurement))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * read the metadata of the devices that no other thread has started loading, put it into the
+   * cache and complete their loads.
+   */
+  private void loadDevices(String filePath, List<DeviceLoad> loads) {
+    List<DeviceLoad> claimedLoads = new ArrayList<>();
+    for (DeviceLoad load : loads) {
+      if (load.claimed.compareAndSet(false, true)) {
+        claimedLoads.add(load);
+      }
+    }
+    if (claimedLoads.isEmpty()) {
+      return;
+    }
+    try {
+      TsFileSequenceReader reader = FileReaderManager.getInstance().get(filePath, true);
+      // bloom filter part
+      BloomFilter bloomFilter = reader.readBloomFilter();
+      Map<String, Set<String>> deviceMeasurements = new HashMap<>();
+      for (DeviceLoad load : claimedLoads) {
+        Set<String> measurements = new HashSet<>();
+        for (String measurement : load.measurements) {
+          if (bloomFilter == null || bloomFilter
+              .contains(load.device + IoTDBConstant.PATH_SEPARATOR + measurement)) {
+            measurements.add(measurement);
+          }
+        }
+        if (!measurements.isEmpty()) {
+          deviceMeasurements.put(load.device, measurements);
+        }
+      }
+      Map<String, List<TimeseriesMetadata>> deviceTimeseriesMetadata = Collections.emptyMap();
+      if (!deviceMeasurements.isEmpty()) {
+        deviceTimeseriesMetadata = reader.readTimeseriesMetadata(deviceMeasurements);
+      }
+      for (DeviceLoad load : claimedLoads) {
+        Map<String, TimeseriesMetadata> loaded = new HashMap<>();
+        for (TimeseriesMetadata metadata : deviceTimeseriesMetadata
+            .getOrDefault(load.device, Collections.emptyList())) {
+          cache.put(new TimeSeriesMetadataCacheKey(filePath, load.device,
+              metadata.getMeasurementId()), metadata);
+          loaded.put(metadata.getMeasurementId(), metadata);
+        }
+        load.result.complete(loaded);
+      }
+    } catch (IOException e) {
+      logger.debug("Failed to load TimeseriesMetadata from {}", filePath, e);
+      for (DeviceLoad load : claimedLoads) {
+        load.result.completeExceptionally(e);
+      }
+    } finally {
+      for (DeviceLoad load : claimedLoads) {
+        if (!load.result.isDone()) {
+          load.result.completeExceptionally(new IOException(
+              "Failed to load TimeseriesMetadata of " + load.device + " from " + filePath));
+        }
+        loadingDevices.remove(new Pair<>(filePath, load.device), load);
+      }
+    }
+  }
 
   private void printCacheLog(boolean isHit) {
     if (!logger.isDebugEnabled()) {
@@ -188,43 +300,39 @@ public class TimeSeriesMetadataCache {
   }
 
   public long getUsedMemory() {
-    return lruCache.getUsedMemory();
+    return cache.getUsedMemory();
   }
 
   public long getMaxMemory() {
-    return lruCache.getMaxMemory();
+    return cache.getMaxMemory();
   }
 
   public double getUsedMemoryProportion() {
-    return lruCache.getUsedMemoryProportion();
+    return cache.getUsedMemoryProportion();
   }
 
   public long getAverageSize() {
-    return lruCache.getAverageSize();
+    return cache.getAverageSize();
   }
 
   /**
-   * clear LRUCache.
+   * clear the cache.
    */
   public void clear() {
-    lock.writeLock().lock();
-    if (lruCache != null) {
-      lruCache.clear();
+    if (cache != null) {
+      cache.clear();
     }
-    lock.writeLock().unlock();
   }
 
   public void remove(TimeSeriesMetadataCacheKey key) {
-    lock.writeLock().lock();
     if (key != null) {
-      lruCache.remove(key);
+      cache.remove(key);
     }
-    lock.writeLock().unlock();
   }
 
   @TestOnly
   public boolean isEmpty() {
-    return lruCache.isEmpty();
+    return cache.isEmpty();
   }
 
   public static class TimeSeriesMetadataCacheKey implements Accountable {
@@ -271,6 +379,42 @@ public class TimeSeriesMetadataCache {
     }
   }
 
+  /**
+   * loading the metadata of some measurements of a device in a file. The thread that claims the
+   * load reads the metadata, others wait for its result, so no thread waits for a load that is
+   * still queued in the query thread pool.
+   */
+  private static class DeviceLoad {
+
+    private final String device;
+    private final Set<String> measurements;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CompletableFuture<Map<String, TimeseriesMetadata>> result =
+        new CompletableFuture<>();
+
+    private DeviceLoad(String device, Set<String> measurements) {
+      this.device = device;
+      this.measurements = measurements;
+    }
+
+    /**
+     * @return measurement -> TimeseriesMetadata of the loaded measurements in the file
+     */
+    private Map<String, TimeseriesMetadata> await() throws IOException {
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    }
+  }
+
   /**
    * singleton pattern.
    */
@@ -19,19 +19,26 @@
 package org.apache.iotdb.db.engine.flush;
 
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
 import org.apache.iotdb.db.engine.flush.pool.FlushSubTaskPoolManager;
 import org.apache.iotdb.db.engine.memtable.IMemTable;
 import org.apache.iotdb.db.engine.memtable.IWritableMemChunk;
+import org.apache.iotdb.db.engine.sidefile.ChunkEntryBuilder;
+import org.apache.iotdb.db.engine.sidefile.SideFileWriter;
 import org.apache.iotdb.db.exception.runtime.FlushRunTimeException;
 import org.apache.iotdb.db.utils.datastructure.TVList;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
-import org.apache.iotdb.tsfile.utils.Pair;
+import org.apache.iotdb.tsfile.utils.Binary;
 import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
 import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
@@ -39,23 +46,38 @@ import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * MemTableFlushTask flushes a memtable in a pipeline: the flush thread dispatches the series of
+ * the memtable, one or more encoding sub tasks sort and encode them into chunks, and one io sub
+ * task writes the chunks into the file. When more than one encoding sub task is used (see
+ * concurrent_flush_encoding_thread), series are encoded in parallel while the io task still
+ * writes them in the order they are dispatched, so chunks of one device stay in one chunk group.
+ */
 public class MemTableFlushTask {
 
   private static final Logger logger = LoggerFactory.getLogger(MemTableFlushTask.class);
   private static final FlushSubTaskPoolManager subTaskPoolManager = FlushSubTaskPoolManager
       .getInstance();
-  private final Future<?> encodingTaskFuture;
+
+  /**
+   * marks the end of a task queue, each sub task exits when it takes this from its queue.
+   */
+  private static final Object NO_MORE_TASK = new Object();
+
+  private final List<Future<?>> encodingTaskFutures = new ArrayList<>();
   private final Future<?> ioTaskFuture;
   private RestorableTsFileIOWriter writer;
 
-  private final ConcurrentLinkedQueue<Object> ioTaskQueue = new ConcurrentLinkedQueue<>();
-  private final ConcurrentLinkedQueue<Object> encodingTaskQueue = new ConcurrentLinkedQueue<>();
+  private final BlockingQueue<Object> ioTaskQueue = new LinkedBlockingQueue<>();
+  private final BlockingQueue<Object> encodingTaskQueue = new LinkedBlockingQueue<>();
   private String storageGroup;
 
   private IMemTable memTable;
 
-  private volatile boolean noMoreEncodingTask = false;
-  private volatile boolean noMoreIOTask = false;
+  private final int encodingTaskNum;
+
+  // collect the side file entries of the flushed chunks, e.g., their rollup
+  private final List<SideFileWriter> sideFileWriters;
 
   /**
    * @param memTable the memTable to flush
@@ -64,13 +86,26 @@ public class MemTableFlushTask {
    */
 
   public MemTableFlushTask(IMemTable memTable, RestorableTsFileIOWriter writer, String storageGroup) {
+    this(memTable, writer, storageGroup, Collections.emptyList());
+  }
+
+  /**
+   * @param sideFileWriters where the side file entries of the flushed chunks are added
+   */
+  public MemTableFlushTask(IMemTable memTable, RestorableTsFileIOWriter writer,
+      String storageGroup, List<SideFileWriter> sideFileWriters) {
     this.memTable = memTable;
     this.writer = writer;
     this.storageGroup = storageGroup;
-    this.encodingTaskFuture = subTaskPoolManager.submit(encodingTask);
+    this.sideFileWriters = sideFileWriters;
+    this.encodingTaskNum = Math.max(1,
+        IoTDBDescriptor.getInstance().getConfig().getConcurrentFlushEncodingThread());
+    for (int i = 0; i < encodingTaskNum; i++) {
+      this.encodingTaskFutures.add(subTaskPoolManager.submit(encodingTask));
+    }
     this.ioTaskFuture = subTaskPoolManager.submit(ioTask);
-    logger.debug("flush task of Storage group {} memtable {} is created ",
-        storageGroup, memTable.getVersion());
+    logger.debug("flush task of Storage group {} memtable {} is created with {} encoding tasks",
+        storageGroup, memTable.getVersion(), encodingTaskNum);
   }
 
   /**
@@ -82,34 +117,48 @@ public class MemTableFlushTask {
     long sortTime = 0;
 
     for (String deviceId : memTable.getMemTableMap().keySet()) {
-      encodingTaskQueue.add(new StartFlushGroupIOTask(deviceId));
+      ioTaskQueue.add(new StartFlushGroupIOTask(deviceId));
       for (String measurementId : memTable.getMemTableMap().get(deviceId).keySet()) {
-        long startTime = System.currentTimeMillis();
         IWritableMemChunk series = memTable.getMemTableMap().get(deviceId).get(measurementId);
-        MeasurementSchema desc = series.getSchema();
-        TVList tvList = series.getSortedTVList();
-        sortTime += System.currentTimeMillis() - startTime;
-        encodingTaskQueue.add(new Pair<>(tvList, desc));
+        EncodeSeriesTask encodeSeriesTask = new EncodeSeriesTask(deviceId, measurementId,
+            series);
+        if (encodingTaskNum == 1) {
+          // with a single encoding task, sort here so that sorting this series overlaps with
+          // encoding the previous one
+          long startTime = System.currentTimeMillis();
+          encodeSeriesTask.sort();
+          sortTime += System.currentTimeMillis() - startTime;
+        }
+        // the io task must see the series before any encoding task may finish it
+        ioTaskQueue.add(encodeSeriesTask);
+        encodingTaskQueue.add(encodeSeriesTask);
         // register active time series to the ActiveTimeSeriesCounter
         if (IoTDBDescriptor.getInstance().getConfig().isEnableParameterAdapter()) {
           ActiveTimeSeriesCounter.getInstance().offer(storageGroup, deviceId, measurementId);
         }
       }
-      encodingTaskQueue.add(new EndChunkGroupIoTask());
+      ioTaskQueue.add(new EndChunkGroupIoTask());
     }
     if (IoTDBDescriptor.getInstance().getConfig().isEnableParameterAdapter()) {
       ActiveTimeSeriesCounter.getInstance().updateActiveRatio(storageGroup);
     }
-    noMoreEncodingTask = true;
+    for (int i = 0; i < encodingTaskNum; i++) {
+      encodingTaskQueue.add(NO_MORE_TASK);
+    }
+    ioTaskQueue.add(NO_MORE_TASK);
     logger.debug(
         "Storage group {} memtable {}, flushing into disk: data sort time cost {} ms.",
         storageGroup, memTable.getVersion(), sortTime);
 
     try {
-      encodingTaskFuture.get();
+      for (Future<?> encodingTaskFuture : encodingTaskFutures) {
+        encodingTaskFuture.get();
+      }
     } catch (InterruptedException | ExecutionException e) {
-      // avoid ioTask waiting forever
-      noMoreIOTask = true;
+      // avoid ioTask and the other encoding tasks waiting forever
+      for (Future<?> encodingTaskFuture : encodingTaskFutures) {
+        encodingTaskFuture.cancel(true);
+      }
       ioTaskFuture.cancel(true);
       throw e;
     }
@@ -127,133 +176,209 @@ public class MemTableFlushTask {
         storageGroup, memTable, System.currentTimeMillis() - start);
   }
 
-  private Runnable encodingTask = new Runnable() {
-    private void writeOneSeries(TVList tvPairs, IChunkWriter seriesWriterImpl,
-        TSDataType dataType) {
-      for (int i = 0; i < tvPairs.size(); i++) {
-        long time = tvPairs.getTime(i);
-
-        // skip duplicated data
-        if ((i + 1 < tvPairs.size() && (time == tvPairs.getTime(i + 1)))) {
-          continue;
-        }
+  private void writeOneSeries(TVList tvPairs, IChunkWriter seriesWriterImpl,
+      TSDataType dataType, ChunkEntryBuilder<?>[] entryBuilders) {
+    for (int i = 0; i < tvPairs.size(); i++) {
+      long time = tvPairs.getTime(i);
 
-        switch (dataType) {
-          case BOOLEAN:
-            seriesWriterImpl.write(time, tvPairs.getBoolean(i));
-            break;
-          case INT32:
-            seriesWriterImpl.write(time, tvPairs.getInt(i));
-            break;
-          case INT64:
-            seriesWriterImpl.write(time, tvPairs.getLong(i));
-            break;
-          case FLOAT:
-            seriesWriterImpl.write(time, tvPairs.getFloat(i));
-            break;
-          case DOUBLE:
-            seriesWriterImpl.write(time, tvPairs.getDouble(i));
-            break;
-          case TEXT:
-            seriesWriterImpl.write(time, tvPairs.getBinary(i));
-            break;
-          default:
-            logger.error("Storage group {} does not support data type: {}", storageGroup,
-                dataType);
-            break;
-        }
+      // skip duplicated data
+      if ((i + 1 < tvPairs.size() && (time == tvPairs.getTime(i + 1)))) {
+        continue;
       }
-    }
 
-    @SuppressWarnings("squid:S135")
-    @Override
-    public void run() {
-      long memSerializeTime = 0;
-      boolean noMoreMessages = false;
-      logger.debug("Storage group {} memtable {}, starts to encoding data.", storageGroup,
-          memTable.getVersion());
-      while (true) {
-        if (noMoreEncodingTask) {
-          noMoreMessages = true;
-        }
-        Object task = encodingTaskQueue.poll();
-        if (task == null) {
-          if (noMoreMessages) {
-            break;
+      switch (dataType) {
+        case BOOLEAN:
+          boolean booleanValue = tvPairs.getBoolean(i);
+          seriesWriterImpl.write(time, booleanValue);
+          for (ChunkEntryBuilder<?> entryBuilder : entryBuilders) {
+            entryBuilder.update(time, booleanValue);
           }
-          try {
-            TimeUnit.MILLISECONDS.sleep(10);
-          } catch (@SuppressWarnings("squid:S2142") InterruptedException e) {
-            logger.error("Storage group {} memtable {}, encoding task is interrupted.",
-                storageGroup, memTable.getVersion(), e);
-            // generally it is because the thread pool is shutdown so the task should be aborted
-            break;
+          break;
+        case INT32:
+          int intValue = tvPairs.getInt(i);
+          seriesWriterImpl.write(time, intValue);
+          for (ChunkEntryBuilder<?> entryBuilder : entryBuilders) {
+            entryBuilder.update(time, intValue);
           }
-        } else {
-          if (task instanceof StartFlushGroupIOTask || task instanceof EndChunkGroupIoTask) {
-            ioTaskQueue.add(task);
-          } else {
-            long starTime = System.currentTimeMillis();
-            Pair<TVList, MeasurementSchema> encodingMessage = (Pair<TVList, MeasurementSchema>) task;
-            IChunkWriter seriesWriter = new ChunkWriterImpl(encodingMessage.right);
-            writeOneSeries(encodingMessage.left, seriesWriter, encodingMessage.right.getType());
-            ioTaskQueue.add(seriesWriter);
-            memSerializeTime += System.currentTimeMillis() - starTime;
+          break;
+        case INT64:
+          long longValue = tvPairs.getLong(i);
+          seriesWriterImpl.write(time, longValue);
+          for (ChunkEntryBuilder<?> entryBuilder : entryBuilders) {
+            entryBuilder.update(time, longValue);
           }
-        }
+          break;
+        case FLOAT:
+          float floatValue = tvPairs.getFloat(i);
+          seriesWriterImpl.write(time, floatValue);
+          for (ChunkEntryBuilder<?> entryBuilder : entryBuilders) {
+            entryBuilder.update(time, floatValue);
+          }
+          break;
+        case DOUBLE:
+          double doubleValue = tvPairs.getDouble(i);
+          seriesWriterImpl.write(time, doubleValue);
+          for (ChunkEntryBuilder<?> entryBuilder : entryBuilders) {
+            entryBuilder.update(time, doubleValue);
+          }
+          break;
+        case TEXT:
+          Binary binaryValue = tvPairs.getBinary(i);
+          seriesWriterImpl.write(time, binaryValue);
+          for (ChunkEntryBuilder<?> entryBuilder : entryBuilders) {
+            entryBuilder.update(time, binaryValue);
+          }
+          break;
+        default:
+          logger.error("Storage group {} does not support data type: {}", storageGroup,
+              dataType);
+          break;
       }
-      noMoreIOTask = true;
-      logger.debug("Storage group {}, flushing memtable {} into disk: Encoding data cost "
-              + "{} ms.",
-          storageGroup, memTable.getVersion(), memSerializeTime);
     }
+  }
+
+  @SuppressWarnings("squid:S135")
+  private Runnable encodingTask = () -> {
+    long memSerializeTime = 0;
+    logger.debug("Storage group {} memtable {}, starts to encoding data.", storageGroup,
+        memTable.getVersion());
+    while (true) {
+      Object task;
+      try {
+        task = encodingTaskQueue.take();
+      } catch (@SuppressWarnings("squid:S2142") InterruptedException e) {
+        logger.error("Storage group {} memtable {}, encoding task is interrupted.",
+            storageGroup, memTable.getVersion(), e);
+        // generally it is because the thread pool is shutdown so the task should be aborted
+        break;
+      }
+      if (task == NO_MORE_TASK) {
+        break;
+      }
+      long starTime = System.currentTimeMillis();
+      ((EncodeSeriesTask) task).encode();
+      memSerializeTime += System.currentTimeMillis() - starTime;
+    }
+    logger.debug("Storage group {}, flushing memtable {} into disk: Encoding data cost "
+            + "{} ms.",
+        storageGroup, memTable.getVersion(), memSerializeTime);
   };
 
   @SuppressWarnings("squid:S135")
   private Runnable ioTask = () -> {
     long ioTime = 0;
-    boolean returnWhenNoTask = false;
     logger.debug("Storage group {} memtable {}, start io.", storageGroup, memTable.getVersion());
     while (true) {
-      if (noMoreIOTask) {
-        returnWhenNoTask = true;
-      }
-      Object ioMessage = ioTaskQueue.poll();
-      if (ioMessage == null) {
-        if (returnWhenNoTask) {
-          break;
-        }
-        try {
-          TimeUnit.MILLISECONDS.sleep(10);
-        } catch (@SuppressWarnings("squid:S2142") InterruptedException e) {
-          logger.error("Storage group {} memtable {}, io task is interrupted.", storageGroup
-              , memTable.getVersion(), e);
-          // generally it is because the thread pool is shutdown so the task should be aborted
-          break;
+      Object ioMessage;
+      IChunkWriter chunkWriter = null;
+      try {
+        ioMessage = ioTaskQueue.take();
+        if (ioMessage instanceof EncodeSeriesTask) {
+          // wait for the encoding tasks, chunks are written in the order of dispatching
+          chunkWriter = ((EncodeSeriesTask) ioMessage).getChunkWriter();
         }
-      } else {
-        long starTime = System.currentTimeMillis();
-        try {
-          if (ioMessage instanceof StartFlushGroupIOTask) {
-            this.writer.startChunkGroup(((StartFlushGroupIOTask) ioMessage).deviceId);
-          } else if (ioMessage instanceof IChunkWriter) {
-            ChunkWriterImpl chunkWriter = (ChunkWriterImpl) ioMessage;
-            chunkWriter.writeToFileWriter(this.writer);
-          } else {
-            this.writer.endChunkGroup();
+      } catch (@SuppressWarnings("squid:S2142") InterruptedException e) {
+        logger.error("Storage group {} memtable {}, io task is interrupted.", storageGroup
+            , memTable.getVersion(), e);
+        // generally it is because the thread pool is shutdown so the task should be aborted
+        break;
+      } catch (ExecutionException e) {
+        logger.error("Storage group {} memtable {}, encoding task meets error.", storageGroup,
+            memTable.getVersion(), e);
+        throw new FlushRunTimeException(e);
+      }
+      if (ioMessage == NO_MORE_TASK) {
+        break;
+      }
+      long starTime = System.currentTimeMillis();
+      try {
+        if (ioMessage instanceof StartFlushGroupIOTask) {
+          this.writer.startChunkGroup(((StartFlushGroupIOTask) ioMessage).deviceId);
+        } else if (chunkWriter != null) {
+          long chunkOffset = this.writer.getPos();
+          ((ChunkWriterImpl) chunkWriter).writeToFileWriter(this.writer);
+          EncodeSeriesTask encodeSeriesTask = (EncodeSeriesTask) ioMessage;
+          for (int i = 0; i < encodeSeriesTask.entryBuilders.length; i++) {
+            encodeSeriesTask.entryWriters[i].addChunkEntry(encodeSeriesTask.getSeriesPath(),
+                chunkOffset, encodeSeriesTask.entryBuilders[i]);
           }
-        } catch (IOException e) {
-          logger.error("Storage group {} memtable {}, io task meets error.", storageGroup,
-              memTable.getVersion(), e);
-          throw new FlushRunTimeException(e);
+        } else {
+          this.writer.endChunkGroup();
         }
-        ioTime += System.currentTimeMillis() - starTime;
+      } catch (IOException e) {
+        logger.error("Storage group {} memtable {}, io task meets error.", storageGroup,
+            memTable.getVersion(), e);
+        throw new FlushRunTimeException(e);
       }
+      ioTime += System.currentTimeMillis() - starTime;
     }
     logger.debug("flushing a memtable {} in storage group {}, io cost {}ms", memTable.getVersion(),
         storageGroup, ioTime);
   };
 
+  /**
+   * Sorts and encodes one series. It is handed to an encoding task and, in dispatching order, to
+   * the io task, which blocks on it until the chunk is encoded.
+   */
+  class EncodeSeriesTask {
+
+    private final String deviceId;
+    private final String measurementId;
+    private final IWritableMemChunk series;
+    private TVList sortedList;
+    // the side files that have entries for the chunk, and the builders of the entries
+    private SideFileWriter[] entryWriters;
+    private ChunkEntryBuilder<?>[] entryBuilders;
+    private final CompletableFuture<IChunkWriter> chunkWriterFuture = new CompletableFuture<>();
+
+    EncodeSeriesTask(String deviceId, String measurementId, IWritableMemChunk series) {
+      this.deviceId = deviceId;
+      this.measurementId = measurementId;
+      this.series = series;
+    }
+
+    void sort() {
+      sortedList = series.getSortedTVList();
+    }
+
+    void encode() {
+      try {
+        if (sortedList == null) {
+          sort();
+        }
+        MeasurementSchema schema = series.getSchema();
+        IChunkWriter seriesWriter = new ChunkWriterImpl(schema);
+        createEntryBuilders(schema.getType());
+        writeOneSeries(sortedList, seriesWriter, schema.getType(), entryBuilders);
+        chunkWriterFuture.complete(seriesWriter);
+      } catch (RuntimeException e) {
+        chunkWriterFuture.completeExceptionally(e);
+      }
+    }
+
+    private void createEntryBuilders(TSDataType dataType) {
+      List<SideFileWriter> writers = new ArrayList<>(sideFileWriters.size());
+      List<ChunkEntryBuilder<?>> builders = new ArrayList<>(sideFileWriters.size());
+      for (SideFileWriter sideFileWriter : sideFileWriters) {
+        ChunkEntryBuilder<?> builder = sideFileWriter.newBuilder(dataType);
+        if (builder != null) {
+          writers.add(sideFileWriter);
+          builders.add(builder);
+        }
+      }
+      entryWriters = writers.toArray(new SideFileWriter[0]);
+      entryBuilders = builders.toArray(new ChunkEntryBuilder<?>[0]);
+    }
+
+    IChunkWriter getChunkWriter() throws InterruptedException, ExecutionException {
+      return chunkWriterFuture.get();
+    }
+
+    String getSeriesPath() {
+      return deviceId + IoTDBConstant.PATH_SEPARATOR + measurementId;
+    }
+  }
+
   static class EndChunkGroupIoTask {
 
     EndChunkGroupIoTask() {
@@ -24,6 +24,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.modification.Deletion;
 import org.apache.iotdb.db.engine.modification.Modification;
@@ -32,8 +35,10 @@ import org.apache.iotdb.db.exception.WriteProcessException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
+import org.apache.iotdb.db.rescon.OffHeapArena;
 import org.apache.iotdb.db.rescon.TVListAllocator;
 import org.apache.iotdb.db.utils.MemUtils;
+import org.apache.iotdb.db.utils.datastructure.OffHeapTVList;
 import org.apache.iotdb.db.utils.datastructure.TVList;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
@@ -51,16 +56,27 @@ public abstract class AbstractMemTable implements IMemTable {
   private int avgSeriesPointNumThreshold = IoTDBDescriptor.getInstance().getConfig()
       .getAvgSeriesPointNumberThreshold();
 
-  private long memSize = 0;
+  /**
+   * insertions of different devices may run concurrently (see insert_lock_stripe_num), so the
+   * counters are shared atomically while the series map of one device is only touched by the
+   * thread holding that device's lock.
+   */
+  private final AtomicLong memSize = new AtomicLong();
 
-  private int seriesNumber = 0;
+  private final AtomicInteger seriesNumber = new AtomicInteger();
 
-  private long totalPointsNum = 0;
+  private final AtomicLong totalPointsNum = new AtomicLong();
 
-  private long totalPointsNumThreshold = 0;
+  private final AtomicLong totalPointsNumThreshold = new AtomicLong();
+
+  /**
+   * direct memory of the off-heap TVLists of this memtable, created on demand and released as a
+   * whole in release()
+   */
+  private volatile OffHeapArena offHeapArena;
 
   public AbstractMemTable() {
-    this.memTableMap = new HashMap<>();
+    this.memTableMap = new ConcurrentHashMap<>();
   }
 
   public AbstractMemTable(Map<String, Map<String, IWritableMemChunk>> memTableMap) {
@@ -83,22 +99,35 @@ public abstract class AbstractMemTable implements IMemTable {
 
   private IWritableMemChunk createIfNotExistAndGet(String deviceId, String measurement,
       MeasurementSchema schema) {
-    if (!memTableMap.containsKey(deviceId)) {
-      memTableMap.put(deviceId, new HashMap<>());
-    }
-    Map<String, IWritableMemChunk> memSeries = memTableMap.get(deviceId);
+    Map<String, IWritableMemChunk> memSeries = memTableMap
+        .computeIfAbsent(deviceId, k -> new HashMap<>());
     if (!memSeries.containsKey(measurement)) {
       memSeries.put(measurement, genMemSeries(schema));
-      seriesNumber++;
-      totalPointsNumThreshold += avgSeriesPointNumThreshold;
+      seriesNumber.incrementAndGet();
+      totalPointsNumThreshold.addAndGet(avgSeriesPointNumThreshold);
     }
     return memSeries.get(measurement);
   }
 
   protected abstract IWritableMemChunk genMemSeries(MeasurementSchema schema);
 
+  protected OffHeapArena getOrCreateOffHeapArena() {
+    OffHeapArena arena = offHeapArena;
+    if (arena == null) {
+      synchronized (this) {
+        arena = offHeapArena;
+        if (arena == null) {
+          arena = new OffHeapArena();
+          offHeapArena = arena;
+        }
+      }
+    }
+    return arena;
+  }
+
   @Override
   public void insert(InsertRowPlan insertRowPlan) {
+    long recordSize = 0;
     for (int i = 0; i < insertRowPlan.getValues().length; i++) {
 
       if (insertRowPlan.getValues()[i] == null) {
@@ -106,13 +135,15 @@ public abstract class AbstractMemTable implements IMemTable {
       }
 
       Object value = insertRowPlan.getValues()[i];
-      memSize += MemUtils.getRecordSize(insertRowPlan.getMeasurementMNodes()[i].getSchema().getType(), value);
+      recordSize += MemUtils.getRecordSize(insertRowPlan.getMeasurementMNodes()[i].getSchema().getType(), value);
 
       write(insertRowPlan.getDeviceId().getFullPath(), insertRowPlan.getMeasurements()[i],
           insertRowPlan.getMeasurementMNodes()[i].getSchema(), insertRowPlan.getTime(), value);
     }
 
-    totalPointsNum += insertRowPlan.getMeasurements().length - insertRowPlan.getFailedMeasurementNumber();
+    memSize.addAndGet(recordSize);
+    totalPointsNum.addAndGet(
+        insertRowPlan.getMeasurements().length - insertRowPlan.getFailedMeasurementNumber());
   }
 
   @Override
@@ -120,9 +151,10 @@ public abstract class AbstractMemTable implements IMemTable {
       throws WriteProcessException {
     try {
       write(insertTabletPlan, start, end);
-      memSize += MemUtils.getRecordSize(insertTabletPlan, start, end);
-      totalPointsNum += (insertTabletPlan.getMeasurements().length - insertTabletPlan.getFailedMeasurementNumber())
-        * (end - start);
+      memSize.addAndGet(MemUtils.getRecordSize(insertTabletPlan, start, end));
+      totalPointsNum.addAndGet(
+          (insertTabletPlan.getMeasurements().length - insertTabletPlan.getFailedMeasurementNumber())
+              * (end - start));
     } catch (RuntimeException e) {
       throw new WriteProcessException(e.getMessage());
     }
@@ -151,11 +183,11 @@ public abstract class AbstractMemTable implements IMemTable {
 
 
   public int getSeriesNumber() {
-    return seriesNumber;
+    return seriesNumber.get();
   }
 
   public long getTotalPointsNum() {
-    return totalPointsNum;
+    return totalPointsNum.get();
   }
 
   @Override
@@ -171,25 +203,32 @@ public abstract class AbstractMemTable implements IMemTable {
 
   @Override
   public long memSize() {
-    return memSize;
+    return memSize.get();
+  }
+
+  @Override
+  public long offHeapMemSize() {
+    OffHeapArena arena = offHeapArena;
+    return arena == null ? 0 : arena.getAllocatedBytes();
   }
 
   @Override
   public boolean reachTotalPointNumThreshold() {
-    if (totalPointsNum == 0) {
+    long pointsNum = totalPointsNum.get();
+    if (pointsNum == 0) {
       return false;
     }
-    return totalPointsNum >= totalPointsNumThreshold;
+    return pointsNum >= totalPointsNumThreshold.get();
   }
 
   @Override
   public void clear() {
     memTableMap.clear();
     modifications.clear();
-    memSize = 0;
-    seriesNumber = 0;
-    totalPointsNum = 0;
-    totalPointsNumThreshold = 0;
+    memSize.set(0);
+    seriesNumber.set(0);
+    totalPointsNum.set(0);
+    totalPointsNumThreshold.set(0);
   }
 
   @Override
@@ -243,7 +282,7 @@ public abstract class AbstractMemTable implements IMemTable {
         deviceMap.remove(measurementId);
       }
       int deletedPointsNumber = chunk.delete(startTimestamp, endTimestamp);
-      totalPointsNum -= deletedPointsNumber;
+      totalPointsNum.addAndGet(-deletedPointsNumber);
     }
   }
 
@@ -264,8 +303,16 @@ public abstract class AbstractMemTable implements IMemTable {
   public void release() {
     for (Entry<String, Map<String, IWritableMemChunk>> entry : memTableMap.entrySet()) {
       for (Entry<String, IWritableMemChunk> subEntry : entry.getValue().entrySet()) {
-        TVListAllocator.getInstance().release(subEntry.getValue().getTVList());
+        TVList list = subEntry.getValue().getTVList();
+        // off-heap lists are freed together with the arena below
+        if (!(list instanceof OffHeapTVList)) {
+          TVListAllocator.getInstance().release(list);
+        }
       }
     }
+    if (offHeapArena != null) {
+      offHeapArena.release();
+      offHeapArena = null;
+    }
   }
 }
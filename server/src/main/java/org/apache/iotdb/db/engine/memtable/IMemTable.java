@@ -56,6 +56,12 @@ public interface IMemTable {
    */
   long memSize();
 
+  /**
+   * @return the bytes of the buffers allocated for the off-heap TVLists, which are not counted in
+   * memSize()
+   */
+  long offHeapMemSize();
+
   /**
    * @return whether the average number of points in each WritableChunk reaches the threshold
    */
@@ -22,7 +22,10 @@ package org.apache.iotdb.db.engine.memtable;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.rescon.TVListAllocator;
+import org.apache.iotdb.db.utils.datastructure.OffHeapTVList;
+import org.apache.iotdb.db.utils.datastructure.TVList;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 
 public class PrimitiveMemTable extends AbstractMemTable {
@@ -36,6 +39,12 @@ public class PrimitiveMemTable extends AbstractMemTable {
 
   @Override
   protected IWritableMemChunk genMemSeries(MeasurementSchema schema) {
+    if (IoTDBDescriptor.getInstance().getConfig().isEnableOffHeapMemtable()) {
+      TVList list = OffHeapTVList.newList(schema.getType(), getOrCreateOffHeapArena());
+      if (list != null) {
+        return new WritableMemChunk(schema, list);
+      }
+    }
     return new WritableMemChunk(schema, TVListAllocator.getInstance().allocate(schema.getType()));
   }
 
@@ -34,6 +34,7 @@ import org.apache.iotdb.db.engine.cache.ChunkMetadataCache;
 import org.apache.iotdb.db.engine.merge.manage.MergeContext;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
 import org.apache.iotdb.db.engine.merge.recover.MergeLogger;
+import org.apache.iotdb.db.engine.sidefile.SideFiles;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.metadata.PartialPath;
 import org.apache.iotdb.db.query.control.FileReaderManager;
@@ -147,6 +148,7 @@ class MergeFileTask {
     try {
       ChunkMetadataCache.getInstance().remove(seqFile);
       FileReaderManager.getInstance().closeFileAndRemoveReader(seqFile.getTsFilePath());
+      SideFiles.remove(seqFile.getTsFile());
 
       resource.removeFileReader(seqFile);
       TsFileIOWriter oldFileWriter = getOldFileWriter(seqFile);
@@ -196,6 +198,7 @@ class MergeFileTask {
     } finally {
       seqFile.writeUnlock();
     }
+    SideFiles.build(seqFile);
   }
 
   /**
@@ -310,6 +313,7 @@ class MergeFileTask {
       resource.removeFileReader(seqFile);
       ChunkMetadataCache.getInstance().remove(seqFile);
       FileReaderManager.getInstance().closeFileAndRemoveReader(seqFile.getTsFilePath());
+      SideFiles.remove(seqFile.getTsFile());
 
       File newMergeFile = seqFile.getTsFile();
       newMergeFile.delete();
@@ -320,6 +324,7 @@ class MergeFileTask {
     } finally {
       seqFile.writeUnlock();
     }
+    SideFiles.build(seqFile);
   }
 
   private long writeUnmergedChunks(List<Long> chunkStartTimes,
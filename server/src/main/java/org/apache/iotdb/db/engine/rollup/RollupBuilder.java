@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.rollup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.db.engine.sidefile.ChunkEntryBuilder;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.utils.Binary;
+
+/**
+ * Splits the points of one chunk into buckets of the rollup interval and keeps a Statistics for
+ * each non-empty bucket. Bucket i covers [i * interval, (i + 1) * interval). The points must be
+ * given in ascending time order.
+ */
+public class RollupBuilder extends ChunkEntryBuilder<Statistics> {
+
+  private final long interval;
+  private final List<Statistics> buckets = new ArrayList<>();
+  private Statistics currentBucket;
+  private long currentBucketEnd;
+
+  public RollupBuilder(TSDataType dataType, long interval) {
+    super(dataType);
+    this.interval = interval;
+  }
+
+  public static long getBucketStart(long time, long interval) {
+    return Math.floorDiv(time, interval) * interval;
+  }
+
+  private Statistics getBucket(long time) {
+    if (currentBucket == null || time >= currentBucketEnd) {
+      currentBucket = Statistics.getStatsByType(dataType);
+      buckets.add(currentBucket);
+      currentBucketEnd = getBucketStart(time, interval) + interval;
+    }
+    return currentBucket;
+  }
+
+  @Override
+  public void update(long time, boolean value) {
+    getBucket(time).update(time, value);
+  }
+
+  @Override
+  public void update(long time, int value) {
+    getBucket(time).update(time, value);
+  }
+
+  @Override
+  public void update(long time, long value) {
+    getBucket(time).update(time, value);
+  }
+
+  @Override
+  public void update(long time, float value) {
+    getBucket(time).update(time, value);
+  }
+
+  @Override
+  public void update(long time, double value) {
+    getBucket(time).update(time, value);
+  }
+
+  @Override
+  public void update(long time, Binary value) {
+    getBucket(time).update(time, value);
+  }
+
+  @Override
+  public List<Statistics> getItems() {
+    return buckets;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return buckets.isEmpty();
+  }
+
+  @Override
+  protected Statistics getItemStatistics(Statistics bucket) {
+    return bucket;
+  }
+
+  @Override
+  protected void serializeItem(Statistics bucket, OutputStream outputStream) throws IOException {
+    bucket.serialize(outputStream);
+  }
+}
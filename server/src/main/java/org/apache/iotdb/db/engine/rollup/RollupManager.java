@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.rollup;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.engine.sidefile.SideFileManager;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.utils.TestOnly;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.utils.BytesUtils;
+
+/**
+ * The rollup of a sealed TsFile keeps, for each chunk, the statistics of the chunk data in each
+ * bucket of the rollup interval, see {@link RollupBuilder}. A GROUP BY time query whose windows
+ * consist of whole buckets can aggregate a chunk that spans several windows from its buckets
+ * instead of decoding its pages.
+ *
+ * The rollup file starts with the rollup interval, so a rollup written with another interval is
+ * not used. A rollup entry is only used when its chunk is not overlapped by other chunks and has
+ * no deletion, which the series reader checks as it does for chunk statistics, so unsequence
+ * data and deletions are always read from the raw data.
+ */
+public class RollupManager extends SideFileManager<Statistics> {
+
+  private static final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+
+  public static final String ROLLUP_SUFFIX = ".rollup";
+
+  private long interval;
+
+  private RollupManager() {
+    super("rollup", ROLLUP_SUFFIX, config.isEnableRollup());
+    this.interval = StorageEngine.convertMilliWithPrecision(config.getRollupIntervalInMs());
+  }
+
+  public static RollupManager getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  public long getInterval() {
+    return interval;
+  }
+
+  @TestOnly
+  public void setEnable(boolean enable, long interval) {
+    this.interval = interval;
+    setEnable(enable);
+  }
+
+  @Override
+  protected byte[] getHeader() {
+    return BytesUtils.longToBytes(interval);
+  }
+
+  @Override
+  protected RollupBuilder newBuilder(TSDataType dataType) {
+    return new RollupBuilder(dataType, interval);
+  }
+
+  @Override
+  protected Statistics deserializeItem(ByteBuffer buffer, TSDataType dataType) {
+    return Statistics.deserialize(buffer, dataType);
+  }
+
+  /**
+   * Whether each window [startTime + k * slidingStep, startTime + k * slidingStep + interval)
+   * consists of whole buckets, so that a bucket is either inside or outside a window, and the
+   * windows do not overlap, so that each bucket is aggregated at most once.
+   */
+  public boolean isAligned(long startTime, long windowInterval, long slidingStep) {
+    return enable && Math.floorMod(startTime, interval) == 0 && windowInterval % interval == 0
+        && slidingStep % interval == 0 && slidingStep >= windowInterval;
+  }
+
+  /**
+   * @return the buckets of the chunk in ascending time order, or null if the chunk has no rollup
+   */
+  public List<Statistics> getChunkRollup(TsFileResource resource, String seriesPath,
+      ChunkMetadata chunkMetadata) {
+    return getChunkEntry(resource, seriesPath, chunkMetadata);
+  }
+
+  private static class InstanceHolder {
+
+    private static final RollupManager INSTANCE = new RollupManager();
+
+    private InstanceHolder() {
+    }
+  }
+}
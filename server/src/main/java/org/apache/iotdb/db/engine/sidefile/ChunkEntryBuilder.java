@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.sidefile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * Builds the entry of one chunk in a side file from the points of the chunk, which must be given
+ * in ascending time order. An entry is a list of items, e.g., the rollup buckets or the value
+ * segments of the chunk, each of which has the statistics of the points it covers.
+ *
+ * @param <T> the type of the items
+ */
+public abstract class ChunkEntryBuilder<T> {
+
+  protected final TSDataType dataType;
+
+  protected ChunkEntryBuilder(TSDataType dataType) {
+    this.dataType = dataType;
+  }
+
+  public abstract void update(long time, boolean value);
+
+  public abstract void update(long time, int value);
+
+  public abstract void update(long time, long value);
+
+  public abstract void update(long time, float value);
+
+  public abstract void update(long time, double value);
+
+  public abstract void update(long time, Binary value);
+
+  /**
+   * add the remaining points of the batch.
+   */
+  public void update(BatchData batchData) {
+    while (batchData.hasCurrent()) {
+      long time = batchData.currentTime();
+      switch (dataType) {
+        case BOOLEAN:
+          update(time, batchData.getBoolean());
+          break;
+        case INT32:
+          update(time, batchData.getInt());
+          break;
+        case INT64:
+          update(time, batchData.getLong());
+          break;
+        case FLOAT:
+          update(time, batchData.getFloat());
+          break;
+        case DOUBLE:
+          update(time, batchData.getDouble());
+          break;
+        case TEXT:
+          update(time, batchData.getBinary());
+          break;
+        default:
+          throw new UnsupportedOperationException("Unsupported data type: " + dataType);
+      }
+      batchData.next();
+    }
+  }
+
+  public TSDataType getDataType() {
+    return dataType;
+  }
+
+  /**
+   * @return the items of the chunk in ascending time order
+   */
+  public abstract List<T> getItems();
+
+  public abstract boolean isEmpty();
+
+  protected abstract Statistics getItemStatistics(T item);
+
+  protected abstract void serializeItem(T item, OutputStream outputStream) throws IOException;
+
+  /**
+   * write the entry: data type, count, start time, end time of the chunk, item number, items.
+   */
+  void serialize(OutputStream outputStream) throws IOException {
+    List<T> items = getItems();
+    long count = 0;
+    for (T item : items) {
+      count += getItemStatistics(item).getCount();
+    }
+    ReadWriteIOUtils.write(dataType, outputStream);
+    ReadWriteIOUtils.write(count, outputStream);
+    ReadWriteIOUtils.write(getItemStatistics(items.get(0)).getStartTime(), outputStream);
+    ReadWriteIOUtils.write(getItemStatistics(items.get(items.size() - 1)).getEndTime(),
+        outputStream);
+    ReadWriteIOUtils.write(items.size(), outputStream);
+    for (T item : items) {
+      serializeItem(item, outputStream);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.sidefile;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * The locations of the chunk entries in a side file written by {@link SideFileWriter}. The entry
+ * of a chunk is read from the file when it is asked for.
+ */
+class SideFileIndex {
+
+  private final byte[] header;
+  // series path -> chunk offset -> {payload position, payload length}
+  private final Map<String, Map<Long, long[]>> entryLocations;
+  private final FileChannel channel;
+
+  private SideFileIndex(byte[] header, Map<String, Map<Long, long[]>> entryLocations,
+      FileChannel channel) {
+    this.header = header;
+    this.entryLocations = entryLocations;
+    this.channel = channel;
+  }
+
+  static SideFileIndex load(File sideFile, int headerLength) throws IOException {
+    long fileLength = sideFile.length();
+    Map<String, Map<Long, long[]>> entryLocations = new HashMap<>();
+    byte[] header = new byte[headerLength];
+    try (DataInputStream inputStream = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(sideFile)))) {
+      inputStream.readFully(header);
+      long position = headerLength;
+      while (position < fileLength) {
+        String seriesPath = ReadWriteIOUtils.readString(inputStream);
+        long chunkOffset = ReadWriteIOUtils.readLong(inputStream);
+        int payloadLength = ReadWriteIOUtils.readInt(inputStream);
+        position += Integer.BYTES + seriesPath.getBytes().length + Long.BYTES + Integer.BYTES;
+        entryLocations.computeIfAbsent(seriesPath, p -> new HashMap<>())
+            .put(chunkOffset, new long[]{position, payloadLength});
+        skipFully(inputStream, payloadLength);
+        position += payloadLength;
+      }
+    }
+    return new SideFileIndex(header, entryLocations,
+        FileChannel.open(sideFile.toPath(), StandardOpenOption.READ));
+  }
+
+  private static void skipFully(InputStream inputStream, long length) throws IOException {
+    long remaining = length;
+    while (remaining > 0) {
+      long skipped = inputStream.skip(remaining);
+      if (skipped <= 0) {
+        throw new EOFException("Side file ends in the middle of an entry");
+      }
+      remaining -= skipped;
+    }
+  }
+
+  byte[] getHeader() {
+    return header;
+  }
+
+  /**
+   * @return the entry of the chunk positioned at its item number, or null if the side file has no
+   * entry for the chunk or the entry does not match the chunk
+   */
+  ByteBuffer readEntry(String seriesPath, ChunkMetadata chunkMetadata) throws IOException {
+    Map<Long, long[]> chunkLocations = entryLocations.get(seriesPath);
+    long[] location = chunkLocations == null ? null
+        : chunkLocations.get(chunkMetadata.getOffsetOfChunkHeader());
+    if (location == null) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, location[0] + buffer.position()) < 0) {
+        throw new EOFException("Side file ends in the middle of an entry");
+      }
+    }
+    buffer.flip();
+
+    TSDataType dataType = ReadWriteIOUtils.readDataType(buffer);
+    long count = ReadWriteIOUtils.readLong(buffer);
+    long startTime = ReadWriteIOUtils.readLong(buffer);
+    long endTime = ReadWriteIOUtils.readLong(buffer);
+    Statistics chunkStatistics = chunkMetadata.getStatistics();
+    if (dataType != chunkMetadata.getDataType() || count != chunkStatistics.getCount()
+        || startTime != chunkStatistics.getStartTime()
+        || endTime != chunkStatistics.getEndTime()) {
+      return null;
+    }
+    return buffer;
+  }
+
+  void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.sidefile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.utils.TestOnly;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A side file of a sealed TsFile keeps an entry for each chunk of the TsFile, which lets queries
+ * skip or shortcut reading the chunk. A side file is written at flush time by a
+ * {@link SideFileWriter}, rebuilt from the data after a merge or a compaction rewrites a TsFile
+ * and removed with its TsFile, see {@link SideFiles}. Side files are only accelerators: a chunk
+ * without a usable entry is read from the raw data, so failures only leave a TsFile without one.
+ *
+ * A manager describes one kind of side file and caches the indexes of the most recently used
+ * ones.
+ *
+ * @param <T> the type of the items of an entry, see {@link ChunkEntryBuilder}
+ */
+public abstract class SideFileManager<T> {
+
+  private static final Logger logger = LoggerFactory.getLogger(SideFileManager.class);
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  // each index holds a few bytes for every chunk of its TsFile and an open file channel
+  private static final int MAX_CACHED_INDEX_NUM = 32;
+  // marks a TsFile that has no usable side file
+  private static final SideFileIndex NO_INDEX = null;
+
+  private final String name;
+  private final String suffix;
+  protected boolean enable;
+  private final Map<String, SideFileIndex> indexCache = new LinkedHashMap<String, SideFileIndex>(
+      MAX_CACHED_INDEX_NUM, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Entry<String, SideFileIndex> eldest) {
+      if (size() > MAX_CACHED_INDEX_NUM) {
+        closeIndex(eldest.getValue());
+        return true;
+      }
+      return false;
+    }
+  };
+
+  /**
+   * @param name the name of the side file in logs
+   * @param suffix appended to the path of the TsFile to get the path of its side file
+   */
+  protected SideFileManager(String name, String suffix, boolean enable) {
+    this.name = name;
+    this.suffix = suffix;
+    this.enable = enable;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isEnable() {
+    return enable;
+  }
+
+  @TestOnly
+  public void setEnable(boolean enable) {
+    this.enable = enable;
+    clear();
+  }
+
+  public File getSideFile(File tsFile) {
+    return new File(tsFile.getPath() + suffix);
+  }
+
+  public File getTempSideFile(File tsFile) {
+    return new File(tsFile.getPath() + suffix + TEMP_SUFFIX);
+  }
+
+  /**
+   * @return the header of a side file written with the current configuration, a side file with
+   * another header is not used
+   */
+  protected abstract byte[] getHeader();
+
+  /**
+   * @return a builder of the entry of a chunk of the type, or null if such chunks have no entry
+   */
+  protected abstract ChunkEntryBuilder<T> newBuilder(TSDataType dataType);
+
+  protected abstract T deserializeItem(ByteBuffer buffer, TSDataType dataType);
+
+  /**
+   * @return a writer for the side file of a new TsFile, or null if the side file is disabled
+   */
+  public SideFileWriter createWriter(File tsFile) {
+    if (!enable) {
+      return null;
+    }
+    try {
+      return new SideFileWriter(this, tsFile, getHeader());
+    } catch (IOException e) {
+      logger.warn("Cannot create the {} file of {}, it will be queried without it", name,
+          tsFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return the items of the entry of the chunk in ascending time order, or null if the chunk has
+   * no entry
+   */
+  protected List<T> getChunkEntry(TsFileResource resource, String seriesPath,
+      ChunkMetadata chunkMetadata) {
+    if (!enable || !resource.isClosed()) {
+      return null;
+    }
+    SideFileIndex index = getIndex(resource.getTsFile());
+    if (index == NO_INDEX || !Arrays.equals(index.getHeader(), getHeader())) {
+      return null;
+    }
+    ByteBuffer buffer;
+    try {
+      buffer = index.readEntry(seriesPath, chunkMetadata);
+    } catch (IOException e) {
+      // the index may be closed by eviction, the chunk is read from the raw data in that case
+      logger.debug("Cannot read the {} of {} in {}", name, seriesPath, resource, e);
+      return null;
+    }
+    if (buffer == null) {
+      return null;
+    }
+    int itemNum = ReadWriteIOUtils.readInt(buffer);
+    List<T> items = new ArrayList<>(itemNum);
+    for (int i = 0; i < itemNum; i++) {
+      items.add(deserializeItem(buffer, chunkMetadata.getDataType()));
+    }
+    return items;
+  }
+
+  private SideFileIndex getIndex(File tsFile) {
+    synchronized (indexCache) {
+      String path = tsFile.getPath();
+      if (indexCache.containsKey(path)) {
+        return indexCache.get(path);
+      }
+      SideFileIndex index = NO_INDEX;
+      File sideFile = getSideFile(tsFile);
+      if (sideFile.exists()) {
+        try {
+          index = SideFileIndex.load(sideFile, getHeader().length);
+        } catch (IOException e) {
+          logger.warn("Cannot load the {} file {}", name, sideFile, e);
+        }
+      }
+      indexCache.put(path, index);
+      return index;
+    }
+  }
+
+  private static void closeIndex(SideFileIndex index) {
+    if (index != NO_INDEX) {
+      try {
+        index.close();
+      } catch (IOException e) {
+        logger.warn("Cannot close a side file", e);
+      }
+    }
+  }
+
+  /**
+   * drop the cached index of a TsFile, e.g., a query may have found no side file while it was
+   * being built.
+   */
+  void evict(File tsFile) {
+    synchronized (indexCache) {
+      closeIndex(indexCache.remove(tsFile.getPath()));
+    }
+  }
+
+  /**
+   * remove the side file of a TsFile that is deleted or about to be rewritten.
+   */
+  public void remove(File tsFile) {
+    evict(tsFile);
+    removeTemp(tsFile);
+    File sideFile = getSideFile(tsFile);
+    if (sideFile.exists() && !sideFile.delete()) {
+      logger.warn("Cannot delete the {} file {}", name, sideFile);
+    }
+  }
+
+  /**
+   * remove the side file being written for a TsFile that is not sealed normally.
+   */
+  public void removeTemp(File tsFile) {
+    File tempFile = getTempSideFile(tsFile);
+    if (tempFile.exists() && !tempFile.delete()) {
+      logger.warn("Cannot delete the {} file {}", name, tempFile);
+    }
+  }
+
+  public void clear() {
+    synchronized (indexCache) {
+      for (SideFileIndex index : indexCache.values()) {
+        closeIndex(index);
+      }
+      indexCache.clear();
+    }
+  }
+}
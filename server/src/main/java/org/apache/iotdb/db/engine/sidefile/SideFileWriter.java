@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.sidefile;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * Writes a side file of a TsFile, which starts with the header of its {@link SideFileManager},
+ * followed by one entry for each chunk, see {@link ChunkEntryBuilder}:
+ * <pre>
+ * [series path][offset of the chunk header][payload length][payload]
+ * </pre>
+ * Entries are written to a temporary file that is renamed when the TsFile is sealed, so that a
+ * side file always describes a complete TsFile.
+ */
+public class SideFileWriter {
+
+  private final SideFileManager<?> manager;
+  private final File tempFile;
+  private final File sideFile;
+  private final OutputStream outputStream;
+  // the entries of the chunks of a flush, which are written only when the flush succeeds
+  private final List<PendingEntry> pendingEntries = new ArrayList<>();
+
+  SideFileWriter(SideFileManager<?> manager, File tsFile, byte[] header) throws IOException {
+    this.manager = manager;
+    this.sideFile = manager.getSideFile(tsFile);
+    this.tempFile = manager.getTempSideFile(tsFile);
+    this.outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+    outputStream.write(header);
+  }
+
+  public SideFileManager<?> getManager() {
+    return manager;
+  }
+
+  /**
+   * @return a builder of the entry of a chunk of the type, or null if such chunks have no entry
+   */
+  public ChunkEntryBuilder<?> newBuilder(TSDataType dataType) {
+    return manager.newBuilder(dataType);
+  }
+
+  /**
+   * @param chunkOffset the offset of the chunk header in the TsFile
+   */
+  public synchronized void addChunkEntry(String seriesPath, long chunkOffset,
+      ChunkEntryBuilder<?> builder) {
+    if (!builder.isEmpty()) {
+      pendingEntries.add(new PendingEntry(seriesPath, chunkOffset, builder));
+    }
+  }
+
+  /**
+   * write the entries added since the last flush, after their chunks are written into the TsFile.
+   */
+  public synchronized void flush() throws IOException {
+    for (PendingEntry entry : pendingEntries) {
+      ByteArrayOutputStream payload = new ByteArrayOutputStream();
+      entry.builder.serialize(payload);
+      ReadWriteIOUtils.write(entry.seriesPath, outputStream);
+      ReadWriteIOUtils.write(entry.chunkOffset, outputStream);
+      ReadWriteIOUtils.write(payload.size(), outputStream);
+      payload.writeTo(outputStream);
+    }
+    pendingEntries.clear();
+    outputStream.flush();
+  }
+
+  /**
+   * drop the entries added since the last flush, e.g., their chunks are truncated from the TsFile.
+   */
+  public synchronized void discardPending() {
+    pendingEntries.clear();
+  }
+
+  /**
+   * make the side file visible to queries, called after the TsFile is sealed.
+   */
+  public synchronized void seal() throws IOException {
+    flush();
+    outputStream.close();
+    Files.move(tempFile.toPath(), sideFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * close the file without sealing it, the temporary file is removed when the TsFile is recovered.
+   */
+  public synchronized void close() throws IOException {
+    pendingEntries.clear();
+    outputStream.close();
+  }
+
+  private static class PendingEntry {
+
+    private final String seriesPath;
+    private final long chunkOffset;
+    private final ChunkEntryBuilder<?> builder;
+
+    PendingEntry(String seriesPath, long chunkOffset, ChunkEntryBuilder<?> builder) {
+      this.seriesPath = seriesPath;
+      this.chunkOffset = chunkOffset;
+      this.builder = builder;
+    }
+  }
+}
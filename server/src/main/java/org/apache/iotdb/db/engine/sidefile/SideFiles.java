@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.sidefile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.engine.rollup.RollupManager;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.engine.valueindex.ValueIndexManager;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The kinds of side files kept beside TsFiles, and the hooks through which the life cycle of a
+ * TsFile maintains all of them: a flush writes their entries (see {@link #createWriters}), a merge
+ * or a compaction rebuilds them, and the removal or the recovery of a TsFile removes them.
+ */
+public class SideFiles {
+
+  private static final Logger logger = LoggerFactory.getLogger(SideFiles.class);
+
+  private static final List<SideFileManager<?>> MANAGERS = Collections.unmodifiableList(
+      Arrays.asList(RollupManager.getInstance(), ValueIndexManager.getInstance()));
+
+  private SideFiles() {
+    // util class
+  }
+
+  public static List<SideFileManager<?>> getManagers() {
+    return MANAGERS;
+  }
+
+  /**
+   * @return the writers of the enabled side files of a new TsFile
+   */
+  public static List<SideFileWriter> createWriters(File tsFile) {
+    List<SideFileWriter> writers = new ArrayList<>();
+    for (SideFileManager<?> manager : MANAGERS) {
+      SideFileWriter writer = manager.createWriter(tsFile);
+      if (writer != null) {
+        writers.add(writer);
+      }
+    }
+    return writers;
+  }
+
+  /**
+   * Rebuild the enabled side files of a sealed TsFile from its data in one pass, used after a
+   * merge or a compaction writes the TsFile. Failures only leave the TsFile without side files.
+   */
+  public static void build(TsFileResource resource) {
+    File tsFile = resource.getTsFile();
+    List<SideFileWriter> writers = new ArrayList<>();
+    for (SideFileManager<?> manager : MANAGERS) {
+      if (manager.isEnable()) {
+        manager.remove(tsFile);
+        SideFileWriter writer = manager.createWriter(tsFile);
+        if (writer != null) {
+          writers.add(writer);
+        }
+      }
+    }
+    if (writers.isEmpty()) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(tsFile.getPath())) {
+      for (String device : reader.getAllDevices()) {
+        for (Entry<String, List<ChunkMetadata>> entry : reader.readChunkMetadataInDevice(device)
+            .entrySet()) {
+          String seriesPath = device + IoTDBConstant.PATH_SEPARATOR + entry.getKey();
+          for (ChunkMetadata chunkMetadata : entry.getValue()) {
+            buildChunkEntries(reader, writers, seriesPath, chunkMetadata);
+          }
+        }
+        for (SideFileWriter writer : writers) {
+          writer.flush();
+        }
+      }
+      for (SideFileWriter writer : writers) {
+        writer.seal();
+        // a query may have found no side file while it was being built
+        writer.getManager().evict(tsFile);
+      }
+      logger.debug("Built the side files of {} in {}ms", tsFile,
+          System.currentTimeMillis() - startTime);
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Cannot build the side files of {}, it will be queried without them", tsFile,
+          e);
+      for (SideFileWriter writer : writers) {
+        try {
+          writer.close();
+        } catch (IOException ex) {
+          logger.warn("Cannot close the {} file of {}", writer.getManager().getName(), tsFile, ex);
+        }
+        writer.getManager().removeTemp(tsFile);
+      }
+    }
+  }
+
+  private static void buildChunkEntries(TsFileSequenceReader reader, List<SideFileWriter> writers,
+      String seriesPath, ChunkMetadata chunkMetadata) throws IOException {
+    List<ChunkEntryBuilder<?>> builders = new ArrayList<>(writers.size());
+    for (SideFileWriter writer : writers) {
+      builders.add(writer.newBuilder(chunkMetadata.getDataType()));
+    }
+    if (Collections.frequency(builders, null) == builders.size()) {
+      return;
+    }
+    ChunkReader chunkReader = new ChunkReader(reader.readMemChunk(chunkMetadata), null);
+    while (chunkReader.hasNextSatisfiedPage()) {
+      BatchData pageData = chunkReader.nextPageData();
+      for (ChunkEntryBuilder<?> builder : builders) {
+        if (builder != null) {
+          pageData.resetBatchData();
+          builder.update(pageData);
+        }
+      }
+    }
+    for (int i = 0; i < writers.size(); i++) {
+      if (builders.get(i) != null) {
+        writers.get(i).addChunkEntry(seriesPath, chunkMetadata.getOffsetOfChunkHeader(),
+            builders.get(i));
+      }
+    }
+  }
+
+  /**
+   * remove the side files of a TsFile that is deleted or about to be rewritten.
+   */
+  public static void remove(File tsFile) {
+    for (SideFileManager<?> manager : MANAGERS) {
+      manager.remove(tsFile);
+    }
+  }
+
+  /**
+   * remove the side files being written for a TsFile that is not sealed normally.
+   */
+  public static void removeTemp(File tsFile) {
+    for (SideFileManager<?> manager : MANAGERS) {
+      manager.removeTemp(tsFile);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable device -> index map of a sealed TsFile, which keeps the devices in a sorted array
+ * and looks them up by binary search. It takes 12 bytes for each device instead of a hash entry
+ * and a boxed index, which dominates the memory of TsFileResources when there are many devices
+ * and many files.
+ */
+final class SortedDeviceIndexMap extends AbstractMap<String, Integer> {
+
+  private final String[] devices;
+  // indexes[i] is the index of devices[i] in the start and end time arrays
+  private final int[] indexes;
+
+  private SortedDeviceIndexMap(String[] devices, int[] indexes) {
+    this.devices = devices;
+    this.indexes = indexes;
+  }
+
+  static SortedDeviceIndexMap of(Map<String, Integer> deviceToIndex) {
+    if (deviceToIndex instanceof SortedDeviceIndexMap) {
+      return (SortedDeviceIndexMap) deviceToIndex;
+    }
+    String[] devices = new String[deviceToIndex.size()];
+    int[] indexes = new int[deviceToIndex.size()];
+    int i = 0;
+    for (Entry<String, Integer> entry : deviceToIndex.entrySet()) {
+      devices[i] = entry.getKey();
+      indexes[i] = entry.getValue();
+      i++;
+    }
+    return of(devices, indexes);
+  }
+
+  /**
+   * @param devices distinct devices, devices[i] is at indexes[i] of the time arrays
+   */
+  static SortedDeviceIndexMap of(String[] devices, int[] indexes) {
+    Integer[] order = new Integer[devices.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparing(i -> devices[i]));
+    String[] sortedDevices = new String[devices.length];
+    int[] sortedIndexes = new int[devices.length];
+    for (int i = 0; i < order.length; i++) {
+      sortedDevices[i] = devices[order[i]];
+      sortedIndexes[i] = indexes[order[i]];
+    }
+    return new SortedDeviceIndexMap(sortedDevices, sortedIndexes);
+  }
+
+  private int position(Object device) {
+    return device instanceof String ? Arrays.binarySearch(devices, device) : -1;
+  }
+
+  @Override
+  public Integer get(Object device) {
+    int position = position(device);
+    return position >= 0 ? indexes[position] : null;
+  }
+
+  @Override
+  public boolean containsKey(Object device) {
+    return position(device) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return devices.length;
+  }
+
+  @Override
+  public Set<Entry<String, Integer>> entrySet() {
+    return new AbstractSet<Entry<String, Integer>>() {
+      @Override
+      public Iterator<Entry<String, Integer>> iterator() {
+        return new Iterator<Entry<String, Integer>>() {
+          private int position = 0;
+
+          @Override
+          public boolean hasNext() {
+            return position < devices.length;
+          }
+
+          @Override
+          public Entry<String, Integer> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Entry<String, Integer> entry =
+                new SimpleImmutableEntry<>(devices[position], indexes[position]);
+            position++;
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return devices.length;
+      }
+    };
+  }
+}
@@ -39,10 +39,22 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.concurrent.IoTThreadFactory;
+import org.apache.iotdb.db.concurrent.ThreadName;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
@@ -134,6 +146,16 @@ public class StorageGroupProcessor {
 
   private static final Logger logger = LoggerFactory.getLogger(StorageGroupProcessor.class);
 
+  /**
+   * recovers the TsFiles of different time partitions in parallel, shared by all storage groups.
+   * Its idle threads exit, so it costs nothing once the storage groups are recovered.
+   */
+  private static final ExecutorService partitionRecoveryPool = createPartitionRecoveryPool();
+
+  // the recovery progress of all storage groups, exposed by StorageEngine
+  private static final AtomicLong tsFileNumToRecover = new AtomicLong();
+  private static final AtomicLong recoveredTsFileNum = new AtomicLong();
+
   /**
    * indicating the file to be loaded already exists locally.
    */
@@ -149,6 +171,14 @@ public class StorageGroupProcessor {
    * partitionLatestFlushedTimeForEachDevice)
    */
   private final ReadWriteLock insertLock = new ReentrantReadWriteLock();
+  /**
+   * device-striped locks, null if insert_lock_stripe_num is 0. An insertion holding the read lock
+   * of insertLock and the stripe of its device runs concurrently with insertions of other stripes,
+   * as long as it does not need to create, flush or close a TsFileProcessor, which still requires
+   * the write lock of insertLock. Queries also hold the stripe of the queried device so that they
+   * do not read a memtable series being written.
+   */
+  private final Lock[] insertStripeLocks = createInsertStripeLocks();
   /**
    * closeStorageGroupCondition is used to wait for all currently closing TsFiles to be done.
    */
@@ -184,7 +214,7 @@ public class StorageGroupProcessor {
    * changes upon timestamps of each device, and is used to update partitionLatestFlushedTimeForEachDevice
    * when a flush is issued.
    */
-  private Map<Long, Map<String, Long>> latestTimeForEachDevice = new HashMap<>();
+  private Map<Long, Map<String, Long>> latestTimeForEachDevice = new ConcurrentHashMap<>();
   /**
    * time partition id -> map, which contains device -> largest timestamp of the latest memtable to
    * be submitted to asyncTryToFlush partitionLatestFlushedTimeForEachDevice determines whether a
@@ -192,18 +222,18 @@ public class StorageGroupProcessor {
    * with timestamp less than or equals to the device's latestFlushedTime should go into an
    * unsequential file.
    */
-  private Map<Long, Map<String, Long>> partitionLatestFlushedTimeForEachDevice = new HashMap<>();
+  private Map<Long, Map<String, Long>> partitionLatestFlushedTimeForEachDevice = new ConcurrentHashMap<>();
 
   /**
    * used to record the latest flush time while upgrading and inserting
    */
-  private Map<Long, Map<String, Long>> newlyFlushedPartitionLatestFlushedTimeForEachDevice = new HashMap<>();
+  private Map<Long, Map<String, Long>> newlyFlushedPartitionLatestFlushedTimeForEachDevice = new ConcurrentHashMap<>();
   /**
    * global mapping of device -> largest timestamp of the latest memtable to * be submitted to
    * asyncTryToFlush, globalLatestFlushedTimeForEachDevice is utilized to maintain global
    * latestFlushedTime of devices and will be updated along with partitionLatestFlushedTimeForEachDevice
    */
-  private Map<String, Long> globalLatestFlushedTimeForEachDevice = new HashMap<>();
+  private Map<String, Long> globalLatestFlushedTimeForEachDevice = new ConcurrentHashMap<>();
   private String storageGroupName;
   private File storageGroupSysDir;
 
@@ -305,11 +335,13 @@ public class StorageGroupProcessor {
           tmpSeqTsFiles);
       Map<Long, List<TsFileResource>> partitionTmpUnseqTsFiles = splitResourcesByPartition(
           tmpUnseqTsFiles);
+      Map<TsFileResource, RestorableTsFileIOWriter> writers = recoverTsFileWriters(
+          partitionTmpSeqTsFiles, partitionTmpUnseqTsFiles);
       for (List<TsFileResource> value : partitionTmpSeqTsFiles.values()) {
-        recoverTsFiles(value, true);
+        recoverTsFiles(value, writers, true);
       }
       for (List<TsFileResource> value : partitionTmpUnseqTsFiles.values()) {
-        recoverTsFiles(value, false);
+        recoverTsFiles(value, writers, false);
       }
 
       for (TsFileResource resource : tsFileManagement.getTsFileList(true)) {
@@ -357,10 +389,10 @@ public class StorageGroupProcessor {
         long endTime = resource.getEndTime(index);
         endTimeMap.put(deviceId, endTime);
       }
-      latestTimeForEachDevice.computeIfAbsent(timePartitionId, l -> new HashMap<>())
+      latestTimeForEachDevice.computeIfAbsent(timePartitionId, l -> new ConcurrentHashMap<>())
           .putAll(endTimeMap);
       partitionLatestFlushedTimeForEachDevice
-          .computeIfAbsent(timePartitionId, id -> new HashMap<>())
+          .computeIfAbsent(timePartitionId, id -> new ConcurrentHashMap<>())
           .putAll(endTimeMap);
       globalLatestFlushedTimeForEachDevice.putAll(endTimeMap);
     }
@@ -389,14 +421,14 @@ public class StorageGroupProcessor {
         int index = entry.getValue();
         long endTime = resource.getEndTime(index);
         long endTimePartitionId = StorageEngine.getTimePartition(endTime);
-        latestTimeForEachDevice.computeIfAbsent(endTimePartitionId, l -> new HashMap<>())
+        latestTimeForEachDevice.computeIfAbsent(endTimePartitionId, l -> new ConcurrentHashMap<>())
             .put(deviceId, endTime);
         globalLatestFlushedTimeForEachDevice.put(deviceId, endTime);
 
         // set all the covered partition's LatestFlushedTime to Long.MAX_VALUE
         long partitionId = StorageEngine.getTimePartition(resource.getStartTime(index));
         while (partitionId <= endTimePartitionId) {
-          partitionLatestFlushedTimeForEachDevice.computeIfAbsent(partitionId, l -> new HashMap<>())
+          partitionLatestFlushedTimeForEachDevice.computeIfAbsent(partitionId, l -> new ConcurrentHashMap<>())
               .put(deviceId, Long.MAX_VALUE);
           if (!timePartitionIdVersionControllerMap.containsKey(partitionId)) {
             File directory = SystemFileFactory.INSTANCE
@@ -551,22 +583,92 @@ public class StorageGroupProcessor {
     }
   }
 
-  private void recoverTsFiles(List<TsFileResource> tsFiles, boolean isSeq) {
+  private static ExecutorService createPartitionRecoveryPool() {
+    int threadNum = IoTDBDescriptor.getInstance().getConfig().getConcurrentRecoverPartitionThread();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threadNum, threadNum, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new IoTThreadFactory(ThreadName.RECOVER_PARTITION.getName()));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  public static long getTsFileNumToRecover() {
+    return tsFileNumToRecover.get();
+  }
+
+  public static long getRecoveredTsFileNum() {
+    return recoveredTsFileNum.get();
+  }
+
+  /**
+   * Recover the TsFiles themselves, i.e., load or rebuild their resources and redo the WALs of the
+   * crashed ones. The time partitions are independent of each other, so they are recovered in
+   * parallel, while the sequence and unsequence files of one partition are recovered in order
+   * because they share the version controller of the partition.
+   *
+   * @return the writers of the recovered TsFiles, a TsFile that cannot be recovered has no entry
+   */
+  private Map<TsFileResource, RestorableTsFileIOWriter> recoverTsFileWriters(
+      Map<Long, List<TsFileResource>> partitionSeqTsFiles,
+      Map<Long, List<TsFileResource>> partitionUnseqTsFiles)
+      throws StorageGroupProcessorException {
+    Set<Long> partitions = new HashSet<>(partitionSeqTsFiles.keySet());
+    partitions.addAll(partitionUnseqTsFiles.keySet());
+    Map<TsFileResource, RestorableTsFileIOWriter> writers = new ConcurrentHashMap<>();
+    List<Future<?>> futures = new ArrayList<>();
+    for (long partition : partitions) {
+      List<TsFileResource> seqTsFiles = partitionSeqTsFiles
+          .getOrDefault(partition, Collections.emptyList());
+      List<TsFileResource> unseqTsFiles = partitionUnseqTsFiles
+          .getOrDefault(partition, Collections.emptyList());
+      tsFileNumToRecover.addAndGet((long) seqTsFiles.size() + unseqTsFiles.size());
+      VersionController versionController = getVersionControllerByTimePartitionId(partition);
+      futures.add(partitionRecoveryPool.submit(() -> {
+        recoverTsFileWriters(seqTsFiles, versionController, true, writers);
+        recoverTsFileWriters(unseqTsFiles, versionController, false, writers);
+      }));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        throw new StorageGroupProcessorException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StorageGroupProcessorException(e);
+      }
+    }
+    return writers;
+  }
+
+  private void recoverTsFileWriters(List<TsFileResource> tsFiles,
+      VersionController versionController, boolean isSeq,
+      Map<TsFileResource, RestorableTsFileIOWriter> writers) {
     for (int i = 0; i < tsFiles.size(); i++) {
       TsFileResource tsFileResource = tsFiles.get(i);
-      long timePartitionId = tsFileResource.getTimePartition();
-
       TsFileRecoverPerformer recoverPerformer = new TsFileRecoverPerformer(
-          storageGroupName + FILE_NAME_SEPARATOR,
-          getVersionControllerByTimePartitionId(timePartitionId), tsFileResource, isSeq,
+          storageGroupName + FILE_NAME_SEPARATOR, versionController, tsFileResource, isSeq,
           i == tsFiles.size() - 1);
-
-      RestorableTsFileIOWriter writer;
       try {
-        writer = recoverPerformer.recover();
+        RestorableTsFileIOWriter writer = recoverPerformer.recover();
+        if (writer != null) {
+          writers.put(tsFileResource, writer);
+        }
       } catch (StorageGroupProcessorException e) {
         logger.warn("Skip TsFile: {} because of error in recover: ", tsFileResource.getTsFilePath(),
             e);
+      }
+      recoveredTsFileNum.incrementAndGet();
+    }
+  }
+
+  private void recoverTsFiles(List<TsFileResource> tsFiles,
+      Map<TsFileResource, RestorableTsFileIOWriter> writers, boolean isSeq) {
+    for (int i = 0; i < tsFiles.size(); i++) {
+      TsFileResource tsFileResource = tsFiles.get(i);
+      long timePartitionId = tsFileResource.getTimePartition();
+
+      RestorableTsFileIOWriter writer = writers.get(tsFileResource);
+      if (writer == null) {
         continue;
       }
 
@@ -614,18 +716,37 @@ public class StorageGroupProcessor {
     }
   }
 
+  private static Lock[] createInsertStripeLocks() {
+    int stripeNum = IoTDBDescriptor.getInstance().getConfig().getInsertLockStripeNum();
+    if (stripeNum <= 0) {
+      return null;
+    }
+    Lock[] locks = new Lock[stripeNum];
+    for (int i = 0; i < stripeNum; i++) {
+      locks[i] = new ReentrantLock();
+    }
+    return locks;
+  }
+
+  private Lock getInsertStripeLock(String deviceId) {
+    return insertStripeLocks[Math.floorMod(deviceId.hashCode(), insertStripeLocks.length)];
+  }
+
   public void insert(InsertRowPlan insertRowPlan) throws WriteProcessException {
     // reject insertions that are out of ttl
     if (!isAlive(insertRowPlan.getTime())) {
       throw new OutOfTTLException(insertRowPlan.getTime(), (System.currentTimeMillis() - dataTTL));
     }
+    if (insertStripeLocks != null && tryConcurrentInsert(insertRowPlan)) {
+      return;
+    }
     writeLock();
     try {
       // init map
       long timePartitionId = StorageEngine.getTimePartition(insertRowPlan.getTime());
 
       partitionLatestFlushedTimeForEachDevice
-          .computeIfAbsent(timePartitionId, id -> new HashMap<>());
+          .computeIfAbsent(timePartitionId, id -> new ConcurrentHashMap<>());
 
       boolean isSequence =
           insertRowPlan.getTime() > partitionLatestFlushedTimeForEachDevice.get(timePartitionId)
@@ -637,7 +758,7 @@ public class StorageGroupProcessor {
         return;
       }
 
-      latestTimeForEachDevice.computeIfAbsent(timePartitionId, l -> new HashMap<>());
+      latestTimeForEachDevice.computeIfAbsent(timePartitionId, l -> new ConcurrentHashMap<>());
       // insert to sequence or unSequence file
       insertToTsFileProcessor(insertRowPlan, isSequence);
 
@@ -646,6 +767,74 @@ public class StorageGroupProcessor {
     }
   }
 
+  /**
+   * insert a row holding only the read lock of insertLock and the stripe lock of its device.
+   *
+   * @return false if the TsFileProcessor the row belongs to does not exist yet, in which case
+   * nothing is inserted and the caller should insert the row exclusively
+   */
+  private boolean tryConcurrentInsert(InsertRowPlan insertRowPlan) throws WriteProcessException {
+    long timePartitionId = StorageEngine.getTimePartition(insertRowPlan.getTime());
+    Lock stripeLock = getInsertStripeLock(insertRowPlan.getDeviceId().getFullPath());
+    TsFileProcessor tsFileProcessor;
+    boolean isSequence;
+    insertLock.readLock().lock();
+    stripeLock.lock();
+    try {
+      isSequence = insertRowPlan.getTime() > partitionLatestFlushedTimeForEachDevice
+          .computeIfAbsent(timePartitionId, id -> new ConcurrentHashMap<>())
+          .getOrDefault(insertRowPlan.getDeviceId().getFullPath(), Long.MIN_VALUE);
+
+      //is unsequence and user set config to discard out of order data
+      if (!isSequence && IoTDBDescriptor.getInstance().getConfig()
+          .isEnableDiscardOutOfOrderData()) {
+        return true;
+      }
+
+      tsFileProcessor = getWorkingTsFileProcessor(timePartitionId, isSequence);
+      if (tsFileProcessor == null) {
+        return false;
+      }
+      latestTimeForEachDevice.computeIfAbsent(timePartitionId, l -> new ConcurrentHashMap<>());
+      insertToTsFileProcessor(insertRowPlan, tsFileProcessor, timePartitionId);
+    } finally {
+      stripeLock.unlock();
+      insertLock.readLock().unlock();
+    }
+
+    tryToFlushAfterConcurrentInsert(tsFileProcessor, isSequence);
+    return true;
+  }
+
+  /**
+   * @return the working TsFileProcessor of the time partition, or null if it does not exist. The
+   * caller should hold at least the read lock of insertLock.
+   */
+  private TsFileProcessor getWorkingTsFileProcessor(long timePartitionId, boolean sequence) {
+    return sequence ? workSequenceTsFileProcessors.get(timePartitionId)
+        : workUnsequenceTsFileProcessors.get(timePartitionId);
+  }
+
+  /**
+   * check the memtable size of a TsFileProcessor written without the write lock of insertLock and
+   * may asyncTryToFlush its work memtable, which requires the write lock.
+   */
+  private void tryToFlushAfterConcurrentInsert(TsFileProcessor tsFileProcessor, boolean sequence) {
+    if (tsFileProcessor == null || !tsFileProcessor.shouldFlush()) {
+      return;
+    }
+    writeLock();
+    try {
+      // another insertion may have flushed or closed the processor after the locks were released
+      if (getWorkingTsFileProcessor(tsFileProcessor.getTimeRangeId(), sequence) == tsFileProcessor
+          && tsFileProcessor.shouldFlush()) {
+        fileFlushPolicy.apply(this, tsFileProcessor, sequence);
+      }
+    } finally {
+      writeUnlock();
+    }
+  }
+
   /**
    * Insert a tablet (rows belonging to the same devices) into this storage group.
    *
@@ -653,6 +842,9 @@ public class StorageGroupProcessor {
    */
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   public void insertTablet(InsertTabletPlan insertTabletPlan) throws BatchInsertionException {
+    if (insertStripeLocks != null && tryConcurrentInsertTablet(insertTabletPlan)) {
+      return;
+    }
     writeLock();
     try {
       TSStatus[] results = new TSStatus[insertTabletPlan.getRowCount()];
@@ -686,7 +878,7 @@ public class StorageGroupProcessor {
           .getTimePartition(insertTabletPlan.getTimes()[before]);
       // init map
       long lastFlushTime = partitionLatestFlushedTimeForEachDevice.
-          computeIfAbsent(beforeTimePartition, id -> new HashMap<>()).
+          computeIfAbsent(beforeTimePartition, id -> new ConcurrentHashMap<>()).
           computeIfAbsent(insertTabletPlan.getDeviceId().getFullPath(), id -> Long.MIN_VALUE);
       // if is sequence
       boolean isSequence = false;
@@ -706,7 +898,7 @@ public class StorageGroupProcessor {
           before = loc;
           beforeTimePartition = curTimePartition;
           lastFlushTime = partitionLatestFlushedTimeForEachDevice.
-              computeIfAbsent(beforeTimePartition, id -> new HashMap<>()).
+              computeIfAbsent(beforeTimePartition, id -> new ConcurrentHashMap<>()).
               computeIfAbsent(insertTabletPlan.getDeviceId().getFullPath(), id -> Long.MIN_VALUE);
           isSequence = false;
         }
@@ -745,6 +937,93 @@ public class StorageGroupProcessor {
     }
   }
 
+  /**
+   * insert a tablet holding only the read lock of insertLock and the stripe lock of its device.
+   * Only tablets whose alive rows fall into one time partition are handled here.
+   *
+   * @return false if the tablet spans several time partitions or a TsFileProcessor it needs does
+   * not exist yet, in which case nothing is inserted and the caller should insert it exclusively
+   */
+  private boolean tryConcurrentInsertTablet(InsertTabletPlan insertTabletPlan)
+      throws BatchInsertionException {
+    long[] times = insertTabletPlan.getTimes();
+    int rowCount = insertTabletPlan.getRowCount();
+    // skip points that do not satisfy TTL, the batch is assumed to be sorted by client
+    int loc = 0;
+    while (loc < rowCount && !isAlive(times[loc])) {
+      loc++;
+    }
+    if (loc == rowCount) {
+      return false;
+    }
+    long timePartitionId = StorageEngine.getTimePartition(times[loc]);
+    if (StorageEngine.getTimePartition(times[rowCount - 1]) != timePartitionId) {
+      return false;
+    }
+
+    String deviceId = insertTabletPlan.getDeviceId().getFullPath();
+    boolean discardUnsequence = IoTDBDescriptor.getInstance().getConfig()
+        .isEnableDiscardOutOfOrderData();
+    Lock stripeLock = getInsertStripeLock(deviceId);
+    TsFileProcessor seqProcessor = null;
+    TsFileProcessor unseqProcessor = null;
+    TSStatus[] results;
+    boolean noFailure = loc == 0;
+    insertLock.readLock().lock();
+    stripeLock.lock();
+    try {
+      long lastFlushTime = partitionLatestFlushedTimeForEachDevice
+          .computeIfAbsent(timePartitionId, id -> new ConcurrentHashMap<>())
+          .getOrDefault(deviceId, Long.MIN_VALUE);
+      // rows in [loc, seqStart) go into the unsequence file and the rest into the sequence file
+      int seqStart = loc;
+      while (seqStart < rowCount && times[seqStart] <= lastFlushTime) {
+        seqStart++;
+      }
+      boolean insertUnsequence = loc < seqStart && !discardUnsequence;
+      if (insertUnsequence) {
+        unseqProcessor = getWorkingTsFileProcessor(timePartitionId, false);
+        if (unseqProcessor == null) {
+          return false;
+        }
+      }
+      if (seqStart < rowCount) {
+        seqProcessor = getWorkingTsFileProcessor(timePartitionId, true);
+        if (seqProcessor == null) {
+          return false;
+        }
+      }
+
+      results = new TSStatus[rowCount];
+      Arrays.fill(results, RpcUtils.SUCCESS_STATUS);
+      for (int i = 0; i < loc; i++) {
+        results[i] = RpcUtils.getStatus(TSStatusCode.OUT_OF_TTL_ERROR,
+            "time " + times[i] + " in current line is out of TTL: " + dataTTL);
+      }
+      if (insertUnsequence) {
+        noFailure = insertTabletToTsFileProcessor(insertTabletPlan, loc, seqStart, false, results,
+            timePartitionId, unseqProcessor) && noFailure;
+      }
+      if (seqProcessor != null) {
+        noFailure = insertTabletToTsFileProcessor(insertTabletPlan, seqStart, rowCount, true,
+            results, timePartitionId, seqProcessor) && noFailure;
+      }
+      long globalLatestFlushedTime = globalLatestFlushedTimeForEachDevice
+          .getOrDefault(deviceId, Long.MIN_VALUE);
+      tryToUpdateBatchInsertLastCache(insertTabletPlan, globalLatestFlushedTime);
+    } finally {
+      stripeLock.unlock();
+      insertLock.readLock().unlock();
+    }
+
+    tryToFlushAfterConcurrentInsert(unseqProcessor, false);
+    tryToFlushAfterConcurrentInsert(seqProcessor, true);
+    if (!noFailure) {
+      throw new BatchInsertionException(results);
+    }
+    return true;
+  }
+
   /**
    * @return whether the given time falls in ttl
    */
@@ -780,6 +1059,27 @@ public class StorageGroupProcessor {
       return false;
     }
 
+    if (!insertTabletToTsFileProcessor(insertTabletPlan, start, end, sequence, results,
+        timePartitionId, tsFileProcessor)) {
+      return false;
+    }
+
+    // check memtable size and may async try to flush the work memtable
+    if (tsFileProcessor.shouldFlush()) {
+      fileFlushPolicy.apply(this, tsFileProcessor, sequence);
+    }
+    return true;
+  }
+
+  /**
+   * insert rows [start, end) of a tablet into the given TsFileProcessor without flushing it. The
+   * caller should hold the write lock of insertLock or the stripe lock of the device.
+   *
+   * @return false if any failure occurs when inserting the tablet, true otherwise
+   */
+  private boolean insertTabletToTsFileProcessor(InsertTabletPlan insertTabletPlan,
+      int start, int end, boolean sequence, TSStatus[] results, long timePartitionId,
+      TsFileProcessor tsFileProcessor) {
     try {
       tsFileProcessor.insertTablet(insertTabletPlan, start, end, results);
     } catch (WriteProcessException e) {
@@ -787,7 +1087,7 @@ public class StorageGroupProcessor {
       return false;
     }
 
-    latestTimeForEachDevice.computeIfAbsent(timePartitionId, t -> new HashMap<>());
+    latestTimeForEachDevice.computeIfAbsent(timePartitionId, t -> new ConcurrentHashMap<>());
     // try to update the latest time of the device of this tsRecord
     if (sequence && latestTimeForEachDevice.get(timePartitionId)
         .getOrDefault(insertTabletPlan.getDeviceId().getFullPath(), Long.MIN_VALUE)
@@ -795,11 +1095,6 @@ public class StorageGroupProcessor {
       latestTimeForEachDevice.get(timePartitionId)
           .put(insertTabletPlan.getDeviceId().getFullPath(), insertTabletPlan.getTimes()[end - 1]);
     }
-
-    // check memtable size and may async try to flush the work memtable
-    if (tsFileProcessor.shouldFlush()) {
-      fileFlushPolicy.apply(this, tsFileProcessor, sequence);
-    }
     return true;
   }
 
@@ -836,6 +1131,20 @@ public class StorageGroupProcessor {
       return;
     }
 
+    insertToTsFileProcessor(insertRowPlan, tsFileProcessor, timePartitionId);
+
+    // check memtable size and may asyncTryToFlush the work memtable
+    if (tsFileProcessor.shouldFlush()) {
+      fileFlushPolicy.apply(this, tsFileProcessor, sequence);
+    }
+  }
+
+  /**
+   * insert a row into the given TsFileProcessor without flushing it. The caller should hold the
+   * write lock of insertLock or the stripe lock of the device.
+   */
+  private void insertToTsFileProcessor(InsertRowPlan insertRowPlan,
+      TsFileProcessor tsFileProcessor, long timePartitionId) throws WriteProcessException {
     // insert TsFileProcessor
     tsFileProcessor.insert(insertRowPlan);
 
@@ -851,11 +1160,6 @@ public class StorageGroupProcessor {
         insertRowPlan.getDeviceId().getFullPath(), Long.MIN_VALUE);
 
     tryToUpdateInsertLastCache(insertRowPlan, globalLatestFlushTime);
-
-    // check memtable size and may asyncTryToFlush the work memtable
-    if (tsFileProcessor.shouldFlush()) {
-      fileFlushPolicy.apply(this, tsFileProcessor, sequence);
-    }
   }
 
   private void tryToUpdateInsertLastCache(InsertRowPlan plan, Long latestFlushedTime) {
@@ -1245,7 +1549,12 @@ public class StorageGroupProcessor {
   // TODO need a read lock, please consider the concurrency with flush manager threads.
   public QueryDataSource query(PartialPath deviceId, String measurementId, QueryContext context,
       QueryFileManager filePathsManager, Filter timeFilter) throws QueryProcessException {
+    Lock stripeLock = insertStripeLocks == null ? null
+        : getInsertStripeLock(deviceId.getFullPath());
     insertLock.readLock().lock();
+    if (stripeLock != null) {
+      stripeLock.lock();
+    }
     mergeLock.readLock().lock();
     tsFileManagement.readLock();
     try {
@@ -1270,6 +1579,9 @@ public class StorageGroupProcessor {
     } finally {
       tsFileManagement.readUnLock();
       mergeLock.readLock().unlock();
+      if (stripeLock != null) {
+        stripeLock.unlock();
+      }
       insertLock.readLock().unlock();
     }
   }
@@ -1526,7 +1838,7 @@ public class StorageGroupProcessor {
 
     for (Entry<String, Long> entry : curPartitionDeviceLatestTime.entrySet()) {
       partitionLatestFlushedTimeForEachDevice
-          .computeIfAbsent(processor.getTimeRangeId(), id -> new HashMap<>())
+          .computeIfAbsent(processor.getTimeRangeId(), id -> new ConcurrentHashMap<>())
           .put(entry.getKey(), entry.getValue());
       updateNewlyFlushedPartitionLatestFlushedTimeForEachDevice(processor.getTimeRangeId(),
           entry.getKey(), entry.getValue());
@@ -1545,7 +1857,7 @@ public class StorageGroupProcessor {
   public void updateNewlyFlushedPartitionLatestFlushedTimeForEachDevice(long partitionId,
       String deviceId, long time) {
     newlyFlushedPartitionLatestFlushedTimeForEachDevice
-        .computeIfAbsent(partitionId, id -> new HashMap<>())
+        .computeIfAbsent(partitionId, id -> new ConcurrentHashMap<>())
         .compute(deviceId, (k, v) -> v == null ? time : Math.max(v, time));
   }
 
@@ -1659,7 +1971,7 @@ public class StorageGroupProcessor {
           long endTime = endTimeMap.getValue();
           if (latestFlushTimeForPartition.getOrDefault(device, Long.MIN_VALUE) < endTime) {
             partitionLatestFlushedTimeForEachDevice
-                .computeIfAbsent(timePartitionId, id -> new HashMap<>()).put(device, endTime);
+                .computeIfAbsent(timePartitionId, id -> new ConcurrentHashMap<>()).put(device, endTime);
           }
         }
       }
@@ -2209,7 +2521,7 @@ public class StorageGroupProcessor {
       int index = entry.getValue();
       long endTime = newTsFileResource.getEndTime(index);
       long timePartitionId = StorageEngine.getTimePartition(endTime);
-      if (!latestTimeForEachDevice.computeIfAbsent(timePartitionId, id -> new HashMap<>())
+      if (!latestTimeForEachDevice.computeIfAbsent(timePartitionId, id -> new ConcurrentHashMap<>())
           .containsKey(device)
           || latestTimeForEachDevice.get(timePartitionId).get(device) < endTime) {
         latestTimeForEachDevice.get(timePartitionId).put(device, endTime);
@@ -2220,7 +2532,7 @@ public class StorageGroupProcessor {
 
       if (latestFlushTimeForPartition.getOrDefault(device, Long.MIN_VALUE) < endTime) {
         partitionLatestFlushedTimeForEachDevice
-            .computeIfAbsent(timePartitionId, id -> new HashMap<>()).put(device, endTime);
+            .computeIfAbsent(timePartitionId, id -> new ConcurrentHashMap<>()).put(device, endTime);
       }
       if (globalLatestFlushedTimeForEachDevice.getOrDefault(device, Long.MIN_VALUE) < endTime) {
         globalLatestFlushedTimeForEachDevice.put(device, endTime);
@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.iotdb.db.conf.IoTDBConfig;
@@ -43,6 +44,8 @@ import org.apache.iotdb.db.engine.modification.Deletion;
 import org.apache.iotdb.db.engine.modification.Modification;
 import org.apache.iotdb.db.engine.modification.ModificationFile;
 import org.apache.iotdb.db.engine.querycontext.ReadOnlyMemChunk;
+import org.apache.iotdb.db.engine.sidefile.SideFileWriter;
+import org.apache.iotdb.db.engine.sidefile.SideFiles;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor.CloseTsFileCallBack;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor.UpdateEndTimeCallBack;
 import org.apache.iotdb.db.engine.version.VersionController;
@@ -78,6 +81,11 @@ public class TsFileProcessor {
    */
   private final ConcurrentLinkedDeque<IMemTable> flushingMemTables = new ConcurrentLinkedDeque<>();
   private RestorableTsFileIOWriter writer;
+  /**
+   * write the side files of the flushed chunks beside the TsFile, e.g., their rollup. A writer
+   * that fails is dropped and its side file is not maintained anymore.
+   */
+  private final List<SideFileWriter> sideFileWriters;
   private final TsFileResource tsFileResource;
   // time range index to indicate this processor belongs to which time range
   private long timeRangeId;
@@ -91,7 +99,11 @@ public class TsFileProcessor {
    * and its flushingMemTables are all flushed, then the flush thread will close this file.)
    */
   private volatile boolean shouldClose;
-  private IMemTable workMemTable;
+  /**
+   * insertions of different devices may share this processor concurrently when the storage group
+   * uses striped insert locks, so the work memtable is created with double-checked locking.
+   */
+  private volatile IMemTable workMemTable;
 
   private final VersionController versionController;
   /**
@@ -118,6 +130,7 @@ public class TsFileProcessor {
     this.tsFileResource = new TsFileResource(tsfile, this);
     this.versionController = versionController;
     this.writer = new RestorableTsFileIOWriter(tsfile);
+    this.sideFileWriters = new CopyOnWriteArrayList<>(SideFiles.createWriters(tsfile));
     this.closeTsFileCallback = closeTsFileCallback;
     this.updateLatestFlushTimeCallback = updateLatestFlushTimeCallback;
     this.sequence = sequence;
@@ -135,6 +148,10 @@ public class TsFileProcessor {
     this.tsFileResource = tsFileResource;
     this.versionController = versionController;
     this.writer = writer;
+    // the chunks flushed before the restart have no side file entries and are read from the
+    // TsFile
+    this.sideFileWriters = new CopyOnWriteArrayList<>(
+        SideFiles.createWriters(tsFileResource.getTsFile()));
     this.closeTsFileCallback = closeUnsealedTsFileProcessor;
     this.updateLatestFlushTimeCallback = updateLatestFlushTimeCallback;
     this.sequence = sequence;
@@ -148,12 +165,8 @@ public class TsFileProcessor {
    */
   public void insert(InsertRowPlan insertRowPlan) throws WriteProcessException {
 
-    if (workMemTable == null) {
-      workMemTable = MemTablePool.getInstance().getAvailableMemTable(this);
-    }
-
     // insert insertRowPlan to the work memtable
-    workMemTable.insert(insertRowPlan);
+    getOrCreateWorkMemTable().insert(insertRowPlan);
 
     if (IoTDBDescriptor.getInstance().getConfig().isEnableWal()) {
       try {
@@ -185,13 +198,11 @@ public class TsFileProcessor {
   public void insertTablet(InsertTabletPlan insertTabletPlan, int start, int end,
       TSStatus[] results) throws WriteProcessException {
 
-    if (workMemTable == null) {
-      workMemTable = MemTablePool.getInstance().getAvailableMemTable(this);
-    }
+    IMemTable memTable = getOrCreateWorkMemTable();
 
     // insert insertRowPlan to the work memtable
     try {
-      workMemTable.insertTablet(insertTabletPlan, start, end);
+      memTable.insertTablet(insertTabletPlan, start, end);
       if (IoTDBDescriptor.getInstance().getConfig().isEnableWal()) {
         insertTabletPlan.setStart(start);
         insertTabletPlan.setEnd(end);
@@ -220,6 +231,20 @@ public class TsFileProcessor {
     }
   }
 
+  private IMemTable getOrCreateWorkMemTable() {
+    IMemTable memTable = workMemTable;
+    if (memTable == null) {
+      synchronized (this) {
+        memTable = workMemTable;
+        if (memTable == null) {
+          memTable = MemTablePool.getInstance().getAvailableMemTable(this);
+          workMemTable = memTable;
+        }
+      }
+    }
+    return memTable;
+  }
+
   /**
    * Delete data which belongs to the timeseries `deviceId.measurementId` and the timestamp of which
    * <= 'timestamp' in the deletion. <br/>
@@ -267,6 +292,12 @@ public class TsFileProcessor {
       return true;
     }
 
+    if (workMemTable.offHeapMemSize() >= getMemtableSizeThresholdBasedOnSeriesNum()) {
+      logger.info("The off-heap memtable size {} of tsfile {} reaches the threshold",
+          workMemTable.offHeapMemSize(), tsFileResource.getTsFile().getAbsolutePath());
+      return true;
+    }
+
     if (workMemTable.reachTotalPointNumThreshold()) {
       logger.info("The avg series points num {} of tsfile {} reaches the threshold",
           workMemTable.getTotalPointsNum() / workMemTable.getSeriesNumber(),
@@ -554,8 +585,10 @@ public class TsFileProcessor {
       try {
         MemTableFlushTask flushTask;
         writer.mark();
-        flushTask = new MemTableFlushTask(memTableToFlush, writer, storageGroupName);
+        flushTask = new MemTableFlushTask(memTableToFlush, writer, storageGroupName,
+            sideFileWriters);
         flushTask.syncFlushMemTable();
+        flushSideFiles();
       } catch (Exception e) {
         logger.error("{}: {} meet error when flushing a memtable, change system mode to read-only",
             storageGroupName, tsFileResource.getTsFile().getName(), e);
@@ -564,6 +597,9 @@ public class TsFileProcessor {
           logger.error("{}: {} IOTask meets error, truncate the corrupted data", storageGroupName,
               tsFileResource.getTsFile().getName(), e);
           writer.reset();
+          for (SideFileWriter sideFileWriter : sideFileWriters) {
+            sideFileWriter.discardPending();
+          }
         } catch (IOException e1) {
           logger.error("{}: {} Truncate corrupted data meets error", storageGroupName,
               tsFileResource.getTsFile().getName(), e1);
@@ -645,10 +681,54 @@ public class TsFileProcessor {
     }
   }
 
+  private void flushSideFiles() {
+    for (SideFileWriter sideFileWriter : sideFileWriters) {
+      try {
+        sideFileWriter.flush();
+      } catch (IOException e) {
+        // a side file is only an accelerator, so the TsFile goes on without it
+        logger.warn("{}: {} cannot write the {}, stop maintaining it", storageGroupName,
+            tsFileResource.getTsFile().getName(), sideFileWriter.getManager().getName(), e);
+        closeSideFile(sideFileWriter);
+        sideFileWriter.getManager().removeTemp(tsFileResource.getTsFile());
+      }
+    }
+  }
+
+  private void sealSideFiles() {
+    for (SideFileWriter sideFileWriter : sideFileWriters) {
+      try {
+        sideFileWriter.seal();
+      } catch (IOException e) {
+        logger.warn("{}: {} cannot seal the {}", storageGroupName,
+            tsFileResource.getTsFile().getName(), sideFileWriter.getManager().getName(), e);
+        sideFileWriter.getManager().remove(tsFileResource.getTsFile());
+      }
+    }
+    sideFileWriters.clear();
+  }
+
+  private void closeSideFiles() {
+    for (SideFileWriter sideFileWriter : sideFileWriters) {
+      closeSideFile(sideFileWriter);
+    }
+  }
+
+  private void closeSideFile(SideFileWriter sideFileWriter) {
+    try {
+      sideFileWriter.close();
+    } catch (IOException e) {
+      logger.warn("{}: {} cannot close the {}", storageGroupName,
+          tsFileResource.getTsFile().getName(), sideFileWriter.getManager().getName(), e);
+    }
+    sideFileWriters.remove(sideFileWriter);
+  }
+
   private void endFile() throws IOException, TsFileProcessorException {
     long closeStartTime = System.currentTimeMillis();
     tsFileResource.serialize();
     writer.endFile();
+    sealSideFiles();
     tsFileResource.cleanCloseFlag();
 
     // remove this processor from Closing list in StorageGroupProcessor,
@@ -685,6 +765,7 @@ public class TsFileProcessor {
   }
 
   public void close() throws TsFileProcessorException {
+    closeSideFiles();
     try {
       //when closing resource file, its corresponding mod file is also closed.
       tsFileResource.close();
@@ -788,6 +869,7 @@ public class TsFileProcessor {
       workMemTable.release();
       MemTablePool.getInstance().putBack(workMemTable, storageGroupName);
     }
+    closeSideFiles();
     try {
       writer.close();
     } catch (IOException e) {
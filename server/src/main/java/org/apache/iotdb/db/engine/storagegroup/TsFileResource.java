@@ -28,7 +28,6 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +40,7 @@ import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.engine.StorageEngine;
 import org.apache.iotdb.db.engine.modification.ModificationFile;
 import org.apache.iotdb.db.engine.querycontext.ReadOnlyMemChunk;
+import org.apache.iotdb.db.engine.sidefile.SideFiles;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor.UpgradeTsFileResourceCallBack;
 import org.apache.iotdb.db.engine.upgrade.UpgradeTask;
 import org.apache.iotdb.db.exception.PartitionViolationException;
@@ -73,20 +73,23 @@ public class TsFileResource {
   protected static final int INIT_ARRAY_SIZE = 64;
 
   /**
-   * start times array.
+   * start times array. The arrays and deviceToIndex are replaced under the monitor of this, but
+   * read without it by queries, so they are volatile and only assigned once fully filled.
    */
-  protected long[] startTimes;
+  protected volatile long[] startTimes;
 
   /**
    * end times array. The values in this array are Long.MIN_VALUE if it's an unsealed sequence
    * tsfile
    */
-  protected long[] endTimes;
+  protected volatile long[] endTimes;
 
   /**
-   * device -> index of start times array and end times array
+   * device -> index of start times array and end times array. It is a ConcurrentHashMap while the
+   * TsFile is written and a compact SortedDeviceIndexMap once the TsFile is sealed, which turns
+   * back into a ConcurrentHashMap if a new device is added afterwards.
    */
-  protected Map<String, Integer> deviceToIndex;
+  protected volatile Map<String, Integer> deviceToIndex;
 
   public TsFileProcessor getProcessor() {
     return processor;
@@ -289,7 +292,8 @@ public class TsFileResource {
     try (InputStream inputStream = fsFactory.getBufferedInputStream(
         file + RESOURCE_SUFFIX)) {
       int size = ReadWriteIOUtils.readInt(inputStream);
-      Map<String, Integer> deviceMap = new HashMap<>();
+      String[] devices = new String[size];
+      int[] indexes = new int[size];
       long[] startTimesArray = new long[size];
       long[] endTimesArray = new long[size];
       for (int i = 0; i < size; i++) {
@@ -297,8 +301,8 @@ public class TsFileResource {
         long time = ReadWriteIOUtils.readLong(inputStream);
         // To reduce the String number in memory,
         // use the deviceId from memory instead of the deviceId read from disk
-        String cachedPath = cachedDevicePool.computeIfAbsent(path, k -> k);
-        deviceMap.put(cachedPath, i);
+        devices[i] = cachedDevicePool.computeIfAbsent(path, k -> k);
+        indexes[i] = i;
         startTimesArray[i] = time;
       }
       size = ReadWriteIOUtils.readInt(inputStream);
@@ -309,7 +313,7 @@ public class TsFileResource {
       }
       this.startTimes = startTimesArray;
       this.endTimes = endTimesArray;
-      this.deviceToIndex = deviceMap;
+      this.deviceToIndex = SortedDeviceIndexMap.of(devices, indexes);
 
       if (inputStream.available() > 0) {
         int versionSize = ReadWriteIOUtils.readInt(inputStream);
@@ -331,14 +335,14 @@ public class TsFileResource {
     }
   }
 
-  public void updateStartTime(String device, long time) {
+  public synchronized void updateStartTime(String device, long time) {
     long startTime = getStartTime(device);
     if (time < startTime) {
       putStartTime(device, time);
     }
   }
 
-  public void updateEndTime(String device, long time) {
+  public synchronized void updateEndTime(String device, long time) {
     long endTime = getEndTime(device);
     if (time > endTime) {
       putEndTime(device, time);
@@ -389,10 +393,12 @@ public class TsFileResource {
   }
 
   public long getStartTime(String deviceId) {
-    if (!deviceToIndex.containsKey(deviceId)) {
+    // the index is read before the array, which is grown before a new index is added
+    Integer index = deviceToIndex.get(deviceId);
+    if (index == null) {
       return Long.MAX_VALUE;
     }
-    return startTimes[deviceToIndex.get(deviceId)];
+    return startTimes[index];
   }
 
   public long getStartTime(int index) {
@@ -400,10 +406,11 @@ public class TsFileResource {
   }
 
   public long getEndTime(String deviceId) {
-    if (!deviceToIndex.containsKey(deviceId)) {
+    Integer index = deviceToIndex.get(deviceId);
+    if (index == null) {
       return Long.MIN_VALUE;
     }
-    return endTimes[deviceToIndex.get(deviceId)];
+    return endTimes[index];
   }
 
   public long getEndTime(int index) {
@@ -420,38 +427,49 @@ public class TsFileResource {
     return endTime != Long.MIN_VALUE ? endTime : defaultTime;
   }
 
-  public void putStartTime(String deviceId, long startTime) {
-    int index;
-    if (containsDevice(deviceId)) {
-      index = deviceToIndex.get(deviceId);
-    } else {
-      index = deviceToIndex.size();
-      deviceToIndex.put(deviceId, index);
-      if (startTimes.length <= index) {
-        startTimes = enLargeArray(startTimes, Long.MAX_VALUE);
-        endTimes = enLargeArray(endTimes, Long.MIN_VALUE);
-      }
-    }
+  public synchronized void putStartTime(String deviceId, long startTime) {
+    // the array may be grown when the index is added, so it is read afterwards
+    int index = getOrAddDeviceIndex(deviceId);
     startTimes[index] = startTime;
   }
 
-  public void putEndTime(String deviceId, long endTime) {
-    int index;
-    if (containsDevice(deviceId)) {
-      index = deviceToIndex.get(deviceId);
-    } else {
-      index = deviceToIndex.size();
-      deviceToIndex.put(deviceId, index);
-      if (endTimes.length <= index) {
-        startTimes = enLargeArray(startTimes, Long.MAX_VALUE);
-        endTimes = enLargeArray(endTimes, Long.MIN_VALUE);
-      }
-    }
+  public synchronized void putEndTime(String deviceId, long endTime) {
+    int index = getOrAddDeviceIndex(deviceId);
     endTimes[index] = endTime;
   }
 
+  /**
+   * @return the index of the device in the time arrays, which are grown before the index of a new
+   * device is published, so that a reader finding the index also finds a long enough array
+   */
+  private int getOrAddDeviceIndex(String deviceId) {
+    Integer index = deviceToIndex.get(deviceId);
+    if (index != null) {
+      return index;
+    }
+    inflateDeviceIndex();
+    index = deviceToIndex.size();
+    if (startTimes.length <= index || endTimes.length <= index) {
+      startTimes = enLargeArray(startTimes, Long.MAX_VALUE);
+      endTimes = enLargeArray(endTimes, Long.MIN_VALUE);
+    }
+    deviceToIndex.put(deviceId, index);
+    return index;
+  }
+
+  /**
+   * make the device index of a sealed TsFile mutable before adding a device, the indexes of the
+   * existing devices are kept so that concurrent readers still find their times.
+   */
+  private void inflateDeviceIndex() {
+    if (deviceToIndex instanceof SortedDeviceIndexMap) {
+      deviceToIndex = new ConcurrentHashMap<>(deviceToIndex);
+    }
+  }
+
   private long[] enLargeArray(long[] array, long defaultValue) {
-    long[] tmp = new long[(int) (array.length * 1.5)];
+    // the arrays of a sealed TsFile are trimmed and may be too short to grow by half
+    long[] tmp = new long[Math.max(INIT_ARRAY_SIZE, (int) (array.length * 1.5))];
     initTimes(tmp, defaultValue);
     System.arraycopy(array, 0, tmp, 0, array.length);
     return tmp;
@@ -470,8 +488,9 @@ public class TsFileResource {
   }
 
   public void clearEndTimes() {
-    endTimes = new long[endTimes.length];
-    initTimes(endTimes, Long.MIN_VALUE);
+    long[] newEndTimes = new long[endTimes.length];
+    initTimes(newEndTimes, Long.MIN_VALUE);
+    endTimes = newEndTimes;
   }
 
   public boolean areEndTimesEmpty() {
@@ -483,9 +502,10 @@ public class TsFileResource {
     return true;
   }
 
-  private void trimStartEndTimes() {
+  private synchronized void trimStartEndTimes() {
     startTimes = Arrays.copyOfRange(startTimes, 0, deviceToIndex.size());
     endTimes = Arrays.copyOfRange(endTimes, 0, deviceToIndex.size());
+    deviceToIndex = SortedDeviceIndexMap.of(deviceToIndex);
   }
 
   public boolean isClosed() {
@@ -564,12 +584,14 @@ public class TsFileResource {
   }
 
   /**
-   * Remove the data file, its resource file, and its modification file physically.
+   * Remove the data file, its resource file, its modification file and its side indexes
+   * physically.
    */
   public void remove() {
     file.delete();
     fsFactory.getFile(file.getPath() + RESOURCE_SUFFIX).delete();
     fsFactory.getFile(file.getPath() + ModificationFile.FILE_SUFFIX).delete();
+    SideFiles.remove(file);
   }
 
   public void removeResourceFile() {
@@ -581,6 +603,7 @@ public class TsFileResource {
     fsFactory.moveFile(fsFactory.getFile(file.getPath() + RESOURCE_SUFFIX),
         fsFactory.getFile(targetDir, file.getName() + RESOURCE_SUFFIX));
     fsFactory.getFile(file.getPath() + ModificationFile.FILE_SUFFIX).delete();
+    SideFiles.remove(file);
   }
 
   @Override
@@ -820,6 +843,7 @@ public class TsFileResource {
       Files.delete(file.toPath());
       Files.delete(FSFactoryProducer.getFSFactory()
           .getFile(file.toPath() + TsFileResource.RESOURCE_SUFFIX).toPath());
+      SideFiles.remove(file);
     }
   }
 }
@@ -31,6 +31,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import org.apache.iotdb.db.engine.merge.manage.MergeManager;
+import org.apache.iotdb.db.engine.sidefile.SideFiles;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -229,6 +230,7 @@ public class HotCompactionUtils {
     targetResource.setHistoricalVersions(historicalVersions);
     targetResource.serialize();
     writer.endFile();
+    SideFiles.build(targetResource);
     targetResource.close();
   }
 
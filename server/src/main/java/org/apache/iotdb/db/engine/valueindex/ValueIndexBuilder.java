@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.valueindex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.db.engine.sidefile.ChunkEntryBuilder;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.utils.Binary;
+
+/**
+ * Splits the points of one chunk into segments of SEGMENT_POINT_NUM consecutive points and builds
+ * a {@link ValueSegment} for each of them. Only numeric series are indexed, the points of other
+ * series are ignored. The points must be given in ascending time order.
+ */
+public class ValueIndexBuilder extends ChunkEntryBuilder<ValueSegment> {
+
+  static final int SEGMENT_POINT_NUM = 1024;
+
+  private final List<ValueSegment> segments = new ArrayList<>();
+  private Statistics currentStatistics;
+  // the values of the current segment, only one of them is used according to the data type
+  private long[] longValues;
+  private double[] doubleValues;
+  private int size;
+
+  public ValueIndexBuilder(TSDataType dataType) {
+    super(dataType);
+    switch (dataType) {
+      case INT32:
+      case INT64:
+        longValues = new long[SEGMENT_POINT_NUM];
+        break;
+      case FLOAT:
+      case DOUBLE:
+        doubleValues = new double[SEGMENT_POINT_NUM];
+        break;
+      default:
+        // not indexed
+        break;
+    }
+  }
+
+  public static boolean isSupported(TSDataType dataType) {
+    return dataType == TSDataType.INT32 || dataType == TSDataType.INT64
+        || dataType == TSDataType.FLOAT || dataType == TSDataType.DOUBLE;
+  }
+
+  private Statistics getStatistics() {
+    if (currentStatistics == null) {
+      currentStatistics = Statistics.getStatsByType(dataType);
+    }
+    return currentStatistics;
+  }
+
+  private void checkSegmentFull() {
+    if (size == SEGMENT_POINT_NUM) {
+      finishSegment();
+    }
+  }
+
+  private void finishSegment() {
+    if (size == 0) {
+      return;
+    }
+    segments.add(longValues != null ? ValueSegment.of(currentStatistics, longValues, size)
+        : ValueSegment.of(currentStatistics, doubleValues, size));
+    currentStatistics = null;
+    size = 0;
+  }
+
+  @Override
+  public void update(long time, boolean value) {
+    // not indexed
+  }
+
+  @Override
+  public void update(long time, int value) {
+    getStatistics().update(time, value);
+    longValues[size++] = value;
+    checkSegmentFull();
+  }
+
+  @Override
+  public void update(long time, long value) {
+    getStatistics().update(time, value);
+    longValues[size++] = value;
+    checkSegmentFull();
+  }
+
+  @Override
+  public void update(long time, float value) {
+    getStatistics().update(time, value);
+    doubleValues[size++] = value;
+    checkSegmentFull();
+  }
+
+  @Override
+  public void update(long time, double value) {
+    getStatistics().update(time, value);
+    doubleValues[size++] = value;
+    checkSegmentFull();
+  }
+
+  @Override
+  public void update(long time, Binary value) {
+    // not indexed
+  }
+
+  @Override
+  public void update(BatchData batchData) {
+    if (isSupported(dataType)) {
+      super.update(batchData);
+    }
+  }
+
+  @Override
+  public List<ValueSegment> getItems() {
+    finishSegment();
+    return segments;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0 && segments.isEmpty();
+  }
+
+  @Override
+  protected Statistics getItemStatistics(ValueSegment segment) {
+    return segment.getStatistics();
+  }
+
+  @Override
+  protected void serializeItem(ValueSegment segment, OutputStream outputStream)
+      throws IOException {
+    segment.serialize(outputStream);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.valueindex;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.sidefile.SideFileManager;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+import org.apache.iotdb.tsfile.utils.BytesUtils;
+
+/**
+ * The value index of a sealed TsFile keeps, for each chunk of a numeric series, the statistics
+ * and a histogram of the values of every SEGMENT_POINT_NUM consecutive points, see
+ * {@link ValueSegment}. A query with a value filter, e.g., the time generator of a query with a
+ * WHERE clause on values, can skip the chunks and pages that have no candidate segment instead of
+ * decoding them, even when their statistics alone cannot rule them out.
+ *
+ * The value index file starts with the bucket number of the segment histograms. Like the
+ * statistics, the index only rules out chunks and pages that are not overlapped by other data, so
+ * unsequence data is always read from the raw data. Deletions only remove points, so they never
+ * invalidate what the index rules out.
+ */
+public class ValueIndexManager extends SideFileManager<ValueSegment> {
+
+  public static final String VALUE_INDEX_SUFFIX = ".vindex";
+
+  private static final byte[] HEADER = BytesUtils.intToBytes(ValueSegment.BUCKET_NUM);
+
+  private ValueIndexManager() {
+    super("value index", VALUE_INDEX_SUFFIX,
+        IoTDBDescriptor.getInstance().getConfig().isEnableValueIndex());
+  }
+
+  public static ValueIndexManager getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  @Override
+  protected byte[] getHeader() {
+    return HEADER;
+  }
+
+  @Override
+  protected ValueIndexBuilder newBuilder(TSDataType dataType) {
+    return ValueIndexBuilder.isSupported(dataType) ? new ValueIndexBuilder(dataType) : null;
+  }
+
+  @Override
+  protected ValueSegment deserializeItem(ByteBuffer buffer, TSDataType dataType) {
+    return ValueSegment.deserialize(buffer, dataType);
+  }
+
+  /**
+   * @return the time ranges of the chunk that may have points satisfying the value filter, in
+   * ascending order, or null if the chunk has no value index
+   */
+  public List<TimeRange> getCandidateTimeRanges(TsFileResource resource, String seriesPath,
+      ChunkMetadata chunkMetadata, Filter valueFilter) {
+    if (!ValueIndexBuilder.isSupported(chunkMetadata.getDataType())) {
+      return null;
+    }
+    List<ValueSegment> segments = getChunkEntry(resource, seriesPath, chunkMetadata);
+    if (segments == null) {
+      return null;
+    }
+    List<TimeRange> candidates = Collections.emptyList();
+    boolean lastIsCandidate = false;
+    for (ValueSegment segment : segments) {
+      if (!segment.mayContain(valueFilter)) {
+        lastIsCandidate = false;
+        continue;
+      }
+      long startTime = segment.getStatistics().getStartTime();
+      long endTime = segment.getStatistics().getEndTime();
+      if (lastIsCandidate) {
+        candidates.get(candidates.size() - 1).setMax(endTime);
+      } else {
+        if (candidates.isEmpty()) {
+          candidates = new ArrayList<>();
+        }
+        candidates.add(new TimeRange(startTime, endTime));
+      }
+      lastIsCandidate = true;
+    }
+    return candidates;
+  }
+
+  private static class InstanceHolder {
+
+    private static final ValueIndexManager INSTANCE = new ValueIndexManager();
+
+    private InstanceHolder() {
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.valueindex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * The zone map of a run of consecutive points of a chunk: their statistics and a histogram of
+ * their values. The range [min, max] of the segment is split into BUCKET_NUM buckets of the same
+ * width, and bit i of the bitmap is set if some value falls into bucket i. A value filter may be
+ * satisfied by the segment only if it may be satisfied by the range of some non-empty bucket.
+ */
+public class ValueSegment {
+
+  static final int BUCKET_NUM = Long.SIZE;
+  private static final long ALL_BUCKETS = -1L;
+
+  private final Statistics statistics;
+  private final long bitmap;
+
+  private ValueSegment(Statistics statistics, long bitmap) {
+    this.statistics = statistics;
+    this.bitmap = bitmap;
+  }
+
+  static ValueSegment of(Statistics statistics, long[] values, int length) {
+    long min = ((Number) statistics.getMinValue()).longValue();
+    long range = ((Number) statistics.getMaxValue()).longValue() - min;
+    if (range < 0) {
+      // the range overflows, do not refine the statistics
+      return new ValueSegment(statistics, ALL_BUCKETS);
+    }
+    long bitmap = 0;
+    for (int i = 0; i < length; i++) {
+      bitmap |= 1L << bucketOf((double) (values[i] - min), range);
+    }
+    return new ValueSegment(statistics, bitmap);
+  }
+
+  static ValueSegment of(Statistics statistics, double[] values, int length) {
+    double min = ((Number) statistics.getMinValue()).doubleValue();
+    double range = ((Number) statistics.getMaxValue()).doubleValue() - min;
+    if (Double.isNaN(range) || Double.isInfinite(range)) {
+      return new ValueSegment(statistics, ALL_BUCKETS);
+    }
+    long bitmap = 0;
+    for (int i = 0; i < length; i++) {
+      bitmap |= 1L << bucketOf(values[i] - min, range);
+    }
+    return new ValueSegment(statistics, bitmap);
+  }
+
+  private static int bucketOf(double offset, double range) {
+    if (range == 0 || !(offset > 0)) {
+      return 0;
+    }
+    return (int) Math.min(BUCKET_NUM - 1, offset * BUCKET_NUM / range);
+  }
+
+  public Statistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * @return false if no point of the segment satisfies the filter
+   */
+  public boolean mayContain(Filter filter) {
+    if (!filter.satisfy(statistics)) {
+      return false;
+    }
+    if (bitmap == ALL_BUCKETS) {
+      return true;
+    }
+    int bucket = 0;
+    while (bucket < BUCKET_NUM) {
+      if ((bitmap & (1L << bucket)) == 0) {
+        bucket++;
+        continue;
+      }
+      int lastBucket = bucket;
+      while (lastBucket + 1 < BUCKET_NUM && (bitmap & (1L << (lastBucket + 1))) != 0) {
+        lastBucket++;
+      }
+      if (filter.satisfy(getRangeStatistics(bucket, lastBucket))) {
+        return true;
+      }
+      bucket = lastBucket + 1;
+    }
+    return false;
+  }
+
+  /**
+   * @return statistics covering the values of the buckets [firstBucket, lastBucket], widened by
+   * one bucket on each side to absorb the rounding of the bucket computation
+   */
+  private Statistics getRangeStatistics(int firstBucket, int lastBucket) {
+    double lowerRatio = (double) Math.max(0, firstBucket - 1) / BUCKET_NUM;
+    double upperRatio = (double) Math.min(BUCKET_NUM, lastBucket + 2) / BUCKET_NUM;
+    Statistics rangeStatistics = Statistics.getStatsByType(statistics.getType());
+    long startTime = statistics.getStartTime();
+    long endTime = statistics.getEndTime();
+    switch (statistics.getType()) {
+      case INT32:
+      case INT64:
+        long longMin = ((Number) statistics.getMinValue()).longValue();
+        long longRange = ((Number) statistics.getMaxValue()).longValue() - longMin;
+        long lower = longMin + Math.min(longRange, (long) Math.floor(longRange * lowerRatio));
+        long upper = longMin + Math.min(longRange, (long) Math.ceil(longRange * upperRatio));
+        if (statistics.getType() == TSDataType.INT32) {
+          rangeStatistics.update(startTime, (int) lower);
+          rangeStatistics.update(endTime, (int) upper);
+        } else {
+          rangeStatistics.update(startTime, lower);
+          rangeStatistics.update(endTime, upper);
+        }
+        break;
+      case FLOAT:
+        float floatMin = (float) statistics.getMinValue();
+        float floatMax = (float) statistics.getMaxValue();
+        double floatRange = (double) floatMax - floatMin;
+        rangeStatistics.update(startTime,
+            Math.max(floatMin, Math.nextDown((float) (floatMin + floatRange * lowerRatio))));
+        rangeStatistics.update(endTime,
+            Math.min(floatMax, Math.nextUp((float) (floatMin + floatRange * upperRatio))));
+        break;
+      case DOUBLE:
+        double doubleMin = (double) statistics.getMinValue();
+        double doubleMax = (double) statistics.getMaxValue();
+        double doubleRange = doubleMax - doubleMin;
+        rangeStatistics.update(startTime,
+            Math.max(doubleMin, Math.nextDown(doubleMin + doubleRange * lowerRatio)));
+        rangeStatistics.update(endTime,
+            Math.min(doubleMax, Math.nextUp(doubleMin + doubleRange * upperRatio)));
+        break;
+      default:
+        throw new UnsupportedOperationException(
+            "Unsupported data type: " + statistics.getType());
+    }
+    return rangeStatistics;
+  }
+
+  void serialize(OutputStream outputStream) throws IOException {
+    statistics.serialize(outputStream);
+    ReadWriteIOUtils.write(bitmap, outputStream);
+  }
+
+  static ValueSegment deserialize(ByteBuffer buffer, TSDataType dataType) {
+    Statistics statistics = Statistics.deserialize(buffer, dataType);
+    return new ValueSegment(statistics, ReadWriteIOUtils.readLong(buffer));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * Reader of the binary metadata log written by {@link MLogWriter}. Each record is decoded into the
+ * arguments of the text format accepted by {@link MManager#operation(String[])}:
+ *
+ * <ul>
+ * <li>CREATE_TIMESERIES: [path string][data type byte][encoding byte][compressor byte][props
+ * size int, -1 for null][key string][value string]* [has alias bool][alias string][offset
+ * long]</li>
+ * <li>DELETE_TIMESERIES, SET_STORAGE_GROUP, DELETE_STORAGE_GROUP: [path string]</li>
+ * <li>SET_TTL, CHANGE_OFFSET: [path string][value long]</li>
+ * <li>CHANGE_ALIAS: [path string][alias string]</li>
+ * </ul>
+ *
+ * A record partially written before crashing ends the log.
+ */
+public class MLogReader implements AutoCloseable {
+
+  private DataInputStream inputStream;
+  private String[] next;
+
+  public MLogReader(File logFile) throws IOException {
+    inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+  }
+
+  public boolean hasNext() throws IOException {
+    if (next != null) {
+      return true;
+    }
+    ByteBuffer record = readRecord(inputStream);
+    if (record == null) {
+      return false;
+    }
+    next = deserialize(record);
+    return true;
+  }
+
+  /**
+   * @return the arguments of the next operation, the first one is the operation type
+   */
+  public String[] next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    String[] ret = next;
+    next = null;
+    return ret;
+  }
+
+  @Override
+  public void close() throws IOException {
+    inputStream.close();
+  }
+
+  /**
+   * @return the length of the complete records at the head of the log
+   */
+  static long getValidLength(File logFile) throws IOException {
+    long validLength = 0;
+    if (!logFile.exists()) {
+      return validLength;
+    }
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(logFile)))) {
+      long fileLength = logFile.length();
+      while (validLength + Integer.BYTES <= fileLength) {
+        int recordLength = input.readInt();
+        if (recordLength <= 0 || validLength + Integer.BYTES + recordLength > fileLength) {
+          break;
+        }
+        input.skipBytes(recordLength);
+        validLength += Integer.BYTES + recordLength;
+      }
+    }
+    return validLength;
+  }
+
+  private static ByteBuffer readRecord(DataInputStream input) throws IOException {
+    try {
+      int recordLength = input.readInt();
+      if (recordLength <= 0) {
+        return null;
+      }
+      byte[] bytes = new byte[recordLength];
+      input.readFully(bytes);
+      return ByteBuffer.wrap(bytes);
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private static String[] deserialize(ByteBuffer record) throws IOException {
+    String operationType = String.valueOf(record.get());
+    switch (operationType) {
+      case MetadataOperationType.CREATE_TIMESERIES:
+        String path = ReadWriteIOUtils.readString(record);
+        String dataType = String.valueOf(record.get());
+        String encoding = String.valueOf(record.get());
+        String compressor = String.valueOf(record.get());
+        StringBuilder props = new StringBuilder();
+        int propsSize = record.getInt();
+        for (int i = 0; i < propsSize; i++) {
+          if (i > 0) {
+            props.append('&');
+          }
+          props.append(ReadWriteIOUtils.readString(record)).append('=')
+              .append(ReadWriteIOUtils.readString(record));
+        }
+        String alias = ReadWriteIOUtils.readBool(record) ? ReadWriteIOUtils.readString(record) : "";
+        long offset = record.getLong();
+        return new String[]{operationType, path, dataType, encoding, compressor, props.toString(),
+            alias, offset >= 0 ? String.valueOf(offset) : ""};
+      case MetadataOperationType.DELETE_TIMESERIES:
+      case MetadataOperationType.SET_STORAGE_GROUP:
+      case MetadataOperationType.DELETE_STORAGE_GROUP:
+        return new String[]{operationType, ReadWriteIOUtils.readString(record)};
+      case MetadataOperationType.SET_TTL:
+      case MetadataOperationType.CHANGE_OFFSET:
+        return new String[]{operationType, ReadWriteIOUtils.readString(record),
+            String.valueOf(record.getLong())};
+      case MetadataOperationType.CHANGE_ALIAS:
+        return new String[]{operationType, ReadWriteIOUtils.readString(record),
+            ReadWriteIOUtils.readString(record)};
+      default:
+        throw new IOException("Unrecognizable operation type " + operationType);
+    }
+  }
+}
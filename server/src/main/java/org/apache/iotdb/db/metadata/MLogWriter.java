@@ -21,22 +21,62 @@ package org.apache.iotdb.db.metadata;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
 import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
 import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.utils.PublicBAOS;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writer of the binary metadata log. Each operation is a record of [record length int][operation
+ * type byte][fields], see {@link MLogReader} for the fields of each type.
+ *
+ * <p>Records are appended to an in-memory buffer and written to the file by group commit: a writer
+ * returns only after its records are written, but the records appended by concurrent writers
+ * while a write is in progress are written together by the next one. Several timeseries can also
+ * be appended at once by {@link #appendCreateTimeseries} and written by a single {@link
+ * #commit()}.
+ */
 public class MLogWriter {
 
+  /**
+   * suffix of the log moved aside by {@link #roll()}
+   */
+  static final String ROLLED_LOG_SUFFIX = ".old";
+
   private static final Logger logger = LoggerFactory.getLogger(MLogWriter.class);
   private File logFile;
-  private BufferedWriter writer;
+  private File rolledLogFile;
+  private FileOutputStream fileOutputStream;
+  private FileChannel channel;
+
+  /**
+   * records appended but not written yet, guarded by this
+   */
+  private PublicBAOS buffer = new PublicBAOS();
+  private PublicBAOS record = new PublicBAOS();
+  private long appendedRecordNum;
+  private volatile long committedRecordNum;
+  private final Object commitLock = new Object();
+  /**
+   * set when writing the records fails, guarded by commitLock. The records taken by the failed
+   * write are lost and the file may end with a torn record, so no later commit can succeed.
+   */
+  private IOException commitFailure;
   private int lineNumber;
 
   public MLogWriter(String schemaDir, String logFileName) throws IOException {
@@ -50,72 +90,178 @@ public class MLogWriter {
     }
 
     logFile = SystemFileFactory.INSTANCE.getFile(schemaDir + File.separator + logFileName);
-    FileWriter fileWriter = new FileWriter(logFile, true);
-    writer = new BufferedWriter(fileWriter);
+    rolledLogFile = SystemFileFactory.INSTANCE.getFile(logFile.getPath() + ROLLED_LOG_SUFFIX);
+    open();
   }
 
-  public void close() throws IOException {
-    writer.close();
+  private void open() throws IOException {
+    fileOutputStream = new FileOutputStream(logFile, true);
+    channel = fileOutputStream.getChannel();
+    // a record partially written before crashing is dropped, or later records would be unreadable
+    long validLength = MLogReader.getValidLength(logFile);
+    if (validLength < channel.size()) {
+      logger.warn("{} is truncated from {} to {} bytes", logFile, channel.size(), validLength);
+      channel.truncate(validLength);
+    }
   }
 
-  public void createTimeseries(CreateTimeSeriesPlan plan, long offset) throws IOException {
-    writer.write(String.format("%s,%s,%s,%s,%s", MetadataOperationType.CREATE_TIMESERIES,
-        plan.getPath().getFullPath(), plan.getDataType().serialize(),
-        plan.getEncoding().serialize(), plan.getCompressor().serialize()));
-
-    writer.write(",");
-    if (plan.getProps() != null) {
-      boolean first = true;
-      for (Map.Entry<String, String> entry : plan.getProps().entrySet()) {
-        if (first) {
-          writer.write(String.format("%s=%s", entry.getKey(), entry.getValue()));
-          first = false;
-        } else {
-          writer.write(String.format("&%s=%s", entry.getKey(), entry.getValue()));
-        }
-      }
+  public void close() throws IOException {
+    try {
+      commit();
+    } finally {
+      fileOutputStream.close();
     }
+  }
 
-    writer.write(",");
-    if (plan.getAlias() != null) {
-      writer.write(plan.getAlias());
-    }
+  public void createTimeseries(CreateTimeSeriesPlan plan, long offset) throws IOException {
+    commit(appendCreateTimeseries(plan, offset));
+  }
 
-    writer.write(",");
-    if (offset >= 0) {
-      writer.write(String.valueOf(offset));
-    }
-    newLine();
+  /**
+   * Append a record without writing it, {@link #commit()} must be called later.
+   *
+   * @return the sequence number of the record
+   */
+  public synchronized long appendCreateTimeseries(CreateTimeSeriesPlan plan, long offset)
+      throws IOException {
+    startRecord(MetadataOperationType.CREATE_TIMESERIES);
+    ReadWriteIOUtils.write(plan.getPath().getFullPath(), record);
+    ReadWriteIOUtils.write((byte) plan.getDataType().serialize(), record);
+    ReadWriteIOUtils.write((byte) plan.getEncoding().serialize(), record);
+    ReadWriteIOUtils.write((byte) plan.getCompressor().serialize(), record);
+    writeProps(plan.getProps(), record);
+    writeNullableString(plan.getAlias(), record);
+    ReadWriteIOUtils.write(offset, record);
+    return endRecord();
   }
 
   public void deleteTimeseries(String path) throws IOException {
-    writer.write(MetadataOperationType.DELETE_TIMESERIES + "," + path);
-    newLine();
+    commit(append(MetadataOperationType.DELETE_TIMESERIES, path));
   }
 
   public void setStorageGroup(String storageGroup) throws IOException {
-    writer.write(MetadataOperationType.SET_STORAGE_GROUP + "," + storageGroup);
-    newLine();
+    commit(append(MetadataOperationType.SET_STORAGE_GROUP, storageGroup));
   }
 
   public void deleteStorageGroup(String storageGroup) throws IOException {
-    writer.write(MetadataOperationType.DELETE_STORAGE_GROUP + "," + storageGroup);
-    newLine();
+    commit(append(MetadataOperationType.DELETE_STORAGE_GROUP, storageGroup));
   }
 
   public void setTTL(String storageGroup, long ttl) throws IOException {
-    writer.write(String.format("%s,%s,%s", MetadataOperationType.SET_TTL, storageGroup, ttl));
-    newLine();
+    commit(append(MetadataOperationType.SET_TTL, storageGroup, ttl));
   }
 
   public void changeOffset(String path, long offset) throws IOException {
-    writer.write(String.format("%s,%s,%s", MetadataOperationType.CHANGE_OFFSET, path, offset));
-    newLine();
+    commit(append(MetadataOperationType.CHANGE_OFFSET, path, offset));
   }
 
   public void changeAlias(String path, String alias) throws IOException {
-    writer.write(String.format("%s,%s,%s", MetadataOperationType.CHANGE_ALIAS, path, alias));
-    newLine();
+    commit(append(MetadataOperationType.CHANGE_ALIAS, path, alias));
+  }
+
+  private synchronized long append(String operationType, String path) throws IOException {
+    startRecord(operationType);
+    ReadWriteIOUtils.write(path, record);
+    return endRecord();
+  }
+
+  private synchronized long append(String operationType, String path, long value)
+      throws IOException {
+    startRecord(operationType);
+    ReadWriteIOUtils.write(path, record);
+    ReadWriteIOUtils.write(value, record);
+    return endRecord();
+  }
+
+  private synchronized long append(String operationType, String path, String value)
+      throws IOException {
+    startRecord(operationType);
+    ReadWriteIOUtils.write(path, record);
+    ReadWriteIOUtils.write(value, record);
+    return endRecord();
+  }
+
+  private void startRecord(String operationType) throws IOException {
+    record.reset();
+    ReadWriteIOUtils.write(Byte.parseByte(operationType), record);
+  }
+
+  private long endRecord() throws IOException {
+    ReadWriteIOUtils.write(record.size(), buffer);
+    buffer.write(record.getBuf(), 0, record.size());
+    lineNumber++;
+    return ++appendedRecordNum;
+  }
+
+  /**
+   * Write all appended records.
+   */
+  public void commit() throws IOException {
+    long recordNum;
+    synchronized (this) {
+      recordNum = appendedRecordNum;
+    }
+    commit(recordNum);
+  }
+
+  /**
+   * Return once the records up to the given sequence number are written. The records appended so
+   * far by all writers are written together.
+   */
+  private void commit(long recordNum) throws IOException {
+    if (committedRecordNum >= recordNum) {
+      return;
+    }
+    synchronized (commitLock) {
+      // committed by another writer while waiting for the lock
+      if (committedRecordNum >= recordNum) {
+        return;
+      }
+      // the records of this writer may have been taken by the failed write
+      if (commitFailure != null) {
+        throw new IOException("Cannot write " + logFile + " since an earlier write failed",
+            commitFailure);
+      }
+      PublicBAOS toWrite;
+      long lastRecordNum;
+      synchronized (this) {
+        toWrite = buffer;
+        buffer = new PublicBAOS();
+        lastRecordNum = appendedRecordNum;
+      }
+      ByteBuffer byteBuffer = ByteBuffer.wrap(toWrite.getBuf(), 0, toWrite.size());
+      try {
+        while (byteBuffer.hasRemaining()) {
+          channel.write(byteBuffer);
+        }
+      } catch (IOException e) {
+        logger.error("Cannot write {}, no more metadata can be logged", logFile, e);
+        commitFailure = e;
+        throw e;
+      }
+      committedRecordNum = lastRecordNum;
+    }
+  }
+
+  private static void writeProps(Map<String, String> props, OutputStream outputStream)
+      throws IOException {
+    if (props == null) {
+      ReadWriteIOUtils.write(-1, outputStream);
+      return;
+    }
+    ReadWriteIOUtils.write(props.size(), outputStream);
+    for (Map.Entry<String, String> entry : props.entrySet()) {
+      ReadWriteIOUtils.write(entry.getKey(), outputStream);
+      ReadWriteIOUtils.write(entry.getValue(), outputStream);
+    }
+  }
+
+  private static void writeNullableString(String s, OutputStream outputStream)
+      throws IOException {
+    ReadWriteIOUtils.write(s != null, outputStream);
+    if (s != null) {
+      ReadWriteIOUtils.write(s, outputStream);
+    }
   }
 
   public static void upgradeMLog(String schemaDir, String logFileName) throws IOException {
@@ -154,18 +300,125 @@ public class MLogWriter {
     }
   }
 
-  public void clear() throws IOException {
-    writer.close();
-    Files.delete(logFile.toPath());
-    FileWriter fileWriter = new FileWriter(logFile, true);
-    writer = new BufferedWriter(fileWriter);
-    lineNumber = 0;
+  /**
+   * Convert the text mlog of earlier versions into the binary one. The binary log is written to a
+   * temporary file first, so the conversion is redone if it is interrupted.
+   */
+  public static void upgradeTxtToBin(String schemaDir, String txtLogFileName,
+      String binLogFileName) throws IOException {
+    File txtLogFile =
+        SystemFileFactory.INSTANCE.getFile(schemaDir + File.separator + txtLogFileName);
+    File binLogFile =
+        SystemFileFactory.INSTANCE.getFile(schemaDir + File.separator + binLogFileName);
+    File tmpLogFile = SystemFileFactory.INSTANCE.getFile(binLogFile.getAbsolutePath() + ".tmp");
+    if (!txtLogFile.exists()) {
+      return;
+    }
+    if (binLogFile.exists() && !tmpLogFile.exists()) {
+      // converted but the text log is not deleted yet
+      Files.delete(txtLogFile.toPath());
+      return;
+    }
+
+    try (BufferedReader reader = new BufferedReader(new FileReader(txtLogFile));
+        FileOutputStream outputStream = new FileOutputStream(tmpLogFile)) {
+      PublicBAOS recordBuffer = new PublicBAOS();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        recordBuffer.reset();
+        boolean recognized;
+        try {
+          recognized = serialize(line.trim().split(",", -1), recordBuffer);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+          // a malformed line, e.g., torn by a crash, must not stop the server from starting
+          recognized = false;
+        }
+        if (!recognized) {
+          logger.error("Unrecognizable command {} in {}", line, txtLogFile);
+          continue;
+        }
+        ReadWriteIOUtils.write(recordBuffer.size(), outputStream);
+        outputStream.write(recordBuffer.getBuf(), 0, recordBuffer.size());
+      }
+      outputStream.getFD().sync();
+    }
+    Files.move(tmpLogFile.toPath(), binLogFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Files.delete(txtLogFile.toPath());
+    logger.info("{} is converted into {}", txtLogFile, binLogFile);
+  }
+
+  /**
+   * Serialize an operation in the text format, see {@link MManager#operation(String)}, as a record.
+   *
+   * @return false if the operation type is unknown
+   * @throws NumberFormatException if a number of the operation is malformed
+   * @throws ArrayIndexOutOfBoundsException if the operation misses arguments
+   */
+  static boolean serialize(String[] args, OutputStream outputStream) throws IOException {
+    ReadWriteIOUtils.write(Byte.parseByte(args[0]), outputStream);
+    switch (args[0]) {
+      case MetadataOperationType.CREATE_TIMESERIES:
+        ReadWriteIOUtils.write(args[1], outputStream);
+        ReadWriteIOUtils.write(Byte.parseByte(args[2]), outputStream);
+        ReadWriteIOUtils.write(Byte.parseByte(args[3]), outputStream);
+        ReadWriteIOUtils.write(Byte.parseByte(args[4]), outputStream);
+        Map<String, String> props = null;
+        if (!args[5].isEmpty()) {
+          props = new HashMap<>();
+          for (String keyValue : args[5].split("&")) {
+            String[] kv = keyValue.split("=");
+            props.put(kv[0], kv[1]);
+          }
+        }
+        writeProps(props, outputStream);
+        writeNullableString(args[6].isEmpty() ? null : args[6], outputStream);
+        ReadWriteIOUtils.write(args[7].isEmpty() ? -1L : Long.parseLong(args[7]), outputStream);
+        return true;
+      case MetadataOperationType.DELETE_TIMESERIES:
+      case MetadataOperationType.SET_STORAGE_GROUP:
+      case MetadataOperationType.DELETE_STORAGE_GROUP:
+        ReadWriteIOUtils.write(args[1], outputStream);
+        return true;
+      case MetadataOperationType.SET_TTL:
+      case MetadataOperationType.CHANGE_OFFSET:
+        ReadWriteIOUtils.write(args[1], outputStream);
+        ReadWriteIOUtils.write(Long.parseLong(args[2]), outputStream);
+        return true;
+      case MetadataOperationType.CHANGE_ALIAS:
+        ReadWriteIOUtils.write(args[1], outputStream);
+        ReadWriteIOUtils.write(args[2], outputStream);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Move the current log aside and continue with an empty one, so that a snapshot can be taken
+   * while the MTree is being modified. The rolled log is kept until the snapshot succeeds by
+   * {@link #removeRolledLog()}; if the previous snapshot failed, the current log is appended to the
+   * rolled log left by it.
+   */
+  public void roll() throws IOException {
+    synchronized (commitLock) {
+      synchronized (this) {
+        commit();
+        fileOutputStream.close();
+        if (!rolledLogFile.exists()) {
+          Files.move(logFile.toPath(), rolledLogFile.toPath());
+        } else {
+          Files.write(rolledLogFile.toPath(), Files.readAllBytes(logFile.toPath()),
+              StandardOpenOption.APPEND);
+          Files.delete(logFile.toPath());
+        }
+        open();
+        lineNumber = 0;
+      }
+    }
   }
 
-  private void newLine() throws IOException {
-    writer.newLine();
-    writer.flush();
-    ++lineNumber;
+  public void removeRolledLog() throws IOException {
+    Files.deleteIfExists(rolledLogFile.toPath());
   }
 
   int getLineNumber() {
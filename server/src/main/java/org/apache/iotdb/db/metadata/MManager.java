@@ -20,13 +20,13 @@ package org.apache.iotdb.db.metadata;
 
 import static java.util.stream.Collectors.toList;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -38,9 +38,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
@@ -56,7 +59,9 @@ import org.apache.iotdb.db.exception.metadata.PathAlreadyExistException;
 import org.apache.iotdb.db.exception.metadata.PathNotExistException;
 import org.apache.iotdb.db.exception.metadata.StorageGroupAlreadySetException;
 import org.apache.iotdb.db.exception.metadata.StorageGroupNotSetException;
+import org.apache.iotdb.db.metadata.mnode.LastCacheTable;
 import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MNodeStore;
 import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
 import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
 import org.apache.iotdb.db.monitor.MonitorConstants;
@@ -105,12 +110,28 @@ public class MManager {
   private String logFilePath;
   private String mtreeSnapshotPath;
   private String mtreeSnapshotTmpPath;
+  private String mtreeDeltaSnapshotPath;
+  private String mtreeDeltaSnapshotTmpPath;
+  // generation of the current full snapshot, the delta snapshot is only valid for it
+  private long snapshotGeneration;
+  // storage groups modified since the last full snapshot, full path
+  private volatile Set<String> modifiedStorageGroups = ConcurrentHashMap.newKeySet();
+  private final Object snapshotLock = new Object();
   private MTree mtree;
+  // pages the measurements of devices out of memory if the MTree disk store is enabled
+  private MNodeStore nodeStore;
   private MLogWriter logWriter;
   private TagLogFile tagLogFile;
   private boolean isRecovering;
   // device -> DeviceMNode
   private RandomDeleteCache<PartialPath, MNode> mNodeCache;
+  // device -> the measurements resolved by the last insertion into it
+  private Map<PartialPath, DeviceSchema> deviceSchemaCache = new ConcurrentHashMap<>();
+  // the devices put into deviceSchemaCache, a device cached when it is full replaces the one in a
+  // random slot. Guarded by itself, a device removed from the cache may still hold its slot.
+  private final List<PartialPath> deviceSchemaCacheSlots = new ArrayList<>();
+  // increased when timeseries are deleted or renamed, so that resolved measurements are stale
+  private final AtomicLong schemaVersion = new AtomicLong();
   // tag key -> tag value -> LeafMNode
   private Map<String, Map<String, Set<MeasurementMNode>>> tagIndex = new HashMap<>();
   // storage group name -> the series number
@@ -136,6 +157,9 @@ public class MManager {
     logFilePath = schemaDir + File.separator + MetadataConstant.METADATA_LOG;
     mtreeSnapshotPath = schemaDir + File.separator + MetadataConstant.MTREE_SNAPSHOT;
     mtreeSnapshotTmpPath = schemaDir + File.separator + MetadataConstant.MTREE_SNAPSHOT_TMP;
+    mtreeDeltaSnapshotPath = schemaDir + File.separator + MetadataConstant.MTREE_DELTA_SNAPSHOT;
+    mtreeDeltaSnapshotTmpPath =
+        schemaDir + File.separator + MetadataConstant.MTREE_DELTA_SNAPSHOT_TMP;
 
     // do not write log when recover
     isRecovering = true;
@@ -177,6 +201,11 @@ public class MManager {
 
     try {
       tagLogFile = new TagLogFile(config.getSchemaDir(), MetadataConstant.TAG_LOG);
+      if (config.isEnableMTreeDiskStore()) {
+        nodeStore = new MNodeStore(SystemFileFactory.INSTANCE.getFile(
+            config.getSchemaDir() + File.separator + MetadataConstant.MTREE_STORE),
+            config.getMtreeMaxResidentDevices(), this::invalidateDeviceSchema);
+      }
 
       isRecovering = true;
       int lineNumber = initFromLog(logFile);
@@ -196,6 +225,9 @@ public class MManager {
       isRecovering = false;
     } catch (IOException | MetadataException e) {
       mtree = new MTree();
+      if (nodeStore != null) {
+        mtree.setNodeStore(nodeStore);
+      }
       logger.error("Cannot read MTree from file, using an empty new one", e);
     }
     initialized = true;
@@ -206,48 +238,134 @@ public class MManager {
    */
   @SuppressWarnings("squid:S3776")
   private int initFromLog(File logFile) throws IOException {
-    File tmpFile = SystemFileFactory.INSTANCE.getFile(mtreeSnapshotTmpPath);
-    if (tmpFile.exists()) {
-      logger.warn("Creating MTree snapshot not successful before crashing...");
-      Files.delete(tmpFile.toPath());
+    for (String tmpPath : new String[]{mtreeSnapshotTmpPath, mtreeDeltaSnapshotTmpPath}) {
+      File tmpFile = SystemFileFactory.INSTANCE.getFile(tmpPath);
+      if (tmpFile.exists()) {
+        logger.warn("Creating MTree snapshot not successful before crashing...");
+        Files.delete(tmpFile.toPath());
+      }
     }
 
     File mtreeSnapshot = SystemFileFactory.INSTANCE.getFile(mtreeSnapshotPath);
+    File legacySnapshot = SystemFileFactory.INSTANCE
+        .getFile(config.getSchemaDir() + File.separator + MetadataConstant.MTREE_LEGACY_SNAPSHOT);
     long time = System.currentTimeMillis();
-    if (!mtreeSnapshot.exists()) {
-      mtree = new MTree();
-    } else {
-      mtree = MTree.deserializeFrom(mtreeSnapshot);
+    if (mtreeSnapshot.exists()) {
+      // the store pages out the storage groups loaded while the others are still being loaded
+      mtree = MTreeSnapshot.deserializeFrom(mtreeSnapshot,
+          SystemFileFactory.INSTANCE.getFile(mtreeDeltaSnapshotPath),
+          Runtime.getRuntime().availableProcessors(), nodeStore);
+      snapshotGeneration = MTreeSnapshot.readGeneration(mtreeSnapshot);
       logger.debug("spend {} ms to deserialize mtree from snapshot",
           System.currentTimeMillis() - time);
+    } else if (legacySnapshot.exists()) {
+      // the legacy snapshot is loaded as a whole before the store is attached
+      mtree = MTree.deserializeFrom(legacySnapshot);
+      if (nodeStore != null) {
+        mtree.setNodeStore(nodeStore);
+      }
+      logger.debug("spend {} ms to deserialize mtree from legacy snapshot",
+          System.currentTimeMillis() - time);
+    } else {
+      mtree = new MTree();
+      if (nodeStore != null) {
+        mtree.setNodeStore(nodeStore);
+      }
+    }
+    if (mtreeSnapshot.exists() || legacySnapshot.exists()) {
+      initTagIndexFromSnapshot();
     }
 
     time = System.currentTimeMillis();
-    // init the metadata from the operation log
-    if (logFile.exists()) {
-      int idx = 0;
-      try (FileReader fr = new FileReader(logFile);
-          BufferedReader br = new BufferedReader(fr)) {
-        String cmd;
-        while ((cmd = br.readLine()) != null) {
-          try {
-            operation(cmd);
-            idx++;
-          } catch (Exception e) {
-            logger.error("Can not operate cmd {}", cmd, e);
-          }
-        }
-      }
-      logger.debug("spend {} ms to deserialize mtree from mlog.txt",
+    // init the metadata from the operation log, the log rolled by an unfinished snapshot first
+    File rolledLogFile = SystemFileFactory.INSTANCE
+        .getFile(logFilePath + MLogWriter.ROLLED_LOG_SUFFIX);
+    if (logFile.exists() || rolledLogFile.exists()) {
+      int idx = replayLog(rolledLogFile) + replayLog(logFile);
+      logger.debug("spend {} ms to deserialize mtree from mlog",
           System.currentTimeMillis() - time);
       return idx;
-    } else if (mtreeSnapshot.exists()) {
-      throw new IOException("mtree snapshot file exists but mlog.txt does not exist.");
+    } else if (mtreeSnapshot.exists() || legacySnapshot.exists()) {
+      throw new IOException("mtree snapshot file exists but mlog does not exist.");
     } else {
       return 0;
     }
   }
 
+  /**
+   * @return line number of the log
+   */
+  private int replayLog(File logFile) throws IOException {
+    if (!logFile.exists()) {
+      return 0;
+    }
+    int idx = 0;
+    try (MLogReader mLogReader = new MLogReader(logFile)) {
+      while (mLogReader.hasNext()) {
+        String[] args = mLogReader.next();
+        try {
+          operation(args);
+          idx++;
+        } catch (Exception e) {
+          logger.error("Can not operate cmd {}", String.join(",", args), e);
+        }
+      }
+    }
+    return idx;
+  }
+
+  /**
+   * Apply the offset of the tags in a replayed creation to the timeseries that already exists, so
+   * that replaying the creation of a timeseries in the snapshot is idempotent.
+   */
+  private void recoverTimeseriesOffset(PartialPath path, long offset, Map<String, String> tagMap)
+      throws MetadataException, IOException {
+    MNode node = mtree.getNodeByPath(path);
+    if (!(node instanceof MeasurementMNode) || offset < 0
+        || ((MeasurementMNode) node).getOffset() == offset) {
+      return;
+    }
+    MeasurementMNode leafMNode = (MeasurementMNode) node;
+    removeFromTagInvertedIndex(leafMNode);
+    leafMNode.setOffset(offset);
+    markStorageGroupModified(path);
+    if (tagMap != null) {
+      for (Entry<String, String> entry : tagMap.entrySet()) {
+        tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+            .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+      }
+    }
+  }
+
+  /**
+   * The tags are not kept in the snapshot, read them from the tag file for the timeseries loaded
+   * from it.
+   */
+  private void initTagIndexFromSnapshot() throws IOException {
+    for (StorageGroupMNode storageGroupMNode : mtree.getAllStorageGroupNodes()) {
+      Deque<MNode> nodeStack = new ArrayDeque<>();
+      nodeStack.push(storageGroupMNode);
+      while (!nodeStack.isEmpty()) {
+        MNode node = nodeStack.pop();
+        if (node instanceof MeasurementMNode && ((MeasurementMNode) node).getOffset() >= 0) {
+          MeasurementMNode leafMNode = (MeasurementMNode) node;
+          Map<String, String> tagMap =
+              tagLogFile.readTag(config.getTagAttributeTotalSize(), leafMNode.getOffset());
+          if (tagMap != null) {
+            for (Entry<String, String> entry : tagMap.entrySet()) {
+              tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                  .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+            }
+          }
+        }
+        // paged out measurements have no tags
+        if (!node.isPagedOut()) {
+          nodeStack.addAll(node.getChildren().values());
+        }
+      }
+    }
+  }
+
   /**
    * function for clearing MTree
    */
@@ -255,9 +373,13 @@ public class MManager {
     try {
       this.mtree = new MTree();
       this.mNodeCache.clear();
+      clearDeviceSchemaCache();
+      LastCacheTable.getInstance().clear();
       this.tagIndex.clear();
       this.seriesNumberInStorageGroups.clear();
       this.maxSeriesNumberAmongStorageGroup = 0;
+      this.modifiedStorageGroups.clear();
+      this.snapshotGeneration = 0;
       if (logWriter != null) {
         logWriter.close();
         logWriter = null;
@@ -266,6 +388,10 @@ public class MManager {
         tagLogFile.close();
         tagLogFile = null;
       }
+      if (nodeStore != null) {
+        nodeStore.close();
+        nodeStore = null;
+      }
       initialized = false;
       if (timedCreateMTreeSnapshotThread != null) {
         timedCreateMTreeSnapshotThread.shutdownNow();
@@ -278,7 +404,14 @@ public class MManager {
 
   public void operation(String cmd) throws IOException, MetadataException {
     // see createTimeseries() to get the detailed format of the cmd
-    String[] args = cmd.trim().split(",", -1);
+    operation(cmd.trim().split(",", -1));
+  }
+
+  /**
+   * @param args the arguments of a metadata operation in the text format, the first one is the
+   *             operation type, see {@link MLogReader}
+   */
+  public void operation(String[] args) throws IOException, MetadataException {
     switch (args[0]) {
       case MetadataOperationType.CREATE_TIMESERIES:
         Map<String, String> props = null;
@@ -308,7 +441,16 @@ public class MManager {
             TSEncoding.deserialize(Short.parseShort(args[3])),
             CompressionType.deserialize(Short.parseShort(args[4])), props, tagMap, null, alias);
 
-        createTimeseries(plan, offset);
+        try {
+          createTimeseries(plan, offset);
+        } catch (PathAlreadyExistException e) {
+          if (!isRecovering) {
+            throw e;
+          }
+          // a snapshot taken while the timeseries was being created contains it, but maybe
+          // without the offset of its tags, which is set only before the creation is logged
+          recoverTimeseriesOffset(plan.getPath(), offset, tagMap);
+        }
         break;
       case MetadataOperationType.DELETE_TIMESERIES:
         String failedTimeseries = deleteTimeseries(new PartialPath(args[1]));
@@ -321,7 +463,7 @@ public class MManager {
         break;
       case MetadataOperationType.DELETE_STORAGE_GROUP:
         List<PartialPath> storageGroups = new ArrayList<>();
-        for (int i = 1; i <= args.length; i++) {
+        for (int i = 1; i < args.length; i++) {
           storageGroups.add(new PartialPath(args[i]));
         }
         deleteStorageGroups(storageGroups);
@@ -336,7 +478,7 @@ public class MManager {
         changeAlias(new PartialPath(args[1]), args[2]);
         break;
       default:
-        logger.error("Unrecognizable command {}", cmd);
+        logger.error("Unrecognizable command {}", String.join(",", args));
     }
   }
 
@@ -346,6 +488,17 @@ public class MManager {
 
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   public void createTimeseries(CreateTimeSeriesPlan plan, long offset) throws MetadataException {
+    createTimeseries(plan, offset, true);
+  }
+
+  /**
+   * @param commitLog false to only append the log record, so that the records of a batch of
+   *                  timeseries are committed together by {@link MLogWriter#commit()}
+   */
+  @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
+  private void createTimeseries(CreateTimeSeriesPlan plan, long offset, boolean commitLog)
+      throws MetadataException {
+    MeasurementMNode leafMNode = null;
     try {
       PartialPath path = plan.getPath();
       SchemaUtils.checkDataTypeWithEncoding(plan.getDataType(), plan.getEncoding());
@@ -367,10 +520,11 @@ public class MManager {
       // check memory
       IoTDBConfigDynamicAdapter.getInstance().addOrDeleteTimeSeries(1);
 
-      // create time series in MTree
-      MeasurementMNode leafMNode = mtree
+      // create time series in MTree, its device is pinned until the offset is set
+      leafMNode = mtree
           .createTimeseries(path, plan.getDataType(), plan.getEncoding(), plan.getCompressor(),
               plan.getProps(), plan.getAlias());
+      modifiedStorageGroups.add(storageGroupPath.getFullPath());
 
       // update tag index
       if (plan.getTags() != null) {
@@ -397,11 +551,22 @@ public class MManager {
             || (plan.getAttributes() != null && !plan.getAttributes().isEmpty())) {
           offset = tagLogFile.write(plan.getTags(), plan.getAttributes());
         }
-        logWriter.createTimeseries(plan, offset);
+        // set before logging, so that a concurrent snapshot never misses the offset
+        leafMNode.setOffset(offset);
+        if (commitLog) {
+          logWriter.createTimeseries(plan, offset);
+        } else {
+          logWriter.appendCreateTimeseries(plan, offset);
+        }
+      } else {
+        leafMNode.setOffset(offset);
       }
-      leafMNode.setOffset(offset);
     } catch (IOException | ConfigAdjusterException e) {
       throw new MetadataException(e.getMessage());
+    } finally {
+      if (leafMNode != null) {
+        mtree.unpinDevice(leafMNode.getParent());
+      }
     }
   }
 
@@ -446,6 +611,7 @@ public class MManager {
       }
 
       mNodeCache.clear();
+      invalidateDeviceSchemaCache();
     }
     try {
       List<PartialPath> allTimeseries = mtree.getAllTimeseriesPath(prefixPath);
@@ -455,6 +621,7 @@ public class MManager {
       Set<String> failedNames = new HashSet<>();
       for (PartialPath p : allTimeseries) {
         try {
+          markStorageGroupModified(p);
           PartialPath emptyStorageGroup = deleteOneTimeseriesAndUpdateStatistics(p);
           if (!isRecovering) {
             if (emptyStorageGroup != null) {
@@ -521,10 +688,13 @@ public class MManager {
     Pair<PartialPath, MeasurementMNode> pair = mtree
         .deleteTimeseriesAndReturnEmptyStorageGroup(path);
     removeFromTagInvertedIndex(pair.right);
+    // release the slot of the last value in the compact MTree
+    pair.right.detach();
     PartialPath storageGroupPath = pair.left;
 
     // TODO: delete the path node and all its ancestors
     mNodeCache.clear();
+    invalidateDeviceSchemaCache();
     try {
       IoTDBConfigDynamicAdapter.getInstance().addOrDeleteTimeSeries(-1);
     } catch (ConfigAdjusterException e) {
@@ -551,6 +721,7 @@ public class MManager {
   public void setStorageGroup(PartialPath storageGroup) throws MetadataException {
     try {
       mtree.setStorageGroup(storageGroup);
+      modifiedStorageGroups.add(storageGroup.getFullPath());
       IoTDBConfigDynamicAdapter.getInstance().addOrDeleteStorageGroup(1);
 
       if (config.isEnableParameterAdapter()) {
@@ -577,13 +748,16 @@ public class MManager {
     try {
       for (PartialPath storageGroup : storageGroups) {
 
-        // clear cached MNode
-        mNodeCache.clear();
-
         // try to delete storage group
+        markStorageGroupModified(storageGroup);
         List<MeasurementMNode> leafMNodes = mtree.deleteStorageGroup(storageGroup);
+        // clear cached MNode after the deletion, or an insertion in between may cache the deleted
+        // nodes again
+        mNodeCache.clear();
+        invalidateDeviceSchemaCache();
         for (MeasurementMNode leafMNode : leafMNodes) {
           removeFromTagInvertedIndex(leafMNode);
+          leafMNode.detach();
         }
 
         if (config.isEnableParameterAdapter()) {
@@ -1012,6 +1186,7 @@ public class MManager {
     MNode node;
     try {
       node = mNodeCache.get(path);
+      mtree.accessDevice(node);
       return node;
     } catch (CacheException e) {
       throw new PathNotExistException(path.getFullPath());
@@ -1054,6 +1229,7 @@ public class MManager {
 
   public void setTTL(PartialPath storageGroup, long dataTTL) throws MetadataException, IOException {
     getStorageGroupNodeByStorageGroupPath(storageGroup).setDataTTL(dataTTL);
+    markStorageGroupModified(storageGroup);
     if (!isRecovering) {
       logWriter.setTTL(storageGroup.getFullPath(), dataTTL);
     }
@@ -1086,16 +1262,28 @@ public class MManager {
    * @param offset offset in the tag file
    */
   public void changeOffset(PartialPath path, long offset) throws MetadataException {
-    ((MeasurementMNode) mtree.getNodeByPath(path)).setOffset(offset);
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(path);
+    try {
+      leafMNode.setOffset(offset);
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
+    }
+    markStorageGroupModified(path);
   }
 
   public void changeAlias(PartialPath path, String alias) throws MetadataException {
-    MeasurementMNode leafMNode = (MeasurementMNode) mtree.getNodeByPath(path);
-    if (leafMNode.getAlias() != null) {
-      leafMNode.getParent().deleteAliasChild(leafMNode.getAlias());
+    markStorageGroupModified(path);
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(path);
+    try {
+      if (leafMNode.getAlias() != null) {
+        leafMNode.getParent().deleteAliasChild(leafMNode.getAlias());
+        invalidateDeviceSchemaCache();
+      }
+      leafMNode.getParent().addAlias(alias, leafMNode);
+      leafMNode.setAlias(alias);
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
     }
-    leafMNode.getParent().addAlias(alias, leafMNode);
-    leafMNode.setAlias(alias);
   }
 
   /**
@@ -1111,93 +1299,96 @@ public class MManager {
   public void upsertTagsAndAttributes(String alias, Map<String, String> tagsMap,
       Map<String, String> attributesMap, PartialPath fullPath)
       throws MetadataException, IOException {
-    MNode mNode = mtree.getNodeByPath(fullPath);
-    if (!(mNode instanceof MeasurementMNode)) {
-      throw new PathNotExistException(fullPath.getFullPath());
-    }
-    MeasurementMNode leafMNode = (MeasurementMNode) mNode;
-    // upsert alias
-    if (alias != null && !alias.equals(leafMNode.getAlias())) {
-      if (!leafMNode.getParent().addAlias(alias, leafMNode)) {
-        throw new MetadataException("The alias already exists.");
-      }
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(fullPath);
+    try {
+      // upsert alias
+      if (alias != null && !alias.equals(leafMNode.getAlias())) {
+        if (!leafMNode.getParent().addAlias(alias, leafMNode)) {
+          throw new MetadataException("The alias already exists.");
+        }
 
-      if (leafMNode.getAlias() != null) {
-        leafMNode.getParent().deleteAliasChild(leafMNode.getAlias());
-      }
+        if (leafMNode.getAlias() != null) {
+          leafMNode.getParent().deleteAliasChild(leafMNode.getAlias());
+          invalidateDeviceSchemaCache();
+        }
 
-      leafMNode.setAlias(alias);
-      // persist to WAL
-      logWriter.changeAlias(fullPath.getFullPath(), alias);
-    }
+        leafMNode.setAlias(alias);
+        markStorageGroupModified(fullPath);
+        // persist to WAL
+        logWriter.changeAlias(fullPath.getFullPath(), alias);
+      }
 
-    if (tagsMap == null && attributesMap == null) {
-      return;
-    }
-    // no tag or attribute, we need to add a new record in log
-    if (leafMNode.getOffset() < 0) {
-      long offset = tagLogFile.write(tagsMap, attributesMap);
-      logWriter.changeOffset(fullPath.getFullPath(), offset);
-      leafMNode.setOffset(offset);
-      // update inverted Index map
-      if (tagsMap != null) {
-        for (Entry<String, String> entry : tagsMap.entrySet()) {
-          tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-              .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+      if (tagsMap == null && attributesMap == null) {
+        return;
+      }
+      // no tag or attribute, we need to add a new record in log
+      if (leafMNode.getOffset() < 0) {
+        long offset = tagLogFile.write(tagsMap, attributesMap);
+        leafMNode.setOffset(offset);
+        markStorageGroupModified(fullPath);
+        logWriter.changeOffset(fullPath.getFullPath(), offset);
+        // update inverted Index map
+        if (tagsMap != null) {
+          for (Entry<String, String> entry : tagsMap.entrySet()) {
+            tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+          }
         }
+        return;
       }
-      return;
-    }
 
-    Pair<Map<String, String>, Map<String, String>> pair =
-        tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
+      Pair<Map<String, String>, Map<String, String>> pair =
+          tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
 
-    if (tagsMap != null) {
-      for (Entry<String, String> entry : tagsMap.entrySet()) {
-        String key = entry.getKey();
-        String value = entry.getValue();
-        String beforeValue = pair.left.get(key);
-        pair.left.put(key, value);
-        // if the key has existed and the value is not equal to the new one
-        // we should remove before key-value from inverted index map
-        if (beforeValue != null && !beforeValue.equals(value)) {
-
-          if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(beforeValue)) {
-            if (logger.isDebugEnabled()) {
-              logger.debug(String.format(
-                  "Upsert: TimeSeries %s is removed from tag inverted index, "
-                      + "tag key is %s, tag value is %s, tlog offset is %d",
-                  leafMNode.getFullPath(), key, beforeValue, leafMNode.getOffset()));
-            }
-
-            tagIndex.get(key).get(beforeValue).remove(leafMNode);
-            if (tagIndex.get(key).get(beforeValue).isEmpty()) {
-              tagIndex.get(key).remove(beforeValue);
-            }
-          } else {
-            if (logger.isDebugEnabled()) {
-              logger.debug(String.format(
-                  "Upsert: TimeSeries %s's tag info has been removed from tag inverted index "
-                      + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
-                  leafMNode.getFullPath(), key, beforeValue, leafMNode.getOffset(),
-                  tagIndex.containsKey(key)));
+      if (tagsMap != null) {
+        for (Entry<String, String> entry : tagsMap.entrySet()) {
+          String key = entry.getKey();
+          String value = entry.getValue();
+          String beforeValue = pair.left.get(key);
+          pair.left.put(key, value);
+          // if the key has existed and the value is not equal to the new one
+          // we should remove before key-value from inverted index map
+          if (beforeValue != null && !beforeValue.equals(value)) {
+
+            if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(beforeValue)) {
+              if (logger.isDebugEnabled()) {
+                logger.debug(String.format(
+                    "Upsert: TimeSeries %s is removed from tag inverted index, "
+                        + "tag key is %s, tag value is %s, tlog offset is %d",
+                    leafMNode.getFullPath(), key, beforeValue, leafMNode.getOffset()));
+              }
+
+              tagIndex.get(key).get(beforeValue).remove(leafMNode);
+              if (tagIndex.get(key).get(beforeValue).isEmpty()) {
+                tagIndex.get(key).remove(beforeValue);
+              }
+            } else {
+              if (logger.isDebugEnabled()) {
+                logger.debug(String.format(
+                    "Upsert: TimeSeries %s's tag info has been removed from tag inverted index "
+                        + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
+                    leafMNode.getFullPath(), key, beforeValue, leafMNode.getOffset(),
+                    tagIndex.containsKey(key)));
+              }
             }
           }
-        }
 
-        // if the key doesn't exist or the value is not equal to the new one
-        // we should add a new key-value to inverted index map
-        if (beforeValue == null || !beforeValue.equals(value)) {
-          tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-              .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode);
+          // if the key doesn't exist or the value is not equal to the new one
+          // we should add a new key-value to inverted index map
+          if (beforeValue == null || !beforeValue.equals(value)) {
+            tagIndex.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode);
+          }
         }
       }
-    }
 
-    pair.right.putAll(attributesMap);
+      pair.right.putAll(attributesMap);
 
-    // persist the change to disk
-    tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      // persist the change to disk
+      tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
+    }
   }
 
   /**
@@ -1208,34 +1399,35 @@ public class MManager {
    */
   public void addAttributes(Map<String, String> attributesMap, PartialPath fullPath)
       throws MetadataException, IOException {
-    MNode mNode = mtree.getNodeByPath(fullPath);
-    if (!(mNode instanceof MeasurementMNode)) {
-      throw new PathNotExistException(fullPath.getFullPath());
-    }
-    MeasurementMNode leafMNode = (MeasurementMNode) mNode;
-    // no tag or attribute, we need to add a new record in log
-    if (leafMNode.getOffset() < 0) {
-      long offset = tagLogFile.write(Collections.emptyMap(), attributesMap);
-      logWriter.changeOffset(fullPath.getFullPath(), offset);
-      leafMNode.setOffset(offset);
-      return;
-    }
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(fullPath);
+    try {
+      // no tag or attribute, we need to add a new record in log
+      if (leafMNode.getOffset() < 0) {
+        long offset = tagLogFile.write(Collections.emptyMap(), attributesMap);
+        leafMNode.setOffset(offset);
+        markStorageGroupModified(fullPath);
+        logWriter.changeOffset(fullPath.getFullPath(), offset);
+        return;
+      }
 
-    Pair<Map<String, String>, Map<String, String>> pair =
-        tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
+      Pair<Map<String, String>, Map<String, String>> pair =
+          tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
 
-    for (Entry<String, String> entry : attributesMap.entrySet()) {
-      String key = entry.getKey();
-      String value = entry.getValue();
-      if (pair.right.containsKey(key)) {
-        throw new MetadataException(
-            String.format("TimeSeries [%s] already has the attribute [%s].", fullPath, key));
+      for (Entry<String, String> entry : attributesMap.entrySet()) {
+        String key = entry.getKey();
+        String value = entry.getValue();
+        if (pair.right.containsKey(key)) {
+          throw new MetadataException(
+              String.format("TimeSeries [%s] already has the attribute [%s].", fullPath, key));
+        }
+        pair.right.put(key, value);
       }
-      pair.right.put(key, value);
-    }
 
-    // persist the change to disk
-    tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      // persist the change to disk
+      tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
+    }
   }
 
   /**
@@ -1246,43 +1438,44 @@ public class MManager {
    */
   public void addTags(Map<String, String> tagsMap, PartialPath fullPath)
       throws MetadataException, IOException {
-    MNode mNode = mtree.getNodeByPath(fullPath);
-    if (!(mNode instanceof MeasurementMNode)) {
-      throw new PathNotExistException(fullPath.getFullPath());
-    }
-    MeasurementMNode leafMNode = (MeasurementMNode) mNode;
-    // no tag or attribute, we need to add a new record in log
-    if (leafMNode.getOffset() < 0) {
-      long offset = tagLogFile.write(tagsMap, Collections.emptyMap());
-      logWriter.changeOffset(fullPath.getFullPath(), offset);
-      leafMNode.setOffset(offset);
-      // update inverted Index map
-      for (Entry<String, String> entry : tagsMap.entrySet()) {
-        tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-            .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(fullPath);
+    try {
+      // no tag or attribute, we need to add a new record in log
+      if (leafMNode.getOffset() < 0) {
+        long offset = tagLogFile.write(tagsMap, Collections.emptyMap());
+        leafMNode.setOffset(offset);
+        markStorageGroupModified(fullPath);
+        logWriter.changeOffset(fullPath.getFullPath(), offset);
+        // update inverted Index map
+        for (Entry<String, String> entry : tagsMap.entrySet()) {
+          tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+              .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+        }
+        return;
       }
-      return;
-    }
 
-    Pair<Map<String, String>, Map<String, String>> pair =
-        tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
+      Pair<Map<String, String>, Map<String, String>> pair =
+          tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
 
-    for (Entry<String, String> entry : tagsMap.entrySet()) {
-      String key = entry.getKey();
-      String value = entry.getValue();
-      if (pair.left.containsKey(key)) {
-        throw new MetadataException(
-            String.format("TimeSeries [%s] already has the tag [%s].", fullPath, key));
+      for (Entry<String, String> entry : tagsMap.entrySet()) {
+        String key = entry.getKey();
+        String value = entry.getValue();
+        if (pair.left.containsKey(key)) {
+          throw new MetadataException(
+              String.format("TimeSeries [%s] already has the tag [%s].", fullPath, key));
+        }
+        pair.left.put(key, value);
       }
-      pair.left.put(key, value);
-    }
 
-    // persist the change to disk
-    tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      // persist the change to disk
+      tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
 
-    // update tag inverted map
-    tagsMap.forEach((key, value) -> tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-        .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode));
+      // update tag inverted map
+      tagsMap.forEach((key, value) -> tagIndex.computeIfAbsent(key, k -> new HashMap<>())
+          .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode));
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
+    }
   }
 
   /**
@@ -1294,61 +1487,71 @@ public class MManager {
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   public void dropTagsOrAttributes(Set<String> keySet, PartialPath fullPath)
       throws MetadataException, IOException {
-    MNode mNode = mtree.getNodeByPath(fullPath);
-    if (!(mNode instanceof MeasurementMNode)) {
-      throw new PathNotExistException(fullPath.getFullPath());
-    }
-    MeasurementMNode leafMNode = (MeasurementMNode) mNode;
-    // no tag or attribute, just do nothing.
-    if (leafMNode.getOffset() < 0) {
-      return;
-    }
-    Pair<Map<String, String>, Map<String, String>> pair =
-        tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(fullPath);
+    boolean pageable = false;
+    try {
+      // no tag or attribute, just do nothing.
+      if (leafMNode.getOffset() < 0) {
+        return;
+      }
+      Pair<Map<String, String>, Map<String, String>> pair =
+          tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
 
-    Map<String, String> deleteTag = new HashMap<>();
-    for (String key : keySet) {
-      // check tag map
-      // check attribute map
-      if (pair.left.containsKey(key)) {
-        deleteTag.put(key, pair.left.remove(key));
-      } else {
-        pair.right.remove(key);
+      Map<String, String> deleteTag = new HashMap<>();
+      for (String key : keySet) {
+        // check tag map
+        // check attribute map
+        if (pair.left.containsKey(key)) {
+          deleteTag.put(key, pair.left.remove(key));
+        } else {
+          pair.right.remove(key);
+        }
       }
-    }
 
-    // persist the change to disk
-    tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      // persist the change to disk
+      tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      if (pair.left.isEmpty() && pair.right.isEmpty()) {
+        // without tags or attributes, the measurements of the device may be paged out again
+        leafMNode.setOffset(-1);
+        markStorageGroupModified(fullPath);
+        pageable = true;
+      }
 
-    for (Entry<String, String> entry : deleteTag.entrySet()) {
-      String key = entry.getKey();
-      String value = entry.getValue();
-      // change the tag inverted index map
-      if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(value)) {
-        if (logger.isDebugEnabled()) {
-          logger.debug(String.format(
-              "Drop: TimeSeries %s is removed from tag inverted index, "
-                  + "tag key is %s, tag value is %s, tlog offset is %d",
-              leafMNode.getFullPath(), entry.getKey(), entry.getValue(), leafMNode.getOffset()));
-        }
+      for (Entry<String, String> entry : deleteTag.entrySet()) {
+        String key = entry.getKey();
+        String value = entry.getValue();
+        // change the tag inverted index map
+        if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(value)) {
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format(
+                "Drop: TimeSeries %s is removed from tag inverted index, "
+                    + "tag key is %s, tag value is %s, tlog offset is %d",
+                leafMNode.getFullPath(), entry.getKey(), entry.getValue(), leafMNode.getOffset()));
+          }
 
-        tagIndex.get(key).get(value).remove(leafMNode);
-        if (tagIndex.get(key).get(value).isEmpty()) {
-          tagIndex.get(key).remove(value);
-          if (tagIndex.get(key).isEmpty()) {
-            tagIndex.remove(key);
+          tagIndex.get(key).get(value).remove(leafMNode);
+          if (tagIndex.get(key).get(value).isEmpty()) {
+            tagIndex.get(key).remove(value);
+            if (tagIndex.get(key).isEmpty()) {
+              tagIndex.remove(key);
+            }
+          }
+        } else {
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format(
+                "Drop: TimeSeries %s's tag info has been removed from tag inverted index "
+                    + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
+                leafMNode.getFullPath(), key, value, leafMNode.getOffset(),
+                tagIndex.containsKey(key)));
           }
         }
-      } else {
-        if (logger.isDebugEnabled()) {
-          logger.debug(String.format(
-              "Drop: TimeSeries %s's tag info has been removed from tag inverted index "
-                  + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
-              leafMNode.getFullPath(), key, value, leafMNode.getOffset(),
-              tagIndex.containsKey(key)));
-        }
-      }
 
+      }
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
+    }
+    if (pageable && nodeStore != null) {
+      nodeStore.add(leafMNode.getParent());
     }
   }
 
@@ -1361,68 +1564,68 @@ public class MManager {
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   public void setTagsOrAttributesValue(Map<String, String> alterMap, PartialPath fullPath)
       throws MetadataException, IOException {
-    MNode mNode = mtree.getNodeByPath(fullPath);
-    if (!(mNode instanceof MeasurementMNode)) {
-      throw new PathNotExistException(fullPath.getFullPath());
-    }
-    MeasurementMNode leafMNode = (MeasurementMNode) mNode;
-    if (leafMNode.getOffset() < 0) {
-      throw new MetadataException(
-          String.format("TimeSeries [%s] does not have any tag/attribute.", fullPath));
-    }
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(fullPath);
+    try {
+      if (leafMNode.getOffset() < 0) {
+        throw new MetadataException(
+            String.format("TimeSeries [%s] does not have any tag/attribute.", fullPath));
+      }
 
-    // tags, attributes
-    Pair<Map<String, String>, Map<String, String>> pair =
-        tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
-    Map<String, String> oldTagValue = new HashMap<>();
-    Map<String, String> newTagValue = new HashMap<>();
+      // tags, attributes
+      Pair<Map<String, String>, Map<String, String>> pair =
+          tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
+      Map<String, String> oldTagValue = new HashMap<>();
+      Map<String, String> newTagValue = new HashMap<>();
 
-    for (Entry<String, String> entry : alterMap.entrySet()) {
-      String key = entry.getKey();
-      String value = entry.getValue();
-      // check tag map
-      if (pair.left.containsKey(key)) {
-        oldTagValue.put(key, pair.left.get(key));
-        newTagValue.put(key, value);
-        pair.left.put(key, value);
-      } else if (pair.right.containsKey(key)) {
-        // check attribute map
-        pair.right.put(key, value);
-      } else {
-        throw new MetadataException(
-            String.format("TimeSeries [%s] does not have tag/attribute [%s].", fullPath, key));
+      for (Entry<String, String> entry : alterMap.entrySet()) {
+        String key = entry.getKey();
+        String value = entry.getValue();
+        // check tag map
+        if (pair.left.containsKey(key)) {
+          oldTagValue.put(key, pair.left.get(key));
+          newTagValue.put(key, value);
+          pair.left.put(key, value);
+        } else if (pair.right.containsKey(key)) {
+          // check attribute map
+          pair.right.put(key, value);
+        } else {
+          throw new MetadataException(
+              String.format("TimeSeries [%s] does not have tag/attribute [%s].", fullPath, key));
+        }
       }
-    }
 
-    // persist the change to disk
-    tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      // persist the change to disk
+      tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
 
-    for (Entry<String, String> entry : oldTagValue.entrySet()) {
-      String key = entry.getKey();
-      String beforeValue = entry.getValue();
-      String currentValue = newTagValue.get(key);
-      // change the tag inverted index map
-      if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(beforeValue)) {
+      for (Entry<String, String> entry : oldTagValue.entrySet()) {
+        String key = entry.getKey();
+        String beforeValue = entry.getValue();
+        String currentValue = newTagValue.get(key);
+        // change the tag inverted index map
+        if (tagIndex.containsKey(key) && tagIndex.get(key).containsKey(beforeValue)) {
 
-        if (logger.isDebugEnabled()) {
-          logger.debug(String.format(
-              "Set: TimeSeries %s is removed from tag inverted index, "
-                  + "tag key is %s, tag value is %s, tlog offset is %d",
-              leafMNode.getFullPath(), entry.getKey(), beforeValue, leafMNode.getOffset()));
-        }
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format(
+                "Set: TimeSeries %s is removed from tag inverted index, "
+                    + "tag key is %s, tag value is %s, tlog offset is %d",
+                leafMNode.getFullPath(), entry.getKey(), beforeValue, leafMNode.getOffset()));
+          }
 
-        tagIndex.get(key).get(beforeValue).remove(leafMNode);
-      } else {
-        if (logger.isDebugEnabled()) {
-          logger.debug(String.format(
-              "Set: TimeSeries %s's tag info has been removed from tag inverted index "
-                  + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
-              leafMNode.getFullPath(), key, beforeValue, leafMNode.getOffset(),
-              tagIndex.containsKey(key)));
+          tagIndex.get(key).get(beforeValue).remove(leafMNode);
+        } else {
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format(
+                "Set: TimeSeries %s's tag info has been removed from tag inverted index "
+                    + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
+                leafMNode.getFullPath(), key, beforeValue, leafMNode.getOffset(),
+                tagIndex.containsKey(key)));
+          }
         }
+        tagIndex.computeIfAbsent(key, k -> new HashMap<>())
+            .computeIfAbsent(currentValue, k -> new HashSet<>()).add(leafMNode);
       }
-      tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-          .computeIfAbsent(currentValue, k -> new HashSet<>()).add(leafMNode);
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
     }
   }
 
@@ -1436,63 +1639,63 @@ public class MManager {
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   public void renameTagOrAttributeKey(String oldKey, String newKey, PartialPath fullPath)
       throws MetadataException, IOException {
-    MNode mNode = mtree.getNodeByPath(fullPath);
-    if (!(mNode instanceof MeasurementMNode)) {
-      throw new PathNotExistException(fullPath.getFullPath());
-    }
-    MeasurementMNode leafMNode = (MeasurementMNode) mNode;
-    if (leafMNode.getOffset() < 0) {
-      throw new MetadataException(
-          String.format("TimeSeries [%s] does not have [%s] tag/attribute.", fullPath, oldKey));
-    }
-    // tags, attributes
-    Pair<Map<String, String>, Map<String, String>> pair =
-        tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
-
-    // current name has existed
-    if (pair.left.containsKey(newKey) || pair.right.containsKey(newKey)) {
-      throw new MetadataException(
-          String.format(
-              "TimeSeries [%s] already has a tag/attribute named [%s].", fullPath, newKey));
-    }
-
-    // check tag map
-    if (pair.left.containsKey(oldKey)) {
-      String value = pair.left.remove(oldKey);
-      pair.left.put(newKey, value);
-      // persist the change to disk
-      tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
-      // change the tag inverted index map
-      if (tagIndex.containsKey(oldKey) && tagIndex.get(oldKey).containsKey(value)) {
-
-        if (logger.isDebugEnabled()) {
-          logger.debug(String.format(
-              "Rename: TimeSeries %s is removed from tag inverted index, "
-                  + "tag key is %s, tag value is %s, tlog offset is %d",
-              leafMNode.getFullPath(), oldKey, value, leafMNode.getOffset()));
-        }
+    MeasurementMNode leafMNode = mtree.getMeasurementNodeAndPinDevice(fullPath);
+    try {
+      if (leafMNode.getOffset() < 0) {
+        throw new MetadataException(
+            String.format("TimeSeries [%s] does not have [%s] tag/attribute.", fullPath, oldKey));
+      }
+      // tags, attributes
+      Pair<Map<String, String>, Map<String, String>> pair =
+          tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
 
-        tagIndex.get(oldKey).get(value).remove(leafMNode);
+      // current name has existed
+      if (pair.left.containsKey(newKey) || pair.right.containsKey(newKey)) {
+        throw new MetadataException(
+            String.format(
+                "TimeSeries [%s] already has a tag/attribute named [%s].", fullPath, newKey));
+      }
 
-      } else {
-        if (logger.isDebugEnabled()) {
-          logger.debug(String.format(
-              "Rename: TimeSeries %s's tag info has been removed from tag inverted index "
-                  + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
-              leafMNode.getFullPath(), oldKey, value, leafMNode.getOffset(),
-              tagIndex.containsKey(oldKey)));
+      // check tag map
+      if (pair.left.containsKey(oldKey)) {
+        String value = pair.left.remove(oldKey);
+        pair.left.put(newKey, value);
+        // persist the change to disk
+        tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+        // change the tag inverted index map
+        if (tagIndex.containsKey(oldKey) && tagIndex.get(oldKey).containsKey(value)) {
+
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format(
+                "Rename: TimeSeries %s is removed from tag inverted index, "
+                    + "tag key is %s, tag value is %s, tlog offset is %d",
+                leafMNode.getFullPath(), oldKey, value, leafMNode.getOffset()));
+          }
+
+          tagIndex.get(oldKey).get(value).remove(leafMNode);
+
+        } else {
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format(
+                "Rename: TimeSeries %s's tag info has been removed from tag inverted index "
+                    + "before deleting it, tag key is %s, tag value is %s, tlog offset is %d, contains key %b",
+                leafMNode.getFullPath(), oldKey, value, leafMNode.getOffset(),
+                tagIndex.containsKey(oldKey)));
+          }
         }
+        tagIndex.computeIfAbsent(newKey, k -> new HashMap<>())
+            .computeIfAbsent(value, k -> new HashSet<>()).add(leafMNode);
+      } else if (pair.right.containsKey(oldKey)) {
+        // check attribute map
+        pair.right.put(newKey, pair.right.remove(oldKey));
+        // persist the change to disk
+        tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      } else {
+        throw new MetadataException(
+            String.format("TimeSeries [%s] does not have tag/attribute [%s].", fullPath, oldKey));
       }
-      tagIndex.computeIfAbsent(newKey, k -> new HashMap<>())
-          .computeIfAbsent(value, k -> new HashSet<>()).add(leafMNode);
-    } else if (pair.right.containsKey(oldKey)) {
-      // check attribute map
-      pair.right.put(newKey, pair.right.remove(oldKey));
-      // persist the change to disk
-      tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
-    } else {
-      throw new MetadataException(
-          String.format("TimeSeries [%s] does not have tag/attribute [%s].", fullPath, oldKey));
+    } finally {
+      mtree.unpinDevice(leafMNode.getParent());
     }
   }
 
@@ -1607,8 +1810,12 @@ public class MManager {
       node.updateCachedLast(timeValuePair, highPriorityUpdate, latestFlushedTime);
     } else {
       try {
-        MeasurementMNode node1 = (MeasurementMNode) mtree.getNodeByPath(seriesPath);
-        node1.updateCachedLast(timeValuePair, highPriorityUpdate, latestFlushedTime);
+        MeasurementMNode node1 = mtree.getMeasurementNodeAndPinDevice(seriesPath);
+        try {
+          node1.updateCachedLast(timeValuePair, highPriorityUpdate, latestFlushedTime);
+        } finally {
+          mtree.unpinDevice(node1.getParent());
+        }
       } catch (MetadataException e) {
         logger.warn("failed to update last cache for the {}, err:{}", seriesPath, e.getMessage());
       }
@@ -1643,39 +1850,108 @@ public class MManager {
     } else {
       logger.info("New mlog line number: {}, time from last modification: {} ms",
           logWriter.getLineNumber(), System.currentTimeMillis() - logFile.lastModified());
+      createMTreeCheckpoint();
+    }
+  }
+
+  /**
+   * Take a delta snapshot containing only the storage groups modified since the last full
+   * snapshot, or a full one if there is no full snapshot yet or most storage groups are modified.
+   */
+  private void createMTreeCheckpoint() {
+    if (!SystemFileFactory.INSTANCE.getFile(mtreeSnapshotPath).exists()
+        || modifiedStorageGroups.size() * 2 > mtree.getAllStorageGroupPaths().size()) {
       createMTreeSnapshot();
+    } else {
+      createMTreeSnapshot(false);
     }
   }
 
   public void createMTreeSnapshot() {
-    long time = System.currentTimeMillis();
-    logger.info("Start creating MTree snapshot to {}", mtreeSnapshotPath);
-    try {
-      mtree.serializeTo(mtreeSnapshotTmpPath);
-      File tmpFile = SystemFileFactory.INSTANCE.getFile(mtreeSnapshotTmpPath);
-      File snapshotFile = SystemFileFactory.INSTANCE.getFile(mtreeSnapshotPath);
-      if (snapshotFile.exists()) {
-        Files.delete(snapshotFile.toPath());
-      }
-      if (tmpFile.renameTo(snapshotFile)) {
-        logger.info("Finish creating MTree snapshot to {}, spend {} ms.", mtreeSnapshotPath,
-            System.currentTimeMillis() - time);
+    createMTreeSnapshot(true);
+  }
+
+  /**
+   * Write a full or delta snapshot of the MTree. The mlog is rolled first, so writes to the MTree
+   * are not blocked while the snapshot is taken: a modification either reaches the MTree before
+   * the log is rolled, and therefore the snapshot, or is logged into the new mlog, which is
+   * replayed on top of the snapshot.
+   */
+  private void createMTreeSnapshot(boolean full) {
+    synchronized (snapshotLock) {
+      String snapshotPath = full ? mtreeSnapshotPath : mtreeDeltaSnapshotPath;
+      String tmpPath = full ? mtreeSnapshotTmpPath : mtreeDeltaSnapshotTmpPath;
+      long time = System.currentTimeMillis();
+      logger.info("Start creating MTree snapshot to {}", snapshotPath);
+      Set<String> storageGroups;
+      try {
+        // modifications are logged after being marked, so the rolled log only contains
+        // modifications of storage groups marked before rolling
+        logWriter.roll();
+        storageGroups = modifiedStorageGroups;
+        if (full) {
+          modifiedStorageGroups = ConcurrentHashMap.newKeySet();
+        } else {
+          storageGroups = new HashSet<>(storageGroups);
+        }
+      } catch (IOException e) {
+        logger.warn("Failed to roll mlog before creating MTree snapshot", e);
+        return;
       }
-      logWriter.clear();
-    } catch (IOException e) {
-      logger.warn("Failed to create MTree snapshot to {}", mtreeSnapshotPath, e);
-      if (SystemFileFactory.INSTANCE.getFile(mtreeSnapshotTmpPath).exists()) {
-        try {
-          Files.delete(SystemFileFactory.INSTANCE.getFile(mtreeSnapshotTmpPath).toPath());
-        } catch (IOException e1) {
-          logger.warn("delete file {} failed: {}", mtreeSnapshotTmpPath, e1.getMessage());
+
+      try {
+        File tmpFile = SystemFileFactory.INSTANCE.getFile(tmpPath);
+        File snapshotFile = SystemFileFactory.INSTANCE.getFile(snapshotPath);
+        if (full) {
+          MTreeSnapshot.serialize(mtree, tmpFile, MTreeSnapshot.FULL_SNAPSHOT,
+              snapshotGeneration + 1, null);
+        } else {
+          MTreeSnapshot.serialize(mtree, tmpFile, MTreeSnapshot.DELTA_SNAPSHOT,
+              snapshotGeneration, storageGroups);
+        }
+        Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (full) {
+          snapshotGeneration++;
+          // the delta snapshot and the legacy snapshot are out of date now
+          Files.deleteIfExists(SystemFileFactory.INSTANCE.getFile(mtreeDeltaSnapshotPath).toPath());
+          Files.deleteIfExists(SystemFileFactory.INSTANCE.getFile(config.getSchemaDir()
+              + File.separator + MetadataConstant.MTREE_LEGACY_SNAPSHOT).toPath());
+        }
+        logWriter.removeRolledLog();
+        logger.info("Finish creating MTree snapshot to {}, spend {} ms.", snapshotPath,
+            System.currentTimeMillis() - time);
+      } catch (IOException e) {
+        logger.warn("Failed to create MTree snapshot to {}", snapshotPath, e);
+        if (full) {
+          modifiedStorageGroups.addAll(storageGroups);
+        }
+        if (SystemFileFactory.INSTANCE.getFile(tmpPath).exists()) {
+          try {
+            Files.delete(SystemFileFactory.INSTANCE.getFile(tmpPath).toPath());
+          } catch (IOException e1) {
+            logger.warn("delete file {} failed: {}", tmpPath, e1.getMessage());
+          }
         }
       }
     }
   }
 
   /**
-   * get schema for device. Attention!!!  Only support insertPlan
+   * Remember the storage group of the path as modified since the last full snapshot. This must be
+   * done before the modification is logged.
+   */
+  private void markStorageGroupModified(PartialPath path) {
+    try {
+      modifiedStorageGroups.add(mtree.getStorageGroupPath(path).getFullPath());
+    } catch (StorageGroupNotSetException e) {
+      // not in any storage group, nothing will be logged either
+    }
+  }
+
+  /**
+   * get schema for device. Attention!!!  Only support insertPlan. The measurements of the device
+   * are kept in memory until {@link #readUnlockDevice(MNode)} is called with the returned device,
+   * so that the measurement nodes in the plan stay in the MTree while the plan is executed.
    */
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   public MNode getSeriesSchemasAndReadLockDevice(InsertPlan plan)
@@ -1685,86 +1961,222 @@ public class MManager {
     String[] measurementList = plan.getMeasurements();
     MeasurementMNode[] measurementMNodes = plan.getMeasurementMNodes();
 
+    // 0. reuse the measurements resolved by the last insertion of the same measurements into the
+    // device, so that neither the device nor any measurement is looked up
+    long version = schemaVersion.get();
+    DeviceSchema deviceSchema = deviceSchemaCache.get(deviceId);
+    if (deviceSchema != null && deviceSchema.version == version
+        && Arrays.equals(deviceSchema.measurements, measurementList)) {
+      mtree.pinDevice(deviceSchema.deviceMNode);
+      // the measurements may have been paged out or deleted before pinning
+      if (fillSeriesSchemas(plan, deviceSchema)) {
+        mtree.accessDevice(deviceSchema.deviceMNode);
+        return deviceSchema.deviceMNode;
+      }
+      mtree.unpinDevice(deviceSchema.deviceMNode);
+    }
+    String[] originalMeasurements = measurementList.clone();
+
     // 1. get device node
     MNode deviceMNode = getDeviceNodeWithAutoCreate(deviceId);
+    mtree.accessDevice(deviceMNode);
+    mtree.pinDevice(deviceMNode);
 
     // 2. get schema of each measurement
-    for (int i = 0; i < measurementList.length; i++) {
-      try {
-        // if do not has measurement
-        if (!deviceMNode.hasChild(measurementList[i])) {
-          // could not create it
-          if (!config.isAutoCreateSchemaEnabled()) {
-            throw new MetadataException(String.format(
-                "Current deviceId[%s] does not contain measurement:%s", deviceId,
-                measurementList[i]));
+    boolean created = false;
+    boolean resolved = false;
+    try {
+      for (int i = 0; i < measurementList.length; i++) {
+        try {
+          // if do not has measurement
+          if (!deviceMNode.hasChild(measurementList[i])) {
+            // could not create it
+            if (!config.isAutoCreateSchemaEnabled()) {
+              throw new MetadataException(String.format(
+                  "Current deviceId[%s] does not contain measurement:%s", deviceId,
+                  measurementList[i]));
+            }
+            TSDataType dataType = getTypeInLoc(plan, i);
+            // create it, may concurrent created by multiple thread
+            internalCreateTimeseries(deviceId.concatNode(measurementList[i]), dataType);
+            created = true;
           }
-          TSDataType dataType = getTypeInLoc(plan, i);
-          // create it, may concurrent created by multiple thread
-          internalCreateTimeseries(deviceId.concatNode(measurementList[i]), dataType);
-        }
-
-        MeasurementMNode measurementMNode = (MeasurementMNode) deviceMNode.getChild(measurementList[i]);
 
-        // check type is match
-        TSDataType insertDataType = null;
-        if (plan instanceof InsertRowPlan) {
-          if (!((InsertRowPlan) plan).isNeedInferType()) {
-            // only when InsertRowPlan's values is object[], we should check type
-            insertDataType = getTypeInLoc(plan, i);
-          } else {
-            insertDataType = measurementMNode.getSchema().getType();
+          MeasurementMNode measurementMNode =
+              (MeasurementMNode) deviceMNode.getChild(measurementList[i]);
+
+          // check type is match
+          TSDataType insertDataType = getInsertDataType(plan, i, measurementMNode);
+          if (measurementMNode.getSchema().getType() != insertDataType) {
+            logger.warn("DataType mismatch, Insert measurement {} type {}, metadata tree type {}",
+                measurementList[i], insertDataType, measurementMNode.getSchema().getType());
+            if (!config.isEnablePartialInsert()) {
+              throw new MetadataException(String.format(
+                  "DataType mismatch, Insert measurement %s type %s, metadata tree type %s",
+                  measurementList[i], insertDataType, measurementMNode.getSchema().getType()));
+            } else {
+              // mark failed measurement
+              plan.markFailedMeasurementInsertion(i);
+              continue;
+            }
           }
-        } else if (plan instanceof InsertTabletPlan) {
-          insertDataType = getTypeInLoc(plan, i);
-        }
 
-        if (measurementMNode.getSchema().getType() != insertDataType) {
-          logger.warn("DataType mismatch, Insert measurement {} type {}, metadata tree type {}",
-              measurementList[i], insertDataType, measurementMNode.getSchema().getType());
-          if (!config.isEnablePartialInsert()) {
-            throw new MetadataException(String.format(
-                "DataType mismatch, Insert measurement %s type %s, metadata tree type %s",
-                measurementList[i], insertDataType, measurementMNode.getSchema().getType()));
-          } else {
+          measurementMNodes[i] = measurementMNode;
+
+          // set measurementName instead of alias
+          measurementList[i] = measurementMNode.getName();
+
+        } catch (MetadataException e) {
+          logger.warn("meet error when check {}.{}, message: {}", deviceId, measurementList[i],
+              e.getMessage());
+          if (config.isEnablePartialInsert()) {
             // mark failed measurement
             plan.markFailedMeasurementInsertion(i);
-            continue;
+          } else {
+            throw e;
           }
         }
+      }
+      resolved = true;
+    } finally {
+      // the log records of the auto created timeseries are committed together
+      if (created) {
+        commitLog();
+      }
+      if (!resolved) {
+        mtree.unpinDevice(deviceMNode);
+      }
+    }
 
-        measurementMNodes[i] = measurementMNode;
+    // 3. remember the resolved measurements if all of them are resolved
+    if (plan.getFailedMeasurements() == null) {
+      cacheDeviceSchema(deviceId, new DeviceSchema(version, deviceMNode, originalMeasurements,
+          measurementList.clone(), measurementMNodes.clone()));
+    }
+    return deviceMNode;
+  }
 
-        // set measurementName instead of alias
-        measurementList[i] = measurementMNode.getName();
+  /**
+   * Let the measurements of the device locked by {@link #getSeriesSchemasAndReadLockDevice} or
+   * {@link #getMeasurementMNodeAndReadLockDevice} be paged out again.
+   */
+  public void readUnlockDevice(MNode deviceMNode) {
+    mtree.unpinDevice(deviceMNode);
+  }
 
-      } catch (MetadataException e) {
-        logger.warn("meet error when check {}.{}, message: {}", deviceId, measurementList[i],
-            e.getMessage());
-        if (config.isEnablePartialInsert()) {
-          // mark failed measurement
-          plan.markFailedMeasurementInsertion(i);
-        } else {
-          throw e;
+  /**
+   * Get the measurement node of the timeseries and keep it in the MTree until {@link
+   * #readUnlockDevice(MNode)} is called with its parent, e.g., to cache the last value computed
+   * from the data into the node.
+   */
+  public MeasurementMNode getMeasurementMNodeAndReadLockDevice(PartialPath fullPath)
+      throws MetadataException {
+    return mtree.getMeasurementNodeAndPinDevice(fullPath);
+  }
+
+  /**
+   * @return the data type of the measurement in loc of the plan, which should be the same as the
+   * data type of the timeseries
+   */
+  private TSDataType getInsertDataType(InsertPlan plan, int loc,
+      MeasurementMNode measurementMNode) throws MetadataException {
+    TSDataType insertDataType = null;
+    if (plan instanceof InsertRowPlan) {
+      if (!((InsertRowPlan) plan).isNeedInferType()) {
+        // only when InsertRowPlan's values is object[], we should check type
+        insertDataType = getTypeInLoc(plan, loc);
+      } else {
+        insertDataType = measurementMNode.getSchema().getType();
+      }
+    } else if (plan instanceof InsertTabletPlan) {
+      insertDataType = getTypeInLoc(plan, loc);
+    }
+    return insertDataType;
+  }
+
+  /**
+   * Fill the plan with the measurements resolved by an earlier insertion into the device.
+   *
+   * @return false if any measurement is no longer in the MTree or its data type does not match,
+   * the plan is left unchanged and should be resolved as usual
+   */
+  private boolean fillSeriesSchemas(InsertPlan plan, DeviceSchema deviceSchema) {
+    MeasurementMNode[] cachedMNodes = deviceSchema.measurementMNodes;
+    try {
+      for (int i = 0; i < cachedMNodes.length; i++) {
+        if (cachedMNodes[i].isDetached() || cachedMNodes[i].getSchema().getType()
+            != getInsertDataType(plan, i, cachedMNodes[i])) {
+          return false;
         }
       }
+    } catch (MetadataException e) {
+      return false;
     }
+    System.arraycopy(cachedMNodes, 0, plan.getMeasurementMNodes(), 0, cachedMNodes.length);
+    System.arraycopy(deviceSchema.names, 0, plan.getMeasurements(), 0, cachedMNodes.length);
+    return true;
+  }
 
-    return deviceMNode;
+  private void cacheDeviceSchema(PartialPath deviceId, DeviceSchema deviceSchema) {
+    synchronized (deviceSchemaCacheSlots) {
+      if (deviceSchemaCache.put(deviceId, deviceSchema) != null) {
+        // the device keeps its slot
+        return;
+      }
+      if (deviceSchemaCacheSlots.size() < config.getmManagerCacheSize()) {
+        deviceSchemaCacheSlots.add(deviceId);
+        return;
+      }
+      if (deviceSchemaCacheSlots.isEmpty()) {
+        // the cache is disabled
+        deviceSchemaCache.remove(deviceId);
+        return;
+      }
+      // evict a random device, so that no device is evicted more often than the others
+      int slot = ThreadLocalRandom.current().nextInt(deviceSchemaCacheSlots.size());
+      PartialPath evicted = deviceSchemaCacheSlots.set(slot, deviceId);
+      if (!evicted.equals(deviceId)) {
+        deviceSchemaCache.remove(evicted);
+      }
+    }
+  }
+
+  private void clearDeviceSchemaCache() {
+    synchronized (deviceSchemaCacheSlots) {
+      deviceSchemaCache.clear();
+      deviceSchemaCacheSlots.clear();
+    }
   }
 
   /**
-   * create timeseries with ignore PathAlreadyExistException
+   * Called when timeseries are deleted or an alias is changed, as the measurements resolved before
+   * may not exist or be renamed.
+   */
+  private void invalidateDeviceSchemaCache() {
+    schemaVersion.incrementAndGet();
+    clearDeviceSchemaCache();
+  }
+
+  /**
+   * Called when the measurements of the device are paged out, as they are replaced by new nodes
+   * when loaded. A schema of the device resolved concurrently is dropped when it is used, as its
+   * nodes are detached.
+   */
+  private void invalidateDeviceSchema(MNode deviceMNode) {
+    deviceSchemaCache.remove(deviceMNode.getPartialPath());
+  }
+
+  /**
+   * create timeseries with ignore PathAlreadyExistException, the log record is only appended and
+   * should be committed by {@link #commitLog()}
    */
   private void internalCreateTimeseries(PartialPath path, TSDataType dataType)
       throws MetadataException {
     try {
       createTimeseries(
-          path,
-          dataType,
-          getDefaultEncoding(dataType),
-          TSFileDescriptor.getInstance().getConfig().getCompressor(),
-          Collections.emptyMap());
+          new CreateTimeSeriesPlan(path, dataType, getDefaultEncoding(dataType),
+              TSFileDescriptor.getInstance().getConfig().getCompressor(), Collections.emptyMap(),
+              null, null, null), -1, false);
     } catch (PathAlreadyExistException | AliasAlreadyExistException e) {
       if (logger.isDebugEnabled()) {
         logger.debug("Ignore PathAlreadyExistException and AliasAlreadyExistException when Concurrent inserting"
@@ -1773,6 +2185,21 @@ public class MManager {
     }
   }
 
+  /**
+   * Commit the appended log records to the mlog, records appended by other threads meanwhile are
+   * committed together.
+   */
+  private void commitLog() throws MetadataException {
+    if (isRecovering || logWriter == null) {
+      return;
+    }
+    try {
+      logWriter.commit();
+    } catch (IOException e) {
+      throw new MetadataException(e.getMessage());
+    }
+  }
+
   /**
    * Get default encoding by dataType
    */
@@ -1815,6 +2242,31 @@ public class MManager {
     return dataType;
   }
 
+  /**
+   * The measurements of an insertion resolved against a device. An insertion of the same
+   * measurements into the device reuses them if no timeseries is deleted or renamed meanwhile.
+   */
+  private static class DeviceSchema {
+
+    // the schema version when the measurements are resolved
+    private final long version;
+    private final MNode deviceMNode;
+    // the measurements in the insertion, may contain aliases
+    private final String[] measurements;
+    // the names of the resolved measurements
+    private final String[] names;
+    private final MeasurementMNode[] measurementMNodes;
+
+    private DeviceSchema(long version, MNode deviceMNode, String[] measurements, String[] names,
+        MeasurementMNode[] measurementMNodes) {
+      this.version = version;
+      this.deviceMNode = deviceMNode;
+      this.measurements = measurements;
+      this.names = names;
+      this.measurementMNodes = measurementMNodes;
+    }
+  }
+
   /**
    * StorageGroupFilter filters unsatisfied storage groups in metadata queries to speed up and
    * deduplicate.
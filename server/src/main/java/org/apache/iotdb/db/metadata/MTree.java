@@ -28,10 +28,8 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayDeque;
@@ -48,13 +46,11 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
-import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.exception.metadata.AliasAlreadyExistException;
 import org.apache.iotdb.db.exception.metadata.IllegalPathException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
@@ -64,6 +60,7 @@ import org.apache.iotdb.db.exception.metadata.StorageGroupAlreadySetException;
 import org.apache.iotdb.db.exception.metadata.StorageGroupNotSetException;
 import org.apache.iotdb.db.metadata.MManager.StorageGroupFilter;
 import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MNodeStore;
 import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
 import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
 import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
@@ -91,15 +88,65 @@ public class MTree implements Serializable {
   private static transient ThreadLocal<Integer> count = new ThreadLocal<>();
   private static transient ThreadLocal<Integer> curOffset = new ThreadLocal<>();
   private MNode root;
+  // pages the measurements of devices out of memory if the MTree disk store is enabled
+  private transient MNodeStore nodeStore;
 
   MTree() {
     this.root = new MNode(null, IoTDBConstant.PATH_ROOT);
   }
 
-  private MTree(MNode root) {
+  MTree(MNode root) {
     this.root = root;
   }
 
+  /**
+   * Page the measurements of the devices in this MTree out by the store when they are not used.
+   */
+  void setNodeStore(MNodeStore nodeStore) {
+    this.nodeStore = nodeStore;
+    nodeStore.addAll(root);
+  }
+
+  /**
+   * Record an access to the device, or the device of the measurement, to keep it in memory.
+   */
+  void accessDevice(MNode node) {
+    if (nodeStore != null && node != null) {
+      nodeStore.access(node instanceof MeasurementMNode ? node.getParent() : node);
+    }
+  }
+
+  /**
+   * Keep the measurements of the device in memory until {@link #unpinDevice(MNode)}, so that the
+   * measurement nodes got after pinning are not replaced by paging out.
+   */
+  void pinDevice(MNode device) {
+    if (nodeStore != null) {
+      nodeStore.pin(device);
+    }
+  }
+
+  void unpinDevice(MNode device) {
+    if (nodeStore != null) {
+      nodeStore.unpin(device);
+    }
+  }
+
+  /**
+   * Get the measurement node of the timeseries with its device pinned, the caller must call
+   * {@link #unpinDevice(MNode)} with the parent of the node when it is not used any more.
+   */
+  MeasurementMNode getMeasurementNodeAndPinDevice(PartialPath path) throws MetadataException {
+    MNode device = getNodeByPath(path.getDevicePath());
+    pinDevice(device);
+    MNode node = device.getChild(path.getMeasurement());
+    if (!(node instanceof MeasurementMNode)) {
+      unpinDevice(device);
+      throw new PathNotExistException(path.getFullPath());
+    }
+    return (MeasurementMNode) node;
+  }
+
   static long getLastTimeStamp(MeasurementMNode node, QueryContext queryContext) {
     TimeValuePair last = node.getCachedLast();
     if (last != null) {
@@ -117,6 +164,10 @@ public class MTree implements Serializable {
     }
   }
 
+  /**
+   * Read the text snapshot written by earlier versions, see {@link MTreeSnapshot} for the current
+   * format.
+   */
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   public static MTree deserializeFrom(File mtreeSnapshot) {
     try (BufferedReader br = new BufferedReader(new FileReader(mtreeSnapshot))) {
@@ -139,7 +190,7 @@ public class MTree implements Serializable {
         if (childrenSize == 0) {
           nodeStack.push(node);
         } else {
-          ConcurrentHashMap<String, MNode> childrenMap = new ConcurrentHashMap<>();
+          Map<String, MNode> childrenMap = new HashMap<>();
           for (int i = 0; i < childrenSize; i++) {
             MNode child = nodeStack.removeFirst();
             child.setParent(node);
@@ -151,7 +202,7 @@ public class MTree implements Serializable {
               }
             }
           }
-          node.setChildren(childrenMap);
+          node.setChildren(MNode.toChildrenMap(childrenMap));
           nodeStack.push(node);
         }
       }
@@ -229,6 +280,8 @@ public class MTree implements Serializable {
    * @param compressor compressor
    * @param props      props
    * @param alias      alias of measurement
+   * @return the new measurement node, whose device is pinned until the caller calls {@link
+   * #unpinDevice(MNode)} with it
    */
   MeasurementMNode createTimeseries(PartialPath path, TSDataType dataType, TSEncoding encoding,
       CompressionType compressor, Map<String, String> props, String alias)
@@ -255,27 +308,39 @@ public class MTree implements Serializable {
     }
     String leafName = nodeNames[nodeNames.length - 1];
 
-    // synchronize check and add, we need addChild and add Alias become atomic operation
-    // only write on mtree will be synchronized
-    synchronized (this) {
-      if (cur.hasChild(leafName)) {
-        throw new PathAlreadyExistException(path.getFullPath());
-      }
-      if (alias != null && cur.hasChild(alias)) {
-        throw new AliasAlreadyExistException(path.getFullPath(), alias);
-      }
-      MeasurementMNode leaf = new MeasurementMNode(cur, leafName, alias, dataType, encoding,
-          compressor, props);
-
-      cur.addChild(leafName, leaf);
+    // the caller still sets the offset of the leaf
+    // pin the device and load its measurements before synchronizing, so that no device is paged
+    // out or loaded while holding the lock of the MTree
+    pinDevice(cur);
+    MeasurementMNode leaf;
+    try {
+      cur.getChildren();
+      // synchronize check and add, we need addChild and add Alias become atomic operation
+      // only write on mtree will be synchronized
+      synchronized (this) {
+        if (cur.hasChild(leafName)) {
+          throw new PathAlreadyExistException(path.getFullPath());
+        }
+        if (alias != null && cur.hasChild(alias)) {
+          throw new AliasAlreadyExistException(path.getFullPath(), alias);
+        }
+        leaf = new MeasurementMNode(cur, leafName, alias, dataType, encoding, compressor, props);
+        cur.addChild(leafName, leaf);
 
-      // link alias to LeafMNode
-      if (alias != null) {
-        cur.addAlias(alias, leaf);
+        // link alias to LeafMNode
+        if (alias != null) {
+          cur.addAlias(alias, leaf);
+        }
       }
+    } catch (MetadataException | RuntimeException e) {
+      unpinDevice(cur);
+      throw e;
+    }
 
-      return leaf;
+    if (nodeStore != null) {
+      nodeStore.add(cur);
     }
+    return leaf;
   }
 
   /**
@@ -395,6 +460,10 @@ public class MTree implements Serializable {
       }
     }
 
+    if (nodeStore != null) {
+      nodeStore.remove(cur);
+    }
+
     cur = cur.getParent();
     // delete node b while retain root.a.sg2
     while (!IoTDBConstant.PATH_ROOT.equals(cur.getName()) && cur.getChildren().size() == 0) {
@@ -461,8 +530,15 @@ public class MTree implements Serializable {
         return new Pair<>(curNode.getPartialPath(), deletedNode);
       }
       curNode.getParent().deleteChild(curNode.getName());
+      if (nodeStore != null) {
+        nodeStore.remove(curNode);
+      }
       curNode = curNode.getParent();
     }
+    // the remaining children may all be measurements without tags now
+    if (nodeStore != null && curNode != root) {
+      nodeStore.add(curNode);
+    }
     return new Pair<>(null, deletedNode);
   }
 
@@ -504,6 +580,7 @@ public class MTree implements Serializable {
     if (!storageGroupChecked) {
       throw new StorageGroupNotSetException(path.getFullPath());
     }
+    accessDevice(cur);
     return cur;
   }
 
@@ -559,6 +636,7 @@ public class MTree implements Serializable {
         throw new PathNotExistException(path.getFullPath());
       }
     }
+    accessDevice(cur);
     return cur;
   }
 
@@ -1196,13 +1274,6 @@ public class MTree implements Serializable {
     }
   }
 
-  public void serializeTo(String snapshotPath) throws IOException {
-    try (BufferedWriter bw = new BufferedWriter(
-        new FileWriter(SystemFileFactory.INSTANCE.getFile(snapshotPath)))) {
-      root.serializeTo(bw);
-    }
-  }
-
   @Override
   public String toString() {
     JsonObject jsonObject = new JsonObject();
@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.iotdb.db.concurrent.IoTThreadFactory;
+import org.apache.iotdb.db.concurrent.ThreadName;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.exception.metadata.IllegalPathException;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MNodeStore;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
+import org.apache.iotdb.tsfile.utils.PublicBAOS;
+import org.apache.iotdb.tsfile.utils.ReadWriteForEncodingUtils;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+
+/**
+ * Binary snapshot of the MTree. A snapshot consists of one section per storage group, so that the
+ * sections can be decoded in parallel when loading and a delta snapshot can replace the sections of
+ * the storage groups modified since the last full snapshot.
+ *
+ * <p>File: [magic int][type byte][generation long] followed by entries, each of which is either
+ * [SECTION][storage group path][section length int][section] or [REMOVED][storage group path], and
+ * ends with [END]. A full snapshot carries its own generation, a delta snapshot carries the
+ * generation of the full snapshot it applies to.
+ *
+ * <p>Section: [ttl long][dictionary size varint][name]* [children of the storage group node], where
+ * every node is [node type byte][name id varint] (+ [alias id + 1 varint][data type byte][encoding
+ * byte][compressor byte][props size + 1 varint][key id varint][value id varint]* [offset long] for
+ * measurements) [children number varint][children]*. Names are stored once in the dictionary of the
+ * section and referred to by their ids.
+ */
+public class MTreeSnapshot {
+
+  static final byte FULL_SNAPSHOT = 0;
+  static final byte DELTA_SNAPSHOT = 1;
+
+  private static final int MAGIC_NUMBER = 0x4D545232;
+
+  private static final byte END = 0;
+  private static final byte SECTION = 1;
+  private static final byte REMOVED = 2;
+
+  private MTreeSnapshot() {
+    // util class
+  }
+
+  /**
+   * Write the given storage groups of the MTree into a snapshot file. Storage groups that no longer
+   * exist in the MTree are recorded as removed.
+   *
+   * @param storageGroups full paths of the storage groups to be written, or null to write all of
+   *                      them
+   */
+  static void serialize(MTree mtree, File file, byte type, long generation,
+      Set<String> storageGroups) throws IOException {
+    try (FileOutputStream fileOutputStream = new FileOutputStream(file);
+        OutputStream outputStream = new BufferedOutputStream(fileOutputStream)) {
+      ReadWriteIOUtils.write(MAGIC_NUMBER, outputStream);
+      ReadWriteIOUtils.write(type, outputStream);
+      ReadWriteIOUtils.write(generation, outputStream);
+
+      Set<String> removed = storageGroups == null ? null : new HashSet<>(storageGroups);
+      for (StorageGroupMNode storageGroupMNode : mtree.getAllStorageGroupNodes()) {
+        String storageGroup = storageGroupMNode.getFullPath();
+        if (removed != null && !removed.remove(storageGroup)) {
+          continue;
+        }
+        PublicBAOS section = serializeSection(storageGroupMNode);
+        ReadWriteIOUtils.write(SECTION, outputStream);
+        ReadWriteIOUtils.write(storageGroup, outputStream);
+        ReadWriteIOUtils.write(section.size(), outputStream);
+        outputStream.write(section.getBuf(), 0, section.size());
+      }
+      if (removed != null) {
+        for (String storageGroup : removed) {
+          ReadWriteIOUtils.write(REMOVED, outputStream);
+          ReadWriteIOUtils.write(storageGroup, outputStream);
+        }
+      }
+      ReadWriteIOUtils.write(END, outputStream);
+
+      outputStream.flush();
+      fileOutputStream.getFD().sync();
+    }
+  }
+
+  /**
+   * @return the generation recorded in the header of the snapshot file
+   */
+  static long readGeneration(File file) throws IOException {
+    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+      readType(inputStream, file);
+      return ReadWriteIOUtils.readLong(inputStream);
+    }
+  }
+
+  /**
+   * Load an MTree from a full snapshot and, if its base generation matches, the delta snapshot
+   * taken after it. The sections are decoded in parallel.
+   *
+   * @param deltaSnapshot may be null or not exist
+   * @param nodeStore     if not null, pages out the measurements of the storage groups already
+   *                      loaded, so that the whole MTree is never in memory
+   */
+  static MTree deserializeFrom(File fullSnapshot, File deltaSnapshot, int threadNum,
+      MNodeStore nodeStore) throws IOException {
+    // the delta snapshot is read first, as it replaces or removes the sections of the full one
+    Map<String, byte[]> deltaSections = new LinkedHashMap<>();
+    if (deltaSnapshot != null && deltaSnapshot.exists()
+        && readGeneration(deltaSnapshot) == readGeneration(fullSnapshot)) {
+      readSections(deltaSnapshot, DELTA_SNAPSHOT, (storageGroup, section) -> {
+        deltaSections.put(storageGroup, section);
+        return true;
+      });
+    }
+
+    MNode root = new MNode(null, IoTDBConstant.PATH_ROOT);
+    MTree mtree = new MTree(root);
+    if (nodeStore != null) {
+      mtree.setNodeStore(nodeStore);
+    }
+    SectionLoader loader = new SectionLoader(root, threadNum, nodeStore);
+    try {
+      readSections(fullSnapshot, FULL_SNAPSHOT, (storageGroup, section) -> {
+        if (section == null) {
+          // a full snapshot has nothing to remove
+          return false;
+        }
+        if (!deltaSections.containsKey(storageGroup)) {
+          loader.load(storageGroup, section);
+        }
+        return true;
+      });
+      for (Entry<String, byte[]> entry : deltaSections.entrySet()) {
+        if (entry.getValue() != null) {
+          loader.load(entry.getKey(), entry.getValue());
+        }
+      }
+      deltaSections.clear();
+      loader.finish();
+      return mtree;
+    } finally {
+      loader.close();
+    }
+  }
+
+  /**
+   * Read the entries of a snapshot file one by one.
+   *
+   * @return the generation of the file
+   */
+  private static long readSections(File file, byte expectedType, SectionVisitor visitor)
+      throws IOException {
+    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+      byte type = readType(inputStream, file);
+      if (type != expectedType) {
+        throw new IOException(String.format("%s is not a %s snapshot", file,
+            expectedType == FULL_SNAPSHOT ? "full" : "delta"));
+      }
+      long generation = ReadWriteIOUtils.readLong(inputStream);
+      byte entryType;
+      while ((entryType = readByte(inputStream)) != END) {
+        String storageGroup = ReadWriteIOUtils.readString(inputStream);
+        boolean accepted;
+        if (entryType == SECTION) {
+          int length = ReadWriteIOUtils.readInt(inputStream);
+          accepted = visitor.visit(storageGroup, ReadWriteIOUtils.readBytes(inputStream, length));
+        } else if (entryType == REMOVED) {
+          accepted = visitor.visit(storageGroup, null);
+        } else {
+          accepted = false;
+        }
+        if (!accepted) {
+          throw new IOException(String.format("Unexpected entry type %d in %s", entryType, file));
+        }
+      }
+      return generation;
+    }
+  }
+
+  @FunctionalInterface
+  private interface SectionVisitor {
+
+    /**
+     * @param section null if the storage group is removed
+     * @return false if the entry is not expected in the file
+     */
+    boolean visit(String storageGroup, byte[] section) throws IOException;
+  }
+
+  /**
+   * Decodes sections in parallel and links them into the MTree in the order they are read. Only a
+   * few sections are decoded ahead, so that the undecoded sections and the storage groups not
+   * yet seen by the store do not pile up in memory.
+   */
+  private static class SectionLoader {
+
+    private final MNode root;
+    private final MNodeStore nodeStore;
+    private final ExecutorService pool;
+    private final int maxPendingSections;
+    private final Deque<String[]> pendingStorageGroups = new ArrayDeque<>();
+    private final Deque<Future<StorageGroupMNode>> pendingSections = new ArrayDeque<>();
+
+    private SectionLoader(MNode root, int threadNum, MNodeStore nodeStore) {
+      this.root = root;
+      this.nodeStore = nodeStore;
+      int poolSize = Math.max(1, threadNum);
+      this.pool = Executors.newFixedThreadPool(poolSize,
+          new IoTThreadFactory(ThreadName.LOAD_MTREE_SNAPSHOT.getName()));
+      this.maxPendingSections = poolSize * 2;
+    }
+
+    private void load(String storageGroup, byte[] section) throws IOException {
+      String[] nodeNames;
+      try {
+        nodeNames = new PartialPath(storageGroup).getNodes();
+      } catch (IllegalPathException e) {
+        throw new IOException(e);
+      }
+      pendingStorageGroups.add(nodeNames);
+      pendingSections.add(pool.submit(
+          () -> deserializeSection(nodeNames[nodeNames.length - 1], section)));
+      if (pendingSections.size() >= maxPendingSections) {
+        attachNext();
+      }
+    }
+
+    private void finish() throws IOException {
+      while (!pendingSections.isEmpty()) {
+        attachNext();
+      }
+    }
+
+    private void attachNext() throws IOException {
+      StorageGroupMNode storageGroupMNode;
+      try {
+        storageGroupMNode = pendingSections.poll().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+      attachStorageGroup(root, pendingStorageGroups.poll(), storageGroupMNode);
+      if (nodeStore != null) {
+        nodeStore.addAll(storageGroupMNode);
+      }
+    }
+
+    private void close() {
+      pool.shutdownNow();
+    }
+  }
+
+  private static byte readType(InputStream inputStream, File file) throws IOException {
+    if (ReadWriteIOUtils.readInt(inputStream) != MAGIC_NUMBER) {
+      throw new IOException(file + " is not an MTree snapshot");
+    }
+    return readByte(inputStream);
+  }
+
+  private static byte readByte(InputStream inputStream) throws IOException {
+    int b = inputStream.read();
+    if (b < 0) {
+      throw new EOFException();
+    }
+    return (byte) b;
+  }
+
+  private static PublicBAOS serializeSection(StorageGroupMNode storageGroupMNode)
+      throws IOException {
+    Map<String, Integer> dictionary = new HashMap<>();
+    PublicBAOS nodes = new PublicBAOS();
+    serializeChildren(storageGroupMNode, nodes, dictionary);
+
+    String[] names = new String[dictionary.size()];
+    for (Entry<String, Integer> entry : dictionary.entrySet()) {
+      names[entry.getValue()] = entry.getKey();
+    }
+    PublicBAOS section = new PublicBAOS();
+    ReadWriteIOUtils.write(storageGroupMNode.getDataTTL(), section);
+    ReadWriteForEncodingUtils.writeUnsignedVarInt(names.length, section);
+    for (String name : names) {
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      ReadWriteForEncodingUtils.writeUnsignedVarInt(bytes.length, section);
+      section.write(bytes);
+    }
+    section.write(nodes.getBuf(), 0, nodes.size());
+    return section;
+  }
+
+  private static void serializeChildren(MNode node, PublicBAOS out,
+      Map<String, Integer> dictionary) throws IOException {
+    // paged out measurements are read from the store instead of being loaded into the MTree
+    Map<String, MNode> children = node.getChildrenWithoutLoading();
+    // the children may change while the snapshot is taken, so they are counted while written
+    List<MNode> childList = new ArrayList<>(children.values());
+    ReadWriteForEncodingUtils.writeUnsignedVarInt(childList.size(), out);
+    for (MNode child : childList) {
+      serializeNode(child, out, dictionary);
+    }
+  }
+
+  private static void serializeNode(MNode node, PublicBAOS out, Map<String, Integer> dictionary)
+      throws IOException {
+    if (node instanceof MeasurementMNode) {
+      MeasurementMNode measurementMNode = (MeasurementMNode) node;
+      MeasurementSchema schema = measurementMNode.getSchema();
+      out.write(MetadataConstant.MEASUREMENT_MNODE_TYPE);
+      writeName(node.getName(), out, dictionary);
+      String alias = measurementMNode.getAlias();
+      ReadWriteForEncodingUtils.writeUnsignedVarInt(
+          alias == null ? 0 : getNameId(alias, dictionary) + 1, out);
+      out.write(schema.getType().ordinal());
+      out.write(schema.getEncodingType().ordinal());
+      out.write(schema.getCompressor().ordinal());
+      Map<String, String> props = schema.getProps();
+      ReadWriteForEncodingUtils.writeUnsignedVarInt(props == null ? 0 : props.size() + 1, out);
+      if (props != null) {
+        for (Entry<String, String> entry : props.entrySet()) {
+          writeName(entry.getKey(), out, dictionary);
+          writeName(entry.getValue(), out, dictionary);
+        }
+      }
+      ReadWriteIOUtils.write(measurementMNode.getOffset(), out);
+    } else {
+      out.write(MetadataConstant.MNODE_TYPE);
+      writeName(node.getName(), out, dictionary);
+    }
+    serializeChildren(node, out, dictionary);
+  }
+
+  private static void writeName(String name, PublicBAOS out, Map<String, Integer> dictionary) {
+    ReadWriteForEncodingUtils.writeUnsignedVarInt(getNameId(name, dictionary), out);
+  }
+
+  private static int getNameId(String name, Map<String, Integer> dictionary) {
+    return dictionary.computeIfAbsent(name, k -> dictionary.size());
+  }
+
+  private static StorageGroupMNode deserializeSection(String name, byte[] section) {
+    ByteBuffer buffer = ByteBuffer.wrap(section);
+    StorageGroupMNode storageGroupMNode = new StorageGroupMNode(null, name, buffer.getLong());
+
+    String[] names = new String[ReadWriteForEncodingUtils.readUnsignedVarInt(buffer)];
+    for (int i = 0; i < names.length; i++) {
+      int length = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer);
+      names[i] = new String(section, buffer.position(), length, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+    }
+    deserializeChildren(storageGroupMNode, buffer, names);
+    return storageGroupMNode;
+  }
+
+  private static void deserializeChildren(MNode parent, ByteBuffer buffer, String[] names) {
+    int childrenNum = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer);
+    if (childrenNum == 0) {
+      return;
+    }
+    Map<String, MNode> children = new HashMap<>(childrenNum * 4 / 3 + 1);
+    for (int i = 0; i < childrenNum; i++) {
+      MNode child = deserializeNode(parent, buffer, names);
+      children.put(child.getName(), child);
+    }
+    parent.setChildren(MNode.toChildrenMap(children));
+  }
+
+  private static MNode deserializeNode(MNode parent, ByteBuffer buffer, String[] names) {
+    byte nodeType = buffer.get();
+    String name = names[ReadWriteForEncodingUtils.readUnsignedVarInt(buffer)];
+    MNode node;
+    if (nodeType == MetadataConstant.MEASUREMENT_MNODE_TYPE) {
+      int aliasId = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer);
+      String alias = aliasId == 0 ? null : names[aliasId - 1];
+      byte dataType = buffer.get();
+      byte encoding = buffer.get();
+      byte compressor = buffer.get();
+      int propsSize = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer) - 1;
+      Map<String, String> props = null;
+      if (propsSize >= 0) {
+        props = new HashMap<>();
+        for (int i = 0; i < propsSize; i++) {
+          String key = names[ReadWriteForEncodingUtils.readUnsignedVarInt(buffer)];
+          props.put(key, names[ReadWriteForEncodingUtils.readUnsignedVarInt(buffer)]);
+        }
+      }
+      MeasurementSchema schema = new MeasurementSchema(name, dataType, encoding, compressor,
+          props);
+      MeasurementMNode measurementMNode = new MeasurementMNode(parent, name, schema, alias);
+      measurementMNode.setOffset(buffer.getLong());
+      if (alias != null) {
+        parent.addAlias(alias, measurementMNode);
+      }
+      node = measurementMNode;
+    } else {
+      node = new MNode(parent, name);
+    }
+    deserializeChildren(node, buffer, names);
+    return node;
+  }
+
+  /**
+   * Link a storage group node into the MTree, creating the internal nodes above it.
+   */
+  private static void attachStorageGroup(MNode root, String[] nodeNames,
+      StorageGroupMNode storageGroupMNode) {
+    MNode cur = root;
+    for (int i = 1; i < nodeNames.length - 1; i++) {
+      MNode child = cur.getChild(nodeNames[i]);
+      if (child == null) {
+        child = new MNode(cur, nodeNames[i]);
+        cur.addChild(nodeNames[i], child);
+      }
+      cur = child;
+    }
+    storageGroupMNode.setParent(cur);
+    cur.addChild(storageGroupMNode.getName(), storageGroupMNode);
+  }
+}
@@ -26,15 +26,26 @@ public class MetadataConstant {
     // allowed to do nothing
   }
 
-  private static final String MTREE_VERSION = "1";
+  private static final String MTREE_VERSION = "2";
+  private static final String MTREE_LEGACY_VERSION = "1";
 
   public static final String ROOT = "root";
-  public static final String METADATA_LOG = "mlog.txt";
+  public static final String METADATA_LOG = "mlog.bin";
+  // text metadata log of earlier versions, also the name of the schema transferred by sync
+  public static final String METADATA_TXT_LOG = "mlog.txt";
   public static final String TAG_LOG = "tlog.txt";
   public static final String MTREE_SNAPSHOT =
       "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_VERSION + ".snapshot";
   public static final String MTREE_SNAPSHOT_TMP =
       "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_VERSION + ".snapshot.tmp";
+  public static final String MTREE_DELTA_SNAPSHOT =
+      "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_VERSION + ".delta";
+  public static final String MTREE_DELTA_SNAPSHOT_TMP =
+      "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_VERSION + ".delta.tmp";
+  public static final String MTREE_LEGACY_SNAPSHOT =
+      "mtree" + IoTDBConstant.FILE_NAME_SEPARATOR + MTREE_LEGACY_VERSION + ".snapshot";
+  // measurements paged out of memory, recreated on every start
+  public static final String MTREE_STORE = "mtree.store";
 
 
   public static final short MNODE_TYPE = 0;
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Children of an MNode in the compact MTree. Up to maxArraySize children are kept in one array of
+ * alternating names and nodes sorted by the names, which costs about a quarter of the memory of a
+ * ConcurrentHashMap. The array is replaced on every modification so reading never locks. Once
+ * there are more children, they are moved into a ConcurrentHashMap, where they stay.
+ */
+public class CompactChildrenMap extends AbstractMap<String, MNode> implements
+    ConcurrentMap<String, MNode> {
+
+  private static final Object[] EMPTY = new Object[0];
+
+  private final int maxArraySize;
+
+  /**
+   * either an Object[] of alternating names and nodes or a ConcurrentHashMap, modified under the
+   * lock of this
+   */
+  private volatile Object table = EMPTY;
+
+  public CompactChildrenMap(int maxArraySize) {
+    this.maxArraySize = maxArraySize;
+  }
+
+  public CompactChildrenMap(int maxArraySize, Map<String, MNode> children) {
+    this.maxArraySize = maxArraySize;
+    if (children.size() > maxArraySize) {
+      table = new ConcurrentHashMap<>(children);
+      return;
+    }
+    String[] names = children.keySet().toArray(new String[0]);
+    Arrays.sort(names);
+    Object[] array = new Object[names.length * 2];
+    for (int i = 0; i < names.length; i++) {
+      array[i * 2] = names[i];
+      array[i * 2 + 1] = children.get(names[i]);
+    }
+    table = array;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ConcurrentHashMap<String, MNode> asMap(Object table) {
+    return (ConcurrentHashMap<String, MNode>) table;
+  }
+
+  /**
+   * @return the index of the name among the names, or (-(insertion index) - 1) if absent
+   */
+  private static int indexOf(Object[] array, String name) {
+    int low = 0;
+    int high = array.length / 2 - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = ((String) array[mid * 2]).compareTo(name);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  @Override
+  public int size() {
+    Object current = table;
+    return current instanceof Object[] ? ((Object[]) current).length / 2 : asMap(current).size();
+  }
+
+  @Override
+  public MNode get(Object key) {
+    Object current = table;
+    if (!(current instanceof Object[])) {
+      return asMap(current).get(key);
+    }
+    if (!(key instanceof String)) {
+      return null;
+    }
+    Object[] array = (Object[]) current;
+    int index = indexOf(array, (String) key);
+    return index < 0 ? null : (MNode) array[index * 2 + 1];
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public MNode put(String key, MNode value) {
+    return put(key, value, false);
+  }
+
+  @Override
+  public MNode putIfAbsent(String key, MNode value) {
+    return put(key, value, true);
+  }
+
+  private synchronized MNode put(String key, MNode value, boolean onlyIfAbsent) {
+    if (key == null || value == null) {
+      throw new NullPointerException();
+    }
+    Object current = table;
+    if (!(current instanceof Object[])) {
+      return onlyIfAbsent ? asMap(current).putIfAbsent(key, value) : asMap(current).put(key, value);
+    }
+    Object[] array = (Object[]) current;
+    int index = indexOf(array, key);
+    if (index >= 0) {
+      MNode old = (MNode) array[index * 2 + 1];
+      if (!onlyIfAbsent) {
+        Object[] newArray = array.clone();
+        newArray[index * 2 + 1] = value;
+        table = newArray;
+      }
+      return old;
+    }
+
+    if (array.length / 2 >= maxArraySize) {
+      ConcurrentHashMap<String, MNode> map = new ConcurrentHashMap<>(array.length);
+      for (int i = 0; i < array.length; i += 2) {
+        map.put((String) array[i], (MNode) array[i + 1]);
+      }
+      map.put(key, value);
+      table = map;
+      return null;
+    }
+    int insertion = -index - 1;
+    Object[] newArray = new Object[array.length + 2];
+    System.arraycopy(array, 0, newArray, 0, insertion * 2);
+    newArray[insertion * 2] = key;
+    newArray[insertion * 2 + 1] = value;
+    System.arraycopy(array, insertion * 2, newArray, insertion * 2 + 2,
+        array.length - insertion * 2);
+    table = newArray;
+    return null;
+  }
+
+  @Override
+  public MNode remove(Object key) {
+    return remove(key, null, false);
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    return value instanceof MNode && remove(key, value, true) != null;
+  }
+
+  private synchronized MNode remove(Object key, Object value, boolean onlyIfEquals) {
+    Object current = table;
+    if (!(current instanceof Object[])) {
+      if (!onlyIfEquals) {
+        return asMap(current).remove(key);
+      }
+      return asMap(current).remove(key, value) ? (MNode) value : null;
+    }
+    if (!(key instanceof String)) {
+      return null;
+    }
+    Object[] array = (Object[]) current;
+    int index = indexOf(array, (String) key);
+    if (index < 0) {
+      return null;
+    }
+    MNode old = (MNode) array[index * 2 + 1];
+    if (onlyIfEquals && !old.equals(value)) {
+      return null;
+    }
+    Object[] newArray = new Object[array.length - 2];
+    System.arraycopy(array, 0, newArray, 0, index * 2);
+    System.arraycopy(array, index * 2 + 2, newArray, index * 2, newArray.length - index * 2);
+    table = newArray;
+    return old;
+  }
+
+  @Override
+  public synchronized boolean replace(String key, MNode oldValue, MNode newValue) {
+    MNode current = get(key);
+    if (current == null || !current.equals(oldValue)) {
+      return false;
+    }
+    put(key, newValue, false);
+    return true;
+  }
+
+  @Override
+  public synchronized MNode replace(String key, MNode value) {
+    return containsKey(key) ? put(key, value, false) : null;
+  }
+
+  @Override
+  public synchronized void clear() {
+    table = EMPTY;
+  }
+
+  /**
+   * Like the views of ConcurrentHashMap, iterating the entries never throws
+   * ConcurrentModificationException. With the children in the array, the entries are those at the
+   * time the iteration starts.
+   */
+  @Override
+  public Set<Entry<String, MNode>> entrySet() {
+    return new AbstractSet<Entry<String, MNode>>() {
+      @Override
+      public Iterator<Entry<String, MNode>> iterator() {
+        Object current = table;
+        if (!(current instanceof Object[])) {
+          return asMap(current).entrySet().iterator();
+        }
+        return new ArrayIterator((Object[]) current);
+      }
+
+      @Override
+      public int size() {
+        return CompactChildrenMap.this.size();
+      }
+    };
+  }
+
+  private class ArrayIterator implements Iterator<Entry<String, MNode>> {
+
+    private final Object[] array;
+    private int next = 0;
+    private String lastName;
+
+    private ArrayIterator(Object[] array) {
+      this.array = array;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < array.length;
+    }
+
+    @Override
+    public Entry<String, MNode> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastName = (String) array[next];
+      Entry<String, MNode> entry =
+          new SimpleImmutableEntry<>(lastName, (MNode) array[next + 1]);
+      next += 2;
+      return entry;
+    }
+
+    @Override
+    public void remove() {
+      if (lastName == null) {
+        throw new IllegalStateException();
+      }
+      CompactChildrenMap.this.remove(lastName);
+      lastName = null;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.util.Arrays;
+import org.apache.iotdb.tsfile.exception.write.UnSupportedDataTypeException;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.RamUsageEstimator;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+
+/**
+ * Last values of the timeseries in the compact MTree. Instead of a TimeValuePair and a boxed value
+ * per timeseries, the timestamps and the values are kept in chunks of primitive arrays, and a
+ * MeasurementMNode holds the slot of its last value. Accesses to a slot are synchronized on the
+ * node that holds it.
+ */
+public class LastCacheTable {
+
+  private static final int CHUNK_SIZE = 4096;
+
+  private volatile long[][] timestamps = new long[0][];
+  // values of all types but TEXT in the bits of a long
+  private volatile long[][] values = new long[0][];
+  private volatile byte[][] types = new byte[0][];
+  // values of TEXT, the chunk is created once it is used
+  private volatile Binary[][] binaries = new Binary[0][];
+
+  private int slotNum;
+  private int[] freeSlots = new int[16];
+  private int freeSlotNum;
+
+  private LastCacheTable() {
+  }
+
+  public static LastCacheTable getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  synchronized int allocate() {
+    if (freeSlotNum > 0) {
+      return freeSlots[--freeSlotNum];
+    }
+    if (slotNum == timestamps.length * CHUNK_SIZE) {
+      int chunkNum = timestamps.length + 1;
+      long[][] newTimestamps = Arrays.copyOf(timestamps, chunkNum);
+      long[][] newValues = Arrays.copyOf(values, chunkNum);
+      byte[][] newTypes = Arrays.copyOf(types, chunkNum);
+      newTimestamps[chunkNum - 1] = new long[CHUNK_SIZE];
+      newValues[chunkNum - 1] = new long[CHUNK_SIZE];
+      newTypes[chunkNum - 1] = new byte[CHUNK_SIZE];
+      binaries = Arrays.copyOf(binaries, chunkNum);
+      types = newTypes;
+      values = newValues;
+      timestamps = newTimestamps;
+    }
+    return slotNum++;
+  }
+
+  synchronized void release(int slot) {
+    Binary[] binaryChunk = binaries[slot / CHUNK_SIZE];
+    if (binaryChunk != null) {
+      binaryChunk[slot % CHUNK_SIZE] = null;
+    }
+    if (freeSlotNum == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeSlotNum * 2);
+    }
+    freeSlots[freeSlotNum++] = slot;
+  }
+
+  long getTimestamp(int slot) {
+    return timestamps[slot / CHUNK_SIZE][slot % CHUNK_SIZE];
+  }
+
+  TimeValuePair get(int slot) {
+    int chunk = slot / CHUNK_SIZE;
+    int index = slot % CHUNK_SIZE;
+    long value = values[chunk][index];
+    TsPrimitiveType primitiveType;
+    switch (TSDataType.deserialize(types[chunk][index])) {
+      case BOOLEAN:
+        primitiveType = new TsPrimitiveType.TsBoolean(value != 0);
+        break;
+      case INT32:
+        primitiveType = new TsPrimitiveType.TsInt((int) value);
+        break;
+      case INT64:
+        primitiveType = new TsPrimitiveType.TsLong(value);
+        break;
+      case FLOAT:
+        primitiveType = new TsPrimitiveType.TsFloat(Float.intBitsToFloat((int) value));
+        break;
+      case DOUBLE:
+        primitiveType = new TsPrimitiveType.TsDouble(Double.longBitsToDouble(value));
+        break;
+      case TEXT:
+        primitiveType = new TsPrimitiveType.TsBinary(binaries[chunk][index]);
+        break;
+      default:
+        throw new UnSupportedDataTypeException(String.valueOf(types[chunk][index]));
+    }
+    return new TimeValuePair(timestamps[chunk][index], primitiveType);
+  }
+
+  void set(int slot, long timestamp, TsPrimitiveType value) {
+    int chunk = slot / CHUNK_SIZE;
+    int index = slot % CHUNK_SIZE;
+    long bits;
+    switch (value.getDataType()) {
+      case BOOLEAN:
+        bits = value.getBoolean() ? 1 : 0;
+        break;
+      case INT32:
+        bits = value.getInt();
+        break;
+      case INT64:
+        bits = value.getLong();
+        break;
+      case FLOAT:
+        bits = Float.floatToRawIntBits(value.getFloat());
+        break;
+      case DOUBLE:
+        bits = Double.doubleToRawLongBits(value.getDouble());
+        break;
+      case TEXT:
+        bits = 0;
+        getBinaryChunk(chunk)[index] = value.getBinary();
+        break;
+      default:
+        throw new UnSupportedDataTypeException(String.valueOf(value.getDataType()));
+    }
+    timestamps[chunk][index] = timestamp;
+    values[chunk][index] = bits;
+    types[chunk][index] = value.getDataType().enumToByte();
+  }
+
+  private Binary[] getBinaryChunk(int chunk) {
+    Binary[] binaryChunk = binaries[chunk];
+    if (binaryChunk == null) {
+      synchronized (this) {
+        binaryChunk = binaries[chunk];
+        if (binaryChunk == null) {
+          binaryChunk = new Binary[CHUNK_SIZE];
+          binaries[chunk] = binaryChunk;
+        }
+      }
+    }
+    return binaryChunk;
+  }
+
+  /**
+   * @return the estimated memory of the table in bytes, excluding the TEXT values
+   */
+  public synchronized long getRamSize() {
+    long size = RamUsageEstimator.shallowSizeOf(timestamps)
+        + RamUsageEstimator.shallowSizeOf(values) + RamUsageEstimator.shallowSizeOf(types)
+        + RamUsageEstimator.shallowSizeOf(binaries) + RamUsageEstimator.sizeOf(freeSlots);
+    for (int i = 0; i < timestamps.length; i++) {
+      size += RamUsageEstimator.sizeOf(timestamps[i]) + RamUsageEstimator.sizeOf(values[i])
+          + RamUsageEstimator.sizeOf(types[i]) + RamUsageEstimator.shallowSizeOf(binaries[i]);
+    }
+    return size;
+  }
+
+  public synchronized void clear() {
+    timestamps = new long[0][];
+    values = new long[0][];
+    types = new byte[0][];
+    binaries = new Binary[0][];
+    slotNum = 0;
+    freeSlots = new int[16];
+    freeSlotNum = 0;
+  }
+
+  private static class InstanceHolder {
+
+    private static final LastCacheTable INSTANCE = new LastCacheTable();
+
+    private InstanceHolder() {
+      // allowed to do nothing
+    }
+  }
+}
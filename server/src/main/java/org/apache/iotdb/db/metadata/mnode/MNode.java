@@ -18,18 +18,16 @@
  */
 package org.apache.iotdb.db.metadata.mnode;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBConstant;
-import org.apache.iotdb.db.metadata.MetadataConstant;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.metadata.PartialPath;
 import org.apache.iotdb.db.rescon.CachedStringPool;
 
@@ -42,6 +40,7 @@ public class MNode implements Serializable {
   private static final long serialVersionUID = -770028375899514063L;
   private static Map<String, String> cachedPathPool = CachedStringPool.getInstance()
       .getCachedPool();
+  private static final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
 
   /**
    * Name of the MNode
@@ -67,6 +66,13 @@ public class MNode implements Serializable {
   @SuppressWarnings("squid:S3077")
   private transient volatile ConcurrentMap<String, MNode> aliasChildren = null;
 
+  /**
+   * where the children are in an MNodeStore while they are paged out, when the children are null
+   * suppress warnings reason: volatile for double synchronized check
+   */
+  @SuppressWarnings("squid:S3077")
+  private transient volatile PagedOutChildren pagedOutChildren = null;
+
   /**
    * Constructor of MNode.
    */
@@ -79,8 +85,37 @@ public class MNode implements Serializable {
    * check whether the MNode has a child with the name
    */
   public boolean hasChild(String name) {
-    return (children != null && children.containsKey(name)) ||
-        (aliasChildren != null && aliasChildren.containsKey(name));
+    ConcurrentMap<String, MNode> currentChildren = loadChildren();
+    ConcurrentMap<String, MNode> currentAliasChildren = aliasChildren;
+    return (currentChildren != null && currentChildren.containsKey(name)) ||
+        (currentAliasChildren != null && currentAliasChildren.containsKey(name));
+  }
+
+  /**
+   * @return the children, which are loaded first if they are paged out by an MNodeStore
+   */
+  private ConcurrentMap<String, MNode> loadChildren() {
+    ConcurrentMap<String, MNode> current = children;
+    if (current != null) {
+      return current;
+    }
+    PagedOutChildren currentPagedOutChildren = pagedOutChildren;
+    if (currentPagedOutChildren == null) {
+      // the children are set before the record is cleared when they are loaded
+      return children;
+    }
+    synchronized (this) {
+      currentPagedOutChildren = pagedOutChildren;
+      if (currentPagedOutChildren == null) {
+        return children;
+      }
+      current = currentPagedOutChildren.load(this);
+    }
+    // do not page out other nodes while holding the lock of this one
+    if (!Thread.holdsLock(this)) {
+      currentPagedOutChildren.getStore().evictIfNeeded();
+    }
+    return current;
   }
 
   /**
@@ -92,24 +127,21 @@ public class MNode implements Serializable {
     /* use cpu time to exchange memory
      * measurementNode's children should be null to save memory
      * add child method will only be called when writing MTree, which is not a frequent operation
+     * synchronized so that the children are not paged out during adding
      */
-    if (children == null) {
-      // double check, children is volatile
-      synchronized (this) {
-        if (children == null) {
-          children = new ConcurrentHashMap<>();
-        }
+    synchronized (this) {
+      if (loadChildren() == null) {
+        children = newChildrenMap();
       }
+      children.putIfAbsent(name, child);
     }
-
-    children.putIfAbsent(name, child);
   }
 
   /**
    * delete a child
    */
-  public void deleteChild(String name) {
-    if (children != null) {
+  public synchronized void deleteChild(String name) {
+    if (loadChildren() != null) {
       children.remove(name);
     }
   }
@@ -117,7 +149,8 @@ public class MNode implements Serializable {
   /**
    * delete the alias of a child
    */
-  public void deleteAliasChild(String alias) {
+  public synchronized void deleteAliasChild(String alias) {
+    loadChildren();
     if (aliasChildren != null) {
       aliasChildren.remove(alias);
     }
@@ -128,24 +161,27 @@ public class MNode implements Serializable {
    */
   public MNode getChild(String name) {
     MNode child = null;
-    if (children != null) {
-      child = children.get(name);
+    ConcurrentMap<String, MNode> currentChildren = loadChildren();
+    if (currentChildren != null) {
+      child = currentChildren.get(name);
     }
     if (child != null) {
       return child;
     }
-    return aliasChildren == null ? null : aliasChildren.get(name);
+    ConcurrentMap<String, MNode> currentAliasChildren = aliasChildren;
+    return currentAliasChildren == null ? null : currentAliasChildren.get(name);
   }
 
   /**
    * get the count of all leaves whose ancestor is current node
    */
   public int getLeafCount() {
-    if (children == null) {
+    ConcurrentMap<String, MNode> currentChildren = loadChildren();
+    if (currentChildren == null) {
       return 0;
     }
     int leafCount = 0;
-    for (MNode child : children.values()) {
+    for (MNode child : currentChildren.values()) {
       leafCount += child.getLeafCount();
     }
     return leafCount;
@@ -154,19 +190,32 @@ public class MNode implements Serializable {
   /**
    * add an alias
    */
-  public boolean addAlias(String alias, MNode child) {
+  public synchronized boolean addAlias(String alias, MNode child) {
+    loadChildren();
     if (aliasChildren == null) {
-      // double check, alias children volatile
-      synchronized (this) {
-        if (aliasChildren == null) {
-          aliasChildren = new ConcurrentHashMap<>();
-        }
-      }
+      aliasChildren = newChildrenMap();
     }
 
     return aliasChildren.computeIfAbsent(alias, aliasName -> child) == child;
   }
 
+  private static ConcurrentMap<String, MNode> newChildrenMap() {
+    if (config.isEnableCompactMTree()) {
+      return new CompactChildrenMap(config.getCompactMTreeMaxArrayChildren());
+    }
+    return new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return a map holding the given children, compact if the compact MTree is enabled
+   */
+  public static ConcurrentMap<String, MNode> toChildrenMap(Map<String, MNode> children) {
+    if (config.isEnableCompactMTree()) {
+      return new CompactChildrenMap(config.getCompactMTreeMaxArrayChildren(), children);
+    }
+    return new ConcurrentHashMap<>(children);
+  }
+
   /**
    * get full path
    */
@@ -218,39 +267,87 @@ public class MNode implements Serializable {
   }
 
   public Map<String, MNode> getChildren() {
-    if (children == null) {
+    ConcurrentMap<String, MNode> currentChildren = loadChildren();
+    if (currentChildren == null) {
       return Collections.emptyMap();
     }
-    return children;
+    return currentChildren;
   }
 
   public void setChildren(ConcurrentMap<String, MNode> children) {
     this.children = children;
   }
 
-  public String getName() {
-    return name;
+  /**
+   * @return the children, which are read without being kept in memory if they are paged out by an
+   * MNodeStore, e.g., to take a snapshot. The nodes read in that case are detached from the MTree.
+   */
+  public Map<String, MNode> getChildrenWithoutLoading() {
+    ConcurrentMap<String, MNode> currentChildren = children;
+    if (currentChildren == null && pagedOutChildren != null) {
+      // the record of the children may be rewritten once they are loaded
+      synchronized (this) {
+        PagedOutChildren currentPagedOutChildren = pagedOutChildren;
+        if (currentPagedOutChildren != null) {
+          return currentPagedOutChildren.read(this);
+        }
+        currentChildren = children;
+      }
+    }
+    if (currentChildren == null) {
+      return Collections.emptyMap();
+    }
+    return currentChildren;
   }
 
-  public void setName(String name) {
-    this.name = name;
+  /**
+   * @return whether the children are paged out by an MNodeStore, which are measurements without
+   * tags or attributes
+   */
+  public boolean isPagedOut() {
+    return pagedOutChildren != null;
   }
 
-  public void serializeTo(BufferedWriter bw) throws IOException {
-    serializeChildren(bw);
+  /**
+   * @return the children without loading them, null if they are paged out
+   */
+  ConcurrentMap<String, MNode> getChildrenInMemory() {
+    return children;
+  }
 
-    String s = String.valueOf(MetadataConstant.MNODE_TYPE) + "," + name + ","
-        + (children == null ? "0" : children.size());
-    bw.write(s);
-    bw.newLine();
+  /**
+   * @return where the children are in an MNodeStore, or null if they are in memory
+   */
+  PagedOutChildren getPagedOutChildren() {
+    return pagedOutChildren;
   }
 
-  void serializeChildren(BufferedWriter bw) throws IOException {
-    if (children == null) {
-      return;
-    }
-    for (Entry<String, MNode> entry : children.entrySet()) {
-      entry.getValue().serializeTo(bw);
-    }
+  /**
+   * drop the children and the aliases, which are paged out, called by an MNodeStore with the lock
+   * of this held
+   */
+  void setPagedOut(PagedOutChildren pagedOutChildren) {
+    // the record is set before the children are dropped, so that it is seen without them
+    this.pagedOutChildren = pagedOutChildren;
+    this.aliasChildren = null;
+    this.children = null;
+  }
+
+  /**
+   * set the children and the aliases loaded, called by an MNodeStore with the lock of this held
+   */
+  void setLoaded(ConcurrentMap<String, MNode> children,
+      ConcurrentMap<String, MNode> aliasChildren) {
+    this.aliasChildren = aliasChildren;
+    this.children = children;
+    this.pagedOutChildren = null;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
   }
 }
@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.apache.iotdb.tsfile.utils.PublicBAOS;
+import org.apache.iotdb.tsfile.utils.ReadWriteForEncodingUtils;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pages the measurements of devices out of the heap into a file and loads them back on demand, so
+ * that the number of timeseries is limited by the disk rather than the heap. Only the devices
+ * whose children are all measurements without tags or attributes are paged out, the device nodes
+ * themselves and the nodes above them always stay in memory.
+ *
+ * <p>The devices in memory are ordered by their last access. When there are more of them than
+ * the limit, the least recently used ones are paged out, except those pinned by the operations
+ * which keep references to their measurement nodes, see {@link #pin(MNode)}. The measurement nodes
+ * of a device paged out are detached, and the device gets new ones when it is loaded.
+ *
+ * <p>A device which cannot be paged out, e.g., as a measurement has tags, is no longer tracked
+ * until it is added again, which the MTree does when its children or their tags change.
+ *
+ * <p>The file is only a swap of the MTree, the metadata is still recovered from the mlog and the
+ * snapshots, so it is recreated when the store is opened. The space of a record is reused when the
+ * device is paged out again and its children still fit in, otherwise it is freed and the record is
+ * written into the smallest free space it fits in, or appended. The space of a removed device is
+ * freed as well, and adjacent free spaces are merged so that the file does not keep growing.
+ */
+public class MNodeStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(MNodeStore.class);
+
+  // after paging out could not reach the limit, wait for this long before trying again
+  private static final long EVICTION_RETRY_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final File file;
+  private final FileChannel channel;
+  private final int maxResidentDevices;
+  // called with each device paged out, as its measurement nodes are replaced when loaded
+  private final Consumer<MNode> evictionListener;
+
+  private final Map<MNode, Residence> residentDevices = new ConcurrentHashMap<>();
+  // device -> the number of operations using its measurement nodes
+  private final Map<MNode, Integer> pinnedDevices = new ConcurrentHashMap<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private volatile long nextEvictionTime = Long.MIN_VALUE;
+  // guarded by this
+  private long fileLength = 0;
+  // guarded by this, offset -> capacity of the free spaces in the file, the adjacent ones merged
+  private final TreeMap<Long, Integer> freeSpaces = new TreeMap<>();
+  // guarded by this, capacity -> offsets of the free spaces, to find the smallest one to reuse
+  private final TreeMap<Integer, Set<Long>> freeSpacesByCapacity = new TreeMap<>();
+
+  public MNodeStore(File file, int maxResidentDevices, Consumer<MNode> evictionListener)
+      throws IOException {
+    this.file = file;
+    this.maxResidentDevices = maxResidentDevices;
+    this.evictionListener = evictionListener;
+    Files.deleteIfExists(file.toPath());
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Add a device, so that its measurements may be paged out when it is not used.
+   */
+  public void add(MNode device) {
+    if (device instanceof MeasurementMNode || device instanceof StorageGroupMNode) {
+      return;
+    }
+    Residence residence = residentDevices.get(device);
+    if (residence != null) {
+      residence.lastAccessTime = System.nanoTime();
+    } else {
+      residentDevices.putIfAbsent(device, new Residence(-1, 0));
+    }
+    evictIfNeeded();
+  }
+
+  /**
+   * Add all devices under the node, used when the MTree is loaded.
+   */
+  public void addAll(MNode node) {
+    Deque<MNode> nodeStack = new ArrayDeque<>();
+    nodeStack.push(node);
+    while (!nodeStack.isEmpty()) {
+      MNode current = nodeStack.pop();
+      boolean hasMeasurement = false;
+      for (MNode child : current.getChildren().values()) {
+        if (child instanceof MeasurementMNode) {
+          hasMeasurement = true;
+        } else {
+          nodeStack.push(child);
+        }
+      }
+      if (hasMeasurement) {
+        add(current);
+      }
+    }
+  }
+
+  /**
+   * Record an access to the device, so that it is kept in memory.
+   */
+  public void access(MNode device) {
+    Residence residence = residentDevices.get(device);
+    if (residence != null) {
+      residence.lastAccessTime = System.nanoTime();
+    }
+  }
+
+  /**
+   * Keep the measurements of the device in memory until {@link #unpin(MNode)} is called as many
+   * times, so that the measurement nodes got after pinning stay in the MTree.
+   */
+  public void pin(MNode device) {
+    // synchronized with paging out, which checks the pins with the lock of the device held
+    synchronized (device) {
+      pinnedDevices.merge(device, 1, Integer::sum);
+    }
+  }
+
+  public void unpin(MNode device) {
+    pinnedDevices.computeIfPresent(device, (d, pinNum) -> pinNum > 1 ? pinNum - 1 : null);
+  }
+
+  public int getResidentDeviceNum() {
+    return residentDevices.size();
+  }
+
+  /**
+   * Stop tracking the devices under the node, which is deleted from the MTree, and free the space
+   * of their records. Their paged out children are loaded first, so that the nodes still referenced
+   * never read a space reused by others.
+   */
+  public void remove(MNode node) {
+    Deque<MNode> nodeStack = new ArrayDeque<>();
+    nodeStack.push(node);
+    while (!nodeStack.isEmpty()) {
+      MNode current = nodeStack.pop();
+      if (current instanceof MeasurementMNode) {
+        continue;
+      }
+      Map<String, MNode> children;
+      Residence residence;
+      synchronized (current) {
+        children = current.getChildren();
+        residence = residentDevices.remove(current);
+      }
+      if (residence != null) {
+        free(residence.offset, residence.capacity);
+      }
+      for (MNode child : children.values()) {
+        nodeStack.push(child);
+      }
+    }
+  }
+
+  /**
+   * Page out the least recently used devices if there are too many in memory. Only one thread
+   * does it at a time, the others go on without waiting.
+   */
+  public void evictIfNeeded() {
+    if (residentDevices.size() <= maxResidentDevices || System.nanoTime() < nextEvictionTime
+        || !evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      evict();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void evict() {
+    // take the access time first, as it changes while sorting
+    List<Candidate> candidates = new ArrayList<>(residentDevices.size());
+    for (Entry<MNode, Residence> entry : residentDevices.entrySet()) {
+      candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+    }
+    candidates.sort((a, b) -> Long.compare(a.lastAccessTime, b.lastAccessTime));
+
+    // page out a tenth more than needed, so that it is not done on every access
+    int toEvict = candidates.size() - maxResidentDevices + maxResidentDevices / 10;
+    int evicted = 0;
+    for (Candidate candidate : candidates) {
+      if (toEvict <= 0) {
+        break;
+      }
+      PageOutResult result;
+      try {
+        result = pageOut(candidate.device, candidate.residence);
+      } catch (IOException e) {
+        logger.error("Cannot page out the measurements of {} into {}",
+            candidate.device.getFullPath(), file, e);
+        break;
+      }
+      if (result == PageOutResult.PINNED) {
+        continue;
+      }
+      if (result == PageOutResult.PAGED_OUT) {
+        evictionListener.accept(candidate.device);
+        evicted++;
+      } else if (result == PageOutResult.DETACHED
+          && residentDevices.remove(candidate.device, candidate.residence)) {
+        free(candidate.residence.offset, candidate.residence.capacity);
+      } else {
+        // devices which cannot be paged out are no longer tracked until they are added again
+        residentDevices.remove(candidate.device, candidate.residence);
+      }
+      toEvict--;
+    }
+    nextEvictionTime = toEvict > 0 ? System.nanoTime() + EVICTION_RETRY_INTERVAL_NS
+        : Long.MIN_VALUE;
+    if (evicted > 0) {
+      logger.debug("Paged out the measurements of {} devices", evicted);
+    }
+  }
+
+  private PageOutResult pageOut(MNode device, Residence residence) throws IOException {
+    synchronized (device) {
+      if (pinnedDevices.containsKey(device)) {
+        return PageOutResult.PINNED;
+      }
+      // the device may have been loaded or removed since the candidates were taken
+      if (residentDevices.get(device) != residence) {
+        return PageOutResult.NOT_PAGEABLE;
+      }
+      MNode parent = device.getParent();
+      if (parent == null || parent.getChild(device.getName()) != device) {
+        return PageOutResult.DETACHED;
+      }
+      // the device may have got children other than measurements
+      ConcurrentMap<String, MNode> children = device.getChildrenInMemory();
+      if (children == null || children.isEmpty()) {
+        return PageOutResult.NOT_PAGEABLE;
+      }
+      for (MNode child : children.values()) {
+        if (!(child instanceof MeasurementMNode) || !child.getChildren().isEmpty()
+            || ((MeasurementMNode) child).getOffset() >= 0) {
+          return PageOutResult.NOT_PAGEABLE;
+        }
+      }
+
+      PublicBAOS record = serialize(children);
+      long offset = residence.offset;
+      int capacity = residence.capacity;
+      if (record.size() > capacity) {
+        // free the old space first, so that the record may grow into the space after it
+        free(offset, capacity);
+        capacity = record.size() + record.size() / 4;
+        offset = allocate(capacity);
+        // the space now belongs to the new record, even if the device is not paged out below
+        residence = new Residence(offset, capacity);
+        residentDevices.put(device, residence);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(record.getBuf(), 0, record.size());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, offset + buffer.position());
+      }
+      for (MNode child : children.values()) {
+        // release the last value in the compact MTree and stop caching it in the old node
+        ((MeasurementMNode) child).detach();
+      }
+      device.setPagedOut(new PagedOutChildren(this, offset, record.size(), capacity));
+      // the space is kept by the record, and taken back with the residence when loaded
+      residentDevices.remove(device, residence);
+      return PageOutResult.PAGED_OUT;
+    }
+  }
+
+  /**
+   * Load the paged out children into the device, called with the lock of the device held.
+   */
+  ConcurrentMap<String, MNode> load(MNode device, PagedOutChildren pagedOutChildren) {
+    Map<String, MNode> aliasChildren = new HashMap<>();
+    ConcurrentMap<String, MNode> loadedChildren =
+        MNode.toChildrenMap(readChildren(device, pagedOutChildren, aliasChildren));
+    device.setLoaded(loadedChildren,
+        aliasChildren.isEmpty() ? null : MNode.toChildrenMap(aliasChildren));
+    residentDevices.put(device,
+        new Residence(pagedOutChildren.getOffset(), pagedOutChildren.getCapacity()));
+    return loadedChildren;
+  }
+
+  /**
+   * Read the paged out children without loading them into the device, called with the lock of the
+   * device held. The nodes read are detached from the MTree.
+   */
+  Map<String, MNode> read(MNode device, PagedOutChildren pagedOutChildren) {
+    Map<String, MNode> children = readChildren(device, pagedOutChildren, null);
+    for (MNode child : children.values()) {
+      ((MeasurementMNode) child).detach();
+    }
+    return children;
+  }
+
+  /**
+   * @param aliasChildren filled with the children which have aliases, or null to ignore them
+   */
+  private Map<String, MNode> readChildren(MNode device, PagedOutChildren pagedOutChildren,
+      Map<String, MNode> aliasChildren) {
+    ByteBuffer buffer = ByteBuffer.allocate(pagedOutChildren.getLength());
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, pagedOutChildren.getOffset() + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of " + file);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          String.format("Cannot load the measurements of %s from %s", device.getFullPath(), file),
+          e);
+    }
+    buffer.flip();
+
+    int childrenNum = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer);
+    Map<String, MNode> children = new HashMap<>(childrenNum * 4 / 3 + 1);
+    for (int i = 0; i < childrenNum; i++) {
+      String name = ReadWriteIOUtils.readString(buffer);
+      String alias = ReadWriteIOUtils.readBool(buffer) ? ReadWriteIOUtils.readString(buffer) : null;
+      byte dataType = buffer.get();
+      byte encoding = buffer.get();
+      byte compressor = buffer.get();
+      int propsSize = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer) - 1;
+      Map<String, String> props = null;
+      if (propsSize >= 0) {
+        props = new HashMap<>();
+        for (int j = 0; j < propsSize; j++) {
+          props.put(ReadWriteIOUtils.readString(buffer), ReadWriteIOUtils.readString(buffer));
+        }
+      }
+      MeasurementMNode child = new MeasurementMNode(device, name,
+          new MeasurementSchema(name, dataType, encoding, compressor, props), alias);
+      children.put(name, child);
+      if (alias != null && aliasChildren != null) {
+        aliasChildren.put(alias, child);
+      }
+    }
+    return children;
+  }
+
+  private static PublicBAOS serialize(Map<String, MNode> children) throws IOException {
+    PublicBAOS out = new PublicBAOS();
+    ReadWriteForEncodingUtils.writeUnsignedVarInt(children.size(), out);
+    for (MNode child : children.values()) {
+      MeasurementMNode measurementMNode = (MeasurementMNode) child;
+      MeasurementSchema schema = measurementMNode.getSchema();
+      ReadWriteIOUtils.write(child.getName(), out);
+      String alias = measurementMNode.getAlias();
+      ReadWriteIOUtils.write(alias != null, out);
+      if (alias != null) {
+        ReadWriteIOUtils.write(alias, out);
+      }
+      out.write(schema.getType().ordinal());
+      out.write(schema.getEncodingType().ordinal());
+      out.write(schema.getCompressor().ordinal());
+      Map<String, String> props = schema.getProps();
+      ReadWriteForEncodingUtils.writeUnsignedVarInt(props == null ? 0 : props.size() + 1, out);
+      if (props != null) {
+        for (Entry<String, String> entry : props.entrySet()) {
+          ReadWriteIOUtils.write(entry.getKey(), out);
+          ReadWriteIOUtils.write(entry.getValue(), out);
+        }
+      }
+    }
+    return out;
+  }
+
+  /**
+   * @return the offset of the smallest free space the capacity fits in, the rest of which is kept
+   * free, or the end of the file if there is none
+   */
+  private synchronized long allocate(int capacity) {
+    Entry<Integer, Set<Long>> fit = freeSpacesByCapacity.ceilingEntry(capacity);
+    if (fit == null) {
+      long offset = fileLength;
+      fileLength += capacity;
+      return offset;
+    }
+    long offset = fit.getValue().iterator().next();
+    int freeCapacity = fit.getKey();
+    removeFreeSpace(offset, freeCapacity);
+    if (freeCapacity > capacity) {
+      addFreeSpace(offset + capacity, freeCapacity - capacity);
+    }
+    return offset;
+  }
+
+  /**
+   * Free the space so that other records may reuse it, merging it with the adjacent free spaces.
+   * The file is truncated if the space is at its end.
+   */
+  private synchronized void free(long offset, int capacity) {
+    if (offset < 0 || capacity <= 0) {
+      return;
+    }
+    Entry<Long, Integer> previous = freeSpaces.floorEntry(offset);
+    if (previous != null && previous.getKey() + previous.getValue() == offset) {
+      removeFreeSpace(previous.getKey(), previous.getValue());
+      offset = previous.getKey();
+      capacity += previous.getValue();
+    }
+    Integer nextCapacity = freeSpaces.get(offset + capacity);
+    if (nextCapacity != null) {
+      removeFreeSpace(offset + capacity, nextCapacity);
+      capacity += nextCapacity;
+    }
+    if (offset + capacity < fileLength) {
+      addFreeSpace(offset, capacity);
+      return;
+    }
+    fileLength = offset;
+    try {
+      channel.truncate(fileLength);
+    } catch (IOException e) {
+      // the space is appended to again later
+      logger.warn("Cannot truncate {} to {}", file, fileLength, e);
+    }
+  }
+
+  private void addFreeSpace(long offset, int capacity) {
+    freeSpaces.put(offset, capacity);
+    freeSpacesByCapacity.computeIfAbsent(capacity, c -> new HashSet<>()).add(offset);
+  }
+
+  private void removeFreeSpace(long offset, int capacity) {
+    freeSpaces.remove(offset);
+    Set<Long> offsets = freeSpacesByCapacity.get(capacity);
+    offsets.remove(offset);
+    if (offsets.isEmpty()) {
+      freeSpacesByCapacity.remove(capacity);
+    }
+  }
+
+  /**
+   * @return the length of the file, including the free spaces not at its end
+   */
+  public synchronized long getFileLength() {
+    return fileLength;
+  }
+
+  /**
+   * Close and remove the file. The devices paged out cannot be loaded any more, so the MTree
+   * should be dropped as well.
+   */
+  public void close() throws IOException {
+    residentDevices.clear();
+    pinnedDevices.clear();
+    synchronized (this) {
+      freeSpaces.clear();
+      freeSpacesByCapacity.clear();
+    }
+    channel.close();
+    Files.deleteIfExists(file.toPath());
+  }
+
+  private enum PageOutResult {
+    PAGED_OUT,
+    // kept in memory until it is unpinned
+    PINNED,
+    // not paged out until it is added again
+    NOT_PAGEABLE,
+    // deleted from the MTree, whose space is freed
+    DETACHED
+  }
+
+  private static class Residence {
+
+    // where the children were paged out last time, to reuse the space
+    private final long offset;
+    private final int capacity;
+    private volatile long lastAccessTime = System.nanoTime();
+
+    private Residence(long offset, int capacity) {
+      this.offset = offset;
+      this.capacity = capacity;
+    }
+  }
+
+  private static class Candidate {
+
+    private final MNode device;
+    private final Residence residence;
+    private final long lastAccessTime;
+
+    private Candidate(MNode device, Residence residence) {
+      this.device = device;
+      this.residence = residence;
+      this.lastAccessTime = residence.lastAccessTime;
+    }
+  }
+}
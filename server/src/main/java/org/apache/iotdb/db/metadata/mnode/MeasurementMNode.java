@@ -18,11 +18,11 @@
  */
 package org.apache.iotdb.db.metadata.mnode;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import org.apache.iotdb.db.metadata.MetadataConstant;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
@@ -36,6 +36,16 @@ public class MeasurementMNode extends MNode {
 
   private static final long serialVersionUID = -1199657856921206435L;
 
+  // lastCacheSlot of a node removed from the MTree, which caches no last value any more
+  private static final int DETACHED = -2;
+
+  /**
+   * props of the timeseries in the compact MTree, timeseries created by the same template share
+   * one map
+   */
+  private static final Map<Map<String, String>, Map<String, String>> propsPool =
+      new ConcurrentHashMap<>();
+
   /**
    * measurement's Schema for one timeseries represented by current leaf node
    */
@@ -45,15 +55,18 @@ public class MeasurementMNode extends MNode {
   private long offset = -1;
 
   private TimeValuePair cachedLastValuePair = null;
+  // slot of the last value in the LastCacheTable, used instead of cachedLastValuePair in the
+  // compact MTree. Changed holding the lock of this, volatile so that inserts can check whether
+  // the node is detached without the lock
+  private volatile int lastCacheSlot = -1;
 
   /**
    * @param alias alias of measurementName
    */
   public MeasurementMNode(MNode parent, String measurementName, String alias, TSDataType dataType,
       TSEncoding encoding, CompressionType type, Map<String, String> props) {
-    super(parent, measurementName);
-    this.schema = new MeasurementSchema(measurementName, dataType, encoding, type, props);
-    this.alias = alias;
+    this(parent, measurementName,
+        new MeasurementSchema(measurementName, dataType, encoding, type, props), alias);
   }
 
   public MeasurementMNode(MNode parent, String measurementName, MeasurementSchema schema,
@@ -61,6 +74,25 @@ public class MeasurementMNode extends MNode {
     super(parent, measurementName);
     this.schema = schema;
     this.alias = alias;
+    if (schema != null && schema.getProps() != null
+        && IoTDBDescriptor.getInstance().getConfig().isEnableCompactMTree()) {
+      schema.setProps(internProps(schema.getProps()));
+    }
+  }
+
+  private static Map<String, String> internProps(Map<String, String> props) {
+    if (props.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, String> internedProps = propsPool.get(props);
+    if (internedProps == null) {
+      Map<String, String> copy = Collections.unmodifiableMap(new HashMap<>(props));
+      internedProps = propsPool.putIfAbsent(copy, copy);
+      if (internedProps == null) {
+        internedProps = copy;
+      }
+    }
+    return internedProps;
   }
 
   public MeasurementSchema getSchema() {
@@ -68,20 +100,40 @@ public class MeasurementMNode extends MNode {
   }
 
   public TimeValuePair getCachedLast() {
-    return cachedLastValuePair;
+    TimeValuePair lastValuePair = cachedLastValuePair;
+    if (lastValuePair != null || lastCacheSlot < 0) {
+      return lastValuePair;
+    }
+    synchronized (this) {
+      return lastCacheSlot < 0 ? null : LastCacheTable.getInstance().get(lastCacheSlot);
+    }
   }
 
   public synchronized void updateCachedLast(
       TimeValuePair timeValuePair, boolean highPriorityUpdate, Long latestFlushedTime) {
-    if (timeValuePair == null || timeValuePair.getValue() == null) {
+    if (timeValuePair == null || timeValuePair.getValue() == null || lastCacheSlot == DETACHED) {
       return;
     }
 
-    if (cachedLastValuePair == null) {
+    if (lastCacheSlot >= 0) {
+      LastCacheTable lastCacheTable = LastCacheTable.getInstance();
+      long cachedTimestamp = lastCacheTable.getTimestamp(lastCacheSlot);
+      if (timeValuePair.getTimestamp() > cachedTimestamp
+          || (timeValuePair.getTimestamp() == cachedTimestamp && highPriorityUpdate)) {
+        lastCacheTable.set(lastCacheSlot, timeValuePair.getTimestamp(), timeValuePair.getValue());
+      }
+    } else if (cachedLastValuePair == null) {
       // If no cached last, (1) a last query (2) an unseq insertion or (3) a seq insertion will update cache.
       if (!highPriorityUpdate || latestFlushedTime <= timeValuePair.getTimestamp()) {
-        cachedLastValuePair =
-            new TimeValuePair(timeValuePair.getTimestamp(), timeValuePair.getValue());
+        if (IoTDBDescriptor.getInstance().getConfig().isEnableCompactMTree()) {
+          LastCacheTable lastCacheTable = LastCacheTable.getInstance();
+          int slot = lastCacheTable.allocate();
+          lastCacheTable.set(slot, timeValuePair.getTimestamp(), timeValuePair.getValue());
+          lastCacheSlot = slot;
+        } else {
+          cachedLastValuePair =
+              new TimeValuePair(timeValuePair.getTimestamp(), timeValuePair.getValue());
+        }
       }
     } else if (timeValuePair.getTimestamp() > cachedLastValuePair.getTimestamp()
         || (timeValuePair.getTimestamp() == cachedLastValuePair.getTimestamp()
@@ -96,8 +148,25 @@ public class MeasurementMNode extends MNode {
     return concatFullPath();
   }
 
-  public void resetCache() {
+  public synchronized void resetCache() {
     cachedLastValuePair = null;
+    if (lastCacheSlot >= 0) {
+      LastCacheTable.getInstance().release(lastCacheSlot);
+      lastCacheSlot = -1;
+    }
+  }
+
+  /**
+   * Release the last value when the node is removed from the MTree, i.e., the timeseries is
+   * deleted or paged out, after which updating the last value of the node does nothing.
+   */
+  public synchronized void detach() {
+    resetCache();
+    lastCacheSlot = DETACHED;
+  }
+
+  public boolean isDetached() {
+    return lastCacheSlot == DETACHED;
   }
 
   public long getOffset() {
@@ -120,29 +189,6 @@ public class MeasurementMNode extends MNode {
     this.schema = schema;
   }
 
-  @Override
-  public void serializeTo(BufferedWriter bw) throws IOException {
-    serializeChildren(bw);
-
-    StringBuilder s = new StringBuilder(String.valueOf(MetadataConstant.MEASUREMENT_MNODE_TYPE));
-    s.append(",").append(name).append(",");
-    if (alias != null) {
-      s.append(alias);
-    }
-    s.append(",").append(schema.getType().ordinal()).append(",");
-    s.append(schema.getEncodingType().ordinal()).append(",");
-    s.append(schema.getCompressor().ordinal()).append(",");
-    if (schema.getProps() != null) {
-      for (Map.Entry<String, String> entry : schema.getProps().entrySet()) {
-        s.append(entry.getKey()).append(":").append(entry.getValue()).append(";");
-      }
-    }
-    s.append(",").append(offset).append(",");
-    s.append(children == null ? "0" : children.size());
-    bw.write(s.toString());
-    bw.newLine();
-  }
-
   /**
    * deserialize MeasuremetMNode from string array
    *
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records where the children of an MNode paged out by an MNodeStore are in the store. The MNode
+ * keeps it in place of its children and loads them when they are used.
+ */
+class PagedOutChildren {
+
+  private final MNodeStore store;
+  private final long offset;
+  private final int length;
+  // the space of the record in the store, which may be reused when the children are paged out again
+  private final int capacity;
+
+  PagedOutChildren(MNodeStore store, long offset, int length, int capacity) {
+    this.store = store;
+    this.offset = offset;
+    this.length = length;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Load the children into the node, called with the lock of the node held.
+   *
+   * @return the loaded children
+   */
+  ConcurrentMap<String, MNode> load(MNode node) {
+    return store.load(node, this);
+  }
+
+  /**
+   * Read the children without loading them into the node, called with the lock of the node held.
+   *
+   * @return the children, which are detached from the MTree
+   */
+  Map<String, MNode> read(MNode node) {
+    return store.read(node, this);
+  }
+
+  MNodeStore getStore() {
+    return store;
+  }
+
+  long getOffset() {
+    return offset;
+  }
+
+  int getLength() {
+    return length;
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+}
@@ -24,13 +24,17 @@ import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.ServiceType;
 import org.apache.iotdb.tsfile.common.conf.TSFileConfig;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.UnClosedTsFileReader;
+import org.apache.iotdb.tsfile.read.reader.MmapTsFileInput;
+import org.apache.iotdb.tsfile.read.reader.TsFileInput;
 import org.apache.iotdb.tsfile.v1.read.TsFileSequenceReaderForV1;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -74,6 +78,15 @@ public class FileReaderManager implements IService {
    */
   private Map<String, AtomicInteger> unclosedReferenceMap;
 
+  /**
+   * the readers of which the file is mapped into memory and the sizes of the files, the total size
+   * is limited by max_mapped_tsfile_size so that the mappings do not exhaust the virtual address
+   * space. The ChunkCache copies the mapped data it keeps, so a mapping does not outlive its reader
+   * for long. Only accessed when holding the lock of this manager.
+   */
+  private Map<TsFileSequenceReader, Long> mappedReaderSizeMap;
+  private long mappedFileSize = 0;
+
   private ScheduledExecutorService executorService;
 
   private FileReaderManager() {
@@ -81,6 +94,7 @@ public class FileReaderManager implements IService {
     unclosedFileReaderMap = new ConcurrentHashMap<>();
     closedReferenceMap = new ConcurrentHashMap<>();
     unclosedReferenceMap = new ConcurrentHashMap<>();
+    mappedReaderSizeMap = new IdentityHashMap<>();
     executorService = IoTDBThreadPoolFactory.newScheduledThreadPool(1,
         "open-files-manager");
 
@@ -95,15 +109,23 @@ public class FileReaderManager implements IService {
     closedReferenceMap.remove(filePath);
     TsFileSequenceReader reader = closedFileReaderMap.remove(filePath);
     if (reader != null) {
-      reader.close();
+      closeReader(reader);
     }
     unclosedReferenceMap.remove(filePath);
     reader = unclosedFileReaderMap.remove(filePath);
     if (reader != null) {
-      reader.close();
+      closeReader(reader);
     }
   }
 
+  private void closeReader(TsFileSequenceReader reader) throws IOException {
+    Long mappedSize = mappedReaderSizeMap.remove(reader);
+    if (mappedSize != null) {
+      mappedFileSize -= mappedSize;
+    }
+    reader.close();
+  }
+
   private void clearUnUsedFilesInFixTime() {
 
     long examinePeriod = IoTDBDescriptor.getInstance().getConfig().getCacheFileReaderClearPeriod();
@@ -126,7 +148,7 @@ public class FileReaderManager implements IService {
 
       if (refAtom != null && refAtom.get() == 0) {
         try {
-          reader.close();
+          closeReader(reader);
         } catch (IOException e) {
           logger.error("Can not close TsFileSequenceReader {} !", reader.getFileName(), e);
         }
@@ -167,13 +189,20 @@ public class FileReaderManager implements IService {
         tsFileReader = new UnClosedTsFileReader(filePath);
       }
       else {
-        tsFileReader = new TsFileSequenceReader(filePath);
+        long fileSize = FSFactoryProducer.getFSFactory().getFile(filePath).length();
+        TsFileInput mappedInput = mapFile(filePath, fileSize);
+        tsFileReader = mappedInput == null ? new TsFileSequenceReader(filePath)
+            : new TsFileSequenceReader(filePath, mappedInput);
         switch (tsFileReader.readVersionNumber()) {
           case TSFileConfig.VERSION_NUMBER_V1:
             tsFileReader.close();
             tsFileReader = new TsFileSequenceReaderForV1(filePath);
             break;
           case TSFileConfig.VERSION_NUMBER:
+            if (mappedInput != null) {
+              mappedReaderSizeMap.put(tsFileReader, fileSize);
+              mappedFileSize += fileSize;
+            }
             break;
           default:
             throw new IOException("The version of this TsFile is not corrent. ");
@@ -186,12 +215,31 @@ public class FileReaderManager implements IService {
     return readerMap.get(filePath);
   }
 
+  /**
+   * @return an input that maps the sealed file into memory, or null if the file system does not
+   * support mapping or the size of mapped files would exceed max_mapped_tsfile_size
+   */
+  private TsFileInput mapFile(String filePath, long fileSize) throws IOException {
+    long maxMappedFileSize = IoTDBDescriptor.getInstance().getConfig().getMaxMappedTsFileSize();
+    if (maxMappedFileSize <= 0 || mappedFileSize + fileSize > maxMappedFileSize) {
+      return null;
+    }
+    TsFileInput input = FSFactoryProducer.getFileInputFactory().getMappedTsFileInput(filePath);
+    if (!(input instanceof MmapTsFileInput)) {
+      if (input != null) {
+        input.close();
+      }
+      return null;
+    }
+    return input;
+  }
+
 
   /**
    * Increase the reference count of the reader specified by filePath. Only when the reference count
    * of a reader equals zero, the reader can be closed and removed.
    */
-  void increaseFileReaderReference(TsFileResource tsFile, boolean isClosed) {
+  public void increaseFileReaderReference(TsFileResource tsFile, boolean isClosed) {
     tsFile.readLock();
     synchronized (this) {
       if (!isClosed) {
@@ -206,7 +254,7 @@ public class FileReaderManager implements IService {
    * Decrease the reference count of the reader specified by filePath. This method is latch-free.
    * Only when the reference count of a reader equals zero, the reader can be closed and removed.
    */
-  void decreaseFileReaderReference(TsFileResource tsFile, boolean isClosed) {
+  public void decreaseFileReaderReference(TsFileResource tsFile, boolean isClosed) {
     synchronized (this) {
       if (!isClosed && unclosedReferenceMap.containsKey(tsFile.getTsFilePath())) {
         unclosedReferenceMap.get(tsFile.getTsFilePath()).decrementAndGet();
@@ -225,7 +273,7 @@ public class FileReaderManager implements IService {
     Iterator<Map.Entry<String, TsFileSequenceReader>> iterator = closedFileReaderMap.entrySet().iterator();
     while (iterator.hasNext()) {
       Map.Entry<String, TsFileSequenceReader> entry = iterator.next();
-      entry.getValue().close();
+      closeReader(entry.getValue());
       if (resourceLogger.isDebugEnabled()) {
         resourceLogger.debug("{} closedTsFileReader is closed.", entry.getKey());
       }
@@ -235,7 +283,7 @@ public class FileReaderManager implements IService {
     iterator = unclosedFileReaderMap.entrySet().iterator();
     while (iterator.hasNext()) {
       Map.Entry<String, TsFileSequenceReader> entry = iterator.next();
-      entry.getValue().close();
+      closeReader(entry.getValue());
       if (resourceLogger.isDebugEnabled()) {
         resourceLogger.debug("{} unclosedTsFileReader is closed.", entry.getKey());
       }
@@ -22,7 +22,6 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -62,6 +61,8 @@ public class QueryResourceManager {
   private Map<Long, Long> chunkNumMap = new ConcurrentHashMap<>();
   // chunk size represents the number of time-value points in the chunk
   private Map<Long, Long> chunkSizeMap = new ConcurrentHashMap<>();
+  // record the number of files, chunks and pages skipped by the value filter for each query id
+  private Map<Long, long[]> skippedByValueFilterMap = new ConcurrentHashMap<>();
   // record the distinct tsfiles for each query id
   // Just store weak references here in case GC failed for those objects
   private Map<Long, Set<WeakReference<TsFileResource>>> seqFileNumMap = new ConcurrentHashMap<>();
@@ -102,6 +103,16 @@ public class QueryResourceManager {
     return chunkSizeMap;
   }
 
+  public void addSkippedByValueFilter(long queryId, int fileNum, int chunkNum, int pageNum) {
+    skippedByValueFilterMap.compute(queryId, (k, v) -> {
+      long[] skippedNums = v == null ? new long[3] : v;
+      skippedNums[0] += fileNum;
+      skippedNums[1] += chunkNum;
+      skippedNums[2] += pageNum;
+      return skippedNums;
+    });
+  }
+
   /**
    * register temporary file generated by external sort for resource release.
    *
@@ -123,10 +134,10 @@ public class QueryResourceManager {
         .query(singleSeriesExpression, context, filePathsManager);
     // calculate the distinct number of seq and unseq tsfiles
     if (config.isEnablePerformanceTracing()) {
-      seqFileNumMap.computeIfAbsent(context.getQueryId(), k -> new HashSet<>())
+      seqFileNumMap.computeIfAbsent(context.getQueryId(), k -> ConcurrentHashMap.newKeySet())
           .addAll((queryDataSource.getSeqResources().stream().map(r -> new WeakReference<>(r))
                   .collect(Collectors.toSet())));
-      unseqFileNumMap.computeIfAbsent(context.getQueryId(), k -> new HashSet<>())
+      unseqFileNumMap.computeIfAbsent(context.getQueryId(), k -> ConcurrentHashMap.newKeySet())
           .addAll((queryDataSource.getUnseqResources().stream().map(r -> new WeakReference<>(r))
               .collect(Collectors.toSet())));
     }
@@ -151,6 +162,12 @@ public class QueryResourceManager {
           TracingManager.getInstance()
               .writeChunksInfo(queryId, chunkNumMap.remove(queryId), chunkSizeMap.remove(queryId));
         }
+        long[] skippedNums = skippedByValueFilterMap.remove(queryId);
+        if (skippedNums != null) {
+          TracingManager.getInstance()
+              .writeSkippedByValueFilterInfo(queryId, skippedNums[0], skippedNums[1],
+                  skippedNums[2]);
+        }
         if (isprinted) {
           TracingManager.getInstance().writeEndTime(queryId);
         }
@@ -113,6 +113,18 @@ public class TracingManager {
     writer.write(builder.toString());
   }
 
+  public void writeSkippedByValueFilterInfo(long queryId, long skippedFileNum,
+      long skippedChunkNum, long skippedPageNum) throws IOException {
+    StringBuilder builder = new StringBuilder("Query Id: ").append(queryId)
+        .append(" - Number of files skipped by value filter: ").append(skippedFileNum)
+        .append("\nQuery Id: ").append(queryId)
+        .append(" - Number of chunks skipped by value filter: ").append(skippedChunkNum)
+        .append("\nQuery Id: ").append(queryId)
+        .append(" - Number of pages skipped by value filter: ").append(skippedPageNum)
+        .append("\n");
+    writer.write(builder.toString());
+  }
+
   public void writeEndTime(long queryId) throws IOException {
     StringBuilder builder = new StringBuilder("Query Id: ").append(queryId)
         .append(" - End time: ")
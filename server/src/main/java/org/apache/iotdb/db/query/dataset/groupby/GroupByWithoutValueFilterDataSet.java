@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import org.apache.iotdb.db.engine.rollup.RollupManager;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.metadata.PartialPath;
@@ -84,14 +85,20 @@ public class GroupByWithoutValueFilterDataSet extends GroupByEngineDataSet {
       timeFilter = ((GlobalTimeExpression) expression).getFilter();
     }
 
+    boolean useRollup = RollupManager.getInstance().isAligned(startTime, interval, slidingStep);
+
     // init resultIndexes, group result indexes by path
     for (int i = 0; i < paths.size(); i++) {
       PartialPath path = (PartialPath) paths.get(i);
       if (!pathExecutors.containsKey(path)) {
         //init GroupByExecutor
-        pathExecutors.put(path,
-            getGroupByExecutor(path, groupByTimePlan.getAllMeasurementsInDevice(path.getDevice()),
-                dataTypes.get(i), context, timeFilter, null, groupByTimePlan.isAscending()));
+        GroupByExecutor executor = getGroupByExecutor(path,
+            groupByTimePlan.getAllMeasurementsInDevice(path.getDevice()), dataTypes.get(i),
+            context, timeFilter, null, groupByTimePlan.isAscending());
+        if (useRollup && executor instanceof LocalGroupByExecutor) {
+          ((LocalGroupByExecutor) executor).setUseRollup(true);
+        }
+        pathExecutors.put(path, executor);
         resultIndexes.put(path, new ArrayList<>());
       }
       resultIndexes.get(path).add(i);
@@ -56,6 +56,12 @@ public class LocalGroupByExecutor implements GroupByExecutor {
 
   private QueryDataSource queryDataSource;
 
+  // whether the windows are aligned to the rollup buckets, see RollupManager.isAligned()
+  private boolean useRollup;
+  // the rollup buckets of a skipped chunk that are not aggregated yet
+  private List<Statistics> cachedRollup;
+  private int cachedRollupIndex;
+
   public LocalGroupByExecutor(PartialPath path, Set<String> allSensors, TSDataType dataType,
       QueryContext context, Filter timeFilter, TsFileFilter fileFilter, boolean ascending)
       throws StorageEngineException, QueryProcessException {
@@ -72,6 +78,10 @@ public class LocalGroupByExecutor implements GroupByExecutor {
     this.ascending = ascending;
   }
 
+  public void setUseRollup(boolean useRollup) {
+    this.useRollup = useRollup;
+  }
+
   public boolean isEmpty() {
     return queryDataSource.getSeqResources().isEmpty() && queryDataSource.getUnseqResources()
         .isEmpty();
@@ -157,6 +167,84 @@ public class LocalGroupByExecutor implements GroupByExecutor {
     return true;
   }
 
+  /**
+   * In a descending query, the first and last values and times are taken from the data read
+   * first, which is the latest point of a page but the earliest one of a statistics, so the
+   * buckets only give the same results as the pages when none of them is queried.
+   */
+  private boolean canUseRollup() {
+    if (!useRollup) {
+      return false;
+    }
+    if (ascending) {
+      return true;
+    }
+    for (AggregateResult result : results) {
+      switch (result.getAggregationType()) {
+        case FIRST_VALUE:
+        case LAST_VALUE:
+        case MIN_TIME:
+        case MAX_TIME:
+          return false;
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+
+  private void cacheRollup(List<Statistics> rollup) {
+    cachedRollup = rollup;
+    cachedRollupIndex = ascending ? 0 : rollup.size() - 1;
+  }
+
+  /**
+   * Aggregate the cached rollup buckets in the current window. As the windows are aligned to the
+   * buckets, a bucket is either inside or outside a window.
+   *
+   * @return if already get the result
+   */
+  private boolean calcFromCachedRollup(long curStartTime, long curEndTime)
+      throws QueryProcessException {
+    if (cachedRollup == null) {
+      return false;
+    }
+    if (ascending) {
+      while (cachedRollupIndex < cachedRollup.size()
+          && cachedRollup.get(cachedRollupIndex).getEndTime() < curStartTime) {
+        cachedRollupIndex++;
+      }
+      while (cachedRollupIndex < cachedRollup.size()
+          && cachedRollup.get(cachedRollupIndex).getStartTime() < curEndTime) {
+        calcFromStatistics(cachedRollup.get(cachedRollupIndex++));
+        if (isEndCalc()) {
+          return true;
+        }
+      }
+      if (cachedRollupIndex < cachedRollup.size()) {
+        return true;
+      }
+    } else {
+      while (cachedRollupIndex >= 0
+          && cachedRollup.get(cachedRollupIndex).getStartTime() >= curEndTime) {
+        cachedRollupIndex--;
+      }
+      while (cachedRollupIndex >= 0
+          && cachedRollup.get(cachedRollupIndex).getEndTime() >= curStartTime) {
+        calcFromStatistics(cachedRollup.get(cachedRollupIndex--));
+        if (isEndCalc()) {
+          return true;
+        }
+      }
+      if (cachedRollupIndex >= 0) {
+        return true;
+      }
+    }
+    // the remaining data of the window is in the following chunks
+    cachedRollup = null;
+    return false;
+  }
+
   private void calcFromStatistics(Statistics pageStatistics) throws QueryProcessException {
     for (AggregateResult result : results) {
       // cacl is compile
@@ -181,6 +269,10 @@ public class LocalGroupByExecutor implements GroupByExecutor {
       return results;
     }
 
+    if (calcFromCachedRollup(curStartTime, curEndTime)) {
+      return results;
+    }
+
     // read page data firstly
     if (readAndCalcFromPage(curStartTime, curEndTime)) {
       return results;
@@ -217,6 +309,9 @@ public class LocalGroupByExecutor implements GroupByExecutor {
   @Override
   public Pair<Long, Object> peekNextNotNullValue(long nextStartTime, long nextEndTime)
       throws IOException {
+    // the peeked window is aggregated again later, so the cached rollup buckets are kept
+    List<Statistics> rollupBeforePeek = cachedRollup;
+    int rollupIndexBeforePeek = cachedRollupIndex;
     try {
       if (preCachedData != null && preCachedData.hasCurrent()) {
         int readCurArrayIndex = preCachedData.getReadCurArrayIndex();
@@ -240,6 +335,12 @@ public class LocalGroupByExecutor implements GroupByExecutor {
       }
     } catch (QueryProcessException e) {
       throw new IOException(e.getMessage(), e);
+    } finally {
+      if (cachedRollup != null && cachedRollup == rollupBeforePeek) {
+        cachedRollupIndex = rollupIndexBeforePeek;
+      } else if (cachedRollup != null) {
+        cacheRollup(cachedRollup);
+      }
     }
   }
 
@@ -262,6 +363,18 @@ public class LocalGroupByExecutor implements GroupByExecutor {
         reader.skipCurrentChunk();
         continue;
       }
+      // calc from the rollup of the chunk, which spans more than the current window
+      if (canUseRollup()) {
+        List<Statistics> rollup = reader.currentChunkRollup();
+        if (rollup != null) {
+          cacheRollup(rollup);
+          reader.skipCurrentChunk();
+          if (calcFromCachedRollup(curStartTime, curEndTime)) {
+            return true;
+          }
+          continue;
+        }
+      }
       if (readAndCalcFromPage(curStartTime, curEndTime)) {
         return true;
       }
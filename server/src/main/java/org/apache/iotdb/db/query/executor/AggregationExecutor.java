@@ -22,12 +22,22 @@ package org.apache.iotdb.db.query.executor;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.metadata.PartialPath;
@@ -39,6 +49,7 @@ import org.apache.iotdb.db.query.control.QueryResourceManager;
 import org.apache.iotdb.db.query.dataset.SingleDataSet;
 import org.apache.iotdb.db.query.factory.AggregateResultFactory;
 import org.apache.iotdb.db.query.filter.TsFileFilter;
+import org.apache.iotdb.db.query.pool.QueryTaskPoolManager;
 import org.apache.iotdb.db.query.reader.series.DescSeriesReaderByTimestamp;
 import org.apache.iotdb.db.query.reader.series.IAggregateReader;
 import org.apache.iotdb.db.query.reader.series.IReaderByTimestamp;
@@ -93,23 +104,263 @@ public class AggregationExecutor {
       timeFilter = ((GlobalTimeExpression) expression).getFilter();
     }
 
-    // TODO use multi-thread
     Map<PartialPath, List<Integer>> pathToAggrIndexesMap = groupAggregationsBySeries(selectedSeries);
     AggregateResult[] aggregateResultList = new AggregateResult[selectedSeries.size()];
+    int parallelism = IoTDBDescriptor.getInstance().getConfig()
+        .getConcurrentAggregationThreadPerQuery();
+    if (parallelism > 1) {
+      aggregateInParallel(pathToAggrIndexesMap, aggregationPlan, timeFilter, context,
+          aggregateResultList, parallelism);
+      return constructDataSet(Arrays.asList(aggregateResultList), aggregationPlan);
+    }
+
     for (Map.Entry<PartialPath, List<Integer>> entry : pathToAggrIndexesMap.entrySet()) {
       List<AggregateResult> aggregateResults = aggregateOneSeries(entry,
           aggregationPlan.getAllMeasurementsInDevice(entry.getKey().getDevice()), timeFilter,
           context, aggregationPlan.isAscending());
-      int index = 0;
-      for (int i : entry.getValue()) {
-        aggregateResultList[i] = aggregateResults.get(index);
-        index++;
-      }
+      fillAggregateResults(entry.getValue(), aggregateResults, aggregateResultList);
     }
 
     return constructDataSet(Arrays.asList(aggregateResultList), aggregationPlan);
   }
 
+  private static void fillAggregateResults(List<Integer> aggrIndexes,
+      List<AggregateResult> aggregateResults, AggregateResult[] aggregateResultList) {
+    int index = 0;
+    for (int i : aggrIndexes) {
+      aggregateResultList[i] = aggregateResults.get(index);
+      index++;
+    }
+  }
+
+  /**
+   * Aggregate the series with at most parallelism threads: the current thread and
+   * (parallelism - 1) tasks in the query thread pool take the series from a shared queue, so the
+   * query completes even if the pool is busy with other queries. When there are fewer series than
+   * threads, a series is further split by time partition and the partial results of its
+   * partitions are merged.
+   */
+  @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
+  private void aggregateInParallel(Map<PartialPath, List<Integer>> pathToAggrIndexesMap,
+      AggregationPlan aggregationPlan, Filter timeFilter, QueryContext context,
+      AggregateResult[] aggregateResultList, int parallelism)
+      throws StorageEngineException, IOException, QueryProcessException {
+    boolean splitByPartition = pathToAggrIndexesMap.size() < parallelism;
+    List<SeriesAggregation> seriesAggregations = new ArrayList<>();
+    Queue<AggregationPart> remaining = new ConcurrentLinkedQueue<>();
+    for (Map.Entry<PartialPath, List<Integer>> entry : pathToAggrIndexesMap.entrySet()) {
+      Set<String> measurements = aggregationPlan
+          .getAllMeasurementsInDevice(entry.getKey().getDevice());
+      SeriesAggregation seriesAggregation;
+      if (splitByPartition) {
+        QueryDataSource queryDataSource = QueryResourceManager.getInstance()
+            .getQueryDataSource(entry.getKey(), context, timeFilter);
+        seriesAggregation = new SeriesAggregation(entry, measurements,
+            splitByTimePartition(entry.getKey(), queryDataSource));
+      } else {
+        seriesAggregation = new SeriesAggregation(entry, measurements,
+            Collections.singletonList(null));
+      }
+      seriesAggregations.add(seriesAggregation);
+      for (int i = 0; i < seriesAggregation.partialResults.length; i++) {
+        remaining.add(new AggregationPart(seriesAggregation, i));
+      }
+    }
+
+    Callable<Void> worker = () -> {
+      AggregationPart part;
+      try {
+        while ((part = remaining.poll()) != null) {
+          part.aggregate(this, timeFilter, context, ascending);
+        }
+      } catch (Exception | Error e) {
+        // stop the other workers
+        remaining.clear();
+        throw e;
+      }
+      return null;
+    };
+    // the pool workers that have started, they must finish before the query releases its readers
+    AtomicInteger runningWorkers = new AtomicInteger();
+    Callable<Void> poolWorker = () -> {
+      runningWorkers.incrementAndGet();
+      try {
+        return worker.call();
+      } finally {
+        synchronized (runningWorkers) {
+          runningWorkers.decrementAndGet();
+          runningWorkers.notifyAll();
+        }
+      }
+    };
+    int workerNum = Math.min(parallelism, remaining.size());
+    List<Future<Void>> futures = new ArrayList<>(workerNum);
+    for (int i = 1; i < workerNum; i++) {
+      futures.add(QueryTaskPoolManager.getInstance().submit(poolWorker));
+    }
+    Throwable failure = null;
+    try {
+      worker.call();
+    } catch (Exception | Error e) {
+      failure = e;
+    }
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        // the workers are not interrupted, as interrupting a read closes the shared file channel
+        remaining.clear();
+        for (Future<Void> other : futures) {
+          other.cancel(false);
+        }
+        awaitWorkers(runningWorkers);
+        Thread.currentThread().interrupt();
+        throw new QueryProcessException("Interrupted while aggregating series in parallel");
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure instanceof StorageEngineException) {
+      throw (StorageEngineException) failure;
+    } else if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure instanceof QueryProcessException) {
+      throw (QueryProcessException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new QueryProcessException(failure.getMessage());
+    }
+
+    for (SeriesAggregation seriesAggregation : seriesAggregations) {
+      fillAggregateResults(seriesAggregation.pathToAggrIndexes.getValue(),
+          seriesAggregation.mergePartialResults(), aggregateResultList);
+    }
+  }
+
+  /**
+   * Wait until the started workers finish the parts they have taken, ignoring interruptions.
+   */
+  private static void awaitWorkers(AtomicInteger runningWorkers) {
+    synchronized (runningWorkers) {
+      while (runningWorkers.get() > 0) {
+        try {
+          runningWorkers.wait();
+        } catch (InterruptedException e) {
+          // the interruption is restored by the caller
+        }
+      }
+    }
+  }
+
+  /**
+   * The files of a series never span time partitions, so the data of each partition can be
+   * aggregated independently.
+   *
+   * @return a data source for each time partition that the series has data in
+   */
+  private static List<QueryDataSource> splitByTimePartition(PartialPath seriesPath,
+      QueryDataSource queryDataSource) {
+    Map<Long, List<TsFileResource>> partitionSeqResources = new TreeMap<>();
+    Map<Long, List<TsFileResource>> partitionUnseqResources = new TreeMap<>();
+    for (TsFileResource resource : queryDataSource.getSeqResources()) {
+      partitionSeqResources.computeIfAbsent(resource.getTimePartition(), p -> new ArrayList<>())
+          .add(resource);
+    }
+    for (TsFileResource resource : queryDataSource.getUnseqResources()) {
+      partitionUnseqResources.computeIfAbsent(resource.getTimePartition(), p -> new ArrayList<>())
+          .add(resource);
+    }
+    Set<Long> partitions = new TreeSet<>(partitionSeqResources.keySet());
+    partitions.addAll(partitionUnseqResources.keySet());
+    if (partitions.size() <= 1) {
+      return Collections.singletonList(queryDataSource);
+    }
+
+    List<QueryDataSource> partitionDataSources = new ArrayList<>(partitions.size());
+    for (long partition : partitions) {
+      QueryDataSource partitionDataSource = new QueryDataSource(seriesPath,
+          partitionSeqResources.getOrDefault(partition, new ArrayList<>()),
+          partitionUnseqResources.getOrDefault(partition, new ArrayList<>()));
+      partitionDataSource.setDataTTL(queryDataSource.getDataTTL());
+      partitionDataSources.add(partitionDataSource);
+    }
+    return partitionDataSources;
+  }
+
+  /**
+   * The aggregation of one series, made of one part that reads all data of the series or one part
+   * for each time partition of the series.
+   */
+  private static class SeriesAggregation {
+
+    private final Map.Entry<PartialPath, List<Integer>> pathToAggrIndexes;
+    private final Set<String> measurements;
+    // null means the part reads all data of the series
+    private final List<QueryDataSource> partDataSources;
+    private final List<AggregateResult>[] partialResults;
+
+    @SuppressWarnings("unchecked")
+    SeriesAggregation(Map.Entry<PartialPath, List<Integer>> pathToAggrIndexes,
+        Set<String> measurements, List<QueryDataSource> partDataSources) {
+      this.pathToAggrIndexes = pathToAggrIndexes;
+      this.measurements = measurements;
+      this.partDataSources = partDataSources;
+      this.partialResults = new List[partDataSources.size()];
+    }
+
+    void aggregate(int partIndex, AggregationExecutor executor, Filter timeFilter,
+        QueryContext context, boolean ascending)
+        throws StorageEngineException, IOException, QueryProcessException {
+      QueryDataSource partDataSource = partDataSources.get(partIndex);
+      if (partDataSource == null) {
+        partialResults[partIndex] = executor.aggregateOneSeries(pathToAggrIndexes, measurements,
+            timeFilter, context, ascending);
+        return;
+      }
+      List<AggregateResult> results = executor.createAggregateResults(pathToAggrIndexes);
+      aggregateFromDataSource(pathToAggrIndexes.getKey(), measurements, context, timeFilter,
+          executor.dataTypes.get(pathToAggrIndexes.getValue().get(0)), results, partDataSource,
+          ascending);
+      partialResults[partIndex] = results;
+    }
+
+    /**
+     * merge the results of the other parts into those of the first part, skipping the results
+     * of parts without data so that they do not overwrite a real result.
+     */
+    List<AggregateResult> mergePartialResults() {
+      List<AggregateResult> results = partialResults[0];
+      for (int i = 1; i < partialResults.length; i++) {
+        for (int j = 0; j < results.size(); j++) {
+          AggregateResult partialResult = partialResults[i].get(j);
+          if (partialResult.getResult() != null) {
+            results.get(j).merge(partialResult);
+          }
+        }
+      }
+      return results;
+    }
+  }
+
+  private static class AggregationPart {
+
+    private final SeriesAggregation seriesAggregation;
+    private final int partIndex;
+
+    AggregationPart(SeriesAggregation seriesAggregation, int partIndex) {
+      this.seriesAggregation = seriesAggregation;
+      this.partIndex = partIndex;
+    }
+
+    void aggregate(AggregationExecutor executor, Filter timeFilter, QueryContext context,
+        boolean ascending) throws StorageEngineException, IOException, QueryProcessException {
+      seriesAggregation.aggregate(partIndex, executor, timeFilter, context, ascending);
+    }
+  }
+
   /**
    * get aggregation result for one series
    *
@@ -123,19 +374,26 @@ public class AggregationExecutor {
       Set<String> measurements,
       Filter timeFilter, QueryContext context, boolean ascending)
       throws IOException, QueryProcessException, StorageEngineException {
-    List<AggregateResult> aggregateResultList = new ArrayList<>();
+    List<AggregateResult> aggregateResultList = createAggregateResults(pathToAggrIndexes);
 
     PartialPath seriesPath = pathToAggrIndexes.getKey();
     TSDataType tsDataType = dataTypes.get(pathToAggrIndexes.getValue().get(0));
 
+    aggregateOneSeries(seriesPath, measurements, context, timeFilter, tsDataType,
+        aggregateResultList, null, ascending);
+    return aggregateResultList;
+  }
+
+  private List<AggregateResult> createAggregateResults(
+      Map.Entry<PartialPath, List<Integer>> pathToAggrIndexes) {
+    List<AggregateResult> aggregateResultList = new ArrayList<>();
+    TSDataType tsDataType = dataTypes.get(pathToAggrIndexes.getValue().get(0));
     for (int i : pathToAggrIndexes.getValue()) {
       // construct AggregateResult
       AggregateResult aggregateResult = AggregateResultFactory
           .getAggrResultByName(aggregations.get(i), tsDataType);
       aggregateResultList.add(aggregateResult);
     }
-    aggregateOneSeries(seriesPath, measurements, context, timeFilter, tsDataType,
-        aggregateResultList, null, ascending);
     return aggregateResultList;
   }
 
@@ -152,6 +410,15 @@ public class AggregationExecutor {
     if (fileFilter != null) {
       QueryUtils.filterQueryDataSource(queryDataSource, fileFilter);
     }
+    aggregateFromDataSource(seriesPath, measurements, context, timeFilter, tsDataType,
+        aggregateResultList, queryDataSource, ascending);
+  }
+
+  @SuppressWarnings("squid:S107")
+  private static void aggregateFromDataSource(PartialPath seriesPath, Set<String> measurements,
+      QueryContext context, Filter timeFilter, TSDataType tsDataType,
+      List<AggregateResult> aggregateResultList, QueryDataSource queryDataSource,
+      boolean ascending) throws IOException, QueryProcessException {
     // update filter by TTL
     timeFilter = queryDataSource.updateFilterUsingTTL(timeFilter);
 
@@ -132,24 +132,30 @@ public class LastQueryExecutor {
       PartialPath seriesPath, TSDataType tsDataType, QueryContext context, Set<String> deviceMeasurements)
       throws IOException, QueryProcessException, StorageEngineException {
 
-    // Retrieve last value from MNode
+    // Retrieve last value from MNode, which is kept in the MTree until the last value is cached
     MeasurementMNode node = null;
     if (lastCacheEnabled) {
       try {
-        node = (MeasurementMNode) IoTDB.metaManager.getNodeByPath(seriesPath);
+        node = IoTDB.metaManager.getMeasurementMNodeAndReadLockDevice(seriesPath);
       } catch (MetadataException e) {
         TimeValuePair timeValuePair = IoTDB.metaManager.getLastCache(seriesPath);
         if (timeValuePair != null) {
           return timeValuePair;
         }
       }
+    }
 
+    try {
       if (node != null && node.getCachedLast() != null) {
         return node.getCachedLast();
       }
+      return calculateLastPairByScanningTsFiles(seriesPath, tsDataType, context,
+          deviceMeasurements, node);
+    } finally {
+      if (node != null) {
+        IoTDB.metaManager.readUnlockDevice(node.getParent());
+      }
     }
-
-    return calculateLastPairByScanningTsFiles(seriesPath, tsDataType, context, deviceMeasurements, node);
   }
 
   private static TimeValuePair calculateLastPairByScanningTsFiles(
@@ -22,9 +22,15 @@ import static org.apache.iotdb.tsfile.read.query.executor.ExecutorWithTimeGenera
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.cache.TimeSeriesMetadataCache;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.metadata.PartialPath;
@@ -91,6 +97,7 @@ public class RawDataQueryExecutor {
     }
 
     List<ManagedSeriesReader> readersOfSelectedSeries = new ArrayList<>();
+    Map<TsFileResource, Map<String, Set<String>>> prefetchFiles = new HashMap<>();
     for (int i = 0; i < queryPlan.getDeduplicatedPaths().size(); i++) {
       PartialPath path = queryPlan.getDeduplicatedPaths().get(i);
       TSDataType dataType = queryPlan.getDeduplicatedDataTypes().get(i);
@@ -98,15 +105,49 @@ public class RawDataQueryExecutor {
       QueryDataSource queryDataSource = QueryResourceManager.getInstance()
           .getQueryDataSource(path, context, timeFilter);
       timeFilter = queryDataSource.updateFilterUsingTTL(timeFilter);
+      addPrefetchFiles(prefetchFiles, path.getDevice(), queryDataSource);
 
       ManagedSeriesReader reader = new SeriesRawDataBatchReader(path,
           queryPlan.getAllMeasurementsInDevice(path.getDevice()), dataType, context,
           queryDataSource, timeFilter, null, null, queryPlan.isAscending());
       readersOfSelectedSeries.add(reader);
     }
+    if (!prefetchFiles.isEmpty()) {
+      TimeSeriesMetadataCache.getInstance().prefetch(prefetchFiles);
+    }
     return readersOfSelectedSeries;
   }
 
+  /**
+   * collect the first closed files of the series in query order, whose TimeseriesMetadata is read
+   * in advance.
+   *
+   * @param prefetchFiles closed file -> device -> measurements
+   */
+  private void addPrefetchFiles(Map<TsFileResource, Map<String, Set<String>>> prefetchFiles,
+      String device, QueryDataSource queryDataSource) {
+    int prefetchFileNum = IoTDBDescriptor.getInstance().getConfig()
+        .getTimeseriesMetadataPrefetchFileNum();
+    List<TsFileResource> seqResources = queryDataSource.getSeqResources();
+    for (int i = 0; i < Math.min(prefetchFileNum, seqResources.size()); i++) {
+      addPrefetchFile(prefetchFiles, device, queryPlan.isAscending() ? seqResources.get(i)
+          : seqResources.get(seqResources.size() - 1 - i));
+    }
+    List<TsFileResource> unseqResources = queryDataSource.getUnseqResources();
+    for (int i = 0; i < Math.min(prefetchFileNum, unseqResources.size()); i++) {
+      addPrefetchFile(prefetchFiles, device, unseqResources.get(i));
+    }
+  }
+
+  private void addPrefetchFile(Map<TsFileResource, Map<String, Set<String>>> prefetchFiles,
+      String device, TsFileResource resource) {
+    if (resource.isClosed()) {
+      prefetchFiles.computeIfAbsent(resource, k -> new HashMap<>())
+          .computeIfAbsent(device, k -> new HashSet<>())
+          .addAll(queryPlan.getAllMeasurementsInDevice(device));
+    }
+  }
+
   /**
    * executeWithValueFilter query.
    *
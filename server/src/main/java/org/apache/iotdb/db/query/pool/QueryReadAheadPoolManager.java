@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.pool;
+
+import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
+import org.apache.iotdb.db.concurrent.ThreadName;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.flush.pool.AbstractPoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the next batch of query results in advance for TSServiceImpl.fetchResults(). It is kept
+ * apart from {@link QueryTaskPoolManager} because filling a batch waits for the read tasks that
+ * run in that pool.
+ */
+public class QueryReadAheadPoolManager extends AbstractPoolManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryReadAheadPoolManager.class);
+
+  private QueryReadAheadPoolManager() {
+    int threadCnt = IoTDBDescriptor.getInstance().getConfig().getConcurrentQueryThread();
+    pool = IoTDBThreadPoolFactory
+        .newFixedThreadPool(threadCnt, ThreadName.QUERY_READ_AHEAD.getName());
+  }
+
+  public static QueryReadAheadPoolManager getInstance() {
+    return QueryReadAheadPoolManager.InstanceHolder.instance;
+  }
+
+  @Override
+  public Logger getLogger() {
+    return LOGGER;
+  }
+
+  @Override
+  public String getName() {
+    return "query read ahead";
+  }
+
+  @Override
+  public void start() {
+    if (pool == null) {
+      int threadCnt = IoTDBDescriptor.getInstance().getConfig().getConcurrentQueryThread();
+      pool = IoTDBThreadPoolFactory
+          .newFixedThreadPool(threadCnt, ThreadName.QUERY_READ_AHEAD.getName());
+    }
+  }
+
+  private static class InstanceHolder {
+
+    private InstanceHolder() {
+      //allowed to do nothing
+    }
+
+    private static QueryReadAheadPoolManager instance = new QueryReadAheadPoolManager();
+  }
+}
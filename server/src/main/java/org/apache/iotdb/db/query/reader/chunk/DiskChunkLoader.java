@@ -46,6 +46,10 @@ public class DiskChunkLoader implements IChunkLoader {
     return ChunkCache.getInstance().get(chunkMetaData, tsFileSequenceReader);
   }
 
+  public TsFileResource getResource() {
+    return resource;
+  }
+
   @Override
   public void close() throws IOException {
     // do nothing
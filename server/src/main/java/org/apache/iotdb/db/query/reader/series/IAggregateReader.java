@@ -22,6 +22,7 @@ import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface IAggregateReader {
 
@@ -41,6 +42,14 @@ public interface IAggregateReader {
 
   void skipCurrentChunk();
 
+  /**
+   * only be used without value filter
+   *
+   * @return the rollup buckets of the current chunk that satisfy the time filter, or null if the
+   * chunk has no rollup or a bucket is only partly covered by the time filter
+   */
+  List<Statistics> currentChunkRollup() throws IOException;
+
   boolean hasNextPage() throws IOException;
 
   /**
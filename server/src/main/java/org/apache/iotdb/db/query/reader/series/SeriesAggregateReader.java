@@ -19,11 +19,17 @@
 package org.apache.iotdb.db.query.reader.series;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
+import org.apache.iotdb.db.engine.rollup.RollupManager;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.metadata.PartialPath;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.filter.TsFileFilter;
+import org.apache.iotdb.db.query.reader.chunk.DiskChunkLoader;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.common.BatchData;
@@ -32,11 +38,13 @@ import org.apache.iotdb.tsfile.read.filter.basic.Filter;
 
 public class SeriesAggregateReader implements IAggregateReader {
 
+  private final PartialPath seriesPath;
   private final SeriesReader seriesReader;
 
   public SeriesAggregateReader(PartialPath seriesPath, Set<String> allSensors,  TSDataType dataType,
       QueryContext context, QueryDataSource dataSource, Filter timeFilter, Filter valueFilter,
       TsFileFilter fileFilter, boolean ascending) {
+    this.seriesPath = seriesPath;
     this.seriesReader = new SeriesReader(seriesPath, allSensors, dataType, context, dataSource,
         timeFilter, valueFilter, fileFilter, ascending);
   }
@@ -85,6 +93,34 @@ public class SeriesAggregateReader implements IAggregateReader {
     seriesReader.skipCurrentChunk();
   }
 
+  @Override
+  public List<Statistics> currentChunkRollup() throws IOException {
+    if (seriesReader.isChunkOverlapped() || seriesReader.currentChunkModified()) {
+      return null;
+    }
+    ChunkMetadata chunkMetadata = seriesReader.currentChunkMetadata();
+    if (!(chunkMetadata.getChunkLoader() instanceof DiskChunkLoader)) {
+      return null;
+    }
+    TsFileResource resource = ((DiskChunkLoader) chunkMetadata.getChunkLoader()).getResource();
+    List<Statistics> buckets = RollupManager.getInstance()
+        .getChunkRollup(resource, seriesPath.getFullPath(), chunkMetadata);
+    Filter timeFilter = seriesReader.getTimeFilter();
+    if (buckets == null || timeFilter == null) {
+      return buckets;
+    }
+    List<Statistics> satisfiedBuckets = new ArrayList<>(buckets.size());
+    for (Statistics bucket : buckets) {
+      if (timeFilter.containStartEndTime(bucket.getStartTime(), bucket.getEndTime())) {
+        satisfiedBuckets.add(bucket);
+      } else if (timeFilter.satisfyStartEndTime(bucket.getStartTime(), bucket.getEndTime())) {
+        // only part of the bucket satisfies the filter, read the chunk instead
+        return null;
+      }
+    }
+    return satisfiedBuckets.isEmpty() ? null : satisfiedBuckets;
+  }
+
   @Override
   public boolean hasNextPage() throws IOException {
     return seriesReader.hasNextPage();
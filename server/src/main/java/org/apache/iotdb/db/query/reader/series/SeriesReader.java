@@ -31,10 +31,12 @@ import java.util.stream.Collectors;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.engine.valueindex.ValueIndexManager;
 import org.apache.iotdb.db.metadata.PartialPath;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.control.QueryResourceManager;
 import org.apache.iotdb.db.query.filter.TsFileFilter;
+import org.apache.iotdb.db.query.reader.chunk.DiskChunkLoader;
 import org.apache.iotdb.db.query.reader.universal.DescPriorityMergeReader;
 import org.apache.iotdb.db.query.reader.universal.PriorityMergeReader;
 import org.apache.iotdb.db.utils.FileLoaderUtils;
@@ -47,6 +49,7 @@ import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.BatchDataFactory;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.read.filter.basic.Filter;
 import org.apache.iotdb.tsfile.read.filter.basic.UnaryFilter;
 import org.apache.iotdb.tsfile.read.reader.IPageReader;
@@ -68,7 +71,9 @@ public class SeriesReader {
    *
    * timeFilter is pushed down to all pages (seq, unseq) without correctness problem
    *
-   * valueFilter is pushed down to non-overlapped page only
+   * valueFilter is pushed down to non-overlapped page only, and the non-overlapped files, chunks
+   * and pages whose statistics show that no point satisfies it are skipped. An overlapped one is
+   * never skipped, as its points may override older points with the same timestamps.
    */
   private final Filter timeFilter;
   private final Filter valueFilter;
@@ -108,6 +113,13 @@ public class SeriesReader {
   private boolean hasCachedNextOverlappedPage;
   private BatchData cachedBatchData;
 
+  /*
+   * the time ranges of candidateChunkMetadata that may satisfy the value filter according to the
+   * value index, null if the chunk has no value index
+   */
+  private ChunkMetadata candidateChunkMetadata;
+  private List<TimeRange> candidateTimeRanges;
+
   public SeriesReader(PartialPath seriesPath, Set<String> allSensors, TSDataType dataType,
       QueryContext context,
       QueryDataSource dataSource, Filter timeFilter, Filter valueFilter, TsFileFilter fileFilter,
@@ -196,6 +208,13 @@ public class SeriesReader {
     // init first time series metadata whose startTime is minimum
     tryToUnpackAllOverlappedFilesToTimeSeriesMetadata();
 
+    while (firstTimeSeriesMetadata != null
+        && filteredOutByValue(firstTimeSeriesMetadata.getStatistics()) && !isFileOverlapped()) {
+      firstTimeSeriesMetadata = null;
+      recordSkippedByValueFilter(1, 0, 0);
+      tryToUnpackAllOverlappedFilesToTimeSeriesMetadata();
+    }
+
     return firstTimeSeriesMetadata != null;
   }
 
@@ -262,18 +281,30 @@ public class SeriesReader {
       /*
        * first time series metadata is already unpacked, consume cached ChunkMetadata
        */
-      if (!cachedChunkMetadata.isEmpty()) {
-        firstChunkMetadata = cachedChunkMetadata.poll();
-        unpackAllOverlappedTsFilesToTimeSeriesMetadata(
-            orderUtils.getOverlapCheckTime(firstChunkMetadata.getStatistics()));
-        unpackAllOverlappedTimeSeriesMetadataToCachedChunkMetadata(
-            orderUtils.getOverlapCheckTime(firstChunkMetadata.getStatistics()), false);
-      }
+      pollFirstChunkMetadata();
+    }
+
+    while (firstChunkMetadata != null
+        && (filteredOutByValue(firstChunkMetadata.getStatistics())
+        || filteredOutByValueIndex(firstChunkMetadata)) && !isChunkOverlapped()) {
+      firstChunkMetadata = null;
+      recordSkippedByValueFilter(0, 1, 0);
+      pollFirstChunkMetadata();
     }
 
     return firstChunkMetadata != null;
   }
 
+  private void pollFirstChunkMetadata() throws IOException {
+    if (!cachedChunkMetadata.isEmpty()) {
+      firstChunkMetadata = cachedChunkMetadata.poll();
+      unpackAllOverlappedTsFilesToTimeSeriesMetadata(
+          orderUtils.getOverlapCheckTime(firstChunkMetadata.getStatistics()));
+      unpackAllOverlappedTimeSeriesMetadataToCachedChunkMetadata(
+          orderUtils.getOverlapCheckTime(firstChunkMetadata.getStatistics()), false);
+    }
+  }
+
   private void unpackAllOverlappedTimeSeriesMetadataToCachedChunkMetadata(
       long endpointTime, boolean init) throws IOException {
     while (!seqTimeSeriesMetadata.isEmpty()
@@ -330,6 +361,10 @@ public class SeriesReader {
     return firstChunkMetadata.getStatistics();
   }
 
+  ChunkMetadata currentChunkMetadata() {
+    return firstChunkMetadata;
+  }
+
   boolean currentChunkModified() throws IOException {
     if (firstChunkMetadata == null) {
       throw new IOException("no first chunk");
@@ -406,6 +441,8 @@ public class SeriesReader {
       }
     }
 
+    skipFirstPageIfFilteredOut();
+
     // make sure firstPageReader won't be null while cachedPageReaders has more cached page readers
     while (firstPageReader == null && !cachedPageReaders.isEmpty()) {
       firstPageReader = cachedPageReaders.poll();
@@ -423,10 +460,74 @@ public class SeriesReader {
           }
         }
       }
+      skipFirstPageIfFilteredOut();
     }
     return firstPageReader != null;
   }
 
+  private void skipFirstPageIfFilteredOut() {
+    if (firstPageReader == null || mergeReader.hasNextTimeValuePair()
+        || (!filteredOutByValue(firstPageReader.getStatistics())
+        && firstPageReader.isCandidate())) {
+      return;
+    }
+    if (cachedPageReaders.isEmpty() || !orderUtils
+        .isOverlapped(firstPageReader.getStatistics(), cachedPageReaders.peek().getStatistics())) {
+      firstPageReader = null;
+      recordSkippedByValueFilter(0, 0, 1);
+    }
+  }
+
+  /**
+   * @return true if the statistics show that no point satisfies the value filter
+   */
+  private boolean filteredOutByValue(Statistics statistics) {
+    return valueFilter != null && !valueFilter.satisfy(statistics);
+  }
+
+  /**
+   * @return true if the value index shows that no point of the chunk satisfies the value filter
+   */
+  private boolean filteredOutByValueIndex(ChunkMetadata chunkMetadata) {
+    List<TimeRange> candidates = getCandidateTimeRanges(chunkMetadata);
+    return candidates != null && candidates.isEmpty();
+  }
+
+  /**
+   * @return the time ranges of the chunk that may have points satisfying the value filter
+   * according to the value index, or null if the chunk has no value index
+   */
+  private List<TimeRange> getCandidateTimeRanges(ChunkMetadata chunkMetadata) {
+    if (valueFilter == null || !ValueIndexManager.getInstance().isEnable()
+        || !(chunkMetadata.getChunkLoader() instanceof DiskChunkLoader)) {
+      return null;
+    }
+    if (chunkMetadata != candidateChunkMetadata) {
+      TsFileResource resource = ((DiskChunkLoader) chunkMetadata.getChunkLoader()).getResource();
+      candidateTimeRanges = ValueIndexManager.getInstance()
+          .getCandidateTimeRanges(resource, seriesPath.getFullPath(), chunkMetadata, valueFilter);
+      candidateChunkMetadata = chunkMetadata;
+    }
+    return candidateTimeRanges;
+  }
+
+  private static boolean hasCandidate(List<TimeRange> candidates, Statistics pageStatistics) {
+    for (TimeRange candidate : candidates) {
+      if (candidate.getMin() <= pageStatistics.getEndTime()
+          && pageStatistics.getStartTime() <= candidate.getMax()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void recordSkippedByValueFilter(int fileNum, int chunkNum, int pageNum) {
+    if (IoTDBDescriptor.getInstance().getConfig().isEnablePerformanceTracing()) {
+      QueryResourceManager.getInstance()
+          .addSkippedByValueFilter(context.getQueryId(), fileNum, chunkNum, pageNum);
+    }
+  }
+
   private void unpackAllOverlappedChunkMetadataToCachedPageReaders(long endpointTime, boolean init)
       throws IOException {
     while (!cachedChunkMetadata.isEmpty() &&
@@ -444,11 +545,14 @@ public class SeriesReader {
   }
 
   private void unpackOneChunkMetaData(ChunkMetadata chunkMetaData) throws IOException {
+    List<TimeRange> candidates = getCandidateTimeRanges(chunkMetaData);
     FileLoaderUtils.loadPageReaderList(chunkMetaData, timeFilter)
         .forEach(
             pageReader ->
                 cachedPageReaders.add(
-                    new VersionPageReader(chunkMetaData.getVersion(), pageReader)));
+                    new VersionPageReader(chunkMetaData.getVersion(), pageReader,
+                        candidates == null
+                            || hasCandidate(candidates, pageReader.getStatistics()))));
   }
 
   /**
@@ -512,9 +616,10 @@ public class SeriesReader {
     } else {
 
       /*
-       * next page is not overlapped, push down value filter if it exists
+       * next page is not overlapped, push down value filter if it exists and some points of the
+       * page may not satisfy it
        */
-      if (valueFilter != null) {
+      if (valueFilter != null && !valueFilter.allSatisfy(firstPageReader.getStatistics())) {
         firstPageReader.setFilter(valueFilter);
       }
       BatchData batchData = firstPageReader.getAllSatisfiedPageData(orderUtils.getAscending());
@@ -774,10 +879,17 @@ public class SeriesReader {
 
     protected long version;
     protected IPageReader data;
+    // false if the value index shows that no point of the page satisfies the value filter
+    private final boolean candidate;
 
-    VersionPageReader(long version, IPageReader data) {
+    VersionPageReader(long version, IPageReader data, boolean candidate) {
       this.version = version;
       this.data = data;
+      this.candidate = candidate;
+    }
+
+    boolean isCandidate() {
+      return candidate;
     }
 
     Statistics getStatistics() {
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.rescon;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hand out blocks of direct memory for the off-heap TVLists of one memtable. Blocks are carved out
+ * of large direct slabs and are never freed one by one; instead all slabs of the arena are
+ * returned to a global free list at once when the memtable is released, and reused by the arenas
+ * of later memtables. The free list keeps at most off_heap_memtable_retained_memory, the slabs
+ * beyond it are left to the GC, which frees their memory. All arenas together allocate at most
+ * off_heap_memtable_max_memory of direct memory, blocks beyond it are allocated on the heap.
+ */
+public class OffHeapArena {
+
+  private static final Logger logger = LoggerFactory.getLogger(OffHeapArena.class);
+  private static final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+
+  /**
+   * the size of a pooled slab, a block larger than this gets a dedicated slab that is not pooled
+   */
+  static final int SLAB_SIZE = 1024 * 1024;
+
+  private static final Queue<ByteBuffer> freeSlabs = new ConcurrentLinkedQueue<>();
+
+  /**
+   * direct memory of the slabs in use and in the free list
+   */
+  private static final AtomicLong totalSlabBytes = new AtomicLong();
+
+  private static final AtomicLong freeSlabBytes = new AtomicLong();
+
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+
+  private ByteBuffer currentSlab;
+
+  /**
+   * bytes of the slabs of this arena, direct or on the heap
+   */
+  private long allocatedBytes = 0;
+
+  private boolean released = false;
+
+  /**
+   * @return a block of the given bytes in native byte order, which may contain stale data and is
+   * valid until release() is called
+   */
+  public synchronized ByteBuffer allocate(int bytes) {
+    if (released) {
+      throw new IllegalStateException("The off-heap arena has been released");
+    }
+    if (bytes > SLAB_SIZE) {
+      ByteBuffer dedicatedSlab = allocateSlab(bytes);
+      slabs.add(dedicatedSlab);
+      allocatedBytes += bytes;
+      return dedicatedSlab.order(ByteOrder.nativeOrder());
+    }
+    if (currentSlab == null || currentSlab.remaining() < bytes) {
+      currentSlab = pollOrAllocateSlab();
+      slabs.add(currentSlab);
+      allocatedBytes += SLAB_SIZE;
+    }
+    int position = currentSlab.position();
+    currentSlab.limit(position + bytes);
+    ByteBuffer block = currentSlab.slice().order(ByteOrder.nativeOrder());
+    currentSlab.limit(currentSlab.capacity());
+    currentSlab.position(position + bytes);
+    return block;
+  }
+
+  private static ByteBuffer pollOrAllocateSlab() {
+    ByteBuffer slab = freeSlabs.poll();
+    if (slab != null) {
+      freeSlabBytes.addAndGet(-SLAB_SIZE);
+      return slab;
+    }
+    return allocateSlab(SLAB_SIZE);
+  }
+
+  /**
+   * @return a new direct slab, or a heap one if the direct memory of the arenas is used up
+   */
+  private static ByteBuffer allocateSlab(int bytes) {
+    if (totalSlabBytes.addAndGet(bytes) > config.getOffHeapMemtableMaxMemory()) {
+      totalSlabBytes.addAndGet(-bytes);
+      logger.debug("The direct memory of off-heap memtables is used up, allocate {} bytes on heap",
+          bytes);
+      return ByteBuffer.allocate(bytes);
+    }
+    return ByteBuffer.allocateDirect(bytes);
+  }
+
+  /**
+   * Return the slabs of this arena to the free list, or leave them to the GC if they are on the
+   * heap, dedicated or beyond the retained memory. The blocks allocated from this arena must not be
+   * used afterwards.
+   */
+  public synchronized void release() {
+    for (ByteBuffer slab : slabs) {
+      if (!slab.isDirect()) {
+        continue;
+      }
+      if (slab.capacity() == SLAB_SIZE && freeSlabBytes.addAndGet(SLAB_SIZE) <= config
+          .getOffHeapMemtableRetainedMemory()) {
+        slab.clear();
+        freeSlabs.add(slab);
+        continue;
+      }
+      if (slab.capacity() == SLAB_SIZE) {
+        freeSlabBytes.addAndGet(-SLAB_SIZE);
+      }
+      totalSlabBytes.addAndGet(-slab.capacity());
+    }
+    slabs.clear();
+    currentSlab = null;
+    allocatedBytes = 0;
+    released = true;
+  }
+
+  /**
+   * @return the bytes of the slabs of this arena, including those on the heap, which are all
+   * counted against the memtable
+   */
+  public synchronized long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * @return the bytes of direct memory allocated by all arenas, including free slabs
+   */
+  public static long getTotalSlabBytes() {
+    return totalSlabBytes.get();
+  }
+
+  /**
+   * @return the bytes of direct memory that are not used by any arena
+   */
+  public static long getFreeSlabBytes() {
+    return freeSlabBytes.get();
+  }
+}
@@ -18,9 +18,12 @@
  */
 package org.apache.iotdb.db.rescon;
 
-import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.tsfile.exception.write.UnSupportedDataTypeException;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -28,26 +31,39 @@ import org.apache.iotdb.tsfile.utils.Binary;
 
 /**
  * Manage all primitive data list in memory, including get and release operation.
+ *
+ * <p>Released arrays of each data type are kept in several lock-free shards. A thread polls and
+ * offers its own shard first and only scans the other shards when its shard is empty, so
+ * concurrent writers rarely touch the same queue. The pooled arrays are accounted in bytes and
+ * arrays released beyond the memory allocated for write are left to the GC.
  */
 public class PrimitiveArrayPool {
 
-  /**
-   * data type -> Array<PrimitiveArray>
-   */
-  private static final EnumMap<TSDataType, ArrayDeque<Object>> primitiveArraysMap = new EnumMap<>(TSDataType.class);
-
   public static final int ARRAY_SIZE =
       IoTDBDescriptor.getInstance().getConfig().getPrimitiveArraySize();
 
+  private static final int SHARD_NUM = shardNum();
+
+  /**
+   * data type -> shards of pooled arrays
+   */
+  private static final EnumMap<TSDataType, Queue<Object>[]> primitiveArraysMap = new EnumMap<>(
+      TSDataType.class);
+
   static {
-    primitiveArraysMap.put(TSDataType.BOOLEAN, new ArrayDeque<>());
-    primitiveArraysMap.put(TSDataType.INT32, new ArrayDeque<>());
-    primitiveArraysMap.put(TSDataType.INT64, new ArrayDeque<>());
-    primitiveArraysMap.put(TSDataType.FLOAT, new ArrayDeque<>());
-    primitiveArraysMap.put(TSDataType.DOUBLE, new ArrayDeque<>());
-    primitiveArraysMap.put(TSDataType.TEXT, new ArrayDeque<>());
+    for (TSDataType dataType : TSDataType.values()) {
+      primitiveArraysMap.put(dataType, newShards());
+    }
   }
 
+  private final AtomicLong pooledBytes = new AtomicLong();
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder outstandingArrayNum = new LongAdder();
+
   public static PrimitiveArrayPool getInstance() {
     return INSTANCE;
   }
@@ -57,61 +73,118 @@ public class PrimitiveArrayPool {
 
   private PrimitiveArrayPool() {}
 
-  public synchronized Object getPrimitiveDataListByType(TSDataType dataType) {
-    ArrayDeque<Object> dataListQueue = primitiveArraysMap.computeIfAbsent(dataType, k ->new ArrayDeque<>());
-    Object dataArray = dataListQueue.poll();
+  /**
+   * @return the smallest power of 2 that is not less than the number of processors
+   */
+  private static int shardNum() {
+    int processors = Runtime.getRuntime().availableProcessors();
+    return processors <= 1 ? 1 : Integer.highestOneBit(processors - 1) << 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Queue<Object>[] newShards() {
+    Queue<Object>[] shards = new Queue[SHARD_NUM];
+    for (int i = 0; i < SHARD_NUM; i++) {
+      shards[i] = new ConcurrentLinkedQueue<>();
+    }
+    return shards;
+  }
+
+  private static int currentShard() {
+    return (int) (Thread.currentThread().getId() & (SHARD_NUM - 1));
+  }
+
+  public Object getPrimitiveDataListByType(TSDataType dataType) {
+    Object dataArray = poll(dataType);
+    outstandingArrayNum.increment();
+    if (dataArray != null) {
+      hitCount.increment();
+      pooledBytes.addAndGet(-getArrayBytes(dataType));
+      return dataArray;
+    }
+    missCount.increment();
     switch (dataType) {
       case BOOLEAN:
-        if (dataArray == null) {
-          dataArray = new boolean[ARRAY_SIZE];
-        }
-        break;
+        return new boolean[ARRAY_SIZE];
       case INT32:
-        if (dataArray == null) {
-          dataArray = new int[ARRAY_SIZE];
-        }
-        break;
+        return new int[ARRAY_SIZE];
       case INT64:
-        if (dataArray == null) {
-          dataArray = new long[ARRAY_SIZE];
-        }
-        break;
+        return new long[ARRAY_SIZE];
       case FLOAT:
-        if (dataArray == null) {
-          dataArray = new float[ARRAY_SIZE];
-        }
-        break;
+        return new float[ARRAY_SIZE];
       case DOUBLE:
-        if (dataArray == null) {
-          dataArray = new double[ARRAY_SIZE];
-        }
-        break;
+        return new double[ARRAY_SIZE];
       case TEXT:
-        if (dataArray == null) {
-          dataArray = new Binary[ARRAY_SIZE];
-        }
-        break;
+        return new Binary[ARRAY_SIZE];
       default:
+        outstandingArrayNum.decrement();
         throw new UnSupportedDataTypeException("DataType: " + dataType);
     }
-    return dataArray;
+  }
+
+  private Object poll(TSDataType dataType) {
+    Queue<Object>[] shards = primitiveArraysMap.get(dataType);
+    if (shards == null) {
+      return null;
+    }
+    int shard = currentShard();
+    for (int i = 0; i < SHARD_NUM; i++) {
+      Object dataArray = shards[(shard + i) & (SHARD_NUM - 1)].poll();
+      if (dataArray != null) {
+        return dataArray;
+      }
+    }
+    return null;
   }
 
 
-  public synchronized void release(Object dataArray) {
+  public void release(Object dataArray) {
+    TSDataType dataType;
     if (dataArray instanceof boolean[]) {
-      primitiveArraysMap.get(TSDataType.BOOLEAN).add(dataArray);
+      dataType = TSDataType.BOOLEAN;
     } else if (dataArray instanceof int[]) {
-      primitiveArraysMap.get(TSDataType.INT32).add(dataArray);
-    } else if (dataArray instanceof long[]){
-      primitiveArraysMap.get(TSDataType.INT64).add(dataArray);
+      dataType = TSDataType.INT32;
+    } else if (dataArray instanceof long[]) {
+      dataType = TSDataType.INT64;
     } else if (dataArray instanceof float[]) {
-      primitiveArraysMap.get(TSDataType.FLOAT).add(dataArray);
+      dataType = TSDataType.FLOAT;
     } else if (dataArray instanceof double[]) {
-      primitiveArraysMap.get(TSDataType.DOUBLE).add(dataArray);
+      dataType = TSDataType.DOUBLE;
     } else if (dataArray instanceof Binary[]) {
       Arrays.fill((Binary[]) dataArray, null);
-      primitiveArraysMap.get(TSDataType.TEXT).add(dataArray);
+      dataType = TSDataType.TEXT;
+    } else {
+      return;
+    }
+    outstandingArrayNum.decrement();
+
+    long arrayBytes = getArrayBytes(dataType);
+    long budget = IoTDBDescriptor.getInstance().getConfig().getAllocateMemoryForWrite();
+    if (pooledBytes.addAndGet(arrayBytes) > budget) {
+      // the pool already holds as much as all memtables may use, let the GC reclaim this one
+      pooledBytes.addAndGet(-arrayBytes);
+      return;
+    }
+    primitiveArraysMap.get(dataType)[currentShard()].add(dataArray);
+  }
+
+  /**
+   * @return the estimated size of a primitive array of the data type, references of Binary arrays
+   * are counted as 8 bytes and the Binary objects are not included
+   */
+  private static long getArrayBytes(TSDataType dataType) {
+    switch (dataType) {
+      case BOOLEAN:
+        return ARRAY_SIZE;
+      case INT32:
+      case FLOAT:
+        return (long) ARRAY_SIZE * Integer.BYTES;
+      case INT64:
+      case DOUBLE:
+      case TEXT:
+        return (long) ARRAY_SIZE * Long.BYTES;
+      default:
+        throw new UnSupportedDataTypeException("DataType: " + dataType);
     }
   }
 
@@ -119,7 +192,7 @@ public class PrimitiveArrayPool {
    * @param size needed capacity
    * @return an array of primitive data arrays
    */
-  public synchronized Object getDataListsByType(TSDataType dataType, int size) {
+  public Object getDataListsByType(TSDataType dataType, int size) {
     int arrayNumber = (int) Math.ceil((float) size / (float)ARRAY_SIZE);
     switch (dataType) {
       case BOOLEAN:
@@ -163,4 +236,32 @@ public class PrimitiveArrayPool {
     }
   }
 
+  /**
+   * @return how many requested arrays were taken from the pool
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return how many requested arrays were newly allocated because the pool was empty
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return how many arrays are taken from the pool and not released yet
+   */
+  public long getOutstandingArrayNum() {
+    return outstandingArrayNum.sum();
+  }
+
+  /**
+   * @return the estimated bytes of the arrays kept in the pool
+   */
+  public long getPooledBytes() {
+    return pooledBytes.get();
+  }
+
 }
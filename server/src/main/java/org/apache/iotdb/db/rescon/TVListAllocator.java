@@ -19,10 +19,11 @@
 
 package org.apache.iotdb.db.rescon;
 
-import java.util.ArrayDeque;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.exception.StartupException;
 import org.apache.iotdb.db.service.IService;
@@ -37,9 +38,15 @@ import org.apache.iotdb.db.utils.datastructure.LongTVList;
 import org.apache.iotdb.db.utils.datastructure.TVList;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 
+/**
+ * Reuse TVLists of released memtables. The cached TVLists of each data type are kept in a
+ * lock-free queue so that memtables of different storage groups do not contend on a monitor.
+ */
 public class TVListAllocator implements TVListAllocatorMBean, IService {
 
-  private Map<TSDataType, Queue<TVList>> tvListCache = new EnumMap<>(TSDataType.class);
+  private final Map<TSDataType, Queue<TVList>> tvListCache = new EnumMap<>(TSDataType.class);
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
   private String mbeanName = String
       .format("%s:%s=%s", IoTDBConstant.IOTDB_PACKAGE, IoTDBConstant.JMX_TYPE,
           getID().getJmxName());
@@ -50,19 +57,29 @@ public class TVListAllocator implements TVListAllocatorMBean, IService {
     return INSTANCE;
   }
 
-  public synchronized TVList allocate(TSDataType dataType) {
-    Queue<TVList> tvLists = tvListCache.computeIfAbsent(dataType,
-        k -> new ArrayDeque<>());
-    TVList list = tvLists.poll();
-    return list != null ? list : TVList.newList(dataType);
+  private TVListAllocator() {
+    // the map is never modified afterwards, so it can be read concurrently
+    for (TSDataType dataType : TSDataType.values()) {
+      tvListCache.put(dataType, new ConcurrentLinkedQueue<>());
+    }
   }
 
-  public synchronized void release(TSDataType dataType, TVList list) {
+  public TVList allocate(TSDataType dataType) {
+    TVList list = tvListCache.get(dataType).poll();
+    if (list != null) {
+      hitCount.increment();
+      return list;
+    }
+    missCount.increment();
+    return TVList.newList(dataType);
+  }
+
+  public void release(TSDataType dataType, TVList list) {
     list.clear();
     tvListCache.get(dataType).add(list);
   }
 
-  public synchronized void release(TVList list) {
+  public void release(TVList list) {
     list.clear();
     if (list instanceof BinaryTVList) {
       tvListCache.get(TSDataType.TEXT).add(list);
@@ -88,6 +105,36 @@ public class TVListAllocator implements TVListAllocatorMBean, IService {
     return number;
   }
 
+  @Override
+  public long getTVListHitCount() {
+    return hitCount.sum();
+  }
+
+  @Override
+  public long getTVListMissCount() {
+    return missCount.sum();
+  }
+
+  @Override
+  public long getPrimitiveArrayHitCount() {
+    return PrimitiveArrayPool.getInstance().getHitCount();
+  }
+
+  @Override
+  public long getPrimitiveArrayMissCount() {
+    return PrimitiveArrayPool.getInstance().getMissCount();
+  }
+
+  @Override
+  public long getNumberOfOutstandingPrimitiveArrays() {
+    return PrimitiveArrayPool.getInstance().getOutstandingArrayNum();
+  }
+
+  @Override
+  public long getPooledPrimitiveArrayBytes() {
+    return PrimitiveArrayPool.getInstance().getPooledBytes();
+  }
+
   @Override
   public void start() throws StartupException {
     try {
@@ -100,7 +147,9 @@ public class TVListAllocator implements TVListAllocatorMBean, IService {
   @Override
   public void stop() {
     JMXService.deregisterMBean(mbeanName);
-    tvListCache.clear();
+    for (Queue<TVList> queue : tvListCache.values()) {
+      queue.clear();
+    }
   }
 
   @Override
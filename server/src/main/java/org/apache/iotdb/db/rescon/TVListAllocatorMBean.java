@@ -22,4 +22,16 @@ public interface TVListAllocatorMBean {
 
   int getNumberOfTVLists();
 
+  long getTVListHitCount();
+
+  long getTVListMissCount();
+
+  long getPrimitiveArrayHitCount();
+
+  long getPrimitiveArrayMissCount();
+
+  long getNumberOfOutstandingPrimitiveArrays();
+
+  long getPooledPrimitiveArrayBytes();
+
 }
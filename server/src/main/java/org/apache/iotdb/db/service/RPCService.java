@@ -22,7 +22,9 @@ import org.apache.iotdb.db.concurrent.ThreadName;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.service.thrift.ThriftService;
+import org.apache.iotdb.db.service.thrift.ThriftServerType;
 import org.apache.iotdb.db.service.thrift.ThriftServiceThread;
+import org.apache.iotdb.db.utils.TestOnly;
 import org.apache.iotdb.service.rpc.thrift.TSIService.Processor;
 
 /**
@@ -45,6 +47,11 @@ public class RPCService extends ThriftService implements RPCServiceMBean {
     return config.getRpcPort();
   }
 
+  @TestOnly
+  public TSServiceImpl getServiceImpl() {
+    return impl;
+  }
+
   @Override
   public ThriftService getImplementation() {
     return getInstance();
@@ -61,15 +68,30 @@ public class RPCService extends ThriftService implements RPCServiceMBean {
   public void initThriftServiceThread()
       throws IllegalAccessException, InstantiationException, ClassNotFoundException {
     IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    ThriftServerType serverType = config.getRpcThriftServerType();
+    int maxWorkerThreads = serverType == ThriftServerType.THREAD_POOL
+        ? config.getRpcMaxConcurrentClientNum() : config.getRpcWorkerThreadNum();
     thriftServiceThread = new ThriftServiceThread(processor,
         getID().getName(), ThreadName.RPC_CLIENT.getName(),
-        config.getRpcAddress(), config.getRpcPort(), config.getRpcMaxConcurrentClientNum(),
-        config.getThriftServerAwaitTimeForStopService(),
+        config.getRpcAddress(), config.getRpcPort(), serverType, config.getRpcSelectorThreadNum(),
+        maxWorkerThreads, config.getThriftServerAwaitTimeForStopService(),
         new RPCServiceThriftHandler(impl),
         IoTDBDescriptor.getInstance().getConfig().isRpcThriftCompressionEnable());
     thriftServiceThread.setName(ThreadName.RPC_SERVICE.getName());
   }
 
+  @Override
+  public int getQueuedRequestNum() {
+    ThriftServiceThread serviceThread = thriftServiceThread;
+    return serviceThread == null ? 0 : serviceThread.getQueuedRequestNum();
+  }
+
+  @Override
+  public int getActiveWorkerNum() {
+    ThriftServiceThread serviceThread = thriftServiceThread;
+    return serviceThread == null ? 0 : serviceThread.getActiveWorkerNum();
+  }
+
   @Override
   public String getBindIP() {
     return IoTDBDescriptor.getInstance().getConfig().getRpcAddress();
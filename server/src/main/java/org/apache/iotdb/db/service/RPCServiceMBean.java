@@ -26,6 +26,16 @@ public interface RPCServiceMBean {
 
   int getRPCPort();
 
+  /**
+   * @return the number of requests waiting for a worker of a non-blocking rpc server
+   */
+  int getQueuedRequestNum();
+
+  /**
+   * @return the number of workers processing a request of a non-blocking rpc server
+   */
+  int getActiveWorkerNum();
+
   void startService() throws StartupException;
 
   void restartService() throws StartupException;
@@ -33,14 +33,17 @@ public class RPCServiceThriftHandler implements TServerEventHandler {
 
   @Override
   public ServerContext createContext(TProtocol arg0, TProtocol arg1) {
-    // nothing
-    return null;
+    return new ConnectionContext();
   }
 
   @Override
   public void deleteContext(ServerContext arg0, TProtocol arg1, TProtocol arg2) {
+    if (arg0 != null) {
+      serviceImpl.bindConnection((ConnectionContext) arg0);
+    }
     //release query resources.
     serviceImpl.handleClientExit();
+    serviceImpl.unbindConnection();
   }
 
   @Override
@@ -50,6 +53,26 @@ public class RPCServiceThriftHandler implements TServerEventHandler {
 
   @Override
   public void processContext(ServerContext arg0, TTransport arg1, TTransport arg2) {
-    // nothing
+    // the requests of a connection may be processed by different workers of a non-blocking server
+    if (arg0 != null) {
+      serviceImpl.bindConnection((ConnectionContext) arg0);
+    }
+  }
+
+  /**
+   * Keeps the session opened by a connection, so that it can be found by whichever thread
+   * processes the next request of the connection or cleans it up.
+   */
+  static class ConnectionContext implements ServerContext {
+
+    private volatile Long sessionId;
+
+    Long getSessionId() {
+      return sessionId;
+    }
+
+    void setSessionId(Long sessionId) {
+      this.sessionId = sessionId;
+    }
   }
 }
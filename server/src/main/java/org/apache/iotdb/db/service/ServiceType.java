@@ -22,7 +22,8 @@ package org.apache.iotdb.db.service;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 
 public enum ServiceType {
-  STORAGE_ENGINE_SERVICE("Storage Engine ServerService", ""),
+  STORAGE_ENGINE_SERVICE("Storage Engine ServerService",
+      generateJmxName(IoTDBConstant.IOTDB_PACKAGE, "Storage Engine")),
   JMX_SERVICE("JMX ServerService", "JMX ServerService"),
   METRICS_SERVICE("Metrics ServerService","MetricsService"),
   RPC_SERVICE("RPC ServerService", "RPCService"),
@@ -33,7 +33,10 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
@@ -82,12 +85,16 @@ import org.apache.iotdb.db.query.control.QueryResourceManager;
 import org.apache.iotdb.db.query.control.TracingManager;
 import org.apache.iotdb.db.query.dataset.AlignByDeviceDataSet;
 import org.apache.iotdb.db.query.dataset.NonAlignEngineDataSet;
+import org.apache.iotdb.db.query.dataset.RawQueryDataSetWithValueFilter;
 import org.apache.iotdb.db.query.dataset.RawQueryDataSetWithoutValueFilter;
+import org.apache.iotdb.db.query.pool.QueryReadAheadPoolManager;
 import org.apache.iotdb.db.tools.watermark.GroupedLSBWatermarkEncoder;
 import org.apache.iotdb.db.tools.watermark.WatermarkEncoder;
 import org.apache.iotdb.db.utils.FilePathUtils;
 import org.apache.iotdb.db.utils.QueryDataSetUtils;
 import org.apache.iotdb.db.utils.SchemaUtils;
+import org.apache.iotdb.db.utils.TestOnly;
+import org.apache.iotdb.rpc.RpcColumnCodec;
 import org.apache.iotdb.rpc.RpcUtils;
 import org.apache.iotdb.rpc.TSStatusCode;
 import org.apache.iotdb.service.rpc.thrift.ServerProperties;
@@ -169,11 +176,18 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
   // (queryId -> QueryDataSet)
   private Map<Long, QueryDataSet> queryId2DataSet = new ConcurrentHashMap<>();
 
+  // (queryId -> the next batch being filled in advance), only used if rpcFetchReadAheadEnable
+  private Map<Long, ReadAheadBatch> queryId2ReadAheadDataSet = new ConcurrentHashMap<>();
+
   private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
 
   // When the client abnormally exits, we can still know who to disconnect
   private ThreadLocal<Long> currSessionId = new ThreadLocal<>();
 
+  // the connection whose request is being processed by the current thread
+  private ThreadLocal<RPCServiceThriftHandler.ConnectionContext> currConnection =
+      new ThreadLocal<>();
+
   public static final TSProtocolVersion CURRENT_RPC_VERSION = TSProtocolVersion.IOTDB_SERVICE_PROTOCOL_V3;
 
 
@@ -223,6 +237,10 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       sessionIdUsernameMap.put(sessionId, req.getUsername());
       sessionIdZoneIdMap.put(sessionId, config.getZoneID());
       currSessionId.set(sessionId);
+      RPCServiceThriftHandler.ConnectionContext connection = currConnection.get();
+      if (connection != null) {
+        connection.setSessionId(sessionId);
+      }
     } else {
       tsStatus = RpcUtils.getStatus(TSStatusCode.WRONG_LOGIN_PASSWORD_ERROR);
       tsStatus.setMessage(loginMessage);
@@ -247,6 +265,10 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
     long sessionId = req.getSessionId();
     auditLogger.info("Session-{} is closing", sessionId);
     currSessionId.remove();
+    RPCServiceThriftHandler.ConnectionContext connection = currConnection.get();
+    if (connection != null && Long.valueOf(sessionId).equals(connection.getSessionId())) {
+      connection.setSessionId(null);
+    }
 
     TSStatus tsStatus;
     if (sessionIdUsernameMap.remove(sessionId) == null) {
@@ -325,6 +347,17 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
    * release single operation resource
    */
   protected void releaseQueryResource(long queryId) throws StorageEngineException {
+    // the readers must not be closed under a batch that is still being filled
+    ReadAheadBatch readAheadBatch = queryId2ReadAheadDataSet.remove(queryId);
+    if (readAheadBatch != null) {
+      try {
+        readAheadBatch.dataSet.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        logger.debug("Reading ahead of query {} failed before the query is released", queryId, e);
+      }
+    }
     // remove the corresponding Physical Plan
     queryId2DataSet.remove(queryId);
     QueryResourceManager.getInstance().endQuery(queryId);
@@ -480,7 +513,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
           processor.parseSQLToPhysicalPlan(statement, sessionIdZoneIdMap.get(req.getSessionId()));
       if (physicalPlan.isQuery()) {
         return internalExecuteQueryStatement(statement, req.statementId, physicalPlan,
-            req.fetchSize,
+            req.fetchSize, req.isEnableEncodedResult(),
             sessionIdUsernameMap.get(req.getSessionId()));
       } else {
         return executeUpdateStatement(physicalPlan, req.getSessionId());
@@ -527,7 +560,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       }
 
       return internalExecuteQueryStatement(statement, req.statementId, physicalPlan, req.fetchSize,
-          sessionIdUsernameMap.get(req.getSessionId()));
+          req.isEnableEncodedResult(), sessionIdUsernameMap.get(req.getSessionId()));
 
     } catch (ParseCancellationException e) {
       logger.warn(ERROR_PARSING_SQL, req.getStatement() + " " + e.getMessage());
@@ -566,7 +599,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       }
 
       return internalExecuteQueryStatement("", generateQueryId(true), physicalPlan, req.fetchSize,
-          sessionIdUsernameMap.get(req.getSessionId()));
+          req.isEnableEncodedResult(), sessionIdUsernameMap.get(req.getSessionId()));
 
     } catch (ParseCancellationException e) {
       logger.warn(ERROR_PARSING_SQL, e.getMessage());
@@ -586,10 +619,12 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
   /**
    * @param plan must be a plan for Query: FillQueryPlan, AggregationPlan, GroupByTimePlan, some
    *             AuthorPlan
+   * @param enableEncodedResult whether the client accepts encoded and compressed result columns
    */
   @SuppressWarnings("squid:S3776") // Suppress high Cognitive Complexity warning
   private TSExecuteStatementResp internalExecuteQueryStatement(String statement,
-      long statementId, PhysicalPlan plan, int fetchSize, String username) throws IOException {
+      long statementId, PhysicalPlan plan, int fetchSize, boolean enableEncodedResult,
+      String username) throws IOException {
     auditLogger.debug("Session {} execute Query: {}", currSessionId.get(), statement);
     long startTime = System.currentTimeMillis();
     long queryId = -1;
@@ -655,7 +690,10 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
               newDataSet.getDataTypes().stream().map(Enum::toString).collect(Collectors.toList()));
         }
         TSQueryDataSet result = fillRpcReturnData(fetchSize, newDataSet, username);
-        resp.setQueryDataSet(result);
+        if (result.bufferForTime().limit() != 0) {
+          readAhead(queryId, fetchSize, newDataSet, username);
+        }
+        resp.setQueryDataSet(encodeRpcReturnData(result, newDataSet, enableEncodedResult));
       }
       resp.setQueryId(queryId);
 
@@ -918,15 +956,21 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
 
       QueryDataSet queryDataSet = queryId2DataSet.get(req.queryId);
       if (req.isAlign) {
-        TSQueryDataSet result =
-            fillRpcReturnData(req.fetchSize, queryDataSet, sessionIdUsernameMap.get(req.sessionId));
+        String username = sessionIdUsernameMap.get(req.sessionId);
+        ReadAheadBatch readAheadBatch = queryId2ReadAheadDataSet.remove(req.queryId);
+        TSQueryDataSet result = readAheadBatch != null
+            ? takeReadAheadBatch(req.queryId, readAheadBatch, req.fetchSize, queryDataSet)
+            : fillRpcReturnData(req.fetchSize, queryDataSet, username);
         boolean hasResultSet = result.bufferForTime().limit() != 0;
         if (!hasResultSet) {
           releaseQueryResource(req.queryId);
+        } else if (!queryId2ReadAheadDataSet.containsKey(req.queryId)) {
+          readAhead(req.queryId, req.fetchSize, queryDataSet, username);
         }
         TSFetchResultsResp resp = RpcUtils.getTSFetchResultsResp(TSStatusCode.SUCCESS_STATUS);
         resp.setHasResultSet(hasResultSet);
-        resp.setQueryDataSet(result);
+        resp.setQueryDataSet(
+            encodeRpcReturnData(result, queryDataSet, req.isEnableEncodedResult()));
         resp.setIsAlign(true);
         return resp;
       } else {
@@ -960,9 +1004,8 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
     }
   }
 
-  private TSQueryDataSet fillRpcReturnData(
-      int fetchSize, QueryDataSet queryDataSet, String userName)
-      throws TException, AuthException, IOException, InterruptedException {
+  private TSQueryDataSet fillRpcReturnData(int fetchSize, QueryDataSet queryDataSet,
+      String userName) throws TException, AuthException, IOException, InterruptedException {
     IAuthorizer authorizer;
     try {
       authorizer = BasicAuthorizer.getInstance();
@@ -997,6 +1040,73 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
     return result;
   }
 
+  /**
+   * @return the plain result, or the result encoded if the client accepts encoded results
+   */
+  private static TSQueryDataSet encodeRpcReturnData(TSQueryDataSet result,
+      QueryDataSet queryDataSet, boolean enableEncodedResult) throws IOException {
+    // only raw data queries are encoded, the column types of the other result sets do not
+    // always match the types of the fields they return. An empty result stays plain so that an
+    // empty time buffer still tells the client that there is no more data.
+    if (enableEncodedResult && result.bufferForTime().limit() != 0
+        && (queryDataSet instanceof RawQueryDataSetWithoutValueFilter
+        || queryDataSet instanceof RawQueryDataSetWithValueFilter)) {
+      result = RpcColumnCodec.encode(result, queryDataSet.getDataTypes());
+    }
+    return result;
+  }
+
+  /**
+   * Start filling the next batch of an aligned raw data query in the background with the fetch
+   * size of the current request, so that it is ready when the client fetches it. The batch is
+   * encoded when it is returned, as the client asks for it then.
+   */
+  private void readAhead(long queryId, int fetchSize, QueryDataSet queryDataSet, String username) {
+    // only the column types of raw data queries match their fields, which splitting a batch needs
+    if (!config.isRpcFetchReadAheadEnable()
+        || !(queryDataSet instanceof RawQueryDataSetWithoutValueFilter
+        || queryDataSet instanceof RawQueryDataSetWithValueFilter)) {
+      return;
+    }
+    queryId2ReadAheadDataSet.put(queryId, new ReadAheadBatch(QueryReadAheadPoolManager
+        .getInstance().submit(() -> fillRpcReturnData(fetchSize, queryDataSet, username)),
+        fetchSize));
+  }
+
+  /**
+   * @return the batch read ahead, or its first fetchSize rows if the client now fetches fewer rows
+   * than it is filled with, in which case the rest of the rows are kept as the next batch
+   */
+  private TSQueryDataSet takeReadAheadBatch(long queryId, ReadAheadBatch readAheadBatch,
+      int fetchSize, QueryDataSet queryDataSet) throws InterruptedException, ExecutionException {
+    TSQueryDataSet result = readAheadBatch.dataSet.get();
+    if (fetchSize >= readAheadBatch.fetchSize
+        || result.bufferForTime().remaining() <= fetchSize * Long.BYTES) {
+      // a client fetching more rows gets fewer this time, which is allowed
+      return result;
+    }
+    TSQueryDataSet[] split = QueryDataSetUtils
+        .splitQueryDataSet(result, queryDataSet.getDataTypes(), fetchSize);
+    queryId2ReadAheadDataSet.put(queryId,
+        new ReadAheadBatch(CompletableFuture.completedFuture(split[1]), readAheadBatch.fetchSize));
+    return split[0];
+  }
+
+  @TestOnly
+  int getReadAheadQueryNum() {
+    return queryId2ReadAheadDataSet.size();
+  }
+
+  @TestOnly
+  public int getSessionNum() {
+    return sessionIdUsernameMap.size();
+  }
+
+  @TestOnly
+  public int getQueryDataSetNum() {
+    return queryId2DataSet.size();
+  }
+
   private TSQueryNonAlignDataSet fillRpcNonAlignReturnData(
       int fetchSize, QueryDataSet queryDataSet, String userName)
       throws TException, AuthException, InterruptedException {
@@ -1115,6 +1225,24 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
     return AuthorityChecker.check(username, paths, plan.getOperatorType(), targetUser);
   }
 
+  /**
+   * Restores the session of a connection on the thread that is going to serve it.
+   */
+  void bindConnection(RPCServiceThriftHandler.ConnectionContext connection) {
+    currConnection.set(connection);
+    Long sessionId = connection.getSessionId();
+    if (sessionId == null) {
+      currSessionId.remove();
+    } else {
+      currSessionId.set(sessionId);
+    }
+  }
+
+  void unbindConnection() {
+    currConnection.remove();
+    currSessionId.remove();
+  }
+
   protected void handleClientExit() {
     Long sessionId = currSessionId.get();
     if (sessionId != null) {
@@ -1671,4 +1799,19 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
   protected TSDataType getSeriesTypeByPath(PartialPath path) throws MetadataException {
     return SchemaUtils.getSeriesTypeByPath(path);
   }
+
+  /**
+   * the next batch of an aligned query being filled in advance, and the fetch size it is filled
+   * with
+   */
+  private static class ReadAheadBatch {
+
+    private final Future<TSQueryDataSet> dataSet;
+    private final int fetchSize;
+
+    private ReadAheadBatch(Future<TSQueryDataSet> dataSet, int fetchSize) {
+      this.dataSet = dataSet;
+      this.fetchSize = fetchSize;
+    }
+  }
 }
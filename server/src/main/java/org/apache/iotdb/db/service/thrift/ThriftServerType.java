@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.service.thrift;
+
+/**
+ * How a {@link ThriftServiceThread} serves its connections.
+ */
+public enum ThriftServerType {
+  /**
+   * every connection is served by its own thread for as long as it stays open.
+   */
+  THREAD_POOL,
+  /**
+   * one selector thread reads and writes all connections and hands each complete request to a
+   * bounded worker pool, so idle connections do not hold a thread.
+   */
+  HSHA,
+  /**
+   * like HSHA, but the connections are spread over several selector threads.
+   */
+  THREADED_SELECTOR
+}
@@ -21,6 +21,7 @@ package org.apache.iotdb.db.service.thrift;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.exception.runtime.RPCServiceException;
@@ -28,11 +29,16 @@ import org.apache.thrift.TProcessor;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.server.THsHaServer;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TServerEventHandler;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
 import org.apache.thrift.transport.TFastFramedTransport;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerSocket;
+import org.apache.thrift.transport.TServerTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,7 +46,7 @@ import org.slf4j.LoggerFactory;
 public class ThriftServiceThread extends Thread{
 
   private static final Logger logger = LoggerFactory.getLogger(ThriftServiceThread.class);
-  private TServerSocket serverTransport;
+  private TServerTransport serverTransport;
   private TServer poolServer;
   private CountDownLatch threadStopLatch;
 
@@ -48,12 +54,29 @@ public class ThriftServiceThread extends Thread{
 
   private TProtocolFactory protocolFactory;
   private TThreadPoolServer.Args poolArgs;
+  // the workers of a non-blocking server, its queue holds the requests waiting for a worker
+  private ThreadPoolExecutor workerPool;
 
   @SuppressWarnings("squid:S107")
   public ThriftServiceThread(TProcessor processor, String serviceName,
       String threadsName,
       String bindAddress, int port, int maxWorkerThreads, int timeoutMs,
       TServerEventHandler serverEventHandler, boolean compress) {
+    this(processor, serviceName, threadsName, bindAddress, port, ThriftServerType.THREAD_POOL, 1,
+        maxWorkerThreads, timeoutMs, serverEventHandler, compress);
+  }
+
+  /**
+   * @param selectorThreads  only used by {@link ThriftServerType#THREADED_SELECTOR}
+   * @param maxWorkerThreads the max number of connections for {@link ThriftServerType#THREAD_POOL},
+   *                         the fixed number of workers for the non-blocking servers
+   */
+  @SuppressWarnings("squid:S107")
+  public ThriftServiceThread(TProcessor processor, String serviceName,
+      String threadsName,
+      String bindAddress, int port, ThriftServerType serverType, int selectorThreads,
+      int maxWorkerThreads, int timeoutMs,
+      TServerEventHandler serverEventHandler, boolean compress) {
     if(compress) {
       protocolFactory = new TCompactProtocol.Factory();
     }
@@ -63,17 +86,30 @@ public class ThriftServiceThread extends Thread{
     this.serviceName = serviceName;
 
     try {
-      serverTransport = new TServerSocket(new InetSocketAddress(bindAddress, port));
-      poolArgs = new TThreadPoolServer.Args(serverTransport)
-          .maxWorkerThreads(maxWorkerThreads)
-          .minWorkerThreads(1)
-          .stopTimeoutVal(timeoutMs);
-      poolArgs.executorService = IoTDBThreadPoolFactory.createThriftRpcClientThreadPool(poolArgs,
-          threadsName);
-      poolArgs.processor(processor);
-      poolArgs.protocolFactory(protocolFactory);
-      poolArgs.transportFactory(new TFastFramedTransport.Factory());
-      poolServer = new TThreadPoolServer(poolArgs);
+      switch (serverType) {
+        case HSHA:
+          poolServer = newHsHaServer(processor, threadsName, bindAddress, port, maxWorkerThreads,
+              timeoutMs);
+          break;
+        case THREADED_SELECTOR:
+          poolServer = newThreadedSelectorServer(processor, threadsName, bindAddress, port,
+              selectorThreads, maxWorkerThreads, timeoutMs);
+          break;
+        case THREAD_POOL:
+        default:
+          serverTransport = new TServerSocket(new InetSocketAddress(bindAddress, port));
+          poolArgs = new TThreadPoolServer.Args(serverTransport)
+              .maxWorkerThreads(maxWorkerThreads)
+              .minWorkerThreads(1)
+              .stopTimeoutVal(timeoutMs);
+          poolArgs.executorService = IoTDBThreadPoolFactory
+              .createThriftRpcClientThreadPool(poolArgs, threadsName);
+          poolArgs.processor(processor);
+          poolArgs.protocolFactory(protocolFactory);
+          poolArgs.transportFactory(new TFastFramedTransport.Factory());
+          poolServer = new TThreadPoolServer(poolArgs);
+          break;
+      }
       poolServer.setServerEventHandler(serverEventHandler);
     } catch (TTransportException e) {
       close();
@@ -92,6 +128,60 @@ public class ThriftServiceThread extends Thread{
     }
   }
 
+  /**
+   * The non-blocking servers read a whole frame before a request is handed to a worker, and do not
+   * read the next request of a connection until the response of the current one is written, so a
+   * busy connection cannot starve the others in the FIFO queue of the worker pool. Clients have to
+   * use a framed transport, which the IoTDB clients always do.
+   */
+  private TServer newHsHaServer(TProcessor processor, String threadsName, String bindAddress,
+      int port, int workerThreads, int timeoutMs) throws TTransportException {
+    TNonblockingServerSocket socket =
+        new TNonblockingServerSocket(new InetSocketAddress(bindAddress, port));
+    serverTransport = socket;
+    workerPool = IoTDBThreadPoolFactory.createThriftRpcWorkerThreadPool(workerThreads,
+        threadsName);
+    THsHaServer.Args args = new THsHaServer.Args(socket)
+        .executorService(workerPool)
+        .stopTimeoutVal(timeoutMs);
+    args.processor(processor);
+    args.protocolFactory(protocolFactory);
+    args.transportFactory(new TFramedTransport.Factory());
+    return new THsHaServer(args);
+  }
+
+  private TServer newThreadedSelectorServer(TProcessor processor, String threadsName,
+      String bindAddress, int port, int selectorThreads, int workerThreads, int timeoutMs)
+      throws TTransportException {
+    TNonblockingServerSocket socket =
+        new TNonblockingServerSocket(new InetSocketAddress(bindAddress, port));
+    serverTransport = socket;
+    workerPool = IoTDBThreadPoolFactory.createThriftRpcWorkerThreadPool(workerThreads,
+        threadsName);
+    TThreadedSelectorServer.Args args = new TThreadedSelectorServer.Args(socket)
+        .selectorThreads(selectorThreads)
+        .executorService(workerPool)
+        .stopTimeoutVal(timeoutMs);
+    args.processor(processor);
+    args.protocolFactory(protocolFactory);
+    args.transportFactory(new TFramedTransport.Factory());
+    return new TThreadedSelectorServer(args);
+  }
+
+  /**
+   * @return the number of requests waiting for a worker, always 0 for the thread pool server
+   */
+  public int getQueuedRequestNum() {
+    return workerPool == null ? 0 : workerPool.getQueue().size();
+  }
+
+  /**
+   * @return the number of workers processing a request, only counted for non-blocking servers
+   */
+  public int getActiveWorkerNum() {
+    return workerPool == null ? 0 : workerPool.getActiveCount();
+  }
+
   public void setThreadStopLatch(CountDownLatch threadStopLatch) {
     this.threadStopLatch = threadStopLatch;
   }
@@ -239,7 +239,7 @@ public class SyncServiceImpl implements SyncService.Iface {
                 .format("MD5 of the sender is differ from MD5 of the receiver of the file %s.",
                         currentFile.get().getAbsolutePath()));
       } else {
-        if (currentFile.get().getName().endsWith(MetadataConstant.METADATA_LOG)) {
+        if (currentFile.get().getName().endsWith(MetadataConstant.METADATA_TXT_LOG)) {
           loadMetadata();
         } else {
           if (!currentFile.get().getName().endsWith(TsFileResource.RESOURCE_SUFFIX)) {
@@ -58,6 +58,7 @@ import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.SyncConnectionException;
 import org.apache.iotdb.db.exception.SyncDeviceOwnerConflictException;
+import org.apache.iotdb.db.metadata.MLogReader;
 import org.apache.iotdb.db.metadata.MetadataConstant;
 import org.apache.iotdb.db.sync.conf.SyncConstant;
 import org.apache.iotdb.db.sync.conf.SyncSenderConfig;
@@ -342,7 +343,7 @@ public class SyncClient implements ISyncClient {
       return;
     }
     int retryCount = 0;
-    serviceClient.initSyncData(MetadataConstant.METADATA_LOG);
+    serviceClient.initSyncData(MetadataConstant.METADATA_TXT_LOG);
     while (true) {
       if (retryCount > config.getMaxNumOfSyncFileRetry()) {
         throw new SyncConnectionException(String
@@ -360,17 +361,18 @@ public class SyncClient implements ISyncClient {
     int schemaPos = readSyncSchemaPos(getSchemaPosFile());
 
     // start to sync file data and get md5 of this file.
-    try (BufferedReader br = new BufferedReader(new FileReader(getSchemaLogFile()));
+    // the binary mlog is transferred as lines of the text format accepted by the receiver
+    try (MLogReader mLogReader = new MLogReader(getSchemaLogFile());
         ByteArrayOutputStream bos = new ByteArrayOutputStream(SyncConstant.DATA_CHUNK_SIZE)) {
       schemaFileLinePos = 0;
-      String line;
-      while (schemaFileLinePos < schemaPos) {
-        line = br.readLine();
+      while (schemaFileLinePos < schemaPos && mLogReader.hasNext()) {
+        mLogReader.next();
         schemaFileLinePos++;
       }
       MessageDigest md = MessageDigest.getInstance(SyncConstant.MESSAGE_DIGIT_NAME);
       int cntLine = 0;
-      while ((line = br.readLine()) != null) {
+      while (mLogReader.hasNext()) {
+        String line = String.join(",", mLogReader.next());
         schemaFileLinePos++;
         byte[] singleLineData = BytesUtils.stringToBytes(line);
         bos.write(singleLineData);
@@ -41,7 +41,8 @@ public class MemEstTool {
   public static void main(String... args) throws IOException {
     List<Class<? extends Runnable>> commands = Lists.newArrayList(
         Help.class,
-        MemEstToolCmd.class
+        MemEstToolCmd.class,
+        MemEstToolMTreeCmd.class
     );
     Cli.CliBuilder<Runnable> builder = Cli.builder("memory-tool");
 
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.tools.memestimation;
+
+import io.airlift.airline.Command;
+import io.airlift.airline.Option;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.iotdb.db.concurrent.WrappedRunnable;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.metadata.mnode.LastCacheTable;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.RamUsageEstimator;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+
+@Command(name = "mtreemem", description = "compare the memory of the MTree with and without the compact MTree based on the number of devices and measurements")
+public class MemEstToolMTreeCmd extends WrappedRunnable {
+
+  @Option(title = "storage group number", name = {"-sg",
+      "--storagegroup"}, description = "Storage group number")
+  private String sgNumString = "10";
+
+  @Option(title = "device number", name = {"-d",
+      "--device"}, description = "Device number of each storage group")
+  private String deviceNumString = "1000";
+
+  @Option(title = "measurement number", name = {"-m",
+      "--measurement"}, description = "Measurement number of each device")
+  private String measurementNumString = "10";
+
+  @Option(title = "last cache", name = {"-l",
+      "--lastcache"}, description = "Whether to fill the last cache of every timeseries")
+  private String lastCacheString = "true";
+
+  @Override
+  public void runMayThrow() {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    boolean enableCompactMTree = config.isEnableCompactMTree();
+
+    int sgNum = Integer.parseInt(sgNumString);
+    int deviceNum = Integer.parseInt(deviceNumString);
+    int measurementNum = Integer.parseInt(measurementNumString);
+    boolean lastCache = Boolean.parseBoolean(lastCacheString);
+
+    try {
+      config.setEnableCompactMTree(false);
+      long start = System.currentTimeMillis();
+      long size = RamUsageEstimator.sizeOf(buildMTree(sgNum, deviceNum, measurementNum,
+          lastCache));
+      System.out.println(String.format("MTree: %dMB, built in %dms", size / IoTDBConstant.MB,
+          System.currentTimeMillis() - start));
+
+      config.setEnableCompactMTree(true);
+      LastCacheTable.getInstance().clear();
+      start = System.currentTimeMillis();
+      long compactSize = RamUsageEstimator.sizeOf(buildMTree(sgNum, deviceNum, measurementNum,
+          lastCache)) + LastCacheTable.getInstance().getRamSize();
+      System.out.println(String.format("Compact MTree: %dMB, built in %dms",
+          compactSize / IoTDBConstant.MB, System.currentTimeMillis() - start));
+      System.out.println(String.format("SG: %d, devices: %d, measurements: %d, saved: %d%%",
+          sgNum, deviceNum, measurementNum, size == 0 ? 0 : (size - compactSize) * 100 / size));
+    } finally {
+      config.setEnableCompactMTree(enableCompactMTree);
+      LastCacheTable.getInstance().clear();
+    }
+  }
+
+  private MNode buildMTree(int sgNum, int deviceNum, int measurementNum, boolean lastCache) {
+    Map<String, String> props = Collections.singletonMap("max_point_number", "2");
+    MNode root = new MNode(null, IoTDBConstant.PATH_ROOT);
+    for (int i = 0; i < sgNum; i++) {
+      MNode storageGroup = new StorageGroupMNode(root, "sg" + i, Long.MAX_VALUE);
+      root.addChild(storageGroup.getName(), storageGroup);
+      for (int j = 0; j < deviceNum; j++) {
+        MNode device = new MNode(storageGroup, "d" + j);
+        storageGroup.addChild(device.getName(), device);
+        for (int k = 0; k < measurementNum; k++) {
+          MeasurementMNode measurement = new MeasurementMNode(device, "s" + k, null,
+              TSDataType.DOUBLE, TSEncoding.RLE, CompressionType.SNAPPY, props);
+          device.addChild(measurement.getName(), measurement);
+          if (lastCache) {
+            measurement.updateCachedLast(
+                new TimeValuePair(k, new TsPrimitiveType.TsDouble(k)), false, Long.MIN_VALUE);
+          }
+        }
+      }
+    }
+    return root;
+  }
+}
@@ -176,6 +176,87 @@ public class QueryDataSetUtils {
     return tsQueryDataSet;
   }
 
+  /**
+   * split a plain TSQueryDataSet into its first rows and the rest, e.g., to return a batch filled
+   * in advance to a client that fetches fewer rows
+   *
+   * @param dataTypes the types of the values in the columns of the data set
+   * @param rowNum    the number of rows of the first data set, less than the rows of the data set
+   * @return the first rowNum rows and the rest
+   */
+  public static TSQueryDataSet[] splitQueryDataSet(TSQueryDataSet dataSet,
+      List<TSDataType> dataTypes, int rowNum) {
+    ByteBuffer timeBuffer = dataSet.bufferForTime();
+    int totalRowNum = timeBuffer.remaining() / 8;
+    TSQueryDataSet head = new TSQueryDataSet();
+    TSQueryDataSet tail = new TSQueryDataSet();
+    head.setTime(slice(timeBuffer, 0, rowNum * 8));
+    tail.setTime(slice(timeBuffer, rowNum * 8, timeBuffer.remaining()));
+    List<ByteBuffer> headValues = new LinkedList<>();
+    List<ByteBuffer> tailValues = new LinkedList<>();
+    List<ByteBuffer> headBitmaps = new LinkedList<>();
+    List<ByteBuffer> tailBitmaps = new LinkedList<>();
+    for (int i = 0; i < dataTypes.size(); i++) {
+      ByteBuffer valueBuffer = dataSet.getValueList().get(i).duplicate();
+      ByteBuffer bitmapBuffer = dataSet.getBitmapList().get(i).duplicate();
+      // skip the values of the first rows to find where the rest begins
+      int headValueSize = 0;
+      for (int row = 0; row < rowNum; row++) {
+        if (isNotNull(bitmapBuffer, row)) {
+          headValueSize += valueSize(valueBuffer, dataTypes.get(i), headValueSize);
+        }
+      }
+      headValues.add(slice(valueBuffer, 0, headValueSize));
+      tailValues.add(slice(valueBuffer, headValueSize, valueBuffer.remaining()));
+      headBitmaps.add(copyBitmap(bitmapBuffer, 0, rowNum));
+      tailBitmaps.add(copyBitmap(bitmapBuffer, rowNum, totalRowNum));
+    }
+    head.setValueList(headValues);
+    head.setBitmapList(headBitmaps);
+    tail.setValueList(tailValues);
+    tail.setBitmapList(tailBitmaps);
+    return new TSQueryDataSet[]{head, tail};
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(buffer.position() + from);
+    slice.limit(buffer.position() + to);
+    return slice.slice();
+  }
+
+  private static boolean isNotNull(ByteBuffer bitmap, int row) {
+    return (bitmap.get(bitmap.position() + row / 8) & (0x80 >>> (row % 8))) != 0;
+  }
+
+  private static ByteBuffer copyBitmap(ByteBuffer bitmap, int fromRow, int toRow) {
+    byte[] bytes = new byte[(toRow - fromRow + 7) / 8];
+    for (int row = fromRow; row < toRow; row++) {
+      if (isNotNull(bitmap, row)) {
+        bytes[(row - fromRow) / 8] |= 0x80 >>> ((row - fromRow) % 8);
+      }
+    }
+    return ByteBuffer.wrap(bytes);
+  }
+
+  private static int valueSize(ByteBuffer valueBuffer, TSDataType dataType, int offset) {
+    switch (dataType) {
+      case BOOLEAN:
+        return 1;
+      case INT32:
+      case FLOAT:
+        return 4;
+      case INT64:
+      case DOUBLE:
+        return 8;
+      case TEXT:
+        return 4 + valueBuffer.getInt(valueBuffer.position() + offset);
+      default:
+        throw new UnSupportedDataTypeException(
+            String.format("Data type %s is not supported.", dataType));
+    }
+  }
+
   public static long[] readTimesFromBuffer(ByteBuffer buffer, int size) {
     long[] times = new long[size];
     for (int i = 0; i < size; i++) {
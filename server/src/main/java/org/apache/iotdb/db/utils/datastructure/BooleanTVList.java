@@ -30,7 +30,7 @@ import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 
 public class BooleanTVList extends TVList {
 
-  private List<boolean[]> values;
+  List<boolean[]> values;
 
   private boolean[][] sortedValues;
 
@@ -31,7 +31,7 @@ import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 
 public class DoubleTVList extends TVList {
 
-  private List<double[]> values;
+  List<double[]> values;
 
   private double[][] sortedValues;
 
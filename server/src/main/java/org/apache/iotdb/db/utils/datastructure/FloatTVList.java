@@ -31,7 +31,7 @@ import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 
 public class FloatTVList extends TVList {
 
-  private List<float[]> values;
+  List<float[]> values;
 
   private float[][] sortedValues;
 
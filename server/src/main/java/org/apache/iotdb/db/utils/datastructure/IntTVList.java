@@ -30,7 +30,7 @@ import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 
 public class IntTVList extends TVList {
 
-  private List<int[]> values;
+  List<int[]> values;
 
   private int[][] sortedValues;
 
@@ -30,7 +30,7 @@ import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 
 public class LongTVList extends TVList {
 
-  private List<long[]> values;
+  List<long[]> values;
 
   private long[][] sortedValues;
 
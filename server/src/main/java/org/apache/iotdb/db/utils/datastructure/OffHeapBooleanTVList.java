@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.utils.datastructure;
+
+import static org.apache.iotdb.db.rescon.PrimitiveArrayPool.ARRAY_SIZE;
+
+import java.nio.ByteBuffer;
+import org.apache.iotdb.db.rescon.OffHeapArena;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+
+public class OffHeapBooleanTVList extends OffHeapTVList {
+
+  OffHeapBooleanTVList(OffHeapArena arena) {
+    super(arena, 1);
+  }
+
+  @Override
+  public void putBoolean(long timestamp, boolean value) {
+    putRaw(timestamp, value ? 1 : 0);
+  }
+
+  @Override
+  public boolean getBoolean(int index) {
+    return getRawValue(index) != 0;
+  }
+
+  @Override
+  public void putBooleans(long[] time, boolean[] value) {
+    putBooleans(time, value, 0, time.length);
+  }
+
+  @Override
+  public void putBooleans(long[] time, boolean[] value, int start, int end) {
+    for (int i = start; i < end; i++) {
+      putBoolean(time[i], value[i]);
+    }
+  }
+
+  @Override
+  public BooleanTVList clone() {
+    BooleanTVList cloneList = new BooleanTVList();
+    cloneTimesTo(cloneList);
+    for (ByteBuffer block : valueBlocks) {
+      boolean[] valueArray = new boolean[ARRAY_SIZE];
+      for (int i = 0; i < ARRAY_SIZE; i++) {
+        valueArray[i] = block.get(i) != 0;
+      }
+      cloneList.values.add(valueArray);
+    }
+    return cloneList;
+  }
+
+  @Override
+  public TimeValuePair getTimeValuePair(int index) {
+    return new TimeValuePair(getTime(index),
+        TsPrimitiveType.getByType(TSDataType.BOOLEAN, getBoolean(index)));
+  }
+
+  @Override
+  protected TimeValuePair getTimeValuePair(int index, long time, Integer floatPrecision,
+      TSEncoding encoding) {
+    return new TimeValuePair(time,
+        TsPrimitiveType.getByType(TSDataType.BOOLEAN, getBoolean(index)));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.utils.datastructure;
+
+import static org.apache.iotdb.db.rescon.PrimitiveArrayPool.ARRAY_SIZE;
+
+import java.nio.ByteBuffer;
+import org.apache.iotdb.db.rescon.OffHeapArena;
+import org.apache.iotdb.db.utils.MathUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+
+public class OffHeapDoubleTVList extends OffHeapTVList {
+
+  OffHeapDoubleTVList(OffHeapArena arena) {
+    super(arena, Double.BYTES);
+  }
+
+  @Override
+  public void putDouble(long timestamp, double value) {
+    putRaw(timestamp, Double.doubleToRawLongBits(value));
+  }
+
+  @Override
+  public double getDouble(int index) {
+    return Double.longBitsToDouble(getRawValue(index));
+  }
+
+  @Override
+  public void putDoubles(long[] time, double[] value) {
+    putDoubles(time, value, 0, time.length);
+  }
+
+  @Override
+  public void putDoubles(long[] time, double[] value, int start, int end) {
+    for (int i = start; i < end; i++) {
+      putDouble(time[i], value[i]);
+    }
+  }
+
+  @Override
+  public DoubleTVList clone() {
+    DoubleTVList cloneList = new DoubleTVList();
+    cloneTimesTo(cloneList);
+    for (ByteBuffer block : valueBlocks) {
+      double[] valueArray = new double[ARRAY_SIZE];
+      nativeOrder(block).asDoubleBuffer().get(valueArray);
+      cloneList.values.add(valueArray);
+    }
+    return cloneList;
+  }
+
+  @Override
+  public TimeValuePair getTimeValuePair(int index) {
+    return new TimeValuePair(getTime(index),
+        TsPrimitiveType.getByType(TSDataType.DOUBLE, getDouble(index)));
+  }
+
+  @Override
+  protected TimeValuePair getTimeValuePair(int index, long time, Integer floatPrecision,
+      TSEncoding encoding) {
+    double value = getDouble(index);
+    if (encoding == TSEncoding.RLE || encoding == TSEncoding.TS_2DIFF) {
+      value = MathUtils.roundWithGivenPrecision(value, floatPrecision);
+    }
+    return new TimeValuePair(time, TsPrimitiveType.getByType(TSDataType.DOUBLE, value));
+  }
+}
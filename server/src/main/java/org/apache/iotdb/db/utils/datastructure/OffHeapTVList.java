@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.utils.datastructure;
+
+import static org.apache.iotdb.db.rescon.PrimitiveArrayPool.ARRAY_SIZE;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.db.rescon.OffHeapArena;
+import org.apache.iotdb.db.rescon.PrimitiveArrayPool;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+
+/**
+ * A TVList whose timestamps and values are stored in blocks of direct memory allocated from the
+ * OffHeapArena of its memtable, so large memtables do not fill the heap with primitive arrays.
+ * The blocks are never released individually but together with the arena when the memtable is
+ * released, so an OffHeapTVList must not be used after that and is not reused through
+ * TVListAllocator. Values are kept as raw bits of fixed width, which lets this class implement
+ * sorting and deletion for all numeric types; clone() returns an on-heap TVList of the same type
+ * so that query results stay valid after the memtable is released.
+ */
+public abstract class OffHeapTVList extends TVList {
+
+  private final OffHeapArena arena;
+
+  /**
+   * the bytes of one value, 8, 4 or 1
+   */
+  private final int valueBytes;
+
+  protected final List<ByteBuffer> timeBlocks = new ArrayList<>();
+
+  protected final List<ByteBuffer> valueBlocks = new ArrayList<>();
+
+  private long[][] sortedValues;
+
+  private long pivotValue;
+
+  OffHeapTVList(OffHeapArena arena, int valueBytes) {
+    super();
+    this.arena = arena;
+    this.valueBytes = valueBytes;
+  }
+
+  /**
+   * @return an off-heap TVList of the data type, or null if the type can only be stored on heap
+   */
+  public static TVList newList(TSDataType dataType, OffHeapArena arena) {
+    switch (dataType) {
+      case FLOAT:
+        return new OffHeapFloatTVList(arena);
+      case INT32:
+        return new OffHeapIntTVList(arena);
+      case INT64:
+        return new OffHeapLongTVList(arena);
+      case DOUBLE:
+        return new OffHeapDoubleTVList(arena);
+      case BOOLEAN:
+        return new OffHeapBooleanTVList(arena);
+      default:
+        return null;
+    }
+  }
+
+  @Override
+  public long getTime(int index) {
+    if (index >= size) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    return timeBlocks.get(index / ARRAY_SIZE).getLong((index % ARRAY_SIZE) * Long.BYTES);
+  }
+
+  protected long getRawValue(int index) {
+    if (index >= size) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    ByteBuffer block = valueBlocks.get(index / ARRAY_SIZE);
+    int offset = (index % ARRAY_SIZE) * valueBytes;
+    switch (valueBytes) {
+      case Long.BYTES:
+        return block.getLong(offset);
+      case Integer.BYTES:
+        return block.getInt(offset);
+      default:
+        return block.get(offset);
+    }
+  }
+
+  private void set(int index, long timestamp, long rawValue) {
+    int arrayIndex = index / ARRAY_SIZE;
+    int elementIndex = index % ARRAY_SIZE;
+    timeBlocks.get(arrayIndex).putLong(elementIndex * Long.BYTES, timestamp);
+    ByteBuffer block = valueBlocks.get(arrayIndex);
+    int offset = elementIndex * valueBytes;
+    switch (valueBytes) {
+      case Long.BYTES:
+        block.putLong(offset, rawValue);
+        break;
+      case Integer.BYTES:
+        block.putInt(offset, (int) rawValue);
+        break;
+      default:
+        block.put(offset, (byte) rawValue);
+    }
+  }
+
+  /**
+   * append a point whose value is given as raw bits
+   */
+  protected void putRaw(long timestamp, long rawValue) {
+    checkExpansion();
+    minTime = minTime <= timestamp ? minTime : timestamp;
+    set(size, timestamp, rawValue);
+    size++;
+    if (sorted && size > 1 && timestamp < getTime(size - 2)) {
+      sorted = false;
+    }
+  }
+
+  @Override
+  protected void checkExpansion() {
+    if ((size % ARRAY_SIZE) == 0) {
+      expandValues();
+      timeBlocks.add(arena.allocate(ARRAY_SIZE * Long.BYTES));
+    }
+  }
+
+  @Override
+  protected void expandValues() {
+    valueBlocks.add(arena.allocate(ARRAY_SIZE * valueBytes));
+  }
+
+  @Override
+  public void sort() {
+    if (sortedTimestamps == null || sortedTimestamps.length < size) {
+      sortedTimestamps = (long[][]) PrimitiveArrayPool
+          .getInstance().getDataListsByType(TSDataType.INT64, size);
+    }
+    if (sortedValues == null || sortedValues.length < size) {
+      sortedValues = (long[][]) PrimitiveArrayPool
+          .getInstance().getDataListsByType(TSDataType.INT64, size);
+    }
+    sort(0, size);
+    clearSortedValue();
+    clearSortedTime();
+    sorted = true;
+  }
+
+  @Override
+  protected void set(int src, int dest) {
+    set(dest, getTime(src), getRawValue(src));
+  }
+
+  @Override
+  protected void setFromSorted(int src, int dest) {
+    set(dest, sortedTimestamps[src / ARRAY_SIZE][src % ARRAY_SIZE],
+        sortedValues[src / ARRAY_SIZE][src % ARRAY_SIZE]);
+  }
+
+  @Override
+  protected void setToSorted(int src, int dest) {
+    sortedTimestamps[dest / ARRAY_SIZE][dest % ARRAY_SIZE] = getTime(src);
+    sortedValues[dest / ARRAY_SIZE][dest % ARRAY_SIZE] = getRawValue(src);
+  }
+
+  @Override
+  protected void reverseRange(int lo, int hi) {
+    hi--;
+    while (lo < hi) {
+      long loT = getTime(lo);
+      long loV = getRawValue(lo);
+      long hiT = getTime(hi);
+      long hiV = getRawValue(hi);
+      set(lo++, hiT, hiV);
+      set(hi--, loT, loV);
+    }
+  }
+
+  @Override
+  protected void saveAsPivot(int pos) {
+    pivotTime = getTime(pos);
+    pivotValue = getRawValue(pos);
+  }
+
+  @Override
+  protected void setPivotTo(int pos) {
+    set(pos, pivotTime, pivotValue);
+  }
+
+  @Override
+  public int delete(long lowerBound, long upperBound) {
+    int deletedNumber = super.delete(lowerBound, upperBound);
+    // drop the blocks beyond the new size, their memory is reclaimed with the arena
+    int blockNum = size / ARRAY_SIZE + (size % ARRAY_SIZE == 0 ? 0 : 1);
+    while (timeBlocks.size() > blockNum) {
+      releaseLastTimeArray();
+      releaseLastValueArray();
+    }
+    return deletedNumber;
+  }
+
+  @Override
+  protected void releaseLastTimeArray() {
+    timeBlocks.remove(timeBlocks.size() - 1);
+  }
+
+  @Override
+  protected void releaseLastValueArray() {
+    valueBlocks.remove(valueBlocks.size() - 1);
+  }
+
+  @Override
+  protected void clearTime() {
+    timeBlocks.clear();
+  }
+
+  @Override
+  void clearValue() {
+    valueBlocks.clear();
+  }
+
+  @Override
+  void clearSortedValue() {
+    if (sortedValues != null) {
+      for (long[] dataArray : sortedValues) {
+        PrimitiveArrayPool.getInstance().release(dataArray);
+      }
+      sortedValues = null;
+    }
+  }
+
+  /**
+   * copy the timestamps and the states of this list into an on-heap list of the same type, the
+   * caller copies the values
+   */
+  protected void cloneTimesTo(TVList cloneList) {
+    for (ByteBuffer block : timeBlocks) {
+      long[] timeArray = new long[ARRAY_SIZE];
+      nativeOrder(block).asLongBuffer().get(timeArray);
+      cloneList.timestamps.add(timeArray);
+    }
+    cloneList.size = size;
+    cloneList.sorted = sorted;
+    cloneList.minTime = minTime;
+  }
+
+  /**
+   * @return a view of the block for bulk reads, as duplicates are always big-endian
+   */
+  protected static ByteBuffer nativeOrder(ByteBuffer block) {
+    return block.duplicate().order(ByteOrder.nativeOrder());
+  }
+
+  @Override
+  public abstract TVList clone();
+}
@@ -23,6 +23,7 @@ import static org.apache.iotdb.db.rescon.PrimitiveArrayPool.ARRAY_SIZE;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.iotdb.db.rescon.PrimitiveArrayPool;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -38,6 +39,10 @@ public abstract class TVList {
 
   protected static final int SMALL_ARRAY_LENGTH = 32;
 
+  private static final int RADIX_BITS = 8;
+
+  private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
   protected List<long[]> timestamps;
   protected int size;
 
@@ -286,11 +291,18 @@ public abstract class TVList {
     return cloneArray;
   }
 
+  /**
+   * Stably sort the points in [lo, hi) by time. Out-of-order data of a series often consists of
+   * a few long ascending runs, which are detected and merged, skipping the parts of adjacent runs
+   * that do not overlap. When there are so many runs that merging them needs more passes than an
+   * LSD radix sort on the timestamps, the radix sort is used instead. Both use sortedTimestamps
+   * and the sorted values of the subclass as the scratch buffer, so they must cover [lo, hi).
+   */
   protected void sort(int lo, int hi) {
     if (sorted) {
       return;
     }
-    if (lo == hi) {
+    if (hi - lo < 2) {
       return;
     }
     if (hi - lo <= SMALL_ARRAY_LENGTH) {
@@ -298,10 +310,153 @@ public abstract class TVList {
       binarySort(lo, hi, lo + initRunLen);
       return;
     }
-    int mid = (lo + hi) >>> 1;
-    sort(lo, mid);
-    sort(mid, hi);
-    merge(lo, mid, hi);
+
+    long minTimeInRange = getTime(lo);
+    long maxTimeInRange = minTimeInRange;
+    int runNum = 1;
+    long prevTime = minTimeInRange;
+    for (int i = lo + 1; i < hi; i++) {
+      long time = getTime(i);
+      if (time < prevTime) {
+        runNum++;
+      }
+      minTimeInRange = Math.min(minTimeInRange, time);
+      maxTimeInRange = Math.max(maxTimeInRange, time);
+      prevTime = time;
+    }
+    // the range is treated as unsigned, so it never overflows
+    long range = maxTimeInRange - minTimeInRange;
+    int radixPasses = (Long.SIZE - Long.numberOfLeadingZeros(range) + RADIX_BITS - 1) / RADIX_BITS;
+    int mergeLevels = Integer.SIZE - Integer.numberOfLeadingZeros(runNum - 1);
+    if (mergeLevels < radixPasses) {
+      mergeNaturalRuns(lo, hi);
+    } else {
+      radixSort(lo, hi, minTimeInRange, maxTimeInRange);
+    }
+  }
+
+  private void mergeNaturalRuns(int lo, int hi) {
+    // every run but the last one has at least SMALL_ARRAY_LENGTH points
+    int[] runEnds = new int[(hi - lo) / SMALL_ARRAY_LENGTH + 1];
+    int runNum = 0;
+    int runStart = lo;
+    while (runStart < hi) {
+      int runLen = countRunAndMakeAscending(runStart, hi);
+      if (runLen < SMALL_ARRAY_LENGTH) {
+        // extend short runs with binary insertion, which is cheap for slightly disordered data
+        int forcedLen = Math.min(hi - runStart, SMALL_ARRAY_LENGTH);
+        binarySort(runStart, runStart + forcedLen, runStart + runLen);
+        runLen = forcedLen;
+      }
+      runStart += runLen;
+      runEnds[runNum++] = runStart;
+    }
+
+    // merge adjacent runs pairwise until only one run is left
+    while (runNum > 1) {
+      int newRunNum = 0;
+      int mergeStart = lo;
+      for (int i = 0; i < runNum; i += 2) {
+        if (i + 1 < runNum) {
+          mergeRuns(mergeStart, runEnds[i], runEnds[i + 1]);
+          mergeStart = runEnds[i + 1];
+          runEnds[newRunNum++] = runEnds[i + 1];
+        } else {
+          runEnds[newRunNum++] = runEnds[i];
+        }
+      }
+      runNum = newRunNum;
+    }
+  }
+
+  /**
+   * merge the sorted runs [lo, mid) and [mid, hi), only the overlapping part is moved
+   */
+  private void mergeRuns(int lo, int mid, int hi) {
+    long lastOfLeft = getTime(mid - 1);
+    long firstOfRight = getTime(mid);
+    if (lastOfLeft <= firstOfRight) {
+      return;
+    }
+    // points of the left run not after the first point of the right run are in place
+    int left = lo;
+    int right = mid;
+    while (left < right) {
+      int m = (left + right) >>> 1;
+      if (getTime(m) <= firstOfRight) {
+        left = m + 1;
+      } else {
+        right = m;
+      }
+    }
+    int mergeLo = left;
+    // points of the right run not before the last point of the left run are in place
+    left = mid;
+    right = hi;
+    while (left < right) {
+      int m = (left + right) >>> 1;
+      if (getTime(m) < lastOfLeft) {
+        left = m + 1;
+      } else {
+        right = m;
+      }
+    }
+    merge(mergeLo, mid, left);
+  }
+
+  /**
+   * LSD radix sort on (time - minTime), moving the points back and forth between the original
+   * arrays and the sorting buffer. Passes whose digits are all the same are skipped, so a memtable
+   * whose timestamps span a small range needs only a few passes.
+   */
+  private void radixSort(int lo, int hi, long minTimeInRange, long maxTimeInRange) {
+    long range = maxTimeInRange - minTimeInRange;
+    int[] counts = new int[RADIX_MASK + 1];
+    boolean inSortingBuffer = false;
+    for (int shift = 0; shift < Long.SIZE && (range >>> shift) != 0; shift += RADIX_BITS) {
+      Arrays.fill(counts, 0);
+      for (int i = lo; i < hi; i++) {
+        long time = inSortingBuffer ? getSortedTime(i) : getTime(i);
+        counts[(int) ((time - minTimeInRange) >>> shift) & RADIX_MASK]++;
+      }
+      if (hasSingleDigit(counts, hi - lo)) {
+        continue;
+      }
+      int pos = lo;
+      for (int digit = 0; digit <= RADIX_MASK; digit++) {
+        int count = counts[digit];
+        counts[digit] = pos;
+        pos += count;
+      }
+      for (int i = lo; i < hi; i++) {
+        if (inSortingBuffer) {
+          long time = getSortedTime(i);
+          setFromSorted(i, counts[(int) ((time - minTimeInRange) >>> shift) & RADIX_MASK]++);
+        } else {
+          long time = getTime(i);
+          setToSorted(i, counts[(int) ((time - minTimeInRange) >>> shift) & RADIX_MASK]++);
+        }
+      }
+      inSortingBuffer = !inSortingBuffer;
+    }
+    if (inSortingBuffer) {
+      for (int i = lo; i < hi; i++) {
+        setFromSorted(i, i);
+      }
+    }
+  }
+
+  private static boolean hasSingleDigit(int[] counts, int total) {
+    for (int count : counts) {
+      if (count != 0) {
+        return count == total;
+      }
+    }
+    return true;
+  }
+
+  private long getSortedTime(int index) {
+    return sortedTimestamps[index / ARRAY_SIZE][index % ARRAY_SIZE];
   }
 
   protected int countRunAndMakeAscending(int lo, int hi) {
@@ -404,9 +559,6 @@ public abstract class TVList {
       }
       setPivotTo(left);
     }
-    for (int i = lo; i < hi; i++) {
-      setToSorted(i, i);
-    }
   }
 
   protected void merge(int lo, int mid, int hi) {
@@ -30,13 +30,14 @@ import org.apache.iotdb.db.exception.StartupException;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.ServiceType;
 import org.apache.iotdb.db.writelog.node.ExclusiveWriteLogNode;
+import org.apache.iotdb.db.writelog.node.GroupCommitWriteLogNode;
 import org.apache.iotdb.db.writelog.node.WriteLogNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * MultiFileLogNodeManager manages all ExclusiveWriteLogNodes, each manages WALs of a TsFile
- * (either seq or unseq).
+ * MultiFileLogNodeManager manages all ExclusiveWriteLogNodes (or GroupCommitWriteLogNodes when
+ * enable_wal_group_commit is set), each manages WALs of a TsFile (either seq or unseq).
  */
 public class MultiFileLogNodeManager implements WriteLogNodeManager, IService {
 
@@ -78,7 +79,8 @@ public class MultiFileLogNodeManager implements WriteLogNodeManager, IService {
   public WriteLogNode getNode(String identifier) {
     WriteLogNode node = nodeMap.get(identifier);
     if (node == null) {
-      node = new ExclusiveWriteLogNode(identifier);
+      node = config.isEnableWalGroupCommit() ? new GroupCommitWriteLogNode(identifier)
+          : new ExclusiveWriteLogNode(identifier);
       WriteLogNode oldNode = nodeMap.putIfAbsent(identifier, node);
       if (oldNode != null) {
         return oldNode;
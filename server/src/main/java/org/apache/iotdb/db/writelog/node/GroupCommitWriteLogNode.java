@@ -0,0 +1,577 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.writelog.node;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
+import org.apache.iotdb.db.concurrent.ThreadName;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.conf.directories.DirectoryManager;
+import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.db.writelog.io.ILogReader;
+import org.apache.iotdb.db.writelog.io.ILogWriter;
+import org.apache.iotdb.db.writelog.io.LogWriter;
+import org.apache.iotdb.db.writelog.io.MultiFileLogReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * GroupCommitWriteLogNode manages insert ahead logs of a TsFile like ExclusiveWriteLogNode, but
+ * inserting threads never write the log file themselves. Each log is serialized into the working
+ * buffer and gets a ticket (its sequence number in this node). A dedicated sync thread swaps the
+ * working buffer with the syncing buffer and writes all logs in it by one write of the log
+ * writer, so the logs of many inserting threads share one disk write (and one force when
+ * force_wal_period_in_ms is 0, in which case inserting threads wait until their tickets are
+ * persisted). The file format is the same as that of ExclusiveWriteLogNode.
+ */
+public class GroupCommitWriteLogNode implements WriteLogNode,
+    Comparable<GroupCommitWriteLogNode> {
+
+  private static final Logger logger = LoggerFactory.getLogger(GroupCommitWriteLogNode.class);
+
+  private String identifier;
+
+  private String logDirectory;
+
+  private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+
+  /**
+   * protects the buffers, the tickets and the state of the sync thread.
+   */
+  private final ReentrantLock bufferLock = new ReentrantLock();
+  /**
+   * signaled when a sync is requested or the sync thread should stop.
+   */
+  private final Condition syncRequested = bufferLock.newCondition();
+  /**
+   * signaled when buffers are swapped, logs are persisted or the log file is switched.
+   */
+  private final Condition syncProgressed = bufferLock.newCondition();
+
+  /**
+   * both are as large as the buffer of ExclusiveWriteLogNode, so that any log it accepts fits.
+   */
+  private ByteBuffer workingBuffer = ByteBuffer.allocate(config.getWalBufferSize());
+  private ByteBuffer syncingBuffer = ByteBuffer.allocate(config.getWalBufferSize());
+
+  private int bufferedLogNum = 0;
+  /**
+   * the ticket of the latest log put into the working buffer.
+   */
+  private long appendedTicket = 0;
+  /**
+   * the sync thread should write all logs whose tickets are not larger than this.
+   */
+  private long requestedTicket = 0;
+  /**
+   * logs whose tickets are not larger than this have been moved to the syncing buffer.
+   */
+  private long swappedTicket = 0;
+  /**
+   * logs whose tickets are not larger than this have been written to the log file.
+   */
+  private long persistedTicket = 0;
+  /**
+   * the sync thread should force the log file after writing logs up to this ticket.
+   */
+  private long forceRequestedTicket = 0;
+  /**
+   * logs whose tickets are not larger than this have been forced to disk.
+   */
+  private long forcedTicket = 0;
+  /**
+   * set when an inserting thread cannot put its log into the full working buffer, so the sync
+   * thread should not wait for more logs.
+   */
+  private boolean bufferFull = false;
+  /**
+   * set when the log file is being closed or switched, new logs are held until it is reset.
+   */
+  private boolean switchingFile = false;
+  private boolean syncFailed = false;
+  /**
+   * set when the node is deleted, the logs not written yet are abandoned and their writers fail.
+   */
+  private boolean deleted = false;
+
+  private ExecutorService syncThread;
+  private Future<?> syncTaskFuture;
+  private boolean stopSyncThread = false;
+
+  /**
+   * only accessed by the sync thread, or by others holding bufferLock when the sync thread has
+   * nothing to do and no new logs can be put (see switchingFile).
+   */
+  private ILogWriter currentFileWriter;
+  private long fileId = 0;
+  private long lastFlushedId = 0;
+
+  /**
+   * constructor of GroupCommitWriteLogNode.
+   *
+   * @param identifier GroupCommitWriteLogNode identifier
+   */
+  public GroupCommitWriteLogNode(String identifier) {
+    this.identifier = identifier;
+    this.logDirectory =
+        DirectoryManager.getInstance().getWALFolder() + File.separator + this.identifier;
+    if (SystemFileFactory.INSTANCE.getFile(logDirectory).mkdirs()) {
+      logger.info("create the WAL folder {}.", logDirectory);
+    }
+  }
+
+  @Override
+  public void write(PhysicalPlan plan) throws IOException {
+    bufferLock.lock();
+    try {
+      while (switchingFile) {
+        syncProgressed.await();
+      }
+      checkSyncFailed();
+      startSyncThreadIfNeeded();
+      putLog(plan);
+      long ticket = ++appendedTicket;
+      bufferedLogNum++;
+      if (config.getForceWalPeriodInMs() == 0) {
+        requestSync(ticket);
+        waitForPersistence(ticket);
+      } else if (bufferedLogNum >= config.getFlushWalThreshold()) {
+        requestSync(ticket);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted when writing log into " + identifier, e);
+    } finally {
+      bufferLock.unlock();
+    }
+  }
+
+  private void putLog(PhysicalPlan plan) throws IOException, InterruptedException {
+    while (true) {
+      workingBuffer.mark();
+      try {
+        plan.serialize(workingBuffer);
+        return;
+      } catch (BufferOverflowException e) {
+        workingBuffer.reset();
+        if (bufferedLogNum == 0) {
+          throw new IOException(
+              "Log cannot fit into buffer, if you don't enable Dynamic Parameter Adapter, please increase wal_buffer_size;"
+                  + "otherwise, please increase the JVM memory", e);
+        }
+        logger.info("WAL BufferOverflow !");
+        // hand over the full buffer to the sync thread and retry with an empty one
+        bufferFull = true;
+        requestSync(appendedTicket);
+        long ticket = appendedTicket;
+        while (swappedTicket < ticket) {
+          checkSyncFailed();
+          syncProgressed.await();
+        }
+      }
+    }
+  }
+
+  private void requestSync(long ticket) {
+    requestedTicket = Math.max(requestedTicket, ticket);
+    syncRequested.signal();
+  }
+
+  private void requestForce(long ticket) {
+    forceRequestedTicket = Math.max(forceRequestedTicket, ticket);
+    requestSync(ticket);
+  }
+
+  private boolean hasSyncWork() {
+    // once a sync fails the system turns read-only, keeping on retrying makes no sense
+    return !syncFailed && !deleted
+        && (requestedTicket > swappedTicket || forceRequestedTicket > forcedTicket);
+  }
+
+  private void waitForPersistence(long ticket) throws IOException, InterruptedException {
+    while (persistedTicket < ticket) {
+      checkSyncFailed();
+      syncProgressed.await();
+    }
+  }
+
+  private void waitForForce(long ticket) throws IOException, InterruptedException {
+    while (forcedTicket < ticket) {
+      checkSyncFailed();
+      syncProgressed.await();
+    }
+  }
+
+  private void checkSyncFailed() throws IOException {
+    if (syncFailed) {
+      throw new IOException("Log node " + identifier + " failed to sync logs");
+    }
+    if (deleted) {
+      throw new IOException("Log node " + identifier + " is deleted");
+    }
+  }
+
+  private void startSyncThreadIfNeeded() {
+    if (syncThread == null) {
+      stopSyncThread = false;
+      syncThread = IoTDBThreadPoolFactory
+          .newSingleThreadExecutor(ThreadName.WAL_GROUP_COMMIT.getName() + "-" + identifier);
+      syncTaskFuture = syncThread.submit(this::syncLoop);
+    }
+  }
+
+  @SuppressWarnings("squid:S135")
+  private void syncLoop() {
+    logger.debug("Sync thread of log node {} starts.", identifier);
+    while (true) {
+      ByteBuffer batch;
+      long batchTicket;
+      boolean needForce;
+      bufferLock.lock();
+      try {
+        while (!stopSyncThread && !hasSyncWork()) {
+          syncRequested.await();
+        }
+        if (!hasSyncWork()) {
+          // stopped and every requested log has been written
+          break;
+        }
+        waitForMoreLogs();
+        batch = workingBuffer;
+        workingBuffer = syncingBuffer;
+        syncingBuffer = batch;
+        batchTicket = appendedTicket;
+        swappedTicket = batchTicket;
+        needForce = forceRequestedTicket > forcedTicket;
+        bufferedLogNum = 0;
+        bufferFull = false;
+        syncProgressed.signalAll();
+      } catch (InterruptedException e) {
+        logger.error("Sync thread of log node {} is interrupted.", identifier);
+        Thread.currentThread().interrupt();
+        break;
+      } finally {
+        bufferLock.unlock();
+      }
+
+      // the working buffer is free to inserting threads while this batch is being written
+      boolean success = writeBatch(batch);
+      if (success && needForce) {
+        success = forceWal();
+      }
+
+      bufferLock.lock();
+      try {
+        persistedTicket = batchTicket;
+        if (success && (needForce || config.getForceWalPeriodInMs() == 0)) {
+          // LogWriter forces every write when force_wal_period_in_ms is 0
+          forcedTicket = batchTicket;
+        }
+        syncFailed = syncFailed || !success;
+        syncProgressed.signalAll();
+      } finally {
+        bufferLock.unlock();
+      }
+    }
+    logger.debug("Sync thread of log node {} exits.", identifier);
+  }
+
+  /**
+   * hold the batch until the max latency of group commit elapses, so more inserting threads can
+   * join it.
+   */
+  private void waitForMoreLogs() throws InterruptedException {
+    long remainingNanos = TimeUnit.MILLISECONDS
+        .toNanos(config.getWalGroupCommitMaxLatencyInMs());
+    while (remainingNanos > 0 && !bufferFull && !stopSyncThread && !switchingFile) {
+      remainingNanos = syncRequested.awaitNanos(remainingNanos);
+    }
+  }
+
+  private boolean writeBatch(ByteBuffer batch) {
+    if (batch.position() == 0) {
+      return true;
+    }
+    try {
+      getCurrentFileWriter().write(batch);
+    } catch (IOException e) {
+      logger.error("Log node {} sync failed, change system mode to read-only", identifier, e);
+      IoTDBDescriptor.getInstance().getConfig().setReadOnly(true);
+      return false;
+    } finally {
+      batch.clear();
+    }
+    logger.debug("Log node {} ends sync.", identifier);
+    return true;
+  }
+
+  @Override
+  public void close() {
+    bufferLock.lock();
+    try {
+      beginSwitchingFile();
+    } catch (IOException | InterruptedException e) {
+      logger.error("Cannot sync log node {} before closing", identifier, e);
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+    } finally {
+      stopSyncThread = true;
+      syncRequested.signal();
+      bufferLock.unlock();
+    }
+    waitSyncThreadExit();
+    bufferLock.lock();
+    try {
+      closeFileWriter();
+      logger.debug("Log node {} closed successfully", identifier);
+    } finally {
+      endSwitchingFile();
+      bufferLock.unlock();
+    }
+  }
+
+  private void waitSyncThreadExit() {
+    ExecutorService thread;
+    Future<?> future;
+    bufferLock.lock();
+    try {
+      thread = syncThread;
+      future = syncTaskFuture;
+      syncThread = null;
+      syncTaskFuture = null;
+    } finally {
+      bufferLock.unlock();
+    }
+    if (thread == null) {
+      return;
+    }
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      logger.error("Sync thread of log node {} exits abnormally", identifier, e);
+    }
+    thread.shutdown();
+  }
+
+  /**
+   * block new logs and wait until all buffered logs are written and forced, must be called with
+   * bufferLock. Once it returns (even exceptionally), endSwitchingFile() must be called.
+   */
+  private void beginSwitchingFile() throws IOException, InterruptedException {
+    while (switchingFile) {
+      syncProgressed.awaitUninterruptibly();
+    }
+    switchingFile = true;
+    if (!deleted && appendedTicket > forcedTicket) {
+      startSyncThreadIfNeeded();
+      long ticket = appendedTicket;
+      requestForce(ticket);
+      waitForForce(ticket);
+    }
+  }
+
+  private void endSwitchingFile() {
+    switchingFile = false;
+    syncProgressed.signalAll();
+  }
+
+  private void closeFileWriter() {
+    try {
+      if (this.currentFileWriter != null) {
+        this.currentFileWriter.close();
+        this.currentFileWriter = null;
+      }
+    } catch (IOException e) {
+      logger.error("Cannot close log node {} because:", identifier, e);
+    }
+  }
+
+  @Override
+  public void forceSync() throws IOException {
+    bufferLock.lock();
+    try {
+      if (appendedTicket > forcedTicket) {
+        startSyncThreadIfNeeded();
+        long ticket = appendedTicket;
+        requestForce(ticket);
+        waitForForce(ticket);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted when syncing log node " + identifier, e);
+    } finally {
+      bufferLock.unlock();
+    }
+  }
+
+  @Override
+  public void notifyStartFlush() {
+    bufferLock.lock();
+    try {
+      beginSwitchingFile();
+      closeFileWriter();
+      nextFileWriter();
+    } catch (IOException | InterruptedException e) {
+      logger.error("Cannot sync log node {} before switching the log file", identifier, e);
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+    } finally {
+      endSwitchingFile();
+      bufferLock.unlock();
+    }
+  }
+
+  @Override
+  public void notifyEndFlush() {
+    bufferLock.lock();
+    try {
+      File logFile = SystemFileFactory.INSTANCE
+          .getFile(logDirectory, ExclusiveWriteLogNode.WAL_FILE_NAME + ++lastFlushedId);
+      discard(logFile);
+    } finally {
+      bufferLock.unlock();
+    }
+  }
+
+  @Override
+  public String getIdentifier() {
+    return identifier;
+  }
+
+  @Override
+  public String getLogDirectory() {
+    return logDirectory;
+  }
+
+  @Override
+  public void delete() throws IOException {
+    bufferLock.lock();
+    try {
+      // abandon the logs that are not written yet, and wake up their writers to fail
+      deleted = true;
+      workingBuffer.clear();
+      bufferedLogNum = 0;
+      requestedTicket = swappedTicket;
+      appendedTicket = swappedTicket;
+      syncProgressed.signalAll();
+    } finally {
+      bufferLock.unlock();
+    }
+    close();
+    FileUtils.deleteDirectory(SystemFileFactory.INSTANCE.getFile(logDirectory));
+  }
+
+  @Override
+  public ILogReader getLogReader() {
+    File[] logFiles = SystemFileFactory.INSTANCE.getFile(logDirectory).listFiles();
+    Arrays.sort(logFiles, Comparator.comparingInt(
+        f -> Integer.parseInt(f.getName().replace(ExclusiveWriteLogNode.WAL_FILE_NAME, ""))));
+    return new MultiFileLogReader(logFiles);
+  }
+
+  private void discard(File logFile) {
+    if (!logFile.exists()) {
+      logger.info("Log file does not exist");
+    } else {
+      try {
+        FileUtils.forceDelete(logFile);
+        logger.info("Log node {} cleaned old file", identifier);
+      } catch (IOException e) {
+        logger.error("Old log file {} of {} cannot be deleted", logFile.getName(), identifier, e);
+      }
+    }
+  }
+
+  private boolean forceWal() {
+    try {
+      if (currentFileWriter != null) {
+        currentFileWriter.force();
+      }
+      return true;
+    } catch (IOException e) {
+      logger.error("Log node {} force failed.", identifier, e);
+      return false;
+    }
+  }
+
+  private ILogWriter getCurrentFileWriter() {
+    if (currentFileWriter == null) {
+      nextFileWriter();
+    }
+    return currentFileWriter;
+  }
+
+  private void nextFileWriter() {
+    fileId++;
+    File newFile = SystemFileFactory.INSTANCE
+        .getFile(logDirectory, ExclusiveWriteLogNode.WAL_FILE_NAME + fileId);
+    if (newFile.getParentFile().mkdirs()) {
+      logger.info("create WAL parent folder {}.", newFile.getParent());
+    }
+    currentFileWriter = new LogWriter(newFile);
+  }
+
+  @Override
+  public int hashCode() {
+    return identifier.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+
+    return compareTo((GroupCommitWriteLogNode) obj) == 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Log node " + identifier;
+  }
+
+  @Override
+  public int compareTo(GroupCommitWriteLogNode o) {
+    return this.identifier.compareTo(o.identifier);
+  }
+}
@@ -33,6 +33,7 @@ import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.engine.flush.MemTableFlushTask;
 import org.apache.iotdb.db.engine.memtable.IMemTable;
 import org.apache.iotdb.db.engine.memtable.PrimitiveMemTable;
+import org.apache.iotdb.db.engine.sidefile.SideFiles;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.engine.version.VersionController;
 import org.apache.iotdb.db.exception.StorageGroupProcessorException;
@@ -106,6 +107,12 @@ public class TsFileRecoverPerformer {
       throw new StorageGroupProcessorException(e);
     }
 
+    // the side indexes being written are incomplete, those of a crashed TsFile are out of date
+    SideFiles.removeTemp(file);
+    if (restorableTsFileIOWriter.hasCrashed()) {
+      SideFiles.remove(file);
+    }
+
     // judge whether tsfile is complete
     if (!restorableTsFileIOWriter.hasCrashed()) {
       try {
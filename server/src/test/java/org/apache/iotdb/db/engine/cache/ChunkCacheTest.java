@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
+import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.MmapTsFileInput;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.LongDataPoint;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkCacheTest {
+
+  private static final String FILE_PATH = TestConstant.BASE_OUTPUT_PATH
+      .concat("chunkCacheTest.tsfile");
+  private static final Path PATH = new Path("root.sg.d1", "s1");
+
+  @Before
+  public void setUp() throws Exception {
+    ChunkCache.getInstance().clear();
+    OffHeapChunkCache.getInstance().clear();
+    File file = new File(FILE_PATH);
+    file.getParentFile().mkdirs();
+    TsFileWriter writer = new TsFileWriter(file);
+    writer.registerTimeseries(PATH, new MeasurementSchema("s1", TSDataType.INT64, TSEncoding.RLE));
+    for (long time = 0; time < 100; time++) {
+      TSRecord record = new TSRecord(time, "root.sg.d1");
+      record.addTuple(new LongDataPoint("s1", time));
+      writer.write(record);
+    }
+    writer.close();
+  }
+
+  @After
+  public void tearDown() {
+    ChunkCache.getInstance().clear();
+    OffHeapChunkCache.getInstance().clear();
+    new File(FILE_PATH).delete();
+  }
+
+  @Test
+  public void testCacheMappedChunk() throws Exception {
+    ChunkMetadata chunkMetadata;
+    byte[] expected;
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(FILE_PATH,
+        new MmapTsFileInput(Paths.get(FILE_PATH)))) {
+      chunkMetadata = reader.getChunkMetadataList(PATH).get(0);
+      // the data read from the mapped file refers to the mapping
+      Chunk mapped = reader.readMemChunk(chunkMetadata);
+      assertTrue(mapped.getData().isDirect());
+      expected = bytes(mapped);
+
+      Chunk chunk = ChunkCache.getInstance().get(chunkMetadata, reader);
+      assertFalse(chunk.getData().isDirect());
+      assertArrayEquals(expected, bytes(chunk));
+    }
+
+    // the cached chunk is a copy that does not keep the mapping of the closed reader alive
+    Chunk cached = ChunkCache.getInstance().get(chunkMetadata, null);
+    assertFalse(cached.getData().isDirect());
+    assertArrayEquals(expected, bytes(cached));
+  }
+
+  private byte[] bytes(Chunk chunk) {
+    ByteBuffer data = chunk.getData().duplicate();
+    byte[] bytes = new byte[data.remaining()];
+    data.get(bytes);
+    return bytes;
+  }
+}
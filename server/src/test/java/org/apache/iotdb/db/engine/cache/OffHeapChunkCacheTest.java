@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.engine.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.apache.iotdb.tsfile.file.header.ChunkHeader;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.junit.Test;
+
+public class OffHeapChunkCacheTest {
+
+  private static final String FILE_PATH = "1-1-0.tsfile";
+
+  private ChunkMetadata chunkMetadata(long offset) {
+    ChunkMetadata chunkMetadata = new ChunkMetadata("s1", TSDataType.INT64, offset,
+        Statistics.getStatsByType(TSDataType.INT64));
+    chunkMetadata.setVersion(1);
+    return chunkMetadata;
+  }
+
+  private Chunk chunk(int size, long seed) {
+    byte[] data = new byte[size];
+    new Random(seed).nextBytes(data);
+    ChunkHeader header = new ChunkHeader("s1", size, TSDataType.INT64, CompressionType.SNAPPY,
+        TSEncoding.RLE, 1);
+    return new Chunk(header, ByteBuffer.wrap(data), null);
+  }
+
+  private byte[] bytes(Chunk chunk) {
+    ByteBuffer data = chunk.getData().duplicate();
+    byte[] bytes = new byte[data.remaining()];
+    data.get(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testGetPut() {
+    OffHeapChunkCache cache = new OffHeapChunkCache(1024 * 1024, 2);
+    assertTrue(cache.isEnabled());
+    assertNull(cache.get(FILE_PATH, chunkMetadata(100)));
+
+    // chunks smaller than, equal to and larger than one block
+    int[] sizes = {100, 8 * 1024, 20000};
+    for (int i = 0; i < sizes.length; i++) {
+      cache.put(FILE_PATH, chunkMetadata(i * 100000L), chunk(sizes[i], i));
+    }
+    for (int i = 0; i < sizes.length; i++) {
+      Chunk chunk = cache.get(FILE_PATH, chunkMetadata(i * 100000L));
+      assertNotNull(chunk);
+      assertEquals(sizes[i], chunk.getHeader().getDataSize());
+      assertArrayEquals(bytes(chunk(sizes[i], i)), bytes(chunk));
+      assertTrue(chunk.getData().hasArray());
+    }
+    assertNull(cache.get("2-2-0.tsfile", chunkMetadata(0)));
+    ChunkMetadata otherVersion = chunkMetadata(0);
+    otherVersion.setVersion(2);
+    assertNull(cache.get(FILE_PATH, otherVersion));
+    assertEquals(0.5, cache.calculateHitRatio(), 0.001);
+
+    cache.clear();
+    assertTrue(cache.isEmpty());
+    assertNull(cache.get(FILE_PATH, chunkMetadata(0)));
+  }
+
+  @Test
+  public void testEviction() {
+    // 1 segment of 16 blocks
+    OffHeapChunkCache cache = new OffHeapChunkCache(16 * 8 * 1024, 1);
+    for (int i = 0; i < 100; i++) {
+      cache.put(FILE_PATH, chunkMetadata(i), chunk(10000, i));
+      // keep the first chunk recently used
+      assertNotNull(cache.get(FILE_PATH, chunkMetadata(0)));
+      assertTrue(cache.getUsedMemory() <= cache.getMaxMemory());
+    }
+    assertNotNull(cache.get(FILE_PATH, chunkMetadata(99)));
+    assertNull(cache.get(FILE_PATH, chunkMetadata(50)));
+    assertArrayEquals(bytes(chunk(10000, 99)), bytes(cache.get(FILE_PATH, chunkMetadata(99))));
+
+    // a chunk larger than the cache is not cached
+    cache.put(FILE_PATH, chunkMetadata(1000), chunk(17 * 8 * 1024, 0));
+    assertNull(cache.get(FILE_PATH, chunkMetadata(1000)));
+  }
+
+  @Test
+  public void testDisabled() {
+    OffHeapChunkCache cache = new OffHeapChunkCache(0, 16);
+    assertFalse(cache.isEnabled());
+    cache.put(FILE_PATH, chunkMetadata(0), chunk(100, 0));
+    assertNull(cache.get(FILE_PATH, chunkMetadata(0)));
+    assertEquals(0, cache.getUsedMemoryProportion(), 0);
+  }
+}
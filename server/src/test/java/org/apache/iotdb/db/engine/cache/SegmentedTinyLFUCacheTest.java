@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.engine.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class SegmentedTinyLFUCacheTest {
+
+  private static final long ENTRY_SIZE = 1000;
+
+  private static class TestCache extends SegmentedTinyLFUCache<Integer, String> {
+
+    TestCache(long maxMemory, int segmentNum) {
+      super(maxMemory, segmentNum);
+    }
+
+    @Override
+    protected long calEntrySize(Integer key, String value) {
+      // together with the entry overhead of 40 bytes
+      return ENTRY_SIZE - 40;
+    }
+  }
+
+  @Test
+  public void testGetPutRemove() {
+    TestCache cache = new TestCache(100 * ENTRY_SIZE, 1);
+    assertNull(cache.get(1));
+    cache.put(1, "a");
+    cache.put(2, "b");
+    assertEquals("a", cache.get(1));
+    assertEquals("b", cache.get(2));
+    assertEquals(2 * ENTRY_SIZE, cache.getUsedMemory());
+
+    cache.put(1, "c");
+    assertEquals("c", cache.get(1));
+    assertEquals(2 * ENTRY_SIZE, cache.getUsedMemory());
+
+    assertEquals("b", cache.remove(2));
+    assertNull(cache.get(2));
+    assertEquals(ENTRY_SIZE, cache.getUsedMemory());
+
+    cache.clear();
+    assertTrue(cache.isEmpty());
+    assertNull(cache.get(1));
+  }
+
+  @Test
+  public void testSegmentNum() {
+    assertEquals(1, new TestCache(ENTRY_SIZE, 0).getSegmentNum());
+    assertEquals(8, new TestCache(ENTRY_SIZE, 5).getSegmentNum());
+    assertEquals(16, new TestCache(ENTRY_SIZE, 16).getSegmentNum());
+  }
+
+  @Test
+  public void testMemoryBound() {
+    TestCache cache = new TestCache(100 * ENTRY_SIZE, 4);
+    for (int i = 0; i < 10000; i++) {
+      cache.get(i);
+      cache.put(i, Integer.toString(i));
+      assertTrue(cache.getUsedMemory() <= cache.getMaxMemory());
+    }
+    assertTrue(cache.getUsedMemoryProportion() > 0.5);
+  }
+
+  @Test
+  public void testScanResistance() {
+    TestCache cache = new TestCache(100 * ENTRY_SIZE, 1);
+    // a hot working set that is read repeatedly
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (cache.get(i) == null) {
+          cache.put(i, Integer.toString(i));
+        }
+      }
+    }
+    // a scan ten times larger than the cache that reads every key once
+    for (int i = 1000; i < 2000; i++) {
+      if (cache.get(i) == null) {
+        cache.put(i, Integer.toString(i));
+      }
+    }
+    for (int i = 0; i < 50; i++) {
+      assertNotNull(cache.get(i));
+    }
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    TestCache cache = new TestCache(1000 * ENTRY_SIZE, 8);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int seed = t;
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < 20000; i++) {
+          int key = (i * 31 + seed) % 3000;
+          String value = cache.get(key);
+          if (value == null) {
+            cache.put(key, Integer.toString(key));
+          } else {
+            assertEquals(Integer.toString(key), value);
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    assertTrue(cache.getUsedMemory() <= cache.getMaxMemory());
+    assertEquals(0, cache.getUsedMemory() % ENTRY_SIZE);
+  }
+}
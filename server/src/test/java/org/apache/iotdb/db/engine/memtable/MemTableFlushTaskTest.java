@@ -23,13 +23,16 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
 import org.apache.iotdb.db.constant.TestConstant;
 import org.apache.iotdb.db.engine.MetadataManagerHelper;
 import org.apache.iotdb.db.engine.flush.MemTableFlushTask;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
 import org.junit.After;
 import org.junit.Before;
@@ -84,4 +87,41 @@ public class MemTableFlushTaskTest {
     assertEquals(MemTableTestUtils.dataType0, chunkMetaData.getDataType());
     assertEquals(endTime - startTime + 1, chunkMetaData.getNumOfPoints());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testParallelEncodingFlushMemTable()
+      throws ExecutionException, InterruptedException, IOException {
+    int prevEncodingThread = IoTDBDescriptor.getInstance().getConfig()
+        .getConcurrentFlushEncodingThread();
+    IoTDBDescriptor.getInstance().getConfig().setConcurrentFlushEncodingThread(4);
+    try {
+      for (int i = 0; i < 10; i++) {
+        for (int j = 0; j < 10; j++) {
+          // write in reverse order so that every series needs sorting
+          for (long time = endTime; time >= startTime; time--) {
+            memTable.write("d" + i, "s" + j,
+                new MeasurementSchema("s" + j,
+                    TSDataType.INT64), time, time);
+          }
+        }
+      }
+      MemTableFlushTask memTableFlushTask = new MemTableFlushTask(memTable, writer, storageGroup);
+      memTableFlushTask.syncFlushMemTable();
+      writer.makeMetadataVisible();
+      for (int i = 0; i < 10; i++) {
+        for (int j = 0; j < 10; j++) {
+          assertEquals(1,
+              writer.getVisibleMetadataList("d" + i, "s" + j, TSDataType.INT64).size());
+          ChunkMetadata chunkMetaData = writer
+              .getVisibleMetadataList("d" + i, "s" + j, TSDataType.INT64).get(0);
+          assertEquals(startTime, chunkMetaData.getStartTime());
+          assertEquals(endTime, chunkMetaData.getEndTime());
+          assertEquals(endTime - startTime + 1, chunkMetaData.getNumOfPoints());
+        }
+      }
+    } finally {
+      IoTDBDescriptor.getInstance().getConfig().setConcurrentFlushEncodingThread(
+          prevEncodingThread);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.rollup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.sidefile.ChunkEntryBuilder;
+import org.apache.iotdb.db.engine.sidefile.SideFileWriter;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RollupFileTest {
+
+  private static final long INTERVAL = 100;
+
+  private final File tsFile = new File(TestConstant.BASE_OUTPUT_PATH.concat("rollup.tsfile"));
+  private final RollupManager manager = RollupManager.getInstance();
+  private boolean enable;
+  private long interval;
+
+  @Before
+  public void setUp() {
+    enable = manager.isEnable();
+    interval = manager.getInterval();
+    manager.setEnable(true, INTERVAL);
+  }
+
+  @After
+  public void tearDown() {
+    manager.remove(tsFile);
+    manager.setEnable(enable, interval);
+  }
+
+  @Test
+  public void testBuilder() {
+    RollupBuilder builder = new RollupBuilder(TSDataType.INT64, INTERVAL);
+    for (long time = -50; time < 250; time += 10) {
+      builder.update(time, time * 2);
+    }
+    List<Statistics> buckets = builder.getItems();
+    assertEquals(4, buckets.size());
+    assertEquals(-50, buckets.get(0).getStartTime());
+    assertEquals(-10, buckets.get(0).getEndTime());
+    assertEquals(5, buckets.get(0).getCount());
+    assertEquals(0, buckets.get(1).getStartTime());
+    assertEquals(90, buckets.get(1).getEndTime());
+    assertEquals(10, buckets.get(1).getCount());
+    assertEquals(900, buckets.get(1).getSumValue(), 0.0);
+    assertEquals(200, buckets.get(3).getStartTime());
+    assertEquals(240, buckets.get(3).getEndTime());
+  }
+
+  @Test
+  public void testChunkRollup() throws IOException {
+    SideFileWriter writer = manager.createWriter(tsFile);
+    ChunkMetadata chunk1 = addChunk(writer, "root.sg.d1.s1", 10, 0, 300);
+    ChunkMetadata chunk2 = addChunk(writer, "root.sg.d1.s1", 500, 350, 450);
+    writer.seal();
+    TsFileResource resource = new TsFileResource(tsFile);
+    resource.setClosed(true);
+
+    assertBuckets(manager.getChunkRollup(resource, "root.sg.d1.s1", chunk1), 3, 0, 299);
+    assertBuckets(manager.getChunkRollup(resource, "root.sg.d1.s1", chunk2), 2, 350, 449);
+    // the buckets of another interval do not fit the windows
+    manager.setEnable(true, INTERVAL * 2);
+    assertNull(manager.getChunkRollup(resource, "root.sg.d1.s1", chunk1));
+  }
+
+  @Test
+  public void testAligned() {
+    assertTrue(manager.isAligned(-200, 100, 100));
+    assertTrue(manager.isAligned(0, 100, 300));
+    assertFalse(manager.isAligned(50, 100, 100));
+    assertFalse(manager.isAligned(0, 150, 200));
+    assertFalse(manager.isAligned(0, 200, 100));
+    manager.setEnable(false, INTERVAL);
+    assertFalse(manager.isAligned(0, 100, 100));
+  }
+
+  private ChunkMetadata addChunk(SideFileWriter writer, String seriesPath, long offset,
+      long startTime, long endTime) {
+    ChunkEntryBuilder<?> builder = writer.newBuilder(TSDataType.DOUBLE);
+    Statistics statistics = Statistics.getStatsByType(TSDataType.DOUBLE);
+    for (long time = startTime; time < endTime; time++) {
+      builder.update(time, (double) time);
+      statistics.update(time, (double) time);
+    }
+    writer.addChunkEntry(seriesPath, offset, builder);
+    return new ChunkMetadata(seriesPath, TSDataType.DOUBLE, offset, statistics);
+  }
+
+  private void assertBuckets(List<Statistics> buckets, int bucketNum, long startTime,
+      long endTime) {
+    assertEquals(bucketNum, buckets.size());
+    assertEquals(startTime, buckets.get(0).getStartTime());
+    assertEquals(endTime, buckets.get(bucketNum - 1).getEndTime());
+    long count = 0;
+    for (Statistics bucket : buckets) {
+      assertEquals(bucket.getStartTime() / INTERVAL, bucket.getEndTime() / INTERVAL);
+      count += bucket.getCount();
+    }
+    assertEquals(endTime - startTime + 1, count);
+  }
+}
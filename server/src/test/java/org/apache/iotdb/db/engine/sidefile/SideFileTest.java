@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.sidefile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.BytesUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SideFileTest {
+
+  private final File tsFile = new File(TestConstant.BASE_OUTPUT_PATH.concat("side.tsfile"));
+  private final TestManager manager = new TestManager();
+  private TsFileResource resource;
+
+  /**
+   * A side file whose entries have a single item: the statistics of the whole chunk.
+   */
+  private static class TestManager extends SideFileManager<Statistics> {
+
+    private int version = 1;
+
+    TestManager() {
+      super("test", ".test", true);
+    }
+
+    @Override
+    protected byte[] getHeader() {
+      return BytesUtils.intToBytes(version);
+    }
+
+    @Override
+    protected ChunkEntryBuilder<Statistics> newBuilder(TSDataType dataType) {
+      return dataType == TSDataType.TEXT ? null : new StatisticsBuilder(dataType);
+    }
+
+    @Override
+    protected Statistics deserializeItem(ByteBuffer buffer, TSDataType dataType) {
+      return Statistics.deserialize(buffer, dataType);
+    }
+  }
+
+  private static class StatisticsBuilder extends ChunkEntryBuilder<Statistics> {
+
+    private final Statistics statistics;
+
+    StatisticsBuilder(TSDataType dataType) {
+      super(dataType);
+      statistics = Statistics.getStatsByType(dataType);
+    }
+
+    @Override
+    public void update(long time, boolean value) {
+      statistics.update(time, value);
+    }
+
+    @Override
+    public void update(long time, int value) {
+      statistics.update(time, value);
+    }
+
+    @Override
+    public void update(long time, long value) {
+      statistics.update(time, value);
+    }
+
+    @Override
+    public void update(long time, float value) {
+      statistics.update(time, value);
+    }
+
+    @Override
+    public void update(long time, double value) {
+      statistics.update(time, value);
+    }
+
+    @Override
+    public void update(long time, Binary value) {
+      statistics.update(time, value);
+    }
+
+    @Override
+    public List<Statistics> getItems() {
+      return Collections.singletonList(statistics);
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return statistics.getCount() == 0;
+    }
+
+    @Override
+    protected Statistics getItemStatistics(Statistics item) {
+      return item;
+    }
+
+    @Override
+    protected void serializeItem(Statistics item, OutputStream outputStream) throws IOException {
+      item.serialize(outputStream);
+    }
+  }
+
+  @Before
+  public void setUp() {
+    resource = new TsFileResource(tsFile);
+    resource.setClosed(true);
+  }
+
+  @After
+  public void tearDown() {
+    manager.remove(tsFile);
+  }
+
+  private ChunkMetadata addChunk(SideFileWriter writer, String seriesPath, long offset,
+      long startTime, long endTime) {
+    ChunkEntryBuilder<?> builder = writer.newBuilder(TSDataType.DOUBLE);
+    Statistics statistics = Statistics.getStatsByType(TSDataType.DOUBLE);
+    for (long time = startTime; time < endTime; time++) {
+      builder.update(time, (double) time);
+      statistics.update(time, (double) time);
+    }
+    writer.addChunkEntry(seriesPath, offset, builder);
+    return new ChunkMetadata(seriesPath, TSDataType.DOUBLE, offset, statistics);
+  }
+
+  private void assertEntry(ChunkMetadata chunkMetadata, String seriesPath) {
+    List<Statistics> items = manager.getChunkEntry(resource, seriesPath, chunkMetadata);
+    assertEquals(1, items.size());
+    assertEquals(chunkMetadata.getStatistics().getCount(), items.get(0).getCount());
+    assertEquals(chunkMetadata.getStatistics().getStartTime(), items.get(0).getStartTime());
+    assertEquals(chunkMetadata.getStatistics().getEndTime(), items.get(0).getEndTime());
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    SideFileWriter writer = manager.createWriter(tsFile);
+    assertNull(writer.newBuilder(TSDataType.TEXT));
+    ChunkMetadata chunk1 = addChunk(writer, "root.sg.d1.s1", 10, 0, 300);
+    ChunkMetadata chunk2 = addChunk(writer, "root.sg.d1.s1", 500, 300, 450);
+    writer.flush();
+    ChunkMetadata discarded = addChunk(writer, "root.sg.d1.s2", 800, 0, 100);
+    writer.discardPending();
+    ChunkMetadata chunk3 = addChunk(writer, "root.sg.d1.s2", 900, 1000, 1050);
+    // an unsealed side file is not visible
+    assertNull(manager.getChunkEntry(resource, "root.sg.d1.s1", chunk1));
+    manager.evict(tsFile);
+    writer.seal();
+    assertFalse(manager.getTempSideFile(tsFile).exists());
+    assertTrue(manager.getSideFile(tsFile).exists());
+
+    assertEntry(chunk1, "root.sg.d1.s1");
+    assertEntry(chunk2, "root.sg.d1.s1");
+    assertEntry(chunk3, "root.sg.d1.s2");
+    assertNull(manager.getChunkEntry(resource, "root.sg.d1.s2", discarded));
+    assertNull(manager.getChunkEntry(resource, "root.sg.d1.s3", chunk1));
+
+    // an entry that does not describe the chunk anymore is not used
+    Statistics statistics = Statistics.getStatsByType(TSDataType.DOUBLE);
+    statistics.update(0, 1.0);
+    ChunkMetadata changed = new ChunkMetadata("s1", TSDataType.DOUBLE, 10, statistics);
+    assertNull(manager.getChunkEntry(resource, "root.sg.d1.s1", changed));
+    // neither is a side file of an unsealed TsFile or one written with another header
+    resource.setClosed(false);
+    assertNull(manager.getChunkEntry(resource, "root.sg.d1.s1", chunk1));
+    resource.setClosed(true);
+    manager.version = 2;
+    assertNull(manager.getChunkEntry(resource, "root.sg.d1.s1", chunk1));
+    manager.version = 1;
+    assertEntry(chunk1, "root.sg.d1.s1");
+  }
+
+  @Test
+  public void testRemove() throws IOException {
+    SideFileWriter writer = manager.createWriter(tsFile);
+    ChunkMetadata chunk = addChunk(writer, "root.sg.d1.s1", 10, 0, 300);
+    writer.seal();
+    assertEntry(chunk, "root.sg.d1.s1");
+
+    // a TsFile that crashed while it was written leaves only the temporary file
+    writer = manager.createWriter(tsFile);
+    addChunk(writer, "root.sg.d1.s1", 10, 0, 300);
+    writer.flush();
+    writer.close();
+    assertTrue(manager.getTempSideFile(tsFile).exists());
+    manager.removeTemp(tsFile);
+    assertFalse(manager.getTempSideFile(tsFile).exists());
+    assertEntry(chunk, "root.sg.d1.s1");
+
+    // the cached index is dropped with the file
+    manager.remove(tsFile);
+    assertFalse(manager.getSideFile(tsFile).exists());
+    assertNull(manager.getChunkEntry(resource, "root.sg.d1.s1", chunk));
+
+    manager.setEnable(false);
+    assertNull(manager.createWriter(tsFile));
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.junit.Test;
+
+public class SortedDeviceIndexMapTest {
+
+  @Test
+  public void testLookup() {
+    Map<String, Integer> deviceToIndex = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      deviceToIndex.put("root.sg.d" + i, i);
+    }
+    Map<String, Integer> sortedMap = SortedDeviceIndexMap.of(deviceToIndex);
+    assertEquals(deviceToIndex, sortedMap);
+    assertEquals(100, sortedMap.size());
+    assertEquals(Integer.valueOf(42), sortedMap.get("root.sg.d42"));
+    assertTrue(sortedMap.containsKey("root.sg.d99"));
+    assertFalse(sortedMap.containsKey("root.sg.d100"));
+    assertNull(sortedMap.get("root.sg.d100"));
+    assertNull(sortedMap.get(1));
+    assertEquals(deviceToIndex.keySet(), sortedMap.keySet());
+
+    String previous = null;
+    for (Entry<String, Integer> entry : sortedMap.entrySet()) {
+      assertTrue(previous == null || previous.compareTo(entry.getKey()) < 0);
+      assertEquals(deviceToIndex.get(entry.getKey()), entry.getValue());
+      previous = entry.getKey();
+    }
+  }
+
+  @Test
+  public void testArrays() {
+    String[] devices = {"root.sg.d2", "root.sg.d0", "root.sg.d1"};
+    int[] indexes = {0, 1, 2};
+    Map<String, Integer> sortedMap = SortedDeviceIndexMap.of(devices, indexes);
+    assertEquals(Integer.valueOf(0), sortedMap.get("root.sg.d2"));
+    assertEquals(Integer.valueOf(1), sortedMap.get("root.sg.d0"));
+    assertEquals(Integer.valueOf(2), sortedMap.get("root.sg.d1"));
+    assertEquals("root.sg.d0", sortedMap.keySet().iterator().next());
+    assertTrue(SortedDeviceIndexMap.of(new String[0], new int[0]).isEmpty());
+  }
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertFalse;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
@@ -31,6 +32,7 @@ import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
 import org.apache.iotdb.db.constant.TestConstant;
 import org.apache.iotdb.db.engine.MetadataManagerHelper;
+import org.apache.iotdb.db.engine.StorageEngine;
 import org.apache.iotdb.db.engine.flush.TsFileFlushPolicy;
 import org.apache.iotdb.db.engine.merge.manage.MergeManager;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
@@ -45,7 +47,9 @@ import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
 import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.service.IoTDB;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
@@ -549,6 +553,68 @@ public class StorageGroupProcessorTest {
     config.setEnablePartition(defaultEnablePartition);
   }
 
+  @Test
+  public void testConcurrentInsertWithStripedLocks() throws Exception {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    int prevStripeNum = config.getInsertLockStripeNum();
+    config.setInsertLockStripeNum(4);
+    try {
+      processor.syncDeleteDataFiles();
+      processor = new DummySGP(systemDir, storageGroup);
+      // the first insertion creates the working TsFileProcessor exclusively
+      TSRecord first = new TSRecord(0, deviceId);
+      first.addTuple(DataPoint.getDataPoint(TSDataType.INT32, measurementId, "0"));
+      insertToStorageGroupProcessor(first);
+
+      int deviceNum = 8;
+      int pointNum = 1000;
+      List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+      List<Thread> threads = new ArrayList<>();
+      for (int i = 0; i < deviceNum; i++) {
+        String device = deviceId + ".d" + i;
+        // the query below resolves the schema of each series
+        IoTDB.metaManager.createTimeseries(new PartialPath(device + "." + measurementId),
+            TSDataType.INT32, TSEncoding.PLAIN,
+            TSFileDescriptor.getInstance().getConfig().getCompressor(), Collections.emptyMap());
+        Thread thread = new Thread(() -> {
+          try {
+            for (int j = 1; j <= pointNum; j++) {
+              TSRecord record = new TSRecord(j, device);
+              record.addTuple(
+                  DataPoint.getDataPoint(TSDataType.INT32, measurementId, String.valueOf(j)));
+              insertToStorageGroupProcessor(record);
+            }
+          } catch (Throwable e) {
+            errors.add(e);
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      Assert.assertTrue(errors.isEmpty());
+
+      for (int i = 0; i < deviceNum; i++) {
+        QueryDataSource queryDataSource = processor
+            .query(new PartialPath(deviceId + ".d" + i), measurementId, context, null, null);
+        Assert.assertEquals(1, queryDataSource.getSeqResources().size());
+        long time = 1;
+        for (ReadOnlyMemChunk memChunk : queryDataSource.getSeqResources().get(0)
+            .getReadOnlyMemChunk()) {
+          IPointReader iterator = memChunk.getPointReader();
+          while (iterator.hasNextTimeValuePair()) {
+            Assert.assertEquals(time++, iterator.nextTimeValuePair().getTimestamp());
+          }
+        }
+        Assert.assertEquals(pointNum + 1, time);
+      }
+    } finally {
+      config.setInsertLockStripeNum(prevStripeNum);
+    }
+  }
+
   @Test
   public void testMerge() throws WriteProcessException, QueryProcessException, IllegalPathException {
 
@@ -586,6 +652,85 @@ public class StorageGroupProcessorTest {
     }
   }
 
+  @Test
+  public void testRecoverUnsealedFilesOfPartitions() throws Exception {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    int prevConcurrentPartition = config.getConcurrentWritingTimePartition();
+    int partitionNum = 3;
+    long partitionInterval = 100;
+    config.setConcurrentWritingTimePartition(partitionNum);
+    StorageEngine.setEnablePartition(true);
+    StorageEngine.setTimePartitionInterval(partitionInterval);
+    try {
+      processor.syncDeleteDataFiles();
+      processor = new DummySGP(systemDir, storageGroup);
+      // each partition has a flushed but unsealed sequence file and unsequence file
+      for (int partition = 0; partition < partitionNum; partition++) {
+        for (long time = 10; time <= 20; time++) {
+          TSRecord record = new TSRecord(partition * partitionInterval + time, deviceId);
+          record.addTuple(
+              DataPoint.getDataPoint(TSDataType.INT32, measurementId, String.valueOf(time)));
+          insertToStorageGroupProcessor(record);
+        }
+      }
+      for (TsFileProcessor tsfileProcessor : processor.getWorkSequenceTsFileProcessors()) {
+        tsfileProcessor.syncFlush();
+      }
+      for (int partition = 0; partition < partitionNum; partition++) {
+        TSRecord record = new TSRecord(partition * partitionInterval + 1, deviceId);
+        record.addTuple(DataPoint.getDataPoint(TSDataType.INT32, measurementId, "1"));
+        insertToStorageGroupProcessor(record);
+      }
+      for (TsFileProcessor tsfileProcessor : processor.getWorkUnsequenceTsFileProcessor()) {
+        tsfileProcessor.syncFlush();
+      }
+
+      // restart without closing the files
+      long toRecover = StorageGroupProcessor.getTsFileNumToRecover();
+      long recovered = StorageGroupProcessor.getRecoveredTsFileNum();
+      processor = new DummySGP(systemDir, storageGroup);
+      Assert.assertEquals(toRecover + 2 * partitionNum,
+          StorageGroupProcessor.getTsFileNumToRecover());
+      Assert.assertEquals(recovered + 2 * partitionNum,
+          StorageGroupProcessor.getRecoveredTsFileNum());
+
+      // the unsealed files are written further by the processors of their partitions
+      List<Long> seqPartitions = new ArrayList<>();
+      for (TsFileProcessor tsfileProcessor : processor.getWorkSequenceTsFileProcessors()) {
+        Assert.assertFalse(tsfileProcessor.getTsFileResource().isClosed());
+        seqPartitions.add(tsfileProcessor.getTimeRangeId());
+      }
+      List<Long> unseqPartitions = new ArrayList<>();
+      for (TsFileProcessor tsfileProcessor : processor.getWorkUnsequenceTsFileProcessor()) {
+        Assert.assertFalse(tsfileProcessor.getTsFileResource().isClosed());
+        unseqPartitions.add(tsfileProcessor.getTimeRangeId());
+      }
+      Collections.sort(seqPartitions);
+      Collections.sort(unseqPartitions);
+      Assert.assertEquals(Arrays.asList(0L, 1L, 2L), seqPartitions);
+      Assert.assertEquals(Arrays.asList(0L, 1L, 2L), unseqPartitions);
+
+      QueryDataSource queryDataSource = processor
+          .query(new PartialPath(deviceId), measurementId, context, null, null);
+      Assert.assertEquals(partitionNum, queryDataSource.getSeqResources().size());
+      Assert.assertEquals(partitionNum, queryDataSource.getUnseqResources().size());
+      for (TsFileResource resource : queryDataSource.getSeqResources()) {
+        long partitionStart = resource.getTimePartition() * partitionInterval;
+        Assert.assertEquals(partitionStart + 10, resource.getStartTime(deviceId));
+        Assert.assertEquals(partitionStart + 20, resource.getEndTime(deviceId));
+      }
+      for (TsFileResource resource : queryDataSource.getUnseqResources()) {
+        long partitionStart = resource.getTimePartition() * partitionInterval;
+        Assert.assertEquals(partitionStart + 1, resource.getStartTime(deviceId));
+        Assert.assertEquals(partitionStart + 1, resource.getEndTime(deviceId));
+      }
+    } finally {
+      config.setConcurrentWritingTimePartition(prevConcurrentPartition);
+      StorageEngine.setEnablePartition(false);
+      StorageEngine.setTimePartitionInterval(-1);
+    }
+  }
+
   class DummySGP extends StorageGroupProcessor {
 
     DummySGP(String systemInfoDir, String storageGroupName) throws StorageGroupProcessorException {
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.valueindex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.sidefile.ChunkEntryBuilder;
+import org.apache.iotdb.db.engine.sidefile.SideFileWriter;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
+import org.apache.iotdb.tsfile.read.filter.ValueFilter;
+import org.apache.iotdb.tsfile.read.filter.factory.FilterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValueIndexFileTest {
+
+  private final File tsFile = new File(TestConstant.BASE_OUTPUT_PATH.concat("vindex.tsfile"));
+  private final ValueIndexManager manager = ValueIndexManager.getInstance();
+  private boolean enable;
+
+  @Before
+  public void setUp() {
+    enable = manager.isEnable();
+    manager.setEnable(true);
+  }
+
+  @After
+  public void tearDown() {
+    manager.remove(tsFile);
+    manager.setEnable(enable);
+  }
+
+  @Test
+  public void testBuilder() {
+    ValueIndexBuilder builder = new ValueIndexBuilder(TSDataType.INT64);
+    for (long time = 0; time < 2500; time++) {
+      builder.update(time, time * 2);
+    }
+    List<ValueSegment> segments = builder.getItems();
+    assertEquals(3, segments.size());
+    assertEquals(0, segments.get(0).getStatistics().getStartTime());
+    assertEquals(1023, segments.get(0).getStatistics().getEndTime());
+    assertEquals(2046L, segments.get(0).getStatistics().getMaxValue());
+    assertEquals(2048, segments.get(2).getStatistics().getStartTime());
+    assertEquals(452, segments.get(2).getStatistics().getCount());
+
+    ValueIndexBuilder textBuilder = new ValueIndexBuilder(TSDataType.TEXT);
+    assertFalse(ValueIndexBuilder.isSupported(TSDataType.TEXT));
+    assertTrue(textBuilder.isEmpty());
+  }
+
+  @Test
+  public void testMayContain() {
+    // two clusters of values with a gap that the statistics alone cannot show
+    ValueIndexBuilder builder = new ValueIndexBuilder(TSDataType.DOUBLE);
+    for (long time = 0; time < 100; time++) {
+      builder.update(time, (double) time);
+      builder.update(time + 100, 10000.0 + time);
+    }
+    ValueSegment segment = builder.getItems().get(0);
+    assertFalse(segment.mayContain(
+        FilterFactory.and(ValueFilter.gt(5000.0), ValueFilter.lt(9000.0))));
+    assertFalse(segment.mayContain(ValueFilter.eq(7777.0)));
+    assertFalse(segment.mayContain(ValueFilter.gt(20000.0)));
+    assertTrue(segment.mayContain(ValueFilter.gt(10050.0)));
+    assertTrue(segment.mayContain(ValueFilter.ltEq(0.0)));
+    assertTrue(segment.mayContain(ValueFilter.eq(99.0)));
+
+    ValueIndexBuilder intBuilder = new ValueIndexBuilder(TSDataType.INT32);
+    intBuilder.update(0, Integer.MIN_VALUE);
+    intBuilder.update(1, Integer.MAX_VALUE);
+    ValueSegment intSegment = intBuilder.getItems().get(0);
+    assertTrue(intSegment.mayContain(ValueFilter.eq(Integer.MAX_VALUE)));
+    assertTrue(intSegment.mayContain(ValueFilter.eq(Integer.MIN_VALUE)));
+    assertFalse(intSegment.mayContain(ValueFilter.eq(0)));
+  }
+
+  @Test
+  public void testCandidateTimeRanges() throws IOException {
+    SideFileWriter writer = manager.createWriter(tsFile);
+    assertNull(writer.newBuilder(TSDataType.TEXT));
+    ChunkMetadata chunk = addChunk(writer, "root.sg.d1.s1", 10, 0, 4000);
+    writer.seal();
+    TsFileResource resource = new TsFileResource(tsFile);
+    resource.setClosed(true);
+
+    // the candidate segments [1024, 2047] and [2048, 3071] are merged
+    List<TimeRange> candidates = manager.getCandidateTimeRanges(resource, "root.sg.d1.s1", chunk,
+        FilterFactory.and(ValueFilter.gt(1500.0), ValueFilter.lt(2500.0)));
+    assertEquals(1, candidates.size());
+    assertEquals(1024, candidates.get(0).getMin());
+    assertEquals(3071, candidates.get(0).getMax());
+    candidates = manager.getCandidateTimeRanges(resource, "root.sg.d1.s1", chunk,
+        FilterFactory.or(ValueFilter.lt(10.0), ValueFilter.gt(3500.0)));
+    assertEquals(2, candidates.size());
+    assertEquals(0, candidates.get(0).getMin());
+    assertEquals(3072, candidates.get(1).getMin());
+    assertEquals(3999, candidates.get(1).getMax());
+    assertTrue(manager.getCandidateTimeRanges(resource, "root.sg.d1.s1", chunk,
+        ValueFilter.gt(5000.0)).isEmpty());
+    assertNull(manager.getCandidateTimeRanges(resource, "root.sg.d1.s2", chunk,
+        ValueFilter.gt(5000.0)));
+  }
+
+  private ChunkMetadata addChunk(SideFileWriter writer, String seriesPath, long offset,
+      long startTime, long endTime) {
+    ChunkEntryBuilder<?> builder = writer.newBuilder(TSDataType.DOUBLE);
+    Statistics statistics = Statistics.getStatsByType(TSDataType.DOUBLE);
+    for (long time = startTime; time < endTime; time++) {
+      builder.update(time, (double) time);
+      statistics.update(time, (double) time);
+    }
+    writer.addChunkEntry(seriesPath, offset, builder);
+    return new ChunkMetadata(seriesPath, TSDataType.DOUBLE, offset, statistics);
+  }
+}
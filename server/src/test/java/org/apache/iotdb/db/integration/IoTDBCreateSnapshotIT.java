@@ -19,24 +19,23 @@
 
 package org.apache.iotdb.db.integration;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.jdbc.Config;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -68,45 +67,23 @@ public class IoTDBCreateSnapshotIT {
 
       // test before creating snapshot
       checkShowTimeseries(statement);
+      checkShowTTL(statement);
 
       // create snapshot
       statement.execute("CREATE SNAPSHOT FOR SCHEMA");
-      File snapshotFile = new File(config.getSchemaDir() + File.separator + "mtree-1.snapshot");
+      File snapshotFile = new File(config.getSchemaDir() + File.separator + "mtree-2.snapshot");
+      File logFile = new File(config.getSchemaDir() + File.separator + "mlog.bin");
 
-      // test snapshot file exists
+      // test snapshot file exists and the log is truncated
       Assert.assertTrue(snapshotFile.exists());
-
-      // test snapshot content correct
-      Set<String> e1 = new HashSet<>(Arrays.asList("2,s0,,1,2,1,,-1,0", "2,s1,,2,2,1,,-1,0",
-          "2,s2,,3,2,1,,-1,0", "2,s3,,5,0,1,,-1,0", "2,s4,,0,0,1,,-1,0"));
-      Set<String> e2 = new HashSet<>(Arrays.asList("2,s0,,1,2,1,,-1,0", "2,s1,,5,0,1,,-1,0",
-          "2,s2,,0,0,1,,-1,0"));
-
-      try (BufferedReader br = new BufferedReader(new FileReader(snapshotFile))) {
-        for (int i = 0; i < 5; ++i) {
-          String actual = br.readLine();
-          Assert.assertTrue(e1.removeIf(candidate -> candidate.equals(actual)));
-        }
-        Assert.assertTrue(e1.isEmpty());
-
-        Assert.assertEquals("1,d0,9223372036854775807,5", br.readLine());
-
-        for (int i = 0; i < 3; ++i) {
-          String actual = br.readLine();
-          Assert.assertTrue(e2.removeIf(candidate -> candidate.equals(actual)));
-        }
-        Assert.assertTrue(e2.isEmpty());
-
-        Assert.assertEquals("1,d1,9223372036854775807,3", br.readLine());
-        Assert.assertEquals("0,vehicle,2", br.readLine());
-        Assert.assertEquals("0,root,1", br.readLine());
-      }
+      Assert.assertEquals(0, logFile.length());
+      Assert.assertFalse(new File(logFile.getPath() + ".old").exists());
     } catch (Exception e) {
       e.printStackTrace();
       fail(e.getMessage());
     }
 
-    // test restart
+    // test restart, the schema is recovered from the snapshot only as the log is truncated
     try {
       EnvironmentUtils.restartDaemon();
     } catch (Exception e) {
@@ -118,6 +95,7 @@ public class IoTDBCreateSnapshotIT {
             "root");
         Statement statement = connection.createStatement()) {
       checkShowTimeseries(statement);
+      checkShowTTL(statement);
     } catch (Exception e) {
       e.printStackTrace();
       fail(e.getMessage());
@@ -140,7 +118,10 @@ public class IoTDBCreateSnapshotIT {
           "CREATE TIMESERIES root.vehicle.d0.s4 WITH DATATYPE=BOOLEAN, ENCODING=PLAIN",
           "CREATE TIMESERIES root.vehicle.d1.s0 WITH DATATYPE=INT32, ENCODING=RLE",
           "CREATE TIMESERIES root.vehicle.d1.s1 WITH DATATYPE=TEXT, ENCODING=PLAIN",
-          "CREATE TIMESERIES root.vehicle.d1.s2 WITH DATATYPE=BOOLEAN, ENCODING=PLAIN"
+          "CREATE TIMESERIES root.vehicle.d1.s2 WITH DATATYPE=BOOLEAN, ENCODING=PLAIN",
+          "CREATE TIMESERIES root.vehicle.d1.s3(speed) WITH DATATYPE=DOUBLE, ENCODING=GORILLA "
+              + "TAGS(unit=kmh) ATTRIBUTES(maker=a)",
+          "SET TTL TO root.vehicle.d0 3600000"
       };
 
       for (String sql : creationSqls) {
@@ -152,15 +133,54 @@ public class IoTDBCreateSnapshotIT {
   }
 
   private void checkShowTimeseries(Statement statement) throws SQLException {
+    String compressor = TSFileDescriptor.getInstance().getConfig().getCompressor().toString();
+    Set<String> expected = new HashSet<>();
+    String[] series = new String[]{
+        "root.vehicle.d0.s0,null,root.vehicle.d0,INT32,RLE,null,null",
+        "root.vehicle.d0.s1,null,root.vehicle.d0,INT64,RLE,null,null",
+        "root.vehicle.d0.s2,null,root.vehicle.d0,FLOAT,RLE,null,null",
+        "root.vehicle.d0.s3,null,root.vehicle.d0,TEXT,PLAIN,null,null",
+        "root.vehicle.d0.s4,null,root.vehicle.d0,BOOLEAN,PLAIN,null,null",
+        "root.vehicle.d1.s0,null,root.vehicle.d1,INT32,RLE,null,null",
+        "root.vehicle.d1.s1,null,root.vehicle.d1,TEXT,PLAIN,null,null",
+        "root.vehicle.d1.s2,null,root.vehicle.d1,BOOLEAN,PLAIN,null,null",
+        "root.vehicle.d1.s3,speed,root.vehicle.d1,DOUBLE,GORILLA,{\"unit\":\"kmh\"},"
+            + "{\"maker\":\"a\"}"
+    };
+    for (String timeseries : series) {
+      String[] fields = timeseries.split(",", 6);
+      expected.add(String.join(",", fields[0], fields[1], fields[2], fields[3], fields[4],
+          compressor, fields[5]));
+    }
+
     boolean hasResultSet = statement.execute("SHOW TIMESERIES");
     assertTrue(hasResultSet);
-
+    Set<String> actual = new HashSet<>();
     try (ResultSet resultSet = statement.getResultSet()) {
-      int cnt = 0;
       while (resultSet.next()) {
-        cnt++;
+        actual.add(resultSet.getString("timeseries")
+            + "," + resultSet.getString("alias")
+            + "," + resultSet.getString("storage group")
+            + "," + resultSet.getString("dataType")
+            + "," + resultSet.getString("encoding")
+            + "," + resultSet.getString("compression")
+            + "," + resultSet.getString("tags")
+            + "," + resultSet.getString("attributes"));
+      }
+    }
+    assertEquals(expected, actual);
+  }
+
+  private void checkShowTTL(Statement statement) throws SQLException {
+    Set<String> actual = new HashSet<>();
+    try (ResultSet resultSet = statement.executeQuery("SHOW ALL TTL")) {
+      while (resultSet.next()) {
+        actual.add(resultSet.getString(1) + "," + resultSet.getString(2));
       }
-      Assert.assertEquals(8, cnt);
     }
+    Set<String> expected = new HashSet<>();
+    expected.add("root.vehicle.d0,3600000");
+    expected.add("root.vehicle.d1,null");
+    assertEquals(expected, actual);
   }
 }
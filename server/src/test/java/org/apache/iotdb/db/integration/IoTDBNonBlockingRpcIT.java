@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.service.RPCService;
+import org.apache.iotdb.db.service.TSServiceImpl;
+import org.apache.iotdb.db.service.thrift.ThriftServerType;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.jdbc.Config;
+import org.apache.iotdb.rpc.RpcUtils;
+import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementReq;
+import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementResp;
+import org.apache.iotdb.service.rpc.thrift.TSIService;
+import org.apache.iotdb.service.rpc.thrift.TSOpenSessionReq;
+import org.apache.iotdb.service.rpc.thrift.TSOpenSessionResp;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFastFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Runs the RPC service on the non-blocking Thrift servers with fewer workers than clients, and
+ * checks that the sessions of the clients do not get mixed up and that a client disconnecting
+ * without closing its session releases it and its queries.
+ */
+@RunWith(Parameterized.class)
+public class IoTDBNonBlockingRpcIT {
+
+  private static final int WORKER_THREAD_NUM = 2;
+  private static final int CLIENT_NUM = 8;
+  private static final int ROUND_NUM = 5;
+  private static final int POINT_NUM = 20;
+
+  private final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private final ThriftServerType serverType;
+  private ThriftServerType prevServerType;
+  private int prevSelectorThreadNum;
+  private int prevWorkerThreadNum;
+
+  public IoTDBNonBlockingRpcIT(ThriftServerType serverType) {
+    this.serverType = serverType;
+  }
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> serverTypes() {
+    return Arrays.asList(new Object[][]{{ThriftServerType.HSHA},
+        {ThriftServerType.THREADED_SELECTOR}});
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    prevServerType = config.getRpcThriftServerType();
+    prevSelectorThreadNum = config.getRpcSelectorThreadNum();
+    prevWorkerThreadNum = config.getRpcWorkerThreadNum();
+    config.setRpcThriftServerType(serverType);
+    config.setRpcSelectorThreadNum(2);
+    config.setRpcWorkerThreadNum(WORKER_THREAD_NUM);
+    EnvironmentUtils.closeStatMonitor();
+    EnvironmentUtils.envSetUp();
+    Class.forName(Config.JDBC_DRIVER_NAME);
+    insertData();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+    config.setRpcThriftServerType(prevServerType);
+    config.setRpcSelectorThreadNum(prevSelectorThreadNum);
+    config.setRpcWorkerThreadNum(prevWorkerThreadNum);
+  }
+
+  private static Connection connect() throws SQLException {
+    return DriverManager
+        .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/", "root", "root");
+  }
+
+  private static void insertData() throws SQLException {
+    try (Connection connection = connect();
+        Statement statement = connection.createStatement()) {
+      statement.execute("SET STORAGE GROUP TO root.sg");
+      for (int d = 0; d < CLIENT_NUM; d++) {
+        statement.execute(String.format(
+            "CREATE TIMESERIES root.sg.d%d.s0 WITH DATATYPE=INT64, ENCODING=RLE", d));
+        for (int time = 0; time < POINT_NUM; time++) {
+          statement.execute(String.format(
+              "insert into root.sg.d%d(timestamp, s0) values(%d, %d)", d, time, time * d));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentSessions() throws Exception {
+    TSServiceImpl serviceImpl = RPCService.getInstance().getServiceImpl();
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENT_NUM);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int d = 0; d < CLIENT_NUM; d++) {
+        int device = d;
+        futures.add(clients.submit(() -> {
+          for (int round = 0; round < ROUND_NUM; round++) {
+            // the clients outnumber the workers, which serve the connections in turn
+            try (Connection connection = connect();
+                Statement statement = connection.createStatement()) {
+              statement.setFetchSize(3);
+              try (ResultSet resultSet = statement
+                  .executeQuery(String.format("select s0 from root.sg.d%d where time < %d",
+                      device, POINT_NUM))) {
+                int count = 0;
+                while (resultSet.next()) {
+                  assertEquals(count, resultSet.getLong(1));
+                  assertEquals(count * device, resultSet.getLong(2));
+                  count++;
+                }
+                assertEquals(POINT_NUM, count);
+              }
+              statement.execute(String.format(
+                  "insert into root.sg.d%d(timestamp, s0) values(%d, %d)", device,
+                  POINT_NUM + round, 0));
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+
+    try (Connection connection = connect();
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select count(s0) from root.sg.*")) {
+      assertTrue(resultSet.next());
+      for (int i = 1; i <= CLIENT_NUM; i++) {
+        assertEquals(POINT_NUM + ROUND_NUM, resultSet.getLong(i));
+      }
+    }
+    assertEquals(0, serviceImpl.getSessionNum());
+    assertEquals(0, serviceImpl.getQueryDataSetNum());
+  }
+
+  @Test
+  public void testDisconnectReleasesSession() throws Exception {
+    TSServiceImpl serviceImpl = RPCService.getInstance().getServiceImpl();
+    int clientNum = WORKER_THREAD_NUM * 2;
+    List<TTransport> transports = new ArrayList<>();
+    try {
+      for (int i = 0; i < clientNum; i++) {
+        TTransport transport = new TFastFramedTransport(new TSocket("127.0.0.1", 6667));
+        transport.open();
+        transports.add(transport);
+        TSIService.Client client = new TSIService.Client(new TBinaryProtocol(transport));
+        TSOpenSessionReq openReq = new TSOpenSessionReq();
+        openReq.setUsername("root");
+        openReq.setPassword("root");
+        TSOpenSessionResp openResp = client.openSession(openReq);
+        RpcUtils.verifySuccess(openResp.getStatus());
+        long sessionId = openResp.getSessionId();
+        // leave a query with more results than fetched open
+        TSExecuteStatementReq execReq = new TSExecuteStatementReq(sessionId,
+            "select s0 from root.sg.d1", client.requestStatementId(sessionId));
+        execReq.setFetchSize(2);
+        TSExecuteStatementResp execResp = client.executeQueryStatement(execReq);
+        RpcUtils.verifySuccess(execResp.getStatus());
+      }
+      assertEquals(clientNum, serviceImpl.getSessionNum());
+      assertEquals(clientNum, serviceImpl.getQueryDataSetNum());
+    } finally {
+      // disconnect without closing the sessions
+      for (TTransport transport : transports) {
+        transport.close();
+      }
+    }
+
+    // the selector cleans up the connections after noticing they are closed
+    long deadline = System.currentTimeMillis() + 10_000;
+    while ((serviceImpl.getSessionNum() > 0 || serviceImpl.getQueryDataSetNum() > 0)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertEquals(0, serviceImpl.getSessionNum());
+    assertEquals(0, serviceImpl.getQueryDataSetNum());
+
+    // and the workers are still there for new clients
+    try (Connection connection = connect();
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select count(s0) from root.sg.d1")) {
+      assertTrue(resultSet.next());
+      assertEquals(POINT_NUM, resultSet.getLong(1));
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.jdbc.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the aggregations with several threads per query, which split a series by time
+ * partition when there are fewer series than threads, with those with a single thread.
+ */
+public class IoTDBParallelAggregationIT {
+
+  private static final int PARTITION_INTERVAL = 100;
+  private static final int PARTITION_NUM = 5;
+
+  private static final String[] QUERIES = {
+      "select count(s0), sum(s0), avg(s0), min_time(s0), max_time(s0) from root.sg.d0",
+      "select first_value(s1), last_value(s1), min_value(s1), max_value(s1) from root.sg.d0",
+      "select count(s0), first_value(s0), last_value(s0), sum(s1) from root.sg.*",
+      "select count(s0), avg(s1), max_value(s0) from root.sg.d1 where time >= 150 and time < 420",
+      "select min_time(s0), max_time(s0), last_value(s1) from root.sg.d0 where time < 260",
+      "select count(s0), sum(s1) from root.sg.d1 where time > 10000",
+  };
+
+  private final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private int concurrentAggregationThreadPerQuery;
+
+  @Before
+  public void setUp() throws Exception {
+    concurrentAggregationThreadPerQuery = config.getConcurrentAggregationThreadPerQuery();
+    EnvironmentUtils.closeStatMonitor();
+    EnvironmentUtils.envSetUp();
+    StorageEngine.setEnablePartition(true);
+    StorageEngine.setTimePartitionInterval(PARTITION_INTERVAL);
+    Class.forName(Config.JDBC_DRIVER_NAME);
+    insertData();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    config.setConcurrentAggregationThreadPerQuery(concurrentAggregationThreadPerQuery);
+    StorageEngine.setEnablePartition(false);
+    StorageEngine.setTimePartitionInterval(-1);
+    EnvironmentUtils.cleanEnv();
+  }
+
+  private static void insertData() throws SQLException {
+    try (Connection connection = DriverManager
+        .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/", "root", "root");
+        Statement statement = connection.createStatement()) {
+      statement.execute("SET STORAGE GROUP TO root.sg");
+      for (int d = 0; d < 2; d++) {
+        statement.execute(String.format(
+            "CREATE TIMESERIES root.sg.d%d.s0 WITH DATATYPE=INT64, ENCODING=RLE", d));
+        statement.execute(String.format(
+            "CREATE TIMESERIES root.sg.d%d.s1 WITH DATATYPE=DOUBLE, ENCODING=GORILLA", d));
+      }
+      // sequence files in every partition
+      for (long time = 0; time < PARTITION_NUM * PARTITION_INTERVAL; time += 3) {
+        for (int d = 0; d < 2; d++) {
+          statement.execute(String.format(
+              "insert into root.sg.d%d(timestamp, s0, s1) values(%d, %d, %f)", d, time,
+              time * (d + 1), time * 0.5 - d));
+        }
+      }
+      statement.execute("flush");
+      // unsequence files overwriting part of the data in every partition
+      for (long time = 1; time < PARTITION_NUM * PARTITION_INTERVAL; time += 7) {
+        statement.execute(String.format(
+            "insert into root.sg.d0(timestamp, s0, s1) values(%d, %d, %f)", time, -time,
+            time * 2.5));
+      }
+      statement.execute("flush");
+      // and data only in memory
+      for (long time = PARTITION_NUM * PARTITION_INTERVAL;
+          time < (PARTITION_NUM + 1) * PARTITION_INTERVAL; time += 5) {
+        statement.execute(String.format(
+            "insert into root.sg.d0(timestamp, s0, s1) values(%d, %d, %f)", time, time, -1.0));
+      }
+    }
+  }
+
+  private static List<String> query() throws SQLException {
+    List<String> results = new ArrayList<>();
+    try (Connection connection = DriverManager
+        .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/", "root", "root");
+        Statement statement = connection.createStatement()) {
+      for (String query : QUERIES) {
+        try (ResultSet resultSet = statement.executeQuery(query)) {
+          ResultSetMetaData metaData = resultSet.getMetaData();
+          StringBuilder builder = new StringBuilder(query).append(':');
+          while (resultSet.next()) {
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+              builder.append(metaData.getColumnName(i)).append('=')
+                  .append(round(resultSet.getString(i))).append(',');
+            }
+          }
+          results.add(builder.toString());
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * The partial averages are merged in a different order when the query is split, which may
+   * change the last digits of the result.
+   */
+  private static String round(String value) {
+    if (value == null || !value.contains(".")) {
+      return value;
+    }
+    return String.format("%.6f", Double.parseDouble(value));
+  }
+
+  @Test
+  public void testParallelAggregation() throws SQLException {
+    config.setConcurrentAggregationThreadPerQuery(1);
+    List<String> expected = query();
+    for (String result : expected) {
+      assertFalse(result, result.endsWith(":"));
+    }
+
+    // fewer series than threads, so they are split by time partition
+    config.setConcurrentAggregationThreadPerQuery(8);
+    assertEquals(expected, query());
+    // only the queries of a single series are split
+    config.setConcurrentAggregationThreadPerQuery(2);
+    assertEquals(expected, query());
+  }
+}
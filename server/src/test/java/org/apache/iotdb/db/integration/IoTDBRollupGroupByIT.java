@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.engine.rollup.RollupManager;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.metadata.PartialPath;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.jdbc.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the results of GROUP BY time queries with and without the rollup, for windows aligned
+ * to the rollup buckets, which may use it, and for the others, which may not.
+ */
+public class IoTDBRollupGroupByIT {
+
+  private static final long ROLLUP_INTERVAL = 10;
+  private static final String AGGREGATIONS = "count(s0), sum(s0), avg(s1), min_value(s0), "
+      + "max_value(s1), first_value(s0), last_value(s1), min_time(s1), max_time(s0)";
+
+  private static final String[] QUERIES = {
+      // aligned to the buckets
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([0, 1200), 50ms)",
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([0, 1200), 20ms, 40ms)",
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([100, 1200), 100ms)",
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([0, 1200), 50ms) order by time desc",
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([0, 1200), 30ms, 60ms) "
+          + "order by time desc",
+      // a descending query only uses the rollup without the first and last values and times
+      "select count(s0), sum(s0), avg(s1), min_value(s0), max_value(s1) from root.sg.d0 "
+          + "group by ([0, 1200), 50ms) order by time desc",
+      // not aligned to the buckets
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([5, 1200), 50ms)",
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([0, 1200), 25ms)",
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([0, 1200), 15ms, 40ms)",
+      "select " + AGGREGATIONS + " from root.sg.d0 group by ([3, 1200), 7ms, 11ms) "
+          + "order by time desc",
+      // filling the windows without data peeks the following windows
+      "select last_value(s0), last_value(s1) from root.sg.d0 group by ([0, 1200), 50ms) "
+          + "fill(int64[previous], double[previous])",
+      "select last_value(s0), last_value(s1) from root.sg.d0 group by ([0, 1200), 50ms) "
+          + "fill(int64[previous], double[previous]) order by time desc",
+      "select last_value(s0) from root.sg.d0 group by ([0, 1200), 20ms) "
+          + "fill(int64[previousUntilLast]) order by time desc",
+  };
+
+  @Before
+  public void setUp() throws Exception {
+    EnvironmentUtils.closeStatMonitor();
+    EnvironmentUtils.envSetUp();
+    RollupManager.getInstance().setEnable(true, ROLLUP_INTERVAL);
+    Class.forName(Config.JDBC_DRIVER_NAME);
+    insertData();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    RollupManager.getInstance().setEnable(false, ROLLUP_INTERVAL);
+    EnvironmentUtils.cleanEnv();
+  }
+
+  private static void insertData() throws SQLException {
+    try (Connection connection = DriverManager
+        .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/", "root", "root");
+        Statement statement = connection.createStatement()) {
+      statement.execute("SET STORAGE GROUP TO root.sg");
+      statement.execute("CREATE TIMESERIES root.sg.d0.s0 WITH DATATYPE=INT64, ENCODING=RLE");
+      statement.execute("CREATE TIMESERIES root.sg.d0.s1 WITH DATATYPE=DOUBLE, ENCODING=GORILLA");
+      // a chunk spanning many buckets in each file, with no data in [400, 600)
+      for (long time = 0; time < 400; time++) {
+        insert(statement, time, time % 37, time * 0.25);
+      }
+      statement.execute("flush");
+      for (long time = 600; time < 1000; time += 2) {
+        insert(statement, time, time % 53 - 20, -time * 0.5);
+      }
+      statement.execute("flush");
+      // unsequence data and a deletion, the chunks they touch must not use the rollup
+      for (long time = 100; time < 150; time += 5) {
+        insert(statement, time, -time, time);
+      }
+      statement.execute("flush");
+      statement.execute("delete from root.sg.d0.s1 where time >= 700 and time <= 720");
+      // and data only in memory
+      for (long time = 1000; time < 1100; time += 3) {
+        insert(statement, time, time, time);
+      }
+    }
+  }
+
+  private static void insert(Statement statement, long time, long s0, double s1)
+      throws SQLException {
+    statement.execute(String.format("insert into root.sg.d0(timestamp, s0, s1) values(%d, %d, %f)",
+        time, s0, s1));
+  }
+
+  private static List<String> query() throws SQLException {
+    List<String> results = new ArrayList<>();
+    try (Connection connection = DriverManager
+        .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/", "root", "root");
+        Statement statement = connection.createStatement()) {
+      for (String query : QUERIES) {
+        try (ResultSet resultSet = statement.executeQuery(query)) {
+          ResultSetMetaData metaData = resultSet.getMetaData();
+          StringBuilder builder = new StringBuilder(query).append(':');
+          while (resultSet.next()) {
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+              builder.append(round(resultSet.getString(i))).append(',');
+            }
+            builder.append('\n');
+          }
+          results.add(builder.toString());
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * The average of the buckets is merged in a different order than that of the points, which may
+   * change the last digits of the result.
+   */
+  private static String round(String value) {
+    if (value == null || !value.contains(".")) {
+      return value;
+    }
+    return String.format("%.6f", Double.parseDouble(value));
+  }
+
+  @Test
+  public void testGroupByWithRollup() throws Exception {
+    int sealedFileNum = 0;
+    for (TsFileResource resource : StorageEngine.getInstance()
+        .getProcessor(new PartialPath("root.sg")).getSequenceFileTreeSet()) {
+      // the file of the data only in memory is not sealed yet
+      if (resource.isClosed()) {
+        assertTrue(RollupManager.getInstance().getSideFile(resource.getTsFile()).exists());
+        sealedFileNum++;
+      }
+    }
+    assertTrue(sealedFileNum > 0);
+
+    RollupManager.getInstance().setEnable(false, ROLLUP_INTERVAL);
+    List<String> expected = query();
+    for (String result : expected) {
+      assertFalse(result, result.endsWith(":"));
+    }
+
+    RollupManager.getInstance().setEnable(true, ROLLUP_INTERVAL);
+    List<String> results = query();
+    for (int i = 0; i < QUERIES.length; i++) {
+      assertEquals(QUERIES[i], expected.get(i), results.get(i));
+    }
+  }
+}
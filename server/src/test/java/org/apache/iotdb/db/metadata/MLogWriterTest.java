@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.exception.metadata.IllegalPathException;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MLogWriterTest {
+
+  private File schemaDir;
+  private File logFile;
+
+  @Before
+  public void setUp() throws IOException {
+    schemaDir = Files.createTempDirectory("schema").toFile();
+    logFile = new File(schemaDir, MetadataConstant.METADATA_LOG);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(schemaDir);
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException, IllegalPathException {
+    MLogWriter writer = new MLogWriter(schemaDir.getPath(), MetadataConstant.METADATA_LOG);
+    writer.setStorageGroup("root.sg");
+    writer.createTimeseries(new CreateTimeSeriesPlan(new PartialPath("root.sg.d.s1"),
+        TSDataType.INT32, TSEncoding.RLE, CompressionType.SNAPPY,
+        Collections.singletonMap("max_point_number", "3"), null, null, "temperature"), 10);
+    // appended records are written together when committed
+    writer.appendCreateTimeseries(new CreateTimeSeriesPlan(new PartialPath("root.sg.d.s2"),
+        TSDataType.DOUBLE, TSEncoding.GORILLA, CompressionType.UNCOMPRESSED, null, null, null,
+        null), -1);
+    writer.appendCreateTimeseries(new CreateTimeSeriesPlan(new PartialPath("root.sg.d.s3"),
+        TSDataType.TEXT, TSEncoding.PLAIN, CompressionType.UNCOMPRESSED, null, null, null,
+        null), -1);
+    assertEquals(2, readAll(logFile).size());
+    writer.commit();
+    writer.deleteTimeseries("root.sg.d.s3");
+    writer.setTTL("root.sg", 1000);
+    writer.changeOffset("root.sg.d.s2", 20);
+    writer.changeAlias("root.sg.d.s2", "humidity");
+    writer.deleteStorageGroup("root.sg");
+    assertEquals(9, writer.getLineNumber());
+    writer.close();
+
+    List<String[]> records = readAll(logFile);
+    assertEquals(9, records.size());
+    assertArrayEquals(new String[]{"2", "root.sg"}, records.get(0));
+    assertArrayEquals(new String[]{"0", "root.sg.d.s1", "1", "2", "1", "max_point_number=3",
+        "temperature", "10"}, records.get(1));
+    assertArrayEquals(new String[]{"0", "root.sg.d.s2", "4", "6", "0", "", "", ""},
+        records.get(2));
+    assertArrayEquals(new String[]{"0", "root.sg.d.s3", "5", "0", "0", "", "", ""},
+        records.get(3));
+    assertArrayEquals(new String[]{"1", "root.sg.d.s3"}, records.get(4));
+    assertArrayEquals(new String[]{"10", "root.sg", "1000"}, records.get(5));
+    assertArrayEquals(new String[]{"12", "root.sg.d.s2", "20"}, records.get(6));
+    assertArrayEquals(new String[]{"13", "root.sg.d.s2", "humidity"}, records.get(7));
+    assertArrayEquals(new String[]{"11", "root.sg"}, records.get(8));
+  }
+
+  @Test
+  public void testTruncateTornRecord() throws IOException {
+    MLogWriter writer = new MLogWriter(schemaDir.getPath(), MetadataConstant.METADATA_LOG);
+    writer.setStorageGroup("root.sg1");
+    writer.close();
+    long validLength = logFile.length();
+    // a record partially written before crashing
+    Files.write(logFile.toPath(), new byte[]{0, 0, 0, 20, 2, 0}, StandardOpenOption.APPEND);
+
+    writer = new MLogWriter(schemaDir.getPath(), MetadataConstant.METADATA_LOG);
+    assertEquals(validLength, logFile.length());
+    writer.setStorageGroup("root.sg2");
+    writer.close();
+
+    List<String[]> records = readAll(logFile);
+    assertEquals(2, records.size());
+    assertArrayEquals(new String[]{"2", "root.sg1"}, records.get(0));
+    assertArrayEquals(new String[]{"2", "root.sg2"}, records.get(1));
+  }
+
+  @Test
+  public void testCommitAfterFailure() throws IOException, IllegalPathException {
+    MLogWriter writer = new MLogWriter(schemaDir.getPath(), MetadataConstant.METADATA_LOG);
+    writer.setStorageGroup("root.sg");
+    // the file can no longer be written
+    writer.close();
+    writer.appendCreateTimeseries(new CreateTimeSeriesPlan(new PartialPath("root.sg.d.s1"),
+        TSDataType.INT32, TSEncoding.RLE, CompressionType.SNAPPY, null, null, null, null), -1);
+    try {
+      writer.commit();
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    // the record taken by the failed write is not reported as committed
+    try {
+      writer.commit();
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    try {
+      writer.setTTL("root.sg", 1000);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(1, readAll(logFile).size());
+  }
+
+  @Test
+  public void testUpgradeTxtToBin() throws IOException {
+    File txtLogFile = new File(schemaDir, MetadataConstant.METADATA_TXT_LOG);
+    List<String> lines = Arrays.asList(
+        "2,root.sg",
+        "0,root.sg.d.s1,1,1,1,max_point_number=3,temperature,10",
+        "0,root.sg.d.s2,3,4,0,,,",
+        "10,root.sg,1000",
+        "13,root.sg.d.s2,humidity");
+    Files.write(txtLogFile.toPath(), lines, StandardCharsets.UTF_8);
+
+    MLogWriter.upgradeTxtToBin(schemaDir.getPath(), MetadataConstant.METADATA_TXT_LOG,
+        MetadataConstant.METADATA_LOG);
+    assertFalse(txtLogFile.exists());
+    assertTrue(logFile.exists());
+
+    List<String[]> records = readAll(logFile);
+    assertEquals(lines.size(), records.size());
+    for (int i = 0; i < lines.size(); i++) {
+      assertEquals(lines.get(i), String.join(",", records.get(i)));
+    }
+  }
+
+  @Test
+  public void testUpgradeMalformedTxt() throws IOException {
+    File txtLogFile = new File(schemaDir, MetadataConstant.METADATA_TXT_LOG);
+    List<String> lines = Arrays.asList(
+        "2,root.sg",
+        "x,root.sg1",
+        "",
+        "0,root.sg.d.s1,1,a,1,,,",
+        "10,root.sg",
+        "99,root.sg",
+        "0,root.sg.d.s2,3,4,0,,,",
+        "0,root.sg.d.s3,3,4");
+    Files.write(txtLogFile.toPath(), lines, StandardCharsets.UTF_8);
+
+    // the malformed lines are skipped like the unknown operations
+    MLogWriter.upgradeTxtToBin(schemaDir.getPath(), MetadataConstant.METADATA_TXT_LOG,
+        MetadataConstant.METADATA_LOG);
+    assertFalse(txtLogFile.exists());
+
+    List<String[]> records = readAll(logFile);
+    assertEquals(2, records.size());
+    assertEquals(lines.get(0), String.join(",", records.get(0)));
+    assertEquals(lines.get(6), String.join(",", records.get(1)));
+  }
+
+  private List<String[]> readAll(File file) throws IOException {
+    List<String[]> records = new ArrayList<>();
+    try (MLogReader reader = new MLogReader(file)) {
+      while (reader.hasNext()) {
+        records.add(reader.next());
+      }
+    }
+    return records;
+  }
+}
@@ -18,10 +18,19 @@
  */
 package org.apache.iotdb.db.metadata;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.stream.Collectors;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.exception.metadata.IllegalPathException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.dataset.ShowTimeSeriesResult;
 import org.apache.iotdb.db.service.IoTDB;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
@@ -410,4 +419,101 @@ public class MManagerBasicTest {
       fail(e.getMessage());
     }
   }
+
+  @Test
+  public void testReuseResolvedSeriesSchemas() throws MetadataException {
+    MManager manager = IoTDB.metaManager;
+    manager.setStorageGroup(new PartialPath("root.laptop"));
+    manager.createTimeseries(new CreateTimeSeriesPlan(new PartialPath("root.laptop.d1.s0"),
+        TSDataType.INT64, TSEncoding.PLAIN, CompressionType.GZIP, null, null, null,
+        "temperature"));
+    manager.createTimeseries(new PartialPath("root.laptop.d1.s1"), TSDataType.DOUBLE,
+        TSEncoding.PLAIN, CompressionType.GZIP, null);
+
+    InsertRowPlan first = newInsertRowPlan();
+    manager.getSeriesSchemasAndReadLockDevice(first);
+    InsertRowPlan second = newInsertRowPlan();
+    manager.getSeriesSchemasAndReadLockDevice(second);
+    assertArrayEquals(new String[]{"s0", "s1"}, second.getMeasurements());
+    assertArrayEquals(first.getMeasurementMNodes(), second.getMeasurementMNodes());
+
+    // the measurements resolved before are not reused once a timeseries is deleted
+    manager.deleteTimeseries(new PartialPath("root.laptop.d1.s1"));
+    manager.createTimeseries(new PartialPath("root.laptop.d1.s1"), TSDataType.DOUBLE,
+        TSEncoding.PLAIN, CompressionType.GZIP, null);
+    InsertRowPlan third = newInsertRowPlan();
+    manager.getSeriesSchemasAndReadLockDevice(third);
+    assertSame(first.getMeasurementMNodes()[0], third.getMeasurementMNodes()[0]);
+    assertNotSame(first.getMeasurementMNodes()[1], third.getMeasurementMNodes()[1]);
+    assertSame(manager.getNodeByPath(new PartialPath("root.laptop.d1.s1")),
+        third.getMeasurementMNodes()[1]);
+  }
+
+  @Test
+  public void testResolvedSeriesSchemasOfDeletedStorageGroup() throws MetadataException {
+    MManager manager = IoTDB.metaManager;
+    manager.setStorageGroup(new PartialPath("root.laptop"));
+    manager.createTimeseries(new CreateTimeSeriesPlan(new PartialPath("root.laptop.d1.s0"),
+        TSDataType.INT64, TSEncoding.PLAIN, CompressionType.GZIP, null, null, null,
+        "temperature"));
+    manager.createTimeseries(new PartialPath("root.laptop.d1.s1"), TSDataType.DOUBLE,
+        TSEncoding.PLAIN, CompressionType.GZIP, null);
+    InsertRowPlan first = newInsertRowPlan();
+    MNode firstDevice = manager.getSeriesSchemasAndReadLockDevice(first);
+
+    // the storage group is created again with the same timeseries, the nodes resolved before
+    // belong to the deleted MTree and must not be reused
+    manager.deleteStorageGroups(Collections.singletonList(new PartialPath("root.laptop")));
+    manager.setStorageGroup(new PartialPath("root.laptop"));
+    manager.createTimeseries(new CreateTimeSeriesPlan(new PartialPath("root.laptop.d1.s0"),
+        TSDataType.INT64, TSEncoding.PLAIN, CompressionType.GZIP, null, null, null,
+        "temperature"));
+    manager.createTimeseries(new PartialPath("root.laptop.d1.s1"), TSDataType.DOUBLE,
+        TSEncoding.PLAIN, CompressionType.GZIP, null);
+    InsertRowPlan second = newInsertRowPlan();
+    MNode secondDevice = manager.getSeriesSchemasAndReadLockDevice(second);
+    assertNotSame(firstDevice, secondDevice);
+    assertSame(manager.getDeviceNode(new PartialPath("root.laptop.d1")), secondDevice);
+    for (int i = 0; i < 2; i++) {
+      assertNotSame(first.getMeasurementMNodes()[i], second.getMeasurementMNodes()[i]);
+      assertSame(secondDevice, second.getMeasurementMNodes()[i].getParent());
+    }
+  }
+
+  @Test
+  public void testReplayCreationOfTimeseriesInSnapshot() throws Exception {
+    MManager manager = IoTDB.metaManager;
+    PartialPath path = new PartialPath("root.laptop.d1.s0");
+    manager.setStorageGroup(new PartialPath("root.laptop"));
+    manager.createTimeseries(new CreateTimeSeriesPlan(path, TSDataType.INT64, TSEncoding.PLAIN,
+        CompressionType.GZIP, null, Collections.singletonMap("unit", "cel"), null, null));
+    File logFile = new File(IoTDBDescriptor.getInstance().getConfig().getSchemaDir(),
+        MetadataConstant.METADATA_LOG);
+    byte[] log = Files.readAllBytes(logFile.toPath());
+
+    // the snapshot is taken after the timeseries is added to the MTree but before the offset of
+    // its tags is set and its creation is logged
+    MeasurementMNode leafMNode = (MeasurementMNode) manager.getNodeByPath(path);
+    long offset = leafMNode.getOffset();
+    assertTrue(offset >= 0);
+    leafMNode.setOffset(-1);
+    manager.createMTreeSnapshot();
+    manager.clear();
+    Files.write(logFile.toPath(), log);
+    manager.init();
+
+    assertEquals(offset, ((MeasurementMNode) manager.getNodeByPath(path)).getOffset());
+    List<ShowTimeSeriesResult> results = manager.showTimeseries(
+        new ShowTimeSeriesPlan(new PartialPath("root.laptop"), false, "unit", "cel", 0, 0, false),
+        new QueryContext());
+    assertEquals(1, results.size());
+    assertEquals(path.getFullPath(), results.get(0).getName());
+  }
+
+  private InsertRowPlan newInsertRowPlan() throws IllegalPathException {
+    InsertRowPlan plan = new InsertRowPlan(new PartialPath("root.laptop.d1"), 1L,
+        new String[]{"temperature", "s1"}, new String[]{"1", "1.0"});
+    plan.setMeasurementMNodes(new MeasurementMNode[2]);
+    return plan;
+  }
 }
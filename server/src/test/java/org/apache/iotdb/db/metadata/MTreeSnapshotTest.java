@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.MNodeStore;
+import org.apache.iotdb.db.metadata.mnode.MeasurementMNode;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MTreeSnapshotTest {
+
+  private File snapshotFile;
+  private File deltaFile;
+
+  @Before
+  public void setUp() throws IOException {
+    snapshotFile = Files.createTempFile("mtree", ".snapshot").toFile();
+    deltaFile = Files.createTempFile("mtree", ".delta").toFile();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(snapshotFile.toPath());
+    Files.deleteIfExists(deltaFile.toPath());
+  }
+
+  @Test
+  public void testFullSnapshot() throws MetadataException, IOException {
+    MTree mtree = new MTree();
+    mtree.setStorageGroup(new PartialPath("root.sg1"));
+    mtree.setStorageGroup(new PartialPath("root.a.sg2"));
+    Map<String, String> props = new HashMap<>();
+    props.put("max_point_number", "3");
+    mtree.createTimeseries(new PartialPath("root.sg1.d1.s1"), TSDataType.INT32, TSEncoding.RLE,
+        CompressionType.SNAPPY, props, "temperature");
+    mtree.createTimeseries(new PartialPath("root.sg1.d1.s2"), TSDataType.DOUBLE,
+        TSEncoding.GORILLA, CompressionType.UNCOMPRESSED, null, null);
+    mtree.createTimeseries(new PartialPath("root.a.sg2.d1.s1"), TSDataType.TEXT,
+        TSEncoding.PLAIN, CompressionType.UNCOMPRESSED, Collections.emptyMap(), null);
+    ((MeasurementMNode) mtree.getNodeByPath(new PartialPath("root.sg1.d1.s2"))).setOffset(100);
+    mtree.getStorageGroupNodeByPath(new PartialPath("root.a.sg2")).setDataTTL(1000);
+
+    MTreeSnapshot.serialize(mtree, snapshotFile, MTreeSnapshot.FULL_SNAPSHOT, 3, null);
+    assertEquals(3, MTreeSnapshot.readGeneration(snapshotFile));
+    MTree loaded = MTreeSnapshot.deserializeFrom(snapshotFile, null, 2, null);
+
+    assertEquals(mtree.toString(), loaded.toString());
+    assertEquals(Arrays.asList("root.a.sg2", "root.sg1"),
+        loaded.getAllStorageGroupPaths().stream().map(PartialPath::getFullPath).sorted()
+            .collect(Collectors.toList()));
+    assertEquals(1000,
+        loaded.getStorageGroupNodeByPath(new PartialPath("root.a.sg2")).getDataTTL());
+
+    MeasurementMNode s1 =
+        (MeasurementMNode) loaded.getNodeByPath(new PartialPath("root.sg1.d1.s1"));
+    assertEquals("temperature", s1.getAlias());
+    assertEquals(s1, loaded.getNodeByPath(new PartialPath("root.sg1.d1.temperature")));
+    assertEquals(props, s1.getSchema().getProps());
+    assertEquals(CompressionType.SNAPPY, s1.getSchema().getCompressor());
+    assertEquals(-1, s1.getOffset());
+    assertEquals("root.sg1.d1.s1", s1.getFullPath());
+
+    MeasurementMNode s2 =
+        (MeasurementMNode) loaded.getNodeByPath(new PartialPath("root.sg1.d1.s2"));
+    assertEquals(TSEncoding.GORILLA, s2.getSchema().getEncodingType());
+    assertEquals(100, s2.getOffset());
+  }
+
+  @Test
+  public void testDeltaSnapshot() throws MetadataException, IOException {
+    MTree mtree = new MTree();
+    mtree.setStorageGroup(new PartialPath("root.sg1"));
+    mtree.setStorageGroup(new PartialPath("root.sg2"));
+    mtree.setStorageGroup(new PartialPath("root.sg3"));
+    for (int i = 1; i <= 3; i++) {
+      mtree.createTimeseries(new PartialPath("root.sg" + i + ".d1.s1"), TSDataType.INT64,
+          TSEncoding.RLE, CompressionType.SNAPPY, null, null);
+    }
+    MTreeSnapshot.serialize(mtree, snapshotFile, MTreeSnapshot.FULL_SNAPSHOT, 1, null);
+
+    mtree.createTimeseries(new PartialPath("root.sg2.d1.s2"), TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, null, null);
+    mtree.deleteStorageGroup(new PartialPath("root.sg3"));
+    MTreeSnapshot.serialize(mtree, deltaFile, MTreeSnapshot.DELTA_SNAPSHOT, 1,
+        new HashSet<>(Arrays.asList("root.sg2", "root.sg3")));
+
+    MTree loaded = MTreeSnapshot.deserializeFrom(snapshotFile, deltaFile, 2, null);
+    assertEquals(mtree.toString(), loaded.toString());
+    assertTrue(loaded.isPathExist(new PartialPath("root.sg2.d1.s2")));
+    assertFalse(loaded.isPathExist(new PartialPath("root.sg3")));
+
+    // a delta snapshot of another generation is ignored
+    MTreeSnapshot.serialize(mtree, snapshotFile, MTreeSnapshot.FULL_SNAPSHOT, 2, null);
+    mtree.deleteStorageGroup(new PartialPath("root.sg1"));
+    MTreeSnapshot.serialize(mtree, deltaFile, MTreeSnapshot.DELTA_SNAPSHOT, 1,
+        Collections.singleton("root.sg1"));
+    loaded = MTreeSnapshot.deserializeFrom(snapshotFile, deltaFile, 2, null);
+    assertTrue(loaded.isPathExist(new PartialPath("root.sg1.d1.s1")));
+  }
+
+  @Test
+  public void testSnapshotWithStore() throws MetadataException, IOException {
+    MNodeStore store = new MNodeStore(Files.createTempFile("mtree", ".store").toFile(), 1,
+        device -> {
+        });
+    MNodeStore loadingStore = new MNodeStore(Files.createTempFile("mtree", ".store").toFile(), 1,
+        device -> {
+        });
+    try {
+      MTree mtree = new MTree();
+      mtree.setNodeStore(store);
+      mtree.setStorageGroup(new PartialPath("root.sg1"));
+      mtree.setStorageGroup(new PartialPath("root.sg2"));
+      for (int i = 0; i < 6; i++) {
+        MeasurementMNode leaf = mtree.createTimeseries(
+            new PartialPath("root.sg" + (i % 2 + 1) + ".d" + i + ".s1"), TSDataType.INT64,
+            TSEncoding.RLE, CompressionType.SNAPPY, null, "speed");
+        mtree.unpinDevice(leaf.getParent());
+      }
+      MNode pagedOut = mtree.getNodeByPath(new PartialPath("root.sg1.d0"));
+      assertTrue(pagedOut.isPagedOut());
+
+      // the paged out devices are written without being loaded
+      MTreeSnapshot.serialize(mtree, snapshotFile, MTreeSnapshot.FULL_SNAPSHOT, 1, null);
+      assertTrue(pagedOut.isPagedOut());
+      assertEquals(1, store.getResidentDeviceNum());
+
+      MTree loaded = MTreeSnapshot.deserializeFrom(snapshotFile, null, 2, null);
+      assertEquals(mtree.toString(), loaded.toString());
+      assertEquals("s1",
+          loaded.getNodeByPath(new PartialPath("root.sg1.d0.speed")).getName());
+
+      // the store pages out the storage groups while the snapshot is being loaded
+      MTree loadedWithStore = MTreeSnapshot.deserializeFrom(snapshotFile, null, 2, loadingStore);
+      assertEquals(1, loadingStore.getResidentDeviceNum());
+      assertTrue(loadedWithStore.getNodeByPath(new PartialPath("root.sg1.d0")).isPagedOut());
+      assertEquals(loaded.toString(), loadedWithStore.toString());
+    } finally {
+      store.close();
+      loadingStore.close();
+    }
+  }
+}
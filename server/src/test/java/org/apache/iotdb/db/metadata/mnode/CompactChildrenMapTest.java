@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactChildrenMapTest {
+
+  private final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private boolean enableCompactMTree;
+
+  @Before
+  public void setUp() {
+    enableCompactMTree = config.isEnableCompactMTree();
+    config.setEnableCompactMTree(true);
+  }
+
+  @After
+  public void tearDown() {
+    config.setEnableCompactMTree(enableCompactMTree);
+    LastCacheTable.getInstance().clear();
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    MNode parent = new MNode(null, "root");
+    CompactChildrenMap children = new CompactChildrenMap(4);
+    Map<String, MNode> expected = new HashMap<>();
+    // exceed the array to move the children into a map
+    for (String name : new String[]{"s3", "s1", "s5", "s2", "s4", "s0"}) {
+      MNode child = new MNode(parent, name);
+      assertNull(children.putIfAbsent(name, child));
+      expected.put(name, child);
+      assertEquals(expected, children);
+      assertSame(child, children.putIfAbsent(name, new MNode(parent, name)));
+    }
+
+    children = new CompactChildrenMap(4);
+    for (String name : new String[]{"s3", "s1", "s2", "s0"}) {
+      children.put(name, expected.get(name));
+    }
+    List<String> names = new ArrayList<>();
+    for (Entry<String, MNode> entry : children.entrySet()) {
+      names.add(entry.getKey());
+    }
+    assertEquals(4, children.size());
+    assertEquals(Arrays.asList("s0", "s1", "s2", "s3"), names);
+    assertNull(children.get("s4"));
+
+    assertFalse(children.remove("s1", expected.get("s2")));
+    assertTrue(children.remove("s1", expected.get("s1")));
+    assertSame(expected.get("s3"), children.remove("s3"));
+    assertNull(children.remove("s3"));
+    assertEquals(2, children.size());
+    assertSame(expected.get("s0"), children.get("s0"));
+    assertSame(expected.get("s2"), children.get("s2"));
+
+    Iterator<Entry<String, MNode>> iterator = children.entrySet().iterator();
+    iterator.next();
+    iterator.remove();
+    assertEquals(Collections.singleton("s2"), children.keySet());
+  }
+
+  @Test
+  public void testBulkBuild() {
+    MNode parent = new MNode(null, "root");
+    Map<String, MNode> expected = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      expected.put("d" + i, new MNode(parent, "d" + i));
+    }
+    assertEquals(expected, new CompactChildrenMap(16, expected));
+    assertEquals(expected, new CompactChildrenMap(4, expected));
+
+    parent.setChildren(MNode.toChildrenMap(expected));
+    assertTrue(parent.getChildren() instanceof CompactChildrenMap);
+    assertSame(expected.get("d7"), parent.getChild("d7"));
+  }
+
+  @Test
+  public void testSharedProps() {
+    MNode device = new MNode(null, "d");
+    Map<String, String> props = new HashMap<>();
+    props.put("max_point_number", "2");
+    MeasurementMNode s1 = new MeasurementMNode(device, "s1", null, TSDataType.FLOAT,
+        TSEncoding.RLE, CompressionType.SNAPPY, props);
+    MeasurementMNode s2 = new MeasurementMNode(device, "s2", null, TSDataType.DOUBLE,
+        TSEncoding.RLE, CompressionType.SNAPPY, new HashMap<>(props));
+    assertEquals(props, s1.getSchema().getProps());
+    assertSame(s1.getSchema().getProps(), s2.getSchema().getProps());
+  }
+
+  @Test
+  public void testInternProps() {
+    MNode device = new MNode(null, "d");
+    Map<String, String> props = new HashMap<>();
+    props.put("max_point_number", "2");
+    MeasurementMNode s1 = new MeasurementMNode(device, "s1", null, TSDataType.FLOAT,
+        TSEncoding.RLE, CompressionType.SNAPPY, props);
+    Map<String, String> internedProps = s1.getSchema().getProps();
+    // the interned props are a copy that cannot be changed through any timeseries
+    props.put("max_point_number", "3");
+    assertEquals(Collections.singletonMap("max_point_number", "2"), internedProps);
+    try {
+      internedProps.put("max_point_number", "4");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    MeasurementMNode s2 = new MeasurementMNode(device, "s2", null, TSDataType.FLOAT,
+        TSEncoding.RLE, CompressionType.SNAPPY, props);
+    assertEquals(props, s2.getSchema().getProps());
+    assertNotSame(internedProps, s2.getSchema().getProps());
+    MeasurementMNode s3 = new MeasurementMNode(device, "s3", null, TSDataType.FLOAT,
+        TSEncoding.RLE, CompressionType.SNAPPY, new HashMap<>());
+    assertSame(Collections.emptyMap(), s3.getSchema().getProps());
+
+    // props are not interned without the compact MTree
+    config.setEnableCompactMTree(false);
+    MeasurementMNode s4 = new MeasurementMNode(device, "s4", null, TSDataType.FLOAT,
+        TSEncoding.RLE, CompressionType.SNAPPY, props);
+    assertSame(props, s4.getSchema().getProps());
+  }
+
+  @Test
+  public void testLastCacheUpdateRules() {
+    MNode device = new MNode(null, "d");
+    MeasurementMNode compact = new MeasurementMNode(device, "s1", null, TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, null);
+    MeasurementMNode plain = new MeasurementMNode(device, "s2", null, TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, null);
+
+    // a sequence insertion older than the flushed data does not create the cache
+    updateBoth(compact, plain, 10, 1L, true, 20L);
+    assertNull(compact.getCachedLast());
+    // a last query or an unsequence insertion does
+    updateBoth(compact, plain, 10, 1L, false, null);
+    assertEquals(new TimeValuePair(10, new TsPrimitiveType.TsLong(1)), compact.getCachedLast());
+    // a value of the same time only replaces the cached one with a high priority
+    updateBoth(compact, plain, 10, 2L, false, null);
+    updateBoth(compact, plain, 10, 3L, true, 0L);
+    assertEquals(new TimeValuePair(10, new TsPrimitiveType.TsLong(3)), compact.getCachedLast());
+    // older values are ignored, newer ones replace the cached one
+    updateBoth(compact, plain, 5, 4L, true, 0L);
+    updateBoth(compact, plain, 20, 5L, false, null);
+    updateBoth(compact, plain, 30, null, true, 0L);
+    assertEquals(new TimeValuePair(20, new TsPrimitiveType.TsLong(5)), compact.getCachedLast());
+
+    compact.resetCache();
+    plain.resetCache();
+    assertNull(compact.getCachedLast());
+    updateBoth(compact, plain, 15, 6L, true, 20L);
+    updateBoth(compact, plain, 25, 7L, true, 20L);
+    assertEquals(new TimeValuePair(25, new TsPrimitiveType.TsLong(7)), compact.getCachedLast());
+  }
+
+  /**
+   * update the last cache of a node in the compact MTree and of a node in the normal MTree, which
+   * should end up with the same last value.
+   */
+  private void updateBoth(MeasurementMNode compact, MeasurementMNode plain, long time,
+      Long value, boolean highPriorityUpdate, Long latestFlushedTime) {
+    config.setEnableCompactMTree(true);
+    compact.updateCachedLast(newTimeValuePair(time, value), highPriorityUpdate,
+        latestFlushedTime);
+    config.setEnableCompactMTree(false);
+    plain.updateCachedLast(newTimeValuePair(time, value), highPriorityUpdate, latestFlushedTime);
+    assertEquals(plain.getCachedLast(), compact.getCachedLast());
+  }
+
+  private static TimeValuePair newTimeValuePair(long time, Long value) {
+    return new TimeValuePair(time, value == null ? null : new TsPrimitiveType.TsLong(value));
+  }
+
+  @Test
+  public void testLastCache() {
+    MNode device = new MNode(null, "d");
+    MeasurementMNode s1 = new MeasurementMNode(device, "s1", null, TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, null);
+    MeasurementMNode s2 = new MeasurementMNode(device, "s2", null, TSDataType.TEXT,
+        TSEncoding.PLAIN, CompressionType.SNAPPY, null);
+    assertNull(s1.getCachedLast());
+
+    s1.updateCachedLast(new TimeValuePair(10, new TsPrimitiveType.TsLong(100)), true, 0L);
+    s2.updateCachedLast(new TimeValuePair(10, new TsPrimitiveType.TsBinary(new Binary("a"))),
+        true, 0L);
+    // older values are ignored
+    s1.updateCachedLast(new TimeValuePair(5, new TsPrimitiveType.TsLong(50)), false, 0L);
+    assertEquals(new TimeValuePair(10, new TsPrimitiveType.TsLong(100)), s1.getCachedLast());
+    s1.updateCachedLast(new TimeValuePair(20, new TsPrimitiveType.TsLong(200)), false, 0L);
+    assertEquals(new TimeValuePair(20, new TsPrimitiveType.TsLong(200)), s1.getCachedLast());
+    assertEquals(new TimeValuePair(10, new TsPrimitiveType.TsBinary(new Binary("a"))),
+        s2.getCachedLast());
+
+    s1.resetCache();
+    assertNull(s1.getCachedLast());
+    MeasurementMNode s3 = new MeasurementMNode(device, "s3", null, TSDataType.BOOLEAN,
+        TSEncoding.PLAIN, CompressionType.SNAPPY, null);
+    s3.updateCachedLast(new TimeValuePair(30, new TsPrimitiveType.TsBoolean(true)), false, 0L);
+    assertEquals(new TimeValuePair(30, new TsPrimitiveType.TsBoolean(true)), s3.getCachedLast());
+    assertEquals(new TimeValuePair(10, new TsPrimitiveType.TsBinary(new Binary("a"))),
+        s2.getCachedLast());
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+import org.junit.After;
+import org.junit.Test;
+
+public class LastCacheTableTest {
+
+  private final LastCacheTable table = LastCacheTable.getInstance();
+
+  @After
+  public void tearDown() {
+    table.clear();
+  }
+
+  @Test
+  public void testSlotReuse() {
+    int slot1 = table.allocate();
+    int slot2 = table.allocate();
+    table.set(slot1, 10, new TsPrimitiveType.TsBinary(new Binary("a")));
+    table.set(slot2, 20, new TsPrimitiveType.TsInt(2));
+
+    // a released slot is handed out again before the table grows
+    table.release(slot1);
+    assertEquals(slot1, table.allocate());
+    table.set(slot1, 30, new TsPrimitiveType.TsDouble(3.0));
+    assertEquals(new TimeValuePair(30, new TsPrimitiveType.TsDouble(3.0)), table.get(slot1));
+    assertEquals(new TimeValuePair(20, new TsPrimitiveType.TsInt(2)), table.get(slot2));
+    assertEquals(2, table.allocate());
+
+    // the TEXT value of a released slot is not kept alive
+    table.set(slot2, 40, new TsPrimitiveType.TsBinary(new Binary("b")));
+    table.release(slot2);
+    assertEquals(slot2, table.allocate());
+    table.set(slot2, 50, new TsPrimitiveType.TsBinary(new Binary("c")));
+    assertEquals(new TimeValuePair(50, new TsPrimitiveType.TsBinary(new Binary("c"))),
+        table.get(slot2));
+  }
+
+  @Test
+  public void testAllTypesAcrossChunks() {
+    // more slots than a chunk holds, the TEXT values of the later chunks are created on demand
+    int slotNum = 10000;
+    Set<Integer> slots = new HashSet<>();
+    for (int i = 0; i < slotNum; i++) {
+      int slot = table.allocate();
+      slots.add(slot);
+      table.set(slot, i, valueOf(i));
+    }
+    assertEquals(slotNum, slots.size());
+    for (int slot : slots) {
+      assertEquals(new TimeValuePair(slot, valueOf(slot)), table.get(slot));
+      assertEquals(slot, table.getTimestamp(slot));
+    }
+  }
+
+  @Test
+  public void testSpecialValues() {
+    TsPrimitiveType[] values = new TsPrimitiveType[]{
+        new TsPrimitiveType.TsBoolean(false),
+        new TsPrimitiveType.TsInt(Integer.MIN_VALUE),
+        new TsPrimitiveType.TsLong(Long.MAX_VALUE),
+        new TsPrimitiveType.TsBinary(new Binary("")),
+    };
+    for (TsPrimitiveType value : values) {
+      int slot = table.allocate();
+      table.set(slot, -1, value);
+      assertEquals(new TimeValuePair(-1, value), table.get(slot));
+    }
+
+    // floating point values keep their bits, NaN does not equal itself
+    for (float value : new float[]{Float.NaN, -0.0f, Float.MIN_VALUE}) {
+      int slot = table.allocate();
+      table.set(slot, 1, new TsPrimitiveType.TsFloat(value));
+      assertEquals(Float.floatToRawIntBits(value),
+          Float.floatToRawIntBits(table.get(slot).getValue().getFloat()));
+    }
+    for (double value : new double[]{Double.NaN, -0.0, Double.NEGATIVE_INFINITY}) {
+      int slot = table.allocate();
+      table.set(slot, 1, new TsPrimitiveType.TsDouble(value));
+      assertEquals(Double.doubleToRawLongBits(value),
+          Double.doubleToRawLongBits(table.get(slot).getValue().getDouble()));
+    }
+  }
+
+  @Test
+  public void testClear() {
+    int slot = table.allocate();
+    table.allocate();
+    table.set(slot, 1, new TsPrimitiveType.TsBinary(new Binary("a")));
+    table.release(slot);
+    table.clear();
+    // the free slots of the cleared table are forgotten, or a slot would be handed out twice
+    assertEquals(0, table.allocate());
+    assertEquals(1, table.allocate());
+    assertEquals(2, table.allocate());
+    table.set(0, 2, new TsPrimitiveType.TsLong(2));
+    assertEquals(new TimeValuePair(2, new TsPrimitiveType.TsLong(2)), table.get(0));
+  }
+
+  private static TsPrimitiveType valueOf(int i) {
+    switch (i % 6) {
+      case 0:
+        return new TsPrimitiveType.TsBoolean(i % 4 == 0);
+      case 1:
+        return new TsPrimitiveType.TsInt(-i);
+      case 2:
+        return new TsPrimitiveType.TsLong(i * 10000000000L);
+      case 3:
+        return new TsPrimitiveType.TsFloat(i / 3.0f);
+      case 4:
+        return new TsPrimitiveType.TsDouble(-i / 7.0);
+      default:
+        return new TsPrimitiveType.TsBinary(new Binary("v" + i));
+    }
+  }
+}
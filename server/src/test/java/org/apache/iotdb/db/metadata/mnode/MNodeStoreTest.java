@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MNodeStoreTest {
+
+  private File dir;
+  private File storeFile;
+  private MNodeStore store;
+  private final List<MNode> pagedOutDevices = new ArrayList<>();
+  private MNode storageGroup;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("schema").toFile();
+    storeFile = new File(dir, "mtree.store");
+    store = new MNodeStore(storeFile, 2, pagedOutDevices::add);
+    MNode root = new MNode(null, "root");
+    storageGroup = new StorageGroupMNode(root, "sg", Long.MAX_VALUE);
+    root.addChild("sg", storageGroup);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    store.close();
+    FileUtils.deleteDirectory(dir);
+  }
+
+  private MNode createDevice(String name) {
+    MNode device = new MNode(storageGroup, name);
+    storageGroup.addChild(name, device);
+    device.addChild("s0", new MeasurementMNode(device, "s0", null, TSDataType.INT32,
+        TSEncoding.RLE, CompressionType.SNAPPY, Collections.singletonMap("max_point_number", "2")));
+    MeasurementMNode s1 = new MeasurementMNode(device, "s1", "temperature", TSDataType.TEXT,
+        TSEncoding.PLAIN, CompressionType.UNCOMPRESSED, null);
+    device.addChild("s1", s1);
+    device.addAlias("temperature", s1);
+    store.add(device);
+    return device;
+  }
+
+  @Test
+  public void testPageOutAndLoad() {
+    MNode[] devices = new MNode[5];
+    for (int i = 0; i < devices.length; i++) {
+      devices[i] = createDevice("d" + i);
+    }
+    // the least recently used devices are paged out
+    assertEquals(2, store.getResidentDeviceNum());
+    for (int i = 0; i < 3; i++) {
+      assertTrue(devices[i].isPagedOut());
+    }
+    assertFalse(devices[3].isPagedOut());
+    assertFalse(devices[4].isPagedOut());
+    assertEquals(Arrays.asList(devices[0], devices[1], devices[2]), pagedOutDevices);
+
+    // accessing a device loads it and pages out another
+    MeasurementMNode s0 = (MeasurementMNode) devices[0].getChild("s0");
+    assertSame(devices[0], s0.getParent());
+    assertEquals(new MeasurementSchema("s0", TSDataType.INT32, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.singletonMap("max_point_number", "2")), s0.getSchema());
+    MeasurementMNode s1 = (MeasurementMNode) devices[0].getChild("temperature");
+    assertEquals("s1", s1.getName());
+    assertEquals("temperature", s1.getAlias());
+    assertNull(s1.getSchema().getProps());
+    assertFalse(devices[0].isPagedOut());
+    assertTrue(devices[3].isPagedOut());
+    assertSame(devices[3], pagedOutDevices.get(3));
+    assertEquals(2, store.getResidentDeviceNum());
+
+    // measurements added to a paged out device are kept when it is paged out again
+    devices[1].addChild("s2", new MeasurementMNode(devices[1], "s2", null, TSDataType.DOUBLE,
+        TSEncoding.GORILLA, CompressionType.SNAPPY, null));
+    store.access(devices[4]);
+    store.access(devices[0]);
+    store.evictIfNeeded();
+    assertTrue(devices[1].isPagedOut());
+    assertEquals(3, devices[1].getChildren().size());
+    assertEquals(TSDataType.DOUBLE,
+        ((MeasurementMNode) devices[1].getChild("s2")).getSchema().getType());
+    assertEquals(2, devices[2].getChildren().size());
+  }
+
+  @Test
+  public void testReadWithoutLoading() {
+    MNode[] devices = new MNode[3];
+    for (int i = 0; i < devices.length; i++) {
+      devices[i] = createDevice("d" + i);
+    }
+    assertTrue(devices[0].isPagedOut());
+
+    Map<String, MNode> children = devices[0].getChildrenWithoutLoading();
+    assertTrue(devices[0].isPagedOut());
+    assertEquals(2, store.getResidentDeviceNum());
+    assertEquals(2, children.size());
+    MeasurementMNode s1 = (MeasurementMNode) children.get("s1");
+    assertEquals("temperature", s1.getAlias());
+    assertEquals("root.sg.d0.s1", s1.getFullPath());
+    // the nodes read are not in the MTree
+    assertTrue(s1.isDetached());
+    assertNotSame(s1, devices[0].getChild("s1"));
+    assertSame(devices[2].getChildren(), devices[2].getChildrenWithoutLoading());
+  }
+
+  @Test
+  public void testPinned() {
+    MNode pinned = createDevice("d0");
+    store.pin(pinned);
+    MeasurementMNode s0 = (MeasurementMNode) pinned.getChild("s0");
+    for (int i = 1; i < 5; i++) {
+      createDevice("d" + i);
+    }
+    // a pinned device is kept in memory however long it is not accessed
+    assertFalse(pinned.isPagedOut());
+    assertSame(s0, pinned.getChild("s0"));
+    assertEquals(2, store.getResidentDeviceNum());
+
+    store.unpin(pinned);
+    createDevice("d5");
+    assertTrue(pinned.isPagedOut());
+    // the measurement nodes of a device paged out do not cache last values any more
+    assertTrue(s0.isDetached());
+    s0.updateCachedLast(new TimeValuePair(1, new TsPrimitiveType.TsInt(1)), true, Long.MIN_VALUE);
+    assertNull(s0.getCachedLast());
+    assertFalse(((MeasurementMNode) pinned.getChild("s0")).isDetached());
+  }
+
+  @Test
+  public void testNotPagedOut() {
+    MNode tagged = createDevice("d0");
+    ((MeasurementMNode) tagged.getChild("s0")).setOffset(0);
+    MNode deleted = createDevice("d1");
+    storageGroup.deleteChild("d1");
+    for (int i = 2; i < 5; i++) {
+      createDevice("d" + i);
+    }
+    // devices with tags or deleted are not tracked any more
+    assertFalse(tagged.isPagedOut());
+    assertFalse(deleted.isPagedOut());
+    assertEquals(2, store.getResidentDeviceNum());
+
+    // until they are added again after the tags are dropped
+    ((MeasurementMNode) tagged.getChild("s0")).setOffset(-1);
+    store.add(tagged);
+    createDevice("d5");
+    createDevice("d6");
+    assertTrue(tagged.isPagedOut());
+  }
+
+  @Test
+  public void testSpaceReused() {
+    MNode[] devices = new MNode[5];
+    for (int i = 0; i < devices.length; i++) {
+      devices[i] = createDevice("d" + i);
+    }
+    long fileLength = store.getFileLength();
+    assertTrue(fileLength > 0);
+
+    // the space of the removed devices is freed, and the file is truncated as it is at the end
+    for (int i = 0; i < 3; i++) {
+      storageGroup.deleteChild("d" + i);
+      store.remove(devices[i]);
+    }
+    assertFalse(devices[0].isPagedOut());
+    assertEquals(2, devices[0].getChildren().size());
+    assertEquals(0, store.getFileLength());
+    assertEquals(0, storeFile.length());
+
+    // and reused by the devices paged out later
+    for (int i = 5; i < 8; i++) {
+      createDevice("d" + i);
+    }
+    assertTrue(devices[3].isPagedOut());
+    assertEquals(fileLength, store.getFileLength());
+  }
+}
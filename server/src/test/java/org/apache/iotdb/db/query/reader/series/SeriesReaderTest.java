@@ -38,6 +38,7 @@ import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.filter.ValueFilter;
 import org.apache.iotdb.tsfile.read.reader.IBatchReader;
 import org.apache.iotdb.tsfile.read.reader.IPointReader;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
@@ -131,6 +132,47 @@ public class SeriesReaderTest {
 
   }
 
+  @Test
+  public void valueFilterTest() {
+    try {
+      Set<String> allSensors = new HashSet<>();
+      allSensors.add("sensor0");
+      // the overlapped sequence points below 10000 are overridden by unsequence points, so they
+      // must not be returned even though their chunks satisfy the filter
+      SeriesReader seriesReader = new SeriesReader(
+          new PartialPath(SERIES_READER_TEST_SG + ".device0.sensor0"), allSensors,
+          TSDataType.INT32, new QueryContext(), seqResources, unseqResources, null,
+          ValueFilter.lt(10000), true);
+      IPointReader pointReader = new SeriesRawDataPointReader(seriesReader);
+      long expectedTime = 260;
+      while (pointReader.hasNextTimeValuePair()) {
+        TimeValuePair timeValuePair = pointReader.nextTimeValuePair();
+        assertEquals(expectedTime, timeValuePair.getTimestamp());
+        assertEquals(expectedTime, timeValuePair.getValue().getInt());
+        expectedTime = expectedTime == 299 ? 380 : expectedTime + 1;
+      }
+      assertEquals(400, expectedTime);
+
+      // the sequence files after 200 are skipped by their statistics
+      seriesReader = new SeriesReader(
+          new PartialPath(SERIES_READER_TEST_SG + ".device0.sensor0"), allSensors,
+          TSDataType.INT32, new QueryContext(), seqResources, unseqResources, null,
+          ValueFilter.gtEq(20000), true);
+      pointReader = new SeriesRawDataPointReader(seriesReader);
+      expectedTime = 0;
+      while (pointReader.hasNextTimeValuePair()) {
+        TimeValuePair timeValuePair = pointReader.nextTimeValuePair();
+        assertEquals(expectedTime, timeValuePair.getTimestamp());
+        assertEquals(20000 + expectedTime, timeValuePair.getValue().getInt());
+        expectedTime++;
+      }
+      assertEquals(200, expectedTime);
+    } catch (IOException | IllegalPathException e) {
+      e.printStackTrace();
+      fail();
+    }
+  }
+
   @Test
   public void descOrderTest() {
     try {
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.rescon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapArenaTest {
+
+  private final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private long prevMaxMemory;
+  private long prevRetainedMemory;
+
+  @Before
+  public void setUp() {
+    prevMaxMemory = config.getOffHeapMemtableMaxMemory();
+    prevRetainedMemory = config.getOffHeapMemtableRetainedMemory();
+    // drain the slabs left by other tests
+    config.setOffHeapMemtableRetainedMemory(0);
+    OffHeapArena drain = new OffHeapArena();
+    while (OffHeapArena.getFreeSlabBytes() > 0) {
+      drain.allocate(OffHeapArena.SLAB_SIZE);
+    }
+    drain.release();
+  }
+
+  @After
+  public void tearDown() {
+    config.setOffHeapMemtableMaxMemory(prevMaxMemory);
+    config.setOffHeapMemtableRetainedMemory(prevRetainedMemory);
+  }
+
+  @Test
+  public void testReleaseBeyondRetainedMemory() {
+    config.setOffHeapMemtableMaxMemory(Long.MAX_VALUE);
+    config.setOffHeapMemtableRetainedMemory(2L * OffHeapArena.SLAB_SIZE);
+    long total = OffHeapArena.getTotalSlabBytes();
+
+    OffHeapArena arena = new OffHeapArena();
+    for (int i = 0; i < 4; i++) {
+      assertTrue(arena.allocate(OffHeapArena.SLAB_SIZE).isDirect());
+    }
+    // a dedicated slab is counted as well
+    assertTrue(arena.allocate(OffHeapArena.SLAB_SIZE + 1).isDirect());
+    assertEquals(5L * OffHeapArena.SLAB_SIZE + 1, arena.getAllocatedBytes());
+    assertEquals(total + 5L * OffHeapArena.SLAB_SIZE + 1, OffHeapArena.getTotalSlabBytes());
+
+    arena.release();
+    assertEquals(0, arena.getAllocatedBytes());
+    // only the retained slabs are kept, the others and the dedicated one are left to the GC
+    assertEquals(2L * OffHeapArena.SLAB_SIZE, OffHeapArena.getFreeSlabBytes());
+    assertEquals(total + 2L * OffHeapArena.SLAB_SIZE, OffHeapArena.getTotalSlabBytes());
+
+    // the retained slabs are reused without allocating more
+    OffHeapArena reuse = new OffHeapArena();
+    reuse.allocate(OffHeapArena.SLAB_SIZE);
+    reuse.allocate(OffHeapArena.SLAB_SIZE);
+    assertEquals(0, OffHeapArena.getFreeSlabBytes());
+    assertEquals(total + 2L * OffHeapArena.SLAB_SIZE, OffHeapArena.getTotalSlabBytes());
+    reuse.release();
+  }
+
+  @Test
+  public void testAllocateOnHeapBeyondMaxMemory() {
+    long total = OffHeapArena.getTotalSlabBytes();
+    config.setOffHeapMemtableMaxMemory(total + OffHeapArena.SLAB_SIZE);
+    config.setOffHeapMemtableRetainedMemory(Long.MAX_VALUE);
+
+    OffHeapArena arena = new OffHeapArena();
+    ByteBuffer direct = arena.allocate(OffHeapArena.SLAB_SIZE / 2);
+    assertTrue(direct.isDirect());
+    ByteBuffer heap = arena.allocate(OffHeapArena.SLAB_SIZE);
+    assertFalse(heap.isDirect());
+    assertFalse(arena.allocate(OffHeapArena.SLAB_SIZE * 2).isDirect());
+    heap.putLong(8, -1L);
+    assertEquals(-1L, heap.getLong(8));
+    // the heap slabs are charged to the memtable but not to the direct memory
+    assertEquals(4L * OffHeapArena.SLAB_SIZE, arena.getAllocatedBytes());
+    assertEquals(total + OffHeapArena.SLAB_SIZE, OffHeapArena.getTotalSlabBytes());
+
+    arena.release();
+    assertEquals(OffHeapArena.SLAB_SIZE, OffHeapArena.getFreeSlabBytes());
+    assertEquals(total + OffHeapArena.SLAB_SIZE, OffHeapArena.getTotalSlabBytes());
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.rescon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.junit.Test;
+
+public class PrimitiveArrayPoolTest {
+
+  private PrimitiveArrayPool pool = PrimitiveArrayPool.getInstance();
+
+  @Test
+  public void testReuseReleasedArray() {
+    long outstanding = pool.getOutstandingArrayNum();
+    long[] array = (long[]) pool.getPrimitiveDataListByType(TSDataType.INT64);
+    assertEquals(PrimitiveArrayPool.ARRAY_SIZE, array.length);
+    assertEquals(outstanding + 1, pool.getOutstandingArrayNum());
+
+    pool.release(array);
+    assertEquals(outstanding, pool.getOutstandingArrayNum());
+    assertTrue(pool.getPooledBytes() >= (long) PrimitiveArrayPool.ARRAY_SIZE * Long.BYTES);
+
+    long hit = pool.getHitCount();
+    long miss = pool.getMissCount();
+    long[] reused = (long[]) pool.getPrimitiveDataListByType(TSDataType.INT64);
+    assertEquals(hit + 1, pool.getHitCount());
+    assertEquals(miss, pool.getMissCount());
+    pool.release(reused);
+  }
+
+  @Test
+  public void testConcurrentGetAndRelease() throws Exception {
+    long outstanding = pool.getOutstandingArrayNum();
+    long requested = pool.getHitCount() + pool.getMissCount();
+    int threadNum = 8;
+    int loop = 1000;
+    ExecutorService service = Executors.newFixedThreadPool(threadNum);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threadNum; i++) {
+        futures.add(service.submit(() -> {
+          for (int j = 0; j < loop; j++) {
+            int[][] arrays = (int[][]) pool
+                .getDataListsByType(TSDataType.INT32, PrimitiveArrayPool.ARRAY_SIZE * 2);
+            for (int[] array : arrays) {
+              pool.release(array);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      service.shutdownNow();
+    }
+    assertEquals(outstanding, pool.getOutstandingArrayNum());
+    assertEquals(requested + threadNum * loop * 2,
+        pool.getHitCount() + pool.getMissCount());
+  }
+}
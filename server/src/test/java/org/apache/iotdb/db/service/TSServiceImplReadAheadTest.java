@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.rpc.RpcColumnBatch;
+import org.apache.iotdb.rpc.RpcColumnCodec;
+import org.apache.iotdb.rpc.TSStatusCode;
+import org.apache.iotdb.service.rpc.thrift.TSCloseOperationReq;
+import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementReq;
+import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementResp;
+import org.apache.iotdb.service.rpc.thrift.TSFetchResultsReq;
+import org.apache.iotdb.service.rpc.thrift.TSFetchResultsResp;
+import org.apache.iotdb.service.rpc.thrift.TSOpenSessionReq;
+import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TSServiceImplReadAheadTest {
+
+  private static final String QUERY = "select s0, s1 from root.sg.d1";
+  private static final int ROW_NUM = 100;
+  private static final int FETCH_SIZE = 10;
+
+  private final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private boolean rpcFetchReadAheadEnable;
+  private TSServiceImpl service;
+  private long sessionId;
+
+  @Before
+  public void setUp() throws Exception {
+    rpcFetchReadAheadEnable = config.isRpcFetchReadAheadEnable();
+    EnvironmentUtils.closeStatMonitor();
+    EnvironmentUtils.envSetUp();
+    service = new TSServiceImpl();
+    TSOpenSessionReq openReq = new TSOpenSessionReq();
+    openReq.setUsername("root");
+    openReq.setPassword("root");
+    sessionId = service.openSession(openReq).getSessionId();
+
+    execute("SET STORAGE GROUP TO root.sg");
+    execute("CREATE TIMESERIES root.sg.d1.s0 WITH DATATYPE=INT64, ENCODING=RLE");
+    execute("CREATE TIMESERIES root.sg.d1.s1 WITH DATATYPE=TEXT, ENCODING=PLAIN");
+    for (int i = 0; i < ROW_NUM; i++) {
+      execute(String.format("insert into root.sg.d1(timestamp, s0) values(%d, %d)", i, i * 2));
+      // s1 has nulls and values of different lengths
+      if (i % 3 == 0) {
+        execute(String.format("insert into root.sg.d1(timestamp, s1) values(%d, 'v%d')", i, i));
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    config.setRpcFetchReadAheadEnable(rpcFetchReadAheadEnable);
+    EnvironmentUtils.cleanEnv();
+  }
+
+  private void execute(String sql) {
+    TSExecuteStatementResp resp = service
+        .executeStatement(new TSExecuteStatementReq(sessionId, sql, 0));
+    assertEquals(TSStatusCode.SUCCESS_STATUS.getStatusCode(), resp.getStatus().getCode());
+  }
+
+  private TSExecuteStatementResp executeQuery() {
+    TSExecuteStatementReq req = new TSExecuteStatementReq(sessionId, QUERY, 0);
+    req.setFetchSize(FETCH_SIZE);
+    TSExecuteStatementResp resp = service.executeQueryStatement(req);
+    assertEquals(TSStatusCode.SUCCESS_STATUS.getStatusCode(), resp.getStatus().getCode());
+    return resp;
+  }
+
+  private TSFetchResultsResp fetch(long queryId) {
+    return service
+        .fetchResults(new TSFetchResultsReq(sessionId, QUERY, FETCH_SIZE, queryId, true));
+  }
+
+  private static void checkRows(RpcColumnBatch batch, int firstRow) {
+    for (int i = 0; i < batch.getRowCount(); i++) {
+      int row = firstRow + i;
+      assertEquals(row, batch.getTimes()[i]);
+      assertEquals(row * 2L, batch.getLongs(0)[i]);
+      assertEquals(row % 3 != 0, batch.isNull(1, i));
+      if (row % 3 == 0) {
+        assertEquals("v" + row, batch.getBinaries(1)[i].getStringValue());
+      }
+    }
+  }
+
+  private static void readTimes(TSQueryDataSet dataSet, List<Long> times) {
+    ByteBuffer timeBuffer = dataSet.bufferForTime();
+    while (timeBuffer.hasRemaining()) {
+      times.add(timeBuffer.getLong());
+    }
+  }
+
+  private List<Long> queryAll() {
+    List<Long> times = new ArrayList<>();
+    TSExecuteStatementResp resp = executeQuery();
+    readTimes(resp.getQueryDataSet(), times);
+    while (true) {
+      TSFetchResultsResp fetchResp = fetch(resp.getQueryId());
+      assertEquals(TSStatusCode.SUCCESS_STATUS.getStatusCode(), fetchResp.getStatus().getCode());
+      if (!fetchResp.isHasResultSet()) {
+        break;
+      }
+      readTimes(fetchResp.getQueryDataSet(), times);
+    }
+    // the query is released once all its results are fetched
+    assertEquals(0, service.getReadAheadQueryNum());
+    return times;
+  }
+
+  @Test
+  public void testReadAheadResults() {
+    config.setRpcFetchReadAheadEnable(false);
+    List<Long> expected = queryAll();
+    assertEquals(ROW_NUM, expected.size());
+    for (int i = 0; i < ROW_NUM; i++) {
+      assertEquals(i, (long) expected.get(i));
+    }
+
+    config.setRpcFetchReadAheadEnable(true);
+    assertEquals(expected, queryAll());
+  }
+
+  @Test
+  public void testReleaseWhileReadingAhead() {
+    config.setRpcFetchReadAheadEnable(true);
+    TSExecuteStatementResp resp = executeQuery();
+    long queryId = resp.getQueryId();
+    // the second batch is being filled while the first one is returned
+    assertEquals(1, service.getReadAheadQueryNum());
+    assertTrue(fetch(queryId).isHasResultSet());
+    assertEquals(1, service.getReadAheadQueryNum());
+
+    TSCloseOperationReq closeReq = new TSCloseOperationReq(sessionId);
+    closeReq.setQueryId(queryId);
+    assertEquals(TSStatusCode.SUCCESS_STATUS.getStatusCode(),
+        service.closeOperation(closeReq).getCode());
+    assertEquals(0, service.getReadAheadQueryNum());
+    // the query is released with the batch read ahead for it
+    TSFetchResultsResp fetchResp = fetch(queryId);
+    assertFalse(fetchResp.isHasResultSet());
+    assertEquals(TSStatusCode.EXECUTE_STATEMENT_ERROR.getStatusCode(),
+        fetchResp.getStatus().getCode());
+  }
+
+  @Test
+  public void testChangeFetchParametersWhileReadingAhead() throws Exception {
+    config.setRpcFetchReadAheadEnable(true);
+    TSExecuteStatementResp resp = executeQuery();
+    List<TSDataType> dataTypes = new ArrayList<>();
+    for (String dataType : resp.getDataTypeList()) {
+      dataTypes.add(TSDataType.valueOf(dataType));
+    }
+    RpcColumnBatch first = RpcColumnCodec.toColumnBatch(resp.getQueryDataSet(), dataTypes);
+    checkRows(first, 0);
+    int rowNum = first.getRowCount();
+
+    // the batch read ahead with the fetch size of the query is split, then the fetch size grows
+    // back, and the results are encoded from some point on
+    int[] fetchSizes = {3, 4, 2, FETCH_SIZE * 2, 7, FETCH_SIZE * 3};
+    for (int i = 0; rowNum < ROW_NUM; i++) {
+      int fetchSize = fetchSizes[i % fetchSizes.length];
+      boolean encoded = i >= fetchSizes.length;
+      TSFetchResultsReq req = new TSFetchResultsReq(sessionId, QUERY, fetchSize,
+          resp.getQueryId(), true);
+      req.setEnableEncodedResult(encoded);
+      TSFetchResultsResp fetchResp = service.fetchResults(req);
+      assertEquals(TSStatusCode.SUCCESS_STATUS.getStatusCode(), fetchResp.getStatus().getCode());
+      assertTrue(fetchResp.isHasResultSet());
+      TSQueryDataSet dataSet = fetchResp.getQueryDataSet();
+      assertEquals(encoded, dataSet.isEncoded());
+      RpcColumnBatch batch = encoded ? RpcColumnCodec.decode(dataSet, dataTypes)
+          : RpcColumnCodec.toColumnBatch(dataSet, dataTypes);
+      assertTrue(batch.getRowCount() > 0);
+      assertTrue(batch.getRowCount() <= fetchSize);
+      checkRows(batch, rowNum);
+      rowNum += batch.getRowCount();
+    }
+    assertEquals(ROW_NUM, rowNum);
+    assertFalse(fetch(resp.getQueryId()).isHasResultSet());
+    assertEquals(0, service.getReadAheadQueryNum());
+  }
+}
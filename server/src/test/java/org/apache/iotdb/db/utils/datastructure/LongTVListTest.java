@@ -75,6 +75,50 @@ public class LongTVListTest {
   }
 
 
+  @Test
+  public void testSortNaturalRuns() {
+    LongTVList tvList = new LongTVList();
+    // a late batch of points overlapping with the points already written
+    for (long i = 0; i < 10000; i += 2) {
+      tvList.putLong(i, i);
+    }
+    for (long i = 1; i < 10000; i += 2) {
+      tvList.putLong(i, i);
+    }
+    tvList.putLong(5000, -1);
+    tvList.sort();
+    Assert.assertEquals(10001, tvList.size);
+    for (int i = 0; i < 5000; i++) {
+      Assert.assertEquals(i, tvList.getTime(i));
+      Assert.assertEquals(i, tvList.getLong(i));
+    }
+    // points with the same time keep their insertion order
+    Assert.assertEquals(5000, tvList.getTime(5001));
+    Assert.assertEquals(5000, tvList.getLong(5000));
+    Assert.assertEquals(-1, tvList.getLong(5001));
+    for (int i = 5002; i < tvList.size; i++) {
+      Assert.assertEquals(i - 1, tvList.getTime(i));
+    }
+  }
+
+  @Test
+  public void testSortWideTimeRange() {
+    Random random = new Random();
+    LongTVList tvList = new LongTVList();
+    List<TimeValuePair> inputs = new ArrayList<>();
+    for (long i = 0; i < 10000; i++) {
+      long time = i % 10 == 0 ? Long.MIN_VALUE + i : random.nextLong();
+      tvList.putLong(time, i);
+      inputs.add(new TimeValuePair(time, new TsLong(i)));
+    }
+    tvList.sort();
+    inputs.sort(TimeValuePair::compareTo);
+    for (int i = 0; i < tvList.size; i++) {
+      Assert.assertEquals(inputs.get(i).getTimestamp(), tvList.getTime(i));
+      Assert.assertEquals(inputs.get(i).getValue().getLong(), tvList.getLong(i));
+    }
+  }
+
   @Test
   public void compareLongTVListSortTime() {
     for (int j = 0; j < 100; j++) {
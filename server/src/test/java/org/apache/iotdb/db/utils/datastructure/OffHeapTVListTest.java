@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.utils.datastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.iotdb.db.rescon.OffHeapArena;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType.TsLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapTVListTest {
+
+  private OffHeapArena arena;
+
+  @Before
+  public void setUp() {
+    arena = new OffHeapArena();
+  }
+
+  @After
+  public void tearDown() {
+    arena.release();
+  }
+
+  @Test
+  public void testSortLongs() {
+    Random random = new Random();
+    TVList tvList = OffHeapTVList.newList(TSDataType.INT64, arena);
+    List<TimeValuePair> inputs = new ArrayList<>();
+    for (long i = 0; i < 10000; i++) {
+      long time = random.nextInt(10000);
+      long value = random.nextLong();
+      tvList.putLong(time, value);
+      inputs.add(new TimeValuePair(time, new TsLong(value)));
+    }
+    tvList.sort();
+    inputs.sort(TimeValuePair::compareTo);
+    for (int i = 0; i < tvList.size(); i++) {
+      Assert.assertEquals(inputs.get(i).getTimestamp(), tvList.getTime(i));
+      Assert.assertEquals(inputs.get(i).getValue().getLong(), tvList.getLong(i));
+    }
+  }
+
+  @Test
+  public void testCloneToHeap() {
+    TVList doubles = OffHeapTVList.newList(TSDataType.DOUBLE, arena);
+    TVList booleans = OffHeapTVList.newList(TSDataType.BOOLEAN, arena);
+    TVList ints = OffHeapTVList.newList(TSDataType.INT32, arena);
+    long[] times = new long[1000];
+    int[] values = new int[1000];
+    for (int i = 0; i < 1000; i++) {
+      doubles.putDouble(999 - i, -i * 1.5);
+      booleans.putBoolean(i, i % 3 == 0);
+      times[i] = i;
+      values[i] = -i;
+    }
+    ints.putInts(times, values);
+
+    TVList doubleClone = doubles.clone();
+    TVList booleanClone = booleans.clone();
+    TVList intClone = ints.clone();
+    Assert.assertTrue(doubleClone instanceof DoubleTVList);
+    // the clones must stay valid after the arena is reused by other memtables
+    arena.release();
+    arena = new OffHeapArena();
+    TVList overwrite = OffHeapTVList.newList(TSDataType.INT64, arena);
+    for (int i = 0; i < 3000; i++) {
+      overwrite.putLong(i, Long.MAX_VALUE);
+    }
+
+    doubleClone.sort();
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i, doubleClone.getTime(i));
+      Assert.assertEquals((i - 999) * 1.5, doubleClone.getDouble(i), 0.0);
+      Assert.assertEquals(i % 3 == 0, booleanClone.getBoolean(i));
+      Assert.assertEquals(-i, intClone.getInt(i));
+    }
+  }
+
+  @Test
+  public void testDelete() {
+    TVList floats = OffHeapTVList.newList(TSDataType.FLOAT, arena);
+    for (int i = 0; i < 1000; i++) {
+      floats.putFloat(i, i * 0.5f);
+    }
+    Assert.assertEquals(800, floats.delete(100, 899));
+    Assert.assertEquals(200, floats.size());
+    Assert.assertEquals(99, floats.getTime(99));
+    Assert.assertEquals(900, floats.getTime(100));
+    Assert.assertEquals(450f, floats.getFloat(100), 0.0f);
+
+    floats.putFloat(1000, 1.0f);
+    Assert.assertEquals(1000, floats.getTime(200));
+    Assert.assertEquals(1.0f, floats.getFloat(200), 0.0f);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.utils.datastructure;
+
+import java.util.Random;
+
+/**
+ * TVList sort benchmark. Compare the sort of TVList, which merges natural runs or uses radix sort,
+ * with the plain recursive merge sort it replaced, on series with different ratios of out-of-order
+ * points.
+ */
+public class TVListSortBenchmark {
+
+  private static int numOfPoint = 1000000;
+  private static int numOfRound = 10;
+  private static double[] disorderRatios = {0, 0.0001, 0.001, 0.01, 0.1, 0.5, 1};
+
+  public static void main(String[] args) {
+    for (double disorderRatio : disorderRatios) {
+      long[] times = generateTimes(disorderRatio);
+      // warm up
+      sort(new LongTVList(), times);
+      sort(new RecursiveMergeSortLongTVList(), times);
+
+      long currentCost = 0;
+      long legacyCost = 0;
+      for (int i = 0; i < numOfRound; i++) {
+        currentCost += sort(new LongTVList(), times);
+        legacyCost += sort(new RecursiveMergeSortLongTVList(), times);
+      }
+      System.out.println(String.format(
+          "Num of points: %d, disorder ratio: %.4f, average sort time: %d ms, "
+              + "average sort time of recursive merge sort: %d ms",
+          numOfPoint, disorderRatio, currentCost / numOfRound, legacyCost / numOfRound));
+    }
+  }
+
+  /**
+   * @return ascending timestamps of which the given ratio is moved to random positions, as
+   * delayed points of IoT devices
+   */
+  private static long[] generateTimes(double disorderRatio) {
+    Random random = new Random(0);
+    long[] times = new long[numOfPoint];
+    for (int i = 0; i < numOfPoint; i++) {
+      times[i] = i;
+    }
+    int disorderNum = (int) (numOfPoint * disorderRatio);
+    for (int i = 0; i < disorderNum; i++) {
+      int a = random.nextInt(numOfPoint);
+      int b = random.nextInt(numOfPoint);
+      long tmp = times[a];
+      times[a] = times[b];
+      times[b] = tmp;
+    }
+    return times;
+  }
+
+  private static long sort(LongTVList tvList, long[] times) {
+    for (long time : times) {
+      tvList.putLong(time, time);
+    }
+    long startTime = System.currentTimeMillis();
+    tvList.sort();
+    long cost = System.currentTimeMillis() - startTime;
+    tvList.clear();
+    return cost;
+  }
+
+  /**
+   * the sort of TVList before natural runs and radix sort were introduced
+   */
+  private static class RecursiveMergeSortLongTVList extends LongTVList {
+
+    @Override
+    protected void sort(int lo, int hi) {
+      if (sorted) {
+        return;
+      }
+      if (lo == hi) {
+        return;
+      }
+      if (hi - lo <= SMALL_ARRAY_LENGTH) {
+        int initRunLen = countRunAndMakeAscending(lo, hi);
+        binarySort(lo, hi, lo + initRunLen);
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      sort(lo, mid);
+      sort(mid, hi);
+      merge(lo, mid, hi);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.writelog;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.metadata.IllegalPathException;
+import org.apache.iotdb.db.metadata.PartialPath;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.db.qp.physical.crud.DeletePlan;
+import org.apache.iotdb.db.qp.physical.crud.InsertRowPlan;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.db.writelog.io.ILogReader;
+import org.apache.iotdb.db.writelog.node.GroupCommitWriteLogNode;
+import org.apache.iotdb.db.writelog.node.WriteLogNode;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GroupCommitWriteLogNodeTest {
+
+  private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+
+  private boolean enableWal;
+  private long forceWalPeriodInMs;
+  private long walGroupCommitMaxLatencyInMs;
+  private int walBufferSize;
+
+  @Before
+  public void setUp() throws Exception {
+    enableWal = config.isEnableWal();
+    forceWalPeriodInMs = config.getForceWalPeriodInMs();
+    walGroupCommitMaxLatencyInMs = config.getWalGroupCommitMaxLatencyInMs();
+    walBufferSize = config.getWalBufferSize();
+    config.setEnableWal(true);
+    EnvironmentUtils.envSetUp();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+    config.setEnableWal(enableWal);
+    config.setForceWalPeriodInMs(forceWalPeriodInMs);
+    config.setWalGroupCommitMaxLatencyInMs(walGroupCommitMaxLatencyInMs);
+    config.setWalBufferSize(walBufferSize);
+  }
+
+  private InsertRowPlan newInsertPlan(String identifier, long time) throws IllegalPathException {
+    return new InsertRowPlan(new PartialPath(identifier), time,
+        new String[]{"s1", "s2", "s3", "s4"},
+        new TSDataType[]{TSDataType.DOUBLE, TSDataType.INT64, TSDataType.TEXT, TSDataType.BOOLEAN},
+        new String[]{"1.0", "15", "str", "false"});
+  }
+
+  @Test
+  public void testWriteLogAndSync() throws IOException, IllegalPathException {
+    String identifier = "root.logTestDevice";
+    WriteLogNode logNode = new GroupCommitWriteLogNode(identifier);
+
+    InsertRowPlan bwInsertPlan = newInsertPlan(identifier, 100);
+    DeletePlan deletePlan = new DeletePlan(Long.MIN_VALUE, 50, new PartialPath(identifier + ".s1"));
+
+    logNode.write(bwInsertPlan);
+    logNode.write(deletePlan);
+    logNode.forceSync();
+
+    File walFile = new File(
+        config.getWalDir() + File.separator + identifier + File.separator + "wal1");
+    assertTrue(walFile.exists());
+
+    logNode.close();
+    ILogReader reader = logNode.getLogReader();
+    assertEquals(bwInsertPlan, reader.next());
+    assertEquals(deletePlan, reader.next());
+    assertFalse(reader.hasNext());
+    reader.close();
+
+    logNode.delete();
+    assertFalse(new File(logNode.getLogDirectory()).exists());
+  }
+
+  @Test
+  public void testConcurrentWriteWithForce() throws Exception {
+    // every write waits until its log is forced, logs of all threads must be persisted once
+    config.setForceWalPeriodInMs(0);
+    String identifier = "root.logTestDevice";
+    WriteLogNode logNode = new GroupCommitWriteLogNode(identifier);
+
+    int threadNum = 8;
+    int logPerThread = 100;
+    ExecutorService pool = Executors.newFixedThreadPool(threadNum);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threadNum; i++) {
+      int threadId = i;
+      futures.add(pool.submit(() -> {
+        for (int j = 0; j < logPerThread; j++) {
+          logNode.write(newInsertPlan(identifier, threadId * logPerThread + j));
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+
+    boolean[] read = new boolean[threadNum * logPerThread];
+    ILogReader reader = logNode.getLogReader();
+    int cnt = 0;
+    while (reader.hasNext()) {
+      PhysicalPlan plan = reader.next();
+      int time = (int) ((InsertRowPlan) plan).getTime();
+      assertFalse(read[time]);
+      read[time] = true;
+      cnt++;
+    }
+    reader.close();
+    assertEquals(threadNum * logPerThread, cnt);
+
+    logNode.delete();
+  }
+
+  @Test
+  public void testDeleteWhileWaiting() throws Exception {
+    // the sync thread holds the batch long enough for the node to be deleted before writing it
+    config.setForceWalPeriodInMs(0);
+    config.setWalGroupCommitMaxLatencyInMs(60_000);
+    String identifier = "root.logTestDevice";
+    WriteLogNode logNode = new GroupCommitWriteLogNode(identifier);
+
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    Future<?> writer = pool.submit(() -> {
+      logNode.write(newInsertPlan(identifier, 100));
+      return null;
+    });
+    Thread.sleep(200);
+    assertFalse(writer.isDone());
+
+    logNode.delete();
+    try {
+      writer.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    } finally {
+      pool.shutdownNow();
+    }
+    assertFalse(new File(logNode.getLogDirectory()).exists());
+  }
+
+  @Test
+  public void testWriteLargeLog() throws IOException, IllegalPathException {
+    config.setWalBufferSize(64 * 1024);
+    String identifier = "root.logTestDevice";
+    WriteLogNode logNode = new GroupCommitWriteLogNode(identifier);
+
+    // a log of about 3/4 of wal_buffer_size, which ExclusiveWriteLogNode accepts as well
+    char[] chars = new char[48 * 1024];
+    Arrays.fill(chars, 'a');
+    InsertRowPlan largePlan = new InsertRowPlan(new PartialPath(identifier), 100,
+        new String[]{"s1"}, new TSDataType[]{TSDataType.TEXT}, new String[]{new String(chars)});
+    InsertRowPlan smallPlan = newInsertPlan(identifier, 200);
+
+    logNode.write(smallPlan);
+    // the working buffer is handed over and the log is put into an empty one
+    logNode.write(largePlan);
+    logNode.write(smallPlan);
+    logNode.close();
+
+    ILogReader reader = logNode.getLogReader();
+    assertEquals(smallPlan, reader.next());
+    assertEquals(largePlan, reader.next());
+    assertEquals(smallPlan, reader.next());
+    assertFalse(reader.hasNext());
+    reader.close();
+
+    logNode.delete();
+  }
+
+  @Test
+  public void testNotifyFlush() throws IOException, IllegalPathException {
+    String identifier = "root.logTestDevice";
+    WriteLogNode logNode = new GroupCommitWriteLogNode(identifier);
+
+    InsertRowPlan bwInsertPlan = newInsertPlan(identifier, 100);
+    DeletePlan deletePlan = new DeletePlan(Long.MIN_VALUE, 50, new PartialPath(identifier + ".s1"));
+
+    logNode.write(bwInsertPlan);
+    logNode.notifyStartFlush();
+    logNode.write(deletePlan);
+    logNode.notifyStartFlush();
+
+    ILogReader logReader = logNode.getLogReader();
+    assertEquals(bwInsertPlan, logReader.next());
+    assertEquals(deletePlan, logReader.next());
+    logReader.close();
+
+    logNode.notifyEndFlush();
+    logReader = logNode.getLogReader();
+    assertEquals(deletePlan, logReader.next());
+    logReader.close();
+
+    logNode.notifyEndFlush();
+    logReader = logNode.getLogReader();
+    assertFalse(logReader.hasNext());
+    logReader.close();
+
+    logNode.delete();
+  }
+}
@@ -19,13 +19,21 @@
 
 package org.apache.iotdb.rpc;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.sql.Timestamp;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import org.apache.iotdb.service.rpc.thrift.TSCloseOperationReq;
 import org.apache.iotdb.service.rpc.thrift.TSFetchResultsReq;
 import org.apache.iotdb.service.rpc.thrift.TSFetchResultsResp;
@@ -67,6 +75,24 @@ public class IoTDBRpcDataSet {
   public int rowsIndex = 0; // used to record the row index in current TSQueryDataSet
 
   public TSQueryDataSet tsQueryDataSet = null;
+  // whether the server has answered with encoded columns, if so they are asked for in every fetch
+  public boolean enableEncodedResult = false;
+  // whether the current batch has encoded columns, which are decoded when its first row is read
+  private boolean encodedBatch = false;
+  // the current batch decoded from encoded columns, null if not decoded yet or in the plain layout
+  private RpcColumnBatch columnBatch;
+  // how many batches are fetched in the background while the current one is consumed, 0 disables
+  public int prefetchBatchNum = 0;
+  // fetch requests sent in the background, in the order of the batches they return
+  private final Deque<Future<TSFetchResultsResp>> prefetchedResults = new ArrayDeque<>();
+  // shared by the data sets of a session or connection, see RpcUtils.newPrefetchExecutor, null
+  // disables prefetching
+  public Executor prefetchExecutor;
+  // the latest fetch request sent in the background, each one is chained after the previous so
+  // that the batches are fetched in order
+  private CompletableFuture<TSFetchResultsResp> lastPrefetch;
+  // set once a background fetch has got the last batch or an error, no fetch should follow it
+  private volatile boolean noMoreResults = false;
   public byte[] time; // used to cache the current time value
   public byte[] currentBitmap; // used to cache the current bitmap for every column
   public static final int FLAG = 0x80; // used to do `and` operation with bitmap to judge whether the value is null
@@ -156,13 +182,14 @@ public class IoTDBRpcDataSet {
                   .format("Data type %s is not supported.", columnTypeDeduplicatedList.get(i)));
       }
     }
-    this.tsQueryDataSet = queryDataSet;
+    setTsQueryDataSet(queryDataSet);
   }
 
   public void close() throws StatementExecutionException, TException {
     if (isClosed) {
       return;
     }
+    stopPrefetch();
     if (client != null) {
       try {
         TSCloseOperationReq closeReq = new TSCloseOperationReq(sessionId);
@@ -182,6 +209,7 @@ public class IoTDBRpcDataSet {
 
   public boolean next() throws StatementExecutionException, IoTDBConnectionException {
     if (hasCachedResults()) {
+      decodeColumnBatch();
       constructOneRow();
       return true;
     }
@@ -189,6 +217,7 @@ public class IoTDBRpcDataSet {
       return false;
     }
     if (fetchResults()) {
+      decodeColumnBatch();
       constructOneRow();
       return true;
     }
@@ -196,16 +225,18 @@ public class IoTDBRpcDataSet {
   }
 
   public boolean fetchResults() throws StatementExecutionException, IoTDBConnectionException {
-    rowsIndex = 0;
-    TSFetchResultsReq req = new TSFetchResultsReq(sessionId, sql, fetchSize, queryId, true);
     try {
-      TSFetchResultsResp resp = client.fetchResults(req);
+      TSFetchResultsResp resp = prefetchedResults.isEmpty() ? client.fetchResults(newFetchReq())
+          : takePrefetchedResult();
 
       RpcUtils.verifySuccess(resp.getStatus());
       if (!resp.hasResultSet) {
         emptyResultSet = true;
+        stopPrefetch();
       } else {
-        tsQueryDataSet = resp.getQueryDataSet();
+        // the rows of an encoded batch are counted by rowsIndex, keep it for the last batch
+        rowsIndex = 0;
+        setTsQueryDataSet(resp.getQueryDataSet());
       }
       return resp.hasResultSet;
     } catch (TException e) {
@@ -214,19 +245,146 @@ public class IoTDBRpcDataSet {
     }
   }
 
+  private TSFetchResultsReq newFetchReq() {
+    TSFetchResultsReq req = new TSFetchResultsReq(sessionId, sql, fetchSize, queryId, true);
+    req.setEnableEncodedResult(enableEncodedResult);
+    return req;
+  }
+
+  /**
+   * Keep prefetchBatchNum fetch requests in flight, so that the next batches are transferred while
+   * the application consumes the current one.
+   */
+  private void prefetch() {
+    if (prefetchBatchNum <= 0 || prefetchExecutor == null || emptyResultSet || noMoreResults
+        || client == null) {
+      return;
+    }
+    TSIService.Iface currentClient = client;
+    while (prefetchedResults.size() < prefetchBatchNum) {
+      CompletableFuture<TSFetchResultsResp> previous =
+          lastPrefetch == null ? CompletableFuture.completedFuture(null) : lastPrefetch;
+      lastPrefetch = previous
+          .handleAsync((resp, e) -> fetchInBackground(currentClient), prefetchExecutor);
+      prefetchedResults.add(lastPrefetch);
+    }
+  }
+
+  private TSFetchResultsResp fetchInBackground(TSIService.Iface currentClient) {
+    if (noMoreResults) {
+      // the server has released the query, just tell the reader that there is no more data
+      return new TSFetchResultsResp(RpcUtils.SUCCESS_STATUS, false, true);
+    }
+    try {
+      TSFetchResultsResp resp = currentClient.fetchResults(newFetchReq());
+      if (!resp.hasResultSet || resp.getStatus().code != TSStatusCode.SUCCESS_STATUS
+          .getStatusCode()) {
+        noMoreResults = true;
+      }
+      return resp;
+    } catch (TException e) {
+      noMoreResults = true;
+      throw new CompletionException(e);
+    }
+  }
+
+  private TSFetchResultsResp takePrefetchedResult() throws TException, IoTDBConnectionException {
+    try {
+      return prefetchedResults.poll().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IoTDBConnectionException("Interrupted while fetching result from server", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof TException) {
+        throw (TException) e.getCause();
+      }
+      throw new IoTDBConnectionException(e.getCause());
+    }
+  }
+
+  private void stopPrefetch() {
+    noMoreResults = true;
+    for (Future<TSFetchResultsResp> future : prefetchedResults) {
+      future.cancel(false);
+    }
+    prefetchedResults.clear();
+    lastPrefetch = null;
+  }
+
   public boolean hasCachedResults() {
+    if (encodedBatch) {
+      // an encoded batch is never empty
+      return columnBatch == null || rowsIndex < columnBatch.getRowCount();
+    }
     return (tsQueryDataSet != null && tsQueryDataSet.time.hasRemaining());
   }
 
+  /**
+   * Read the next batch of rows as columns instead of row by row, the rows returned here are not
+   * returned by {@link #next()} any more. A batch cannot be read as columns once some of its rows
+   * are read by {@link #next()}.
+   *
+   * @return null if there are no more rows
+   */
+  public RpcColumnBatch nextColumnBatch()
+      throws StatementExecutionException, IoTDBConnectionException {
+    if (!hasCachedResults() && (emptyResultSet || !fetchResults())) {
+      return null;
+    }
+    if (rowsIndex > 0) {
+      throw new StatementExecutionException(
+          "Cannot read a batch as columns after some of its rows are read");
+    }
+    prefetch();
+    decodeColumnBatch();
+    RpcColumnBatch batch;
+    if (columnBatch != null) {
+      batch = columnBatch;
+      rowsIndex = batch.getRowCount();
+    } else {
+      batch = RpcColumnCodec.toColumnBatch(tsQueryDataSet, columnTypeDeduplicatedList);
+      tsQueryDataSet.time.position(tsQueryDataSet.time.limit());
+    }
+    hasCachedRecord = false;
+    return batch;
+  }
+
+  /**
+   * @return the index of the column in the batches returned by {@link #nextColumnBatch()}, -1 for
+   * the time column
+   */
+  public int getBatchColumnIndex(String columnName) {
+    return columnOrdinalMap.get(columnName) - START_INDEX;
+  }
+
   public void constructOneRow() {
-    tsQueryDataSet.time.get(time);
+    if (rowsIndex == 0) {
+      // a new batch is started, replace the one it came from
+      prefetch();
+    }
+    if (encodedBatch && columnBatch == null) {
+      try {
+        decodeColumnBatch();
+      } catch (StatementExecutionException e) {
+        throw new IllegalStateException(e.getMessage(), e.getCause());
+      }
+    }
+    if (columnBatch != null) {
+      BytesUtils.longToBytes(columnBatch.getTimes()[rowsIndex], time, 0);
+    } else {
+      tsQueryDataSet.time.get(time);
+    }
     for (int i = 0; i < tsQueryDataSet.bitmapList.size(); i++) {
       ByteBuffer bitmapBuffer = tsQueryDataSet.bitmapList.get(i);
       // another new 8 row, should move the bitmap buffer position to next byte
       if (rowsIndex % 8 == 0) {
         currentBitmap[i] = bitmapBuffer.get();
       }
-      if (!isNull(i, rowsIndex)) {
+      if (columnBatch != null) {
+        if (!isNull(i, rowsIndex)) {
+          readValueFromColumn(i);
+        }
+      } else if (!isNull(i, rowsIndex)) {
         ByteBuffer valueBuffer = tsQueryDataSet.valueList.get(i);
         TSDataType dataType = columnTypeDeduplicatedList.get(i);
         switch (dataType) {
@@ -252,6 +410,32 @@ public class IoTDBRpcDataSet {
     hasCachedRecord = true;
   }
 
+  private void readValueFromColumn(int index) {
+    switch (columnBatch.getDataType(index)) {
+      case BOOLEAN:
+        BytesUtils.boolToBytes(columnBatch.getBooleans(index)[rowsIndex], values[index], 0);
+        break;
+      case INT32:
+        BytesUtils.intToBytes(columnBatch.getInts(index)[rowsIndex], values[index], 0);
+        break;
+      case INT64:
+        BytesUtils.longToBytes(columnBatch.getLongs(index)[rowsIndex], values[index], 0);
+        break;
+      case FLOAT:
+        BytesUtils.floatToBytes(columnBatch.getFloats(index)[rowsIndex], values[index], 0);
+        break;
+      case DOUBLE:
+        BytesUtils.doubleToBytes(columnBatch.getDoubles(index)[rowsIndex], values[index], 0);
+        break;
+      case TEXT:
+        values[index] = columnBatch.getBinaries(index)[rowsIndex].getValues();
+        break;
+      default:
+        throw new UnSupportedDataTypeException(
+            String.format("Data type %s is not supported.", columnBatch.getDataType(index)));
+    }
+  }
+
   public boolean isNull(int columnIndex) throws StatementExecutionException {
     int index = columnOrdinalMap.get(findColumnNameByIndex(columnIndex)) - START_INDEX;
     // time column will never be null
@@ -426,6 +610,27 @@ public class IoTDBRpcDataSet {
   }
 
   public void setTsQueryDataSet(TSQueryDataSet tsQueryDataSet) {
+    columnBatch = null;
+    encodedBatch = tsQueryDataSet != null && tsQueryDataSet.isSetEncoded()
+        && tsQueryDataSet.isEncoded();
+    if (encodedBatch) {
+      enableEncodedResult = true;
+    }
     this.tsQueryDataSet = tsQueryDataSet;
   }
+
+  /**
+   * decode the columns of the current batch if they are encoded and not decoded yet, the rows are
+   * then read from the decoded arrays and only the bitmaps of the data set are used
+   */
+  private void decodeColumnBatch() throws StatementExecutionException {
+    if (!encodedBatch || columnBatch != null) {
+      return;
+    }
+    try {
+      columnBatch = RpcColumnCodec.decode(tsQueryDataSet, columnTypeDeduplicatedList);
+    } catch (IOException e) {
+      throw new StatementExecutionException("Cannot decode the result columns", e);
+    }
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.rpc;
+
+import java.util.List;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.utils.Binary;
+
+/**
+ * A batch of query results as columns of primitive arrays. The value columns are the deduplicated
+ * columns of the result, each array has a slot for every row of the batch, and what the slots of
+ * null values hold is undefined, so check {@link #isNull(int, int)} first.
+ */
+public class RpcColumnBatch {
+
+  private final long[] times;
+  private final List<TSDataType> dataTypes;
+  // boolean[], int[], long[], float[], double[] or Binary[] according to the data type
+  private final Object[] values;
+  // one bit per row, set if the value is not null, as in TSQueryDataSet
+  private final byte[][] bitmaps;
+
+  RpcColumnBatch(long[] times, List<TSDataType> dataTypes, Object[] values, byte[][] bitmaps) {
+    this.times = times;
+    this.dataTypes = dataTypes;
+    this.values = values;
+    this.bitmaps = bitmaps;
+  }
+
+  public int getRowCount() {
+    return times.length;
+  }
+
+  public int getColumnCount() {
+    return values.length;
+  }
+
+  public long[] getTimes() {
+    return times;
+  }
+
+  public TSDataType getDataType(int column) {
+    return dataTypes.get(column);
+  }
+
+  public boolean isNull(int column, int row) {
+    return (bitmaps[column][row / 8] & (IoTDBRpcDataSet.FLAG >>> (row % 8))) == 0;
+  }
+
+  public boolean[] getBooleans(int column) {
+    return (boolean[]) getValues(column, TSDataType.BOOLEAN);
+  }
+
+  public int[] getInts(int column) {
+    return (int[]) getValues(column, TSDataType.INT32);
+  }
+
+  public long[] getLongs(int column) {
+    return (long[]) getValues(column, TSDataType.INT64);
+  }
+
+  public float[] getFloats(int column) {
+    return (float[]) getValues(column, TSDataType.FLOAT);
+  }
+
+  public double[] getDoubles(int column) {
+    return (double[]) getValues(column, TSDataType.DOUBLE);
+  }
+
+  public Binary[] getBinaries(int column) {
+    return (Binary[]) getValues(column, TSDataType.TEXT);
+  }
+
+  /**
+   * @return the values of the column as a boolean[], int[], long[], float[], double[] or Binary[]
+   * according to its data type
+   */
+  public Object getValues(int column) {
+    return values[column];
+  }
+
+  private Object getValues(int column, TSDataType dataType) {
+    if (dataTypes.get(column) != dataType) {
+      throw new ClassCastException(String.format("Column %d is of %s, not %s", column,
+          dataTypes.get(column), dataType));
+    }
+    return values[column];
+  }
+}
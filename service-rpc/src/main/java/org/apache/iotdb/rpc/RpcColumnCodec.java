@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.rpc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
+import org.apache.iotdb.tsfile.compress.ICompressor;
+import org.apache.iotdb.tsfile.compress.IUnCompressor;
+import org.apache.iotdb.tsfile.encoding.decoder.Decoder;
+import org.apache.iotdb.tsfile.encoding.encoder.Encoder;
+import org.apache.iotdb.tsfile.encoding.encoder.TSEncodingBuilder;
+import org.apache.iotdb.tsfile.exception.write.UnSupportedDataTypeException;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.PublicBAOS;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * Encodes the columns of a {@link TSQueryDataSet} in the plain layout (8 bytes per timestamp,
+ * fixed-width values and length-prefixed texts) into an encoded layout, in which the time column
+ * is TS_2DIFF encoded, numeric value columns are TS_2DIFF or GORILLA encoded and every column is
+ * compressed afterwards, and decodes either layout into a {@link RpcColumnBatch}.
+ *
+ * <p>An encoded column is self-describing: data type, encoding and compression type, the number
+ * of values, the size of the encoded bytes before compression and then the compressed bytes. Only
+ * the non-null values of a column are encoded, the bitmaps are sent as they are. Decoding a column
+ * uses the batch methods of {@link Decoder}, so a whole column is turned into a primitive array at
+ * once instead of value by value.
+ */
+public class RpcColumnCodec {
+
+  private static final CompressionType COMPRESSION_TYPE = CompressionType.SNAPPY;
+
+  private RpcColumnCodec() {
+  }
+
+  /**
+   * @param dataSet   a data set in the plain layout, its buffers are not modified
+   * @param dataTypes data type of each value column of the data set
+   * @return the same rows with encoded and compressed time and value columns
+   */
+  public static TSQueryDataSet encode(TSQueryDataSet dataSet, List<TSDataType> dataTypes)
+      throws IOException {
+    TSQueryDataSet encodedDataSet = new TSQueryDataSet();
+    encodedDataSet.setTime(encodeColumn(dataSet.time.duplicate(), TSDataType.INT64));
+    List<ByteBuffer> valueList = new ArrayList<>(dataTypes.size());
+    for (int i = 0; i < dataTypes.size(); i++) {
+      valueList.add(encodeColumn(dataSet.valueList.get(i).duplicate(), dataTypes.get(i)));
+    }
+    encodedDataSet.setValueList(valueList);
+    encodedDataSet.setBitmapList(dataSet.bitmapList);
+    encodedDataSet.setEncoded(true);
+    return encodedDataSet;
+  }
+
+  /**
+   * @param dataSet   a data set returned by {@link #encode(TSQueryDataSet, List)}
+   * @param dataTypes data type of each value column of the data set
+   * @return the rows of the data set as columns
+   */
+  public static RpcColumnBatch decode(TSQueryDataSet dataSet, List<TSDataType> dataTypes)
+      throws IOException {
+    long[] times = (long[]) decodeColumn(dataSet.time.duplicate(), 0);
+    Object[] values = new Object[dataTypes.size()];
+    byte[][] bitmaps = new byte[dataTypes.size()][];
+    for (int i = 0; i < values.length; i++) {
+      bitmaps[i] = toBytes(dataSet.bitmapList.get(i));
+      ByteBuffer column = dataSet.valueList.get(i).duplicate();
+      // the column only has the non-null values, spread them to the rows they belong to
+      int count = getValueCount(column);
+      values[i] = decodeColumn(column, times.length);
+      spreadValues(values[i], count, times.length, bitmaps[i]);
+    }
+    return new RpcColumnBatch(times, dataTypes, values, bitmaps);
+  }
+
+  /**
+   * @param dataSet   a data set in the plain layout, its buffers are not modified
+   * @param dataTypes data type of each value column of the data set
+   * @return the rows of the data set as columns
+   */
+  public static RpcColumnBatch toColumnBatch(TSQueryDataSet dataSet, List<TSDataType> dataTypes) {
+    ByteBuffer timeBuffer = dataSet.time.duplicate();
+    long[] times = new long[timeBuffer.remaining() / Long.BYTES];
+    timeBuffer.asLongBuffer().get(times);
+    Object[] values = new Object[dataTypes.size()];
+    byte[][] bitmaps = new byte[dataTypes.size()][];
+    for (int i = 0; i < values.length; i++) {
+      bitmaps[i] = toBytes(dataSet.bitmapList.get(i));
+      ByteBuffer valueBuffer = dataSet.valueList.get(i).duplicate();
+      int count = getPlainValueCount(valueBuffer, dataTypes.get(i), times.length);
+      values[i] = readPlainColumn(valueBuffer, dataTypes.get(i), times.length, count);
+      spreadValues(values[i], count, times.length, bitmaps[i]);
+    }
+    return new RpcColumnBatch(times, dataTypes, values, bitmaps);
+  }
+
+  /**
+   * the encoding used for a column of the given data type.
+   */
+  public static TSEncoding getEncoding(TSDataType dataType) {
+    switch (dataType) {
+      case INT32:
+      case INT64:
+        return TSEncoding.TS_2DIFF;
+      case FLOAT:
+      case DOUBLE:
+        return TSEncoding.GORILLA;
+      case BOOLEAN:
+        return TSEncoding.RLE;
+      case TEXT:
+        return TSEncoding.PLAIN;
+      default:
+        throw new UnSupportedDataTypeException(
+            String.format("Data type %s is not supported.", dataType));
+    }
+  }
+
+  /**
+   * @param plainBuffer the values of one column in the plain layout
+   * @return the encoded and compressed column
+   */
+  public static ByteBuffer encodeColumn(ByteBuffer plainBuffer, TSDataType dataType)
+      throws IOException {
+    TSEncoding encoding = getEncoding(dataType);
+    Encoder encoder = TSEncodingBuilder.getEncodingBuilder(encoding).getEncoder(dataType);
+    PublicBAOS encoded = new PublicBAOS();
+    int count = 0;
+    while (plainBuffer.hasRemaining()) {
+      switch (dataType) {
+        case BOOLEAN:
+          encoder.encode(plainBuffer.get() != 0, encoded);
+          break;
+        case INT32:
+          encoder.encode(plainBuffer.getInt(), encoded);
+          break;
+        case INT64:
+          encoder.encode(plainBuffer.getLong(), encoded);
+          break;
+        case FLOAT:
+          encoder.encode(plainBuffer.getFloat(), encoded);
+          break;
+        case DOUBLE:
+          encoder.encode(plainBuffer.getDouble(), encoded);
+          break;
+        case TEXT:
+          int length = plainBuffer.getInt();
+          encoder.encode(new Binary(ReadWriteIOUtils.readBytes(plainBuffer, length)), encoded);
+          break;
+        default:
+          throw new UnSupportedDataTypeException(
+              String.format("Data type %s is not supported.", dataType));
+      }
+      count++;
+    }
+    encoder.flush(encoded);
+
+    ICompressor compressor = ICompressor.getCompressor(COMPRESSION_TYPE);
+    byte[] compressed = new byte[compressor.getMaxBytesForCompression(encoded.size())];
+    int compressedSize = compressor.compress(encoded.getBuf(), 0, encoded.size(), compressed);
+
+    ByteBuffer column = ByteBuffer.allocate(3 * Short.BYTES + 2 * Integer.BYTES + compressedSize);
+    ReadWriteIOUtils.write(dataType, column);
+    ReadWriteIOUtils.write(encoding, column);
+    ReadWriteIOUtils.write(COMPRESSION_TYPE, column);
+    column.putInt(count);
+    column.putInt(encoded.size());
+    column.put(compressed, 0, compressedSize);
+    column.flip();
+    return column;
+  }
+
+  /**
+   * @param column a column produced by {@link #encodeColumn(ByteBuffer, TSDataType)}
+   * @return the values of the column as a boolean[], int[], long[], float[], double[] or Binary[]
+   * according to the data type recorded in the column
+   */
+  public static Object decodeColumn(ByteBuffer column) throws IOException {
+    return decodeColumn(column, 0);
+  }
+
+  /**
+   * @param capacity the least length of the returned array, the values are put at its beginning
+   */
+  private static Object decodeColumn(ByteBuffer column, int capacity) throws IOException {
+    TSDataType dataType = ReadWriteIOUtils.readDataType(column);
+    TSEncoding encoding = ReadWriteIOUtils.readEncoding(column);
+    CompressionType compressionType = ReadWriteIOUtils.readCompressionType(column);
+    int count = column.getInt();
+    int encodedSize = column.getInt();
+
+    byte[] compressed = new byte[column.remaining()];
+    column.get(compressed);
+    byte[] encoded = new byte[encodedSize];
+    IUnCompressor.getUnCompressor(compressionType)
+        .uncompress(compressed, 0, compressed.length, encoded, 0);
+    ByteBuffer encodedBuffer = ByteBuffer.wrap(encoded);
+
+    Decoder decoder = Decoder.getDecoderByType(encoding, dataType);
+    int length = Math.max(count, capacity);
+    int read;
+    Object values;
+    switch (dataType) {
+      case BOOLEAN:
+        boolean[] booleans = new boolean[length];
+        read = decoder.readBooleans(encodedBuffer, booleans, 0, count);
+        values = booleans;
+        break;
+      case INT32:
+        int[] ints = new int[length];
+        read = decoder.readInts(encodedBuffer, ints, 0, count);
+        values = ints;
+        break;
+      case INT64:
+        long[] longs = new long[length];
+        read = decoder.readLongs(encodedBuffer, longs, 0, count);
+        values = longs;
+        break;
+      case FLOAT:
+        float[] floats = new float[length];
+        read = decoder.readFloats(encodedBuffer, floats, 0, count);
+        values = floats;
+        break;
+      case DOUBLE:
+        double[] doubles = new double[length];
+        read = decoder.readDoubles(encodedBuffer, doubles, 0, count);
+        values = doubles;
+        break;
+      case TEXT:
+        Binary[] binaries = new Binary[length];
+        for (read = 0; read < count && decoder.hasNext(encodedBuffer); read++) {
+          binaries[read] = decoder.readBinary(encodedBuffer);
+        }
+        values = binaries;
+        break;
+      default:
+        throw new UnSupportedDataTypeException(
+            String.format("Data type %s is not supported.", dataType));
+    }
+    if (read != count) {
+      throw new IOException(
+          String.format("Expect %d values in an encoded %s column, but only %d are read", count,
+              dataType, read));
+    }
+    return values;
+  }
+
+  private static int getValueCount(ByteBuffer column) {
+    // the count follows data type, encoding and compression type
+    return column.getInt(column.position() + 3 * Short.BYTES);
+  }
+
+  /**
+   * @return the number of values in a plain column, the position of the buffer is not moved
+   */
+  private static int getPlainValueCount(ByteBuffer valueBuffer, TSDataType dataType,
+      int rowCount) {
+    switch (dataType) {
+      case BOOLEAN:
+        return valueBuffer.remaining();
+      case INT32:
+      case FLOAT:
+        return valueBuffer.remaining() / Integer.BYTES;
+      case INT64:
+      case DOUBLE:
+        return valueBuffer.remaining() / Long.BYTES;
+      case TEXT:
+        int count = 0;
+        int position = valueBuffer.position();
+        while (position < valueBuffer.limit() && count < rowCount) {
+          position += Integer.BYTES + valueBuffer.getInt(position);
+          count++;
+        }
+        return count;
+      default:
+        throw new UnSupportedDataTypeException(
+            String.format("Data type %s is not supported.", dataType));
+    }
+  }
+
+  private static Object readPlainColumn(ByteBuffer valueBuffer, TSDataType dataType,
+      int rowCount, int count) {
+    int length = Math.max(count, rowCount);
+    switch (dataType) {
+      case BOOLEAN:
+        boolean[] booleans = new boolean[length];
+        for (int i = 0; i < count; i++) {
+          booleans[i] = valueBuffer.get() != 0;
+        }
+        return booleans;
+      case INT32:
+        int[] ints = new int[length];
+        valueBuffer.asIntBuffer().get(ints, 0, count);
+        return ints;
+      case INT64:
+        long[] longs = new long[length];
+        valueBuffer.asLongBuffer().get(longs, 0, count);
+        return longs;
+      case FLOAT:
+        float[] floats = new float[length];
+        valueBuffer.asFloatBuffer().get(floats, 0, count);
+        return floats;
+      case DOUBLE:
+        double[] doubles = new double[length];
+        valueBuffer.asDoubleBuffer().get(doubles, 0, count);
+        return doubles;
+      case TEXT:
+        Binary[] binaries = new Binary[length];
+        for (int i = 0; i < count; i++) {
+          binaries[i] = new Binary(ReadWriteIOUtils.readBytes(valueBuffer, valueBuffer.getInt()));
+        }
+        return binaries;
+      default:
+        throw new UnSupportedDataTypeException(
+            String.format("Data type %s is not supported.", dataType));
+    }
+  }
+
+  /**
+   * Move the first count values of the array to the rows whose bit is set in the bitmap, from the
+   * last one backwards so that no value is overwritten before it is moved. The slots of the null
+   * rows keep whatever they held.
+   */
+  private static void spreadValues(Object values, int count, int rowCount, byte[] bitmap) {
+    int valueEnd = count;
+    int rowEnd = rowCount;
+    while (valueEnd < rowEnd) {
+      while (rowEnd > 0 && isNull(bitmap, rowEnd - 1)) {
+        rowEnd--;
+      }
+      int rowStart = rowEnd;
+      while (rowStart > 0 && !isNull(bitmap, rowStart - 1)) {
+        rowStart--;
+      }
+      int length = Math.min(rowEnd - rowStart, valueEnd);
+      System.arraycopy(values, valueEnd - length, values, rowEnd - length, length);
+      valueEnd -= length;
+      rowEnd = rowStart;
+    }
+  }
+
+  private static boolean isNull(byte[] bitmap, int row) {
+    return (bitmap[row / 8] & (IoTDBRpcDataSet.FLAG >>> (row % 8))) == 0;
+  }
+
+  private static byte[] toBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+}
@@ -20,6 +20,10 @@ package org.apache.iotdb.rpc;
 
 import java.lang.reflect.Proxy;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.apache.iotdb.service.rpc.thrift.TSExecuteStatementResp;
 import org.apache.iotdb.service.rpc.thrift.TSFetchResultsResp;
 import org.apache.iotdb.service.rpc.thrift.TSIService;
@@ -38,6 +42,22 @@ public class RpcUtils {
         new Class[]{TSIService.Iface.class}, new SynchronizedHandler(client));
   }
 
+  /**
+   * Create the executor of a session or connection, on which its data sets fetch results in the
+   * background. One daemon thread is enough as the calls of the client are serialized anyway, and
+   * it exits when idle, so data sets that are never closed do not pin it.
+   */
+  public static ExecutorService newPrefetchExecutor(String name) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, name);
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   /**
    * verify success.
    *
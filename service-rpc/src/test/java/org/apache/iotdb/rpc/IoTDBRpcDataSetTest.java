@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.iotdb.service.rpc.thrift.TSFetchResultsReq;
+import org.apache.iotdb.service.rpc.thrift.TSFetchResultsResp;
+import org.apache.iotdb.service.rpc.thrift.TSIService;
+import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.junit.Test;
+
+public class IoTDBRpcDataSetTest {
+
+  private static final int BATCH_SIZE = 10;
+  private static final ExecutorService PREFETCH_EXECUTOR = RpcUtils
+      .newPrefetchExecutor("IoTDBRpcDataSetTest-Prefetch");
+  private static final List<String> COLUMN_NAMES = Arrays.asList("root.sg.d1.s0", "root.sg.d1.s1");
+  private static final List<TSDataType> DATA_TYPES = Arrays
+      .asList(TSDataType.INT64, TSDataType.TEXT);
+
+  /**
+   * A fake server returning the given batches one by one.
+   */
+  private static class FakeService {
+
+    private final List<TSQueryDataSet> batches;
+    private int fetchedBatchNum = 0;
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private volatile boolean closed = false;
+    // if set, fetches wait for it after telling fetchStarted
+    private CountDownLatch fetchAllowed;
+    private final CountDownLatch fetchStarted = new CountDownLatch(1);
+
+    private FakeService(List<TSQueryDataSet> batches) {
+      this.batches = batches;
+    }
+
+    private TSFetchResultsResp fetchResults(TSFetchResultsReq req) throws InterruptedException {
+      fetchCount.incrementAndGet();
+      fetchStarted.countDown();
+      if (fetchAllowed != null) {
+        fetchAllowed.await();
+      }
+      return nextBatch();
+    }
+
+    synchronized TSFetchResultsResp nextBatch() {
+      TSFetchResultsResp resp = new TSFetchResultsResp(RpcUtils.SUCCESS_STATUS,
+          fetchedBatchNum < batches.size(), true);
+      if (resp.hasResultSet) {
+        resp.setQueryDataSet(batches.get(fetchedBatchNum++));
+      }
+      return resp;
+    }
+
+    private TSIService.Iface newClient() {
+      return (TSIService.Iface) Proxy.newProxyInstance(TSIService.Iface.class.getClassLoader(),
+          new Class[]{TSIService.Iface.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "fetchResults":
+                return fetchResults((TSFetchResultsReq) args[0]);
+              case "closeOperation":
+                closed = true;
+                return RpcUtils.SUCCESS_STATUS;
+              default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+          });
+    }
+  }
+
+  /**
+   * @return a batch of rows from start, s0 is null in the rows of odd timestamps
+   */
+  static TSQueryDataSet createBatch(long start, boolean encoded) throws IOException {
+    ByteBuffer timeBuffer = ByteBuffer.allocate(BATCH_SIZE * Long.BYTES);
+    ByteBuffer longBuffer = ByteBuffer.allocate(BATCH_SIZE * Long.BYTES);
+    List<byte[]> texts = new ArrayList<>();
+    byte[] longBitmap = new byte[(BATCH_SIZE + 7) / 8];
+    byte[] textBitmap = new byte[(BATCH_SIZE + 7) / 8];
+    int textSize = 0;
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      long time = start + i;
+      timeBuffer.putLong(time);
+      if (time % 2 == 0) {
+        longBuffer.putLong(time * 10);
+        longBitmap[i / 8] |= IoTDBRpcDataSet.FLAG >>> (i % 8);
+      }
+      byte[] text = ("v" + time).getBytes();
+      texts.add(text);
+      textSize += Integer.BYTES + text.length;
+      textBitmap[i / 8] |= IoTDBRpcDataSet.FLAG >>> (i % 8);
+    }
+    ByteBuffer textBuffer = ByteBuffer.allocate(textSize);
+    for (byte[] text : texts) {
+      textBuffer.putInt(text.length);
+      textBuffer.put(text);
+    }
+    timeBuffer.flip();
+    longBuffer.flip();
+    textBuffer.flip();
+
+    TSQueryDataSet dataSet = new TSQueryDataSet();
+    dataSet.setTime(timeBuffer);
+    dataSet.setValueList(new ArrayList<>(Arrays.asList(longBuffer, textBuffer)));
+    dataSet.setBitmapList(new ArrayList<>(Arrays.asList(ByteBuffer.wrap(longBitmap),
+        ByteBuffer.wrap(textBitmap))));
+    return encoded ? RpcColumnCodec.encode(dataSet, DATA_TYPES) : dataSet;
+  }
+
+  private static FakeService createService(int batchNum, boolean encoded) throws IOException {
+    List<TSQueryDataSet> batches = new ArrayList<>();
+    for (int i = 1; i < batchNum; i++) {
+      batches.add(createBatch((long) i * BATCH_SIZE, encoded));
+    }
+    return new FakeService(batches);
+  }
+
+  /**
+   * @return a data set of which the first batch is returned with the query
+   */
+  private static IoTDBRpcDataSet createDataSet(FakeService service, boolean encoded)
+      throws IOException {
+    List<String> typeNames = new ArrayList<>();
+    for (TSDataType dataType : DATA_TYPES) {
+      typeNames.add(dataType.toString());
+    }
+    IoTDBRpcDataSet dataSet = new IoTDBRpcDataSet("select * from root", COLUMN_NAMES, typeNames,
+        null, false, 1, service.newClient(), 1, createBatch(0, encoded), BATCH_SIZE);
+    dataSet.prefetchExecutor = PREFETCH_EXECUTOR;
+    return dataSet;
+  }
+
+  private static void checkRow(IoTDBRpcDataSet dataSet, long time)
+      throws StatementExecutionException {
+    assertEquals(time, dataSet.getLong(IoTDBRpcDataSet.TIMESTAMP_STR));
+    if (time % 2 == 0) {
+      assertFalse(dataSet.isNull(COLUMN_NAMES.get(0)));
+      assertEquals(time * 10, dataSet.getLong(COLUMN_NAMES.get(0)));
+    } else {
+      assertTrue(dataSet.isNull(COLUMN_NAMES.get(0)));
+    }
+    assertEquals("v" + time, dataSet.getString(COLUMN_NAMES.get(1)));
+  }
+
+  private static void checkBatch(RpcColumnBatch batch, long start) {
+    assertEquals(BATCH_SIZE, batch.getRowCount());
+    long[] longs = batch.getLongs(0);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      long time = start + i;
+      assertEquals(time, batch.getTimes()[i]);
+      assertEquals(time % 2 != 0, batch.isNull(0, i));
+      if (time % 2 == 0) {
+        assertEquals(time * 10, longs[i]);
+      }
+      assertEquals("v" + time, batch.getBinaries(1)[i].getStringValue());
+    }
+  }
+
+  @Test
+  public void testRowsAndColumns() throws Exception {
+    for (boolean encoded : new boolean[]{false, true}) {
+      FakeService service = createService(4, encoded);
+      IoTDBRpcDataSet dataSet = createDataSet(service, encoded);
+      assertEquals(0, dataSet.getBatchColumnIndex(COLUMN_NAMES.get(0)));
+      assertEquals(1, dataSet.getBatchColumnIndex(COLUMN_NAMES.get(1)));
+
+      checkBatch(dataSet.nextColumnBatch(), 0);
+      for (long time = BATCH_SIZE; time < 2 * BATCH_SIZE; time++) {
+        assertTrue(dataSet.next());
+        checkRow(dataSet, time);
+      }
+      checkBatch(dataSet.nextColumnBatch(), 2 * BATCH_SIZE);
+      assertTrue(dataSet.next());
+      checkRow(dataSet, 3 * BATCH_SIZE);
+      try {
+        dataSet.nextColumnBatch();
+        fail();
+      } catch (StatementExecutionException e) {
+        // a batch cannot be read both ways
+      }
+      for (long time = 3 * BATCH_SIZE + 1; time < 4 * BATCH_SIZE; time++) {
+        assertTrue(dataSet.next());
+        checkRow(dataSet, time);
+      }
+      assertFalse(dataSet.next());
+      assertNull(dataSet.nextColumnBatch());
+      assertEquals(encoded, dataSet.enableEncodedResult);
+      dataSet.close();
+      assertTrue(service.closed);
+    }
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    for (boolean encoded : new boolean[]{false, true}) {
+      FakeService service = createService(10, encoded);
+      IoTDBRpcDataSet dataSet = createDataSet(service, encoded);
+      dataSet.prefetchBatchNum = 3;
+      for (long time = 0; time < 10 * BATCH_SIZE; time++) {
+        assertTrue(dataSet.next());
+        checkRow(dataSet, time);
+      }
+      assertFalse(dataSet.next());
+      assertFalse(dataSet.next());
+      // 9 batches and the answer that there are no more, nothing is fetched after it
+      assertEquals(10, service.fetchCount.get());
+      dataSet.close();
+      assertTrue(service.closed);
+    }
+  }
+
+  @Test
+  public void testPrefetchSharedExecutor() throws Exception {
+    FakeService service1 = createService(10, false);
+    FakeService service2 = createService(10, true);
+    IoTDBRpcDataSet dataSet1 = createDataSet(service1, false);
+    IoTDBRpcDataSet dataSet2 = createDataSet(service2, true);
+    dataSet1.prefetchBatchNum = 3;
+    dataSet2.prefetchBatchNum = 2;
+    // the fetches of both data sets are queued on the same thread, each in its own order
+    for (long time = 0; time < 10 * BATCH_SIZE; time++) {
+      assertTrue(dataSet1.next());
+      checkRow(dataSet1, time);
+      assertTrue(dataSet2.next());
+      checkRow(dataSet2, time);
+    }
+    assertFalse(dataSet1.next());
+    assertFalse(dataSet2.next());
+    dataSet1.close();
+    dataSet2.close();
+  }
+
+  @Test
+  public void testCloseWhilePrefetching() throws Exception {
+    FakeService service = createService(10, false);
+    service.fetchAllowed = new CountDownLatch(1);
+    IoTDBRpcDataSet dataSet = createDataSet(service, false);
+    dataSet.prefetchBatchNum = 3;
+    assertTrue(dataSet.next());
+    checkRow(dataSet, 0);
+    assertTrue(service.fetchStarted.await(10, TimeUnit.SECONDS));
+
+    // closing does not wait for the fetch in flight, and the queued ones are never sent
+    dataSet.close();
+    assertTrue(service.closed);
+    service.fetchAllowed.countDown();
+    Thread.sleep(100);
+    assertEquals(1, service.fetchCount.get());
+    assertTrue(dataSet.isClosed);
+  }
+
+  @Test
+  public void testPrefetchError() throws Exception {
+    List<TSQueryDataSet> batches = new ArrayList<>();
+    batches.add(createBatch(BATCH_SIZE, false));
+    FakeService service = new FakeService(batches) {
+      @Override
+      synchronized TSFetchResultsResp nextBatch() {
+        TSFetchResultsResp resp = super.nextBatch();
+        if (!resp.hasResultSet) {
+          resp.setStatus(RpcUtils.getStatus(TSStatusCode.INTERNAL_SERVER_ERROR));
+        }
+        return resp;
+      }
+    };
+    IoTDBRpcDataSet dataSet = createDataSet(service, false);
+    dataSet.prefetchBatchNum = 2;
+    for (long time = 0; time < 2 * BATCH_SIZE; time++) {
+      assertTrue(dataSet.next());
+      checkRow(dataSet, time);
+    }
+    try {
+      dataSet.next();
+      fail();
+    } catch (StatementExecutionException e) {
+      // the error of the server is reported in order
+    }
+    // nothing is fetched after the error
+    assertEquals(2, service.fetchCount.get());
+    dataSet.close();
+  }
+
+  @Test
+  public void testDecodeOnFirstRead() throws Exception {
+    TSQueryDataSet corrupted = createBatch(0, true);
+    ByteBuffer timeColumn = corrupted.time;
+    // keep the header of the time column but garble its compressed data
+    for (int i = 3 * Short.BYTES + 2 * Integer.BYTES; i < timeColumn.limit(); i++) {
+      timeColumn.put(i, (byte) 0xFF);
+    }
+    List<String> typeNames = new ArrayList<>();
+    for (TSDataType dataType : DATA_TYPES) {
+      typeNames.add(dataType.toString());
+    }
+    // the columns are decoded when the first row is read, not by the constructor
+    IoTDBRpcDataSet dataSet = new IoTDBRpcDataSet("select * from root", COLUMN_NAMES, typeNames,
+        null, false, 1, createService(1, true).newClient(), 1, corrupted, BATCH_SIZE);
+    assertTrue(dataSet.hasCachedResults());
+    try {
+      dataSet.next();
+      fail();
+    } catch (StatementExecutionException e) {
+      assertEquals("Cannot decode the result columns", e.getMessage());
+    }
+  }
+}
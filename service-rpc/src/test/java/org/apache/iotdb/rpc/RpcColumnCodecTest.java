@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.rpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.junit.Test;
+
+public class RpcColumnCodecTest {
+
+  private static final int ROW_NUM = 3000;
+
+  @Test
+  public void testNumericColumns() throws IOException {
+    long[] longs = new long[ROW_NUM];
+    int[] ints = new int[ROW_NUM];
+    float[] floats = new float[ROW_NUM];
+    double[] doubles = new double[ROW_NUM];
+    boolean[] booleans = new boolean[ROW_NUM];
+    for (int i = 0; i < ROW_NUM; i++) {
+      longs[i] = 1000L * i + i % 7;
+      ints[i] = i % 100 - 50;
+      floats[i] = i * 0.5f;
+      doubles[i] = Math.sin(i);
+      booleans[i] = i % 3 == 0;
+    }
+
+    ByteBuffer longBuffer = ByteBuffer.allocate(ROW_NUM * Long.BYTES);
+    longBuffer.asLongBuffer().put(longs);
+    assertArrayEquals(longs,
+        (long[]) RpcColumnCodec.decodeColumn(encode(longBuffer, TSDataType.INT64)));
+
+    ByteBuffer intBuffer = ByteBuffer.allocate(ROW_NUM * Integer.BYTES);
+    intBuffer.asIntBuffer().put(ints);
+    assertArrayEquals(ints,
+        (int[]) RpcColumnCodec.decodeColumn(encode(intBuffer, TSDataType.INT32)));
+
+    ByteBuffer floatBuffer = ByteBuffer.allocate(ROW_NUM * Float.BYTES);
+    floatBuffer.asFloatBuffer().put(floats);
+    assertArrayEquals(floats,
+        (float[]) RpcColumnCodec.decodeColumn(encode(floatBuffer, TSDataType.FLOAT)), 0);
+
+    ByteBuffer doubleBuffer = ByteBuffer.allocate(ROW_NUM * Double.BYTES);
+    doubleBuffer.asDoubleBuffer().put(doubles);
+    assertArrayEquals(doubles,
+        (double[]) RpcColumnCodec.decodeColumn(encode(doubleBuffer, TSDataType.DOUBLE)), 0);
+
+    ByteBuffer booleanBuffer = ByteBuffer.allocate(ROW_NUM);
+    for (boolean value : booleans) {
+      booleanBuffer.put(value ? (byte) 1 : (byte) 0);
+    }
+    booleanBuffer.flip();
+    assertTrue(Arrays.equals(booleans,
+        (boolean[]) RpcColumnCodec.decodeColumn(encode(booleanBuffer, TSDataType.BOOLEAN))));
+  }
+
+  @Test
+  public void testTextColumn() throws IOException {
+    String[] texts = {"", "a", "iotdb", "root.sg.d1.s1"};
+    int size = 0;
+    for (String text : texts) {
+      size += Integer.BYTES + text.length();
+    }
+    ByteBuffer textBuffer = ByteBuffer.allocate(size);
+    for (String text : texts) {
+      textBuffer.putInt(text.length());
+      textBuffer.put(text.getBytes());
+    }
+    textBuffer.flip();
+    Binary[] binaries = (Binary[]) RpcColumnCodec.decodeColumn(encode(textBuffer,
+        TSDataType.TEXT));
+    assertEquals(texts.length, binaries.length);
+    for (int i = 0; i < texts.length; i++) {
+      assertEquals(texts[i], binaries[i].getStringValue());
+    }
+  }
+
+  @Test
+  public void testDataSet() throws IOException {
+    int rowNum = 20;
+    ByteBuffer timeBuffer = ByteBuffer.allocate(rowNum * Long.BYTES);
+    // the second column only has a value in even rows
+    ByteBuffer valueBuffer = ByteBuffer.allocate(rowNum / 2 * Integer.BYTES);
+    for (int i = 0; i < rowNum; i++) {
+      timeBuffer.putLong(100L + i);
+      if (i % 2 == 0) {
+        valueBuffer.putInt(i * 3);
+      }
+    }
+    timeBuffer.flip();
+    valueBuffer.flip();
+    List<ByteBuffer> bitmapList = new ArrayList<>();
+    bitmapList.add(ByteBuffer.wrap(new byte[]{(byte) 0xAA, (byte) 0xAA, (byte) 0xA0}));
+
+    TSQueryDataSet dataSet = new TSQueryDataSet();
+    dataSet.setTime(timeBuffer);
+    dataSet.setValueList(new ArrayList<>(Arrays.asList(valueBuffer)));
+    dataSet.setBitmapList(bitmapList);
+
+    TSQueryDataSet encoded = RpcColumnCodec
+        .encode(dataSet, Arrays.asList(TSDataType.INT32));
+    assertTrue(encoded.isEncoded());
+    // encoding must not consume the plain buffers
+    assertEquals(rowNum * Long.BYTES, timeBuffer.remaining());
+
+    RpcColumnBatch decoded = RpcColumnCodec.decode(encoded, Arrays.asList(TSDataType.INT32));
+    RpcColumnBatch plain = RpcColumnCodec.toColumnBatch(dataSet,
+        Arrays.asList(TSDataType.INT32));
+    assertEquals(rowNum * Long.BYTES, timeBuffer.remaining());
+    assertEquals(rowNum / 2 * Integer.BYTES, valueBuffer.remaining());
+    for (RpcColumnBatch batch : Arrays.asList(decoded, plain)) {
+      assertEquals(rowNum, batch.getRowCount());
+      assertEquals(1, batch.getColumnCount());
+      int[] ints = batch.getInts(0);
+      for (int i = 0; i < rowNum; i++) {
+        assertEquals(100L + i, batch.getTimes()[i]);
+        assertEquals(i % 2 != 0, batch.isNull(0, i));
+        if (i % 2 == 0) {
+          assertEquals(i * 3, ints[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTextDataSetWithNulls() throws IOException {
+    // rows 0, 3 and 4 have a value
+    String[] texts = {"a", "", "iotdb"};
+    int size = 0;
+    for (String text : texts) {
+      size += Integer.BYTES + text.length();
+    }
+    ByteBuffer valueBuffer = ByteBuffer.allocate(size);
+    for (String text : texts) {
+      valueBuffer.putInt(text.length());
+      valueBuffer.put(text.getBytes());
+    }
+    valueBuffer.flip();
+    ByteBuffer timeBuffer = ByteBuffer.allocate(5 * Long.BYTES);
+    for (int i = 0; i < 5; i++) {
+      timeBuffer.putLong(i);
+    }
+    timeBuffer.flip();
+
+    TSQueryDataSet dataSet = new TSQueryDataSet();
+    dataSet.setTime(timeBuffer);
+    dataSet.setValueList(new ArrayList<>(Arrays.asList(valueBuffer)));
+    dataSet.setBitmapList(new ArrayList<>(Arrays.asList(ByteBuffer.wrap(new byte[]{
+        (byte) 0x98}))));
+    List<TSDataType> dataTypes = Arrays.asList(TSDataType.TEXT);
+
+    for (RpcColumnBatch batch : Arrays.asList(RpcColumnCodec.toColumnBatch(dataSet, dataTypes),
+        RpcColumnCodec.decode(RpcColumnCodec.encode(dataSet, dataTypes), dataTypes))) {
+      Binary[] binaries = batch.getBinaries(0);
+      assertEquals(5, binaries.length);
+      assertEquals("a", binaries[0].getStringValue());
+      assertTrue(batch.isNull(0, 1));
+      assertTrue(batch.isNull(0, 2));
+      assertEquals("", binaries[3].getStringValue());
+      assertEquals("iotdb", binaries[4].getStringValue());
+    }
+  }
+
+  private ByteBuffer encode(ByteBuffer plainBuffer, TSDataType dataType) throws IOException {
+    ByteBuffer encoded = RpcColumnCodec.encodeColumn(plainBuffer, dataType);
+    assertFalse(plainBuffer.hasRemaining());
+    return encoded;
+  }
+}
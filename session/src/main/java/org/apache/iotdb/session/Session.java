@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import org.apache.iotdb.rpc.BatchExecutionException;
 import org.apache.iotdb.rpc.IoTDBConnectionException;
 import org.apache.iotdb.rpc.RpcUtils;
@@ -83,6 +84,11 @@ public class Session {
   private ZoneId zoneId;
   private long statementId;
   private int fetchSize;
+  private boolean enableEncodedResult = false;
+  private int prefetchBatchNum = 0;
+  // shared by the data sets of this session to fetch results in the background, its thread exits
+  // when idle, so it is not shut down and the data sets outliving the session are not rejected
+  private ExecutorService prefetchExecutor;
 
   public Session(String host, int rpcPort) {
     this(host, rpcPort, Config.DEFAULT_USER, Config.DEFAULT_PASSWORD);
@@ -195,6 +201,13 @@ public class Session {
     }
   }
 
+  private synchronized ExecutorService getPrefetchExecutor() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = RpcUtils.newPrefetchExecutor("IoTDB-Session-Prefetch-" + sessionId);
+    }
+    return prefetchExecutor;
+  }
+
   /**
    * insert data in one row, if you want to improve your performance, please use insertRecords
    * method or insertTablet method
@@ -887,6 +900,23 @@ public class Session {
     this.zoneId = ZoneId.of(zoneId);
   }
 
+  /**
+   * Ask the server to send the time and value columns of raw data query results encoded with
+   * TS_2DIFF/GORILLA and compressed, which trades some CPU on both sides for less network traffic.
+   * Servers that do not know the option answer in the plain format.
+   */
+  public void setEnableEncodedResult(boolean enableEncodedResult) {
+    this.enableEncodedResult = enableEncodedResult;
+  }
+
+  /**
+   * Let the data sets of later queries fetch up to prefetchBatchNum batches in the background
+   * while the current batch is iterated, see {@link SessionDataSet#setPrefetchBatchNum(int)}.
+   */
+  public void setPrefetchBatchNum(int prefetchBatchNum) {
+    this.prefetchBatchNum = prefetchBatchNum;
+  }
+
 
   /**
    * execure query sql
@@ -900,6 +930,7 @@ public class Session {
     TSExecuteStatementReq execReq = new TSExecuteStatementReq(sessionId, sql, statementId);
 
     execReq.setFetchSize(fetchSize);
+    execReq.setEnableEncodedResult(enableEncodedResult);
     TSExecuteStatementResp execResp;
     try {
       execResp = client.executeQueryStatement(execReq);
@@ -908,10 +939,13 @@ public class Session {
     }
 
     RpcUtils.verifySuccess(execResp.getStatus());
-    return new SessionDataSet(sql, execResp.getColumns(), execResp.getDataTypeList(),
-        execResp.columnNameIndexMap,
+    SessionDataSet dataSet = new SessionDataSet(sql, execResp.getColumns(),
+        execResp.getDataTypeList(), execResp.columnNameIndexMap,
         execResp.getQueryId(), client, sessionId, execResp.queryDataSet,
         execResp.isIgnoreTimeStamp());
+    dataSet.setPrefetchBatchNum(prefetchBatchNum);
+    dataSet.setPrefetchExecutor(getPrefetchExecutor());
+    return dataSet;
   }
 
   /**
@@ -945,6 +979,7 @@ public class Session {
       throws StatementExecutionException, IoTDBConnectionException {
     TSRawDataQueryReq execReq = new TSRawDataQueryReq(sessionId, paths, startTime, endTime);
     execReq.setFetchSize(fetchSize);
+    execReq.setEnableEncodedResult(enableEncodedResult);
 
     TSExecuteStatementResp execResp;
     try {
@@ -954,10 +989,13 @@ public class Session {
     }
 
     RpcUtils.verifySuccess(execResp.getStatus());
-    return new SessionDataSet("", execResp.getColumns(), execResp.getDataTypeList(),
-        execResp.columnNameIndexMap,
+    SessionDataSet dataSet = new SessionDataSet("", execResp.getColumns(),
+        execResp.getDataTypeList(), execResp.columnNameIndexMap,
         execResp.getQueryId(), client, sessionId, execResp.queryDataSet,
         execResp.isIgnoreTimeStamp());
+    dataSet.setPrefetchBatchNum(prefetchBatchNum);
+    dataSet.setPrefetchExecutor(getPrefetchExecutor());
+    return dataSet;
   }
 
   /**
@@ -24,8 +24,10 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import org.apache.iotdb.rpc.IoTDBRpcDataSet;
 import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.RpcColumnBatch;
 import org.apache.iotdb.rpc.StatementExecutionException;
 import org.apache.iotdb.service.rpc.thrift.TSIService;
 import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
@@ -57,6 +59,23 @@ public class SessionDataSet {
     ioTDBRpcDataSet.fetchSize = fetchSize;
   }
 
+  public int getPrefetchBatchNum() {
+    return ioTDBRpcDataSet.prefetchBatchNum;
+  }
+
+  /**
+   * @param prefetchBatchNum how many batches to fetch in the background while the current one is
+   *                         iterated, 0 means a batch is only fetched when the current one is used
+   *                         up
+   */
+  public void setPrefetchBatchNum(int prefetchBatchNum) {
+    ioTDBRpcDataSet.prefetchBatchNum = prefetchBatchNum;
+  }
+
+  void setPrefetchExecutor(Executor prefetchExecutor) {
+    ioTDBRpcDataSet.prefetchExecutor = prefetchExecutor;
+  }
+
   public List<String> getColumnNames() {
     return new ArrayList<>(ioTDBRpcDataSet.columnNameList);
   }
@@ -139,6 +158,25 @@ public class SessionDataSet {
     return constructRowRecordFromValueArray();
   }
 
+  /**
+   * Read the next batch of rows as columns of primitive arrays, which saves building a RowRecord
+   * per row. The rows returned here are not returned by {@link #next()}.
+   *
+   * @return null if there are no more rows
+   */
+  public RpcColumnBatch nextColumnBatch()
+      throws StatementExecutionException, IoTDBConnectionException {
+    return ioTDBRpcDataSet.nextColumnBatch();
+  }
+
+  /**
+   * @return the index of the column in the batches returned by {@link #nextColumnBatch()}, -1 for
+   * the time column
+   */
+  public int getBatchColumnIndex(String columnName) {
+    return ioTDBRpcDataSet.getBatchColumnIndex(columnName);
+  }
+
   public void closeOperationHandle() throws StatementExecutionException, IoTDBConnectionException {
     try {
       ioTDBRpcDataSet.close();
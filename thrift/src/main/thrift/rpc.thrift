@@ -32,6 +32,8 @@ struct TSQueryDataSet{
     2: required list<binary> valueList
     // Bitmap for each column to indicate whether it is a null value
     3: required list<binary> bitmapList
+    // whether time and value columns are encoded and compressed, see RpcColumnCodec
+    4: optional bool encoded
 }
 
 struct TSQueryNonAlignDataSet{
@@ -107,6 +109,9 @@ struct TSExecuteStatementReq {
   3: required i64 statementId
 
   4: optional i32 fetchSize
+
+  // ask the server to send encoded and compressed result columns
+  5: optional bool enableEncodedResult
 }
 
 struct TSExecuteBatchStatementReq{
@@ -145,6 +150,7 @@ struct TSFetchResultsReq{
 	3: required i32 fetchSize
 	4: required i64 queryId
 	5: required bool isAlign
+	6: optional bool enableEncodedResult
 }
 
 struct TSFetchResultsResp{
@@ -256,6 +262,7 @@ struct TSRawDataQueryReq {
     3: optional i32 fetchSize
     4: required i64 startTime
     5: required i64 endTime
+    6: optional bool enableEncodedResult
 }
 
 struct TSCreateMultiTimeseriesReq {
@@ -141,6 +141,57 @@ public abstract class Decoder {
     throw new TsFileDecodingException("Method readBigDecimal is not supproted by Decoder");
   }
 
+  /**
+   * decode at most length values into values[offset, offset + length). Decoders that hold a
+   * decoded pack or run override these to copy it in bulk instead of one value at a time.
+   *
+   * @return the number of values decoded, less than length only if the buffer is exhausted
+   */
+  public int readBooleans(ByteBuffer buffer, boolean[] values, int offset, int length)
+      throws IOException {
+    int count = 0;
+    while (count < length && hasNext(buffer)) {
+      values[offset + count++] = readBoolean(buffer);
+    }
+    return count;
+  }
+
+  public int readInts(ByteBuffer buffer, int[] values, int offset, int length)
+      throws IOException {
+    int count = 0;
+    while (count < length && hasNext(buffer)) {
+      values[offset + count++] = readInt(buffer);
+    }
+    return count;
+  }
+
+  public int readLongs(ByteBuffer buffer, long[] values, int offset, int length)
+      throws IOException {
+    int count = 0;
+    while (count < length && hasNext(buffer)) {
+      values[offset + count++] = readLong(buffer);
+    }
+    return count;
+  }
+
+  public int readFloats(ByteBuffer buffer, float[] values, int offset, int length)
+      throws IOException {
+    int count = 0;
+    while (count < length && hasNext(buffer)) {
+      values[offset + count++] = readFloat(buffer);
+    }
+    return count;
+  }
+
+  public int readDoubles(ByteBuffer buffer, double[] values, int offset, int length)
+      throws IOException {
+    int count = 0;
+    while (count < length && hasNext(buffer)) {
+      values[offset + count++] = readDouble(buffer);
+    }
+    return count;
+  }
+
   public abstract boolean hasNext(ByteBuffer buffer) throws IOException;
 
   public abstract void reset();
@@ -116,6 +116,24 @@ public abstract class DeltaBinaryDecoder extends Decoder {
       return readT(buffer);
     }
 
+    @Override
+    public int readInts(ByteBuffer buffer, int[] values, int offset, int length) {
+      int count = 0;
+      while (count < length) {
+        if (nextReadIndex < readIntTotalCount) {
+          int n = Math.min(length - count, readIntTotalCount - nextReadIndex);
+          System.arraycopy(data, nextReadIndex, values, offset + count, n);
+          nextReadIndex += n;
+          count += n;
+        } else if (buffer.hasRemaining()) {
+          values[offset + count++] = loadIntBatch(buffer);
+        } else {
+          break;
+        }
+      }
+      return count;
+    }
+
     /**
      * if remaining data has been run out, load next pack from InputStream.
      *
@@ -129,8 +147,10 @@ public abstract class DeltaBinaryDecoder extends Decoder {
       readHeader(buffer);
 
       encodingLength = ceil(packNum * packWidth);
-      deltaBuf = new byte[encodingLength];
-      buffer.get(deltaBuf);
+      if (deltaBuf == null || deltaBuf.length < encodingLength) {
+        deltaBuf = new byte[encodingLength];
+      }
+      buffer.get(deltaBuf, 0, encodingLength);
       allocateDataArray();
 
       previous = firstValue;
@@ -155,7 +175,9 @@ public abstract class DeltaBinaryDecoder extends Decoder {
 
     @Override
     protected void allocateDataArray() {
-      data = new int[packNum];
+      if (data == null || data.length < packNum) {
+        data = new int[packNum];
+      }
     }
 
     @Override
@@ -210,8 +232,10 @@ public abstract class DeltaBinaryDecoder extends Decoder {
       readHeader(buffer);
 
       encodingLength = ceil(packNum * packWidth);
-      deltaBuf = new byte[encodingLength];
-      buffer.get(deltaBuf);
+      if (deltaBuf == null || deltaBuf.length < encodingLength) {
+        deltaBuf = new byte[encodingLength];
+      }
+      buffer.get(deltaBuf, 0, encodingLength);
       allocateDataArray();
 
       previous = firstValue;
@@ -234,6 +258,24 @@ public abstract class DeltaBinaryDecoder extends Decoder {
       return readT(buffer);
     }
 
+    @Override
+    public int readLongs(ByteBuffer buffer, long[] values, int offset, int length) {
+      int count = 0;
+      while (count < length) {
+        if (nextReadIndex < readIntTotalCount) {
+          int n = Math.min(length - count, readIntTotalCount - nextReadIndex);
+          System.arraycopy(data, nextReadIndex, values, offset + count, n);
+          nextReadIndex += n;
+          count += n;
+        } else if (buffer.hasRemaining()) {
+          values[offset + count++] = loadIntBatch(buffer);
+        } else {
+          break;
+        }
+      }
+      return count;
+    }
+
     @Override
     protected void readHeader(ByteBuffer buffer) {
       minDeltaBase = ReadWriteIOUtils.readLong(buffer);
@@ -242,7 +284,9 @@ public abstract class DeltaBinaryDecoder extends Decoder {
 
     @Override
     protected void allocateDataArray() {
-      data = new long[packNum];
+      if (data == null || data.length < packNum) {
+        data = new long[packNum];
+      }
     }
 
     @Override
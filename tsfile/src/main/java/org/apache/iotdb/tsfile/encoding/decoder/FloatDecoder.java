@@ -54,6 +54,12 @@ public class FloatDecoder extends Decoder {
    */
   private boolean isMaxPointNumberRead;
 
+  /**
+   * reusable buffers of the underlying integer values in batch reads.
+   */
+  private int[] ints;
+  private long[] longs;
+
   public FloatDecoder(TSEncoding encodingType, TSDataType dataType) {
     super(encodingType);
     if (encodingType == TSEncoding.RLE) {
@@ -97,6 +103,40 @@ public class FloatDecoder extends Decoder {
     return value / maxPointValue;
   }
 
+  @Override
+  public int readFloats(ByteBuffer buffer, float[] values, int offset, int length)
+      throws IOException {
+    if (length == 0 || !hasNext(buffer)) {
+      return 0;
+    }
+    readMaxPointValue(buffer);
+    if (ints == null || ints.length < length) {
+      ints = new int[length];
+    }
+    int count = decoder.readInts(buffer, ints, 0, length);
+    for (int i = 0; i < count; i++) {
+      values[offset + i] = (float) (ints[i] / maxPointValue);
+    }
+    return count;
+  }
+
+  @Override
+  public int readDoubles(ByteBuffer buffer, double[] values, int offset, int length)
+      throws IOException {
+    if (length == 0 || !hasNext(buffer)) {
+      return 0;
+    }
+    readMaxPointValue(buffer);
+    if (longs == null || longs.length < length) {
+      longs = new long[length];
+    }
+    int count = decoder.readLongs(buffer, longs, 0, length);
+    for (int i = 0; i < count; i++) {
+      values[offset + i] = longs[i] / maxPointValue;
+    }
+    return count;
+  }
+
   private void readMaxPointValue(ByteBuffer buffer) {
     if (!isMaxPointNumberRead) {
       int maxPointNumber = ReadWriteForEncodingUtils.readUnsignedVarInt(buffer);
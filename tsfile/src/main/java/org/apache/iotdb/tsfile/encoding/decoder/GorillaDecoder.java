@@ -105,12 +105,7 @@ public abstract class GorillaDecoder extends Decoder {
    * @throws IOException cannot read from stream
    */
   protected int readIntFromStream(ByteBuffer buffer, int len) throws IOException {
-    int num = 0;
-    for (int i = 0; i < len; i++) {
-      int bit = readBit(buffer) ? 1 : 0;
-      num |= bit << (len - 1 - i);
-    }
-    return num;
+    return (int) readLongFromStream(buffer, len);
   }
 
   /**
@@ -123,9 +118,21 @@ public abstract class GorillaDecoder extends Decoder {
    */
   protected long readLongFromStream(ByteBuffer buffer, int len) throws IOException {
     long num = 0;
-    for (int i = 0; i < len; i++) {
-      long bit = (long) (readBit(buffer) ? 1 : 0);
-      num |= bit << (len - 1 - i);
+    while (len > 0) {
+      if (numberLeftInBuffer == 0 && !isEnd) {
+        fillBuffer(buffer);
+      }
+      if (numberLeftInBuffer <= 0) {
+        // nothing left to take a run of bits from, let readBit deal with it
+        num = (num << 1) | (readBit(buffer) ? 1 : 0);
+        len--;
+        continue;
+      }
+      // take as many bits as possible from the current byte at once
+      int bits = Math.min(numberLeftInBuffer, len);
+      numberLeftInBuffer -= bits;
+      num = (num << bits) | ((this.buffer >>> numberLeftInBuffer) & ((1 << bits) - 1));
+      len -= bits;
     }
     return num;
   }
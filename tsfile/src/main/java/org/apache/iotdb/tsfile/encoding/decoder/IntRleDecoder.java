@@ -21,6 +21,7 @@ package org.apache.iotdb.tsfile.encoding.decoder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +54,11 @@ public class IntRleDecoder extends RleDecoder {
    */
   private IntPacker packer;
 
+  /**
+   * reusable buffer of the int values behind booleans in batch reads.
+   */
+  private int[] booleanBuffer;
+
   public IntRleDecoder(EndianType endianType) {
     super(endianType);
     currentValue = 0;
@@ -104,6 +110,54 @@ public class IntRleDecoder extends RleDecoder {
     return result;
   }
 
+  /**
+   * copy whole rle runs and bit-packed groups at once instead of going through readInt.
+   */
+  @Override
+  public int readInts(ByteBuffer buffer, int[] values, int offset, int length)
+      throws IOException {
+    int count = 0;
+    while (count < length && hasNext(buffer)) {
+      if (!isLengthAndBitWidthReaded) {
+        readLengthAndBitWidth(buffer);
+      }
+      if (currentCount == 0) {
+        readNext();
+      }
+      int n = Math.min(length - count, currentCount);
+      switch (mode) {
+      case RLE:
+        Arrays.fill(values, offset + count, offset + count + n, currentValue);
+        break;
+      case BIT_PACKED:
+        System.arraycopy(currentBuffer, bitPackingNum - currentCount, values, offset + count, n);
+        break;
+      default:
+        throw new TsFileDecodingException(
+            String.format("tsfile-encoding IntRleDecoder: not a valid mode %s", mode));
+      }
+      currentCount -= n;
+      count += n;
+      if (!hasNextPackage()) {
+        isLengthAndBitWidthReaded = false;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public int readBooleans(ByteBuffer buffer, boolean[] values, int offset, int length)
+      throws IOException {
+    if (booleanBuffer == null || booleanBuffer.length < length) {
+      booleanBuffer = new int[length];
+    }
+    int count = readInts(buffer, booleanBuffer, 0, length);
+    for (int i = 0; i < count; i++) {
+      values[offset + i] = booleanBuffer[i] != 0;
+    }
+    return count;
+  }
+
   @Override
   protected void initPacker() {
     packer = new IntPacker(bitWidth);
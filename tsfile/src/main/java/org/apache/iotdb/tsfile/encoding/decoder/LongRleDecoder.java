@@ -21,6 +21,7 @@ package org.apache.iotdb.tsfile.encoding.decoder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -98,6 +99,41 @@ public class LongRleDecoder extends RleDecoder {
     return result;
   }
 
+  /**
+   * copy whole rle runs and bit-packed groups at once instead of going through readLong.
+   */
+  @Override
+  public int readLongs(ByteBuffer buffer, long[] values, int offset, int length)
+      throws IOException {
+    int count = 0;
+    while (count < length && hasNext(buffer)) {
+      if (!isLengthAndBitWidthReaded) {
+        readLengthAndBitWidth(buffer);
+      }
+      if (currentCount == 0) {
+        readNext();
+      }
+      int n = Math.min(length - count, currentCount);
+      switch (mode) {
+      case RLE:
+        Arrays.fill(values, offset + count, offset + count + n, currentValue);
+        break;
+      case BIT_PACKED:
+        System.arraycopy(currentBuffer, bitPackingNum - currentCount, values, offset + count, n);
+        break;
+      default:
+        throw new TsFileDecodingException(
+            String.format("tsfile-encoding LongRleDecoder: not a valid mode %s", mode));
+      }
+      currentCount -= n;
+      count += n;
+      if (!hasNextPackage()) {
+        isLengthAndBitWidthReaded = false;
+      }
+    }
+    return count;
+  }
+
   @Override
   protected void initPacker() {
     packer = new LongPacker(bitWidth);
@@ -79,6 +79,38 @@ public class PlainDecoder extends Decoder {
     return buffer.getDouble();
   }
 
+  @Override
+  public int readInts(ByteBuffer buffer, int[] values, int offset, int length) {
+    int count = Math.min(length, buffer.remaining() / Integer.BYTES);
+    buffer.asIntBuffer().get(values, offset, count);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return count;
+  }
+
+  @Override
+  public int readLongs(ByteBuffer buffer, long[] values, int offset, int length) {
+    int count = Math.min(length, buffer.remaining() / Long.BYTES);
+    buffer.asLongBuffer().get(values, offset, count);
+    buffer.position(buffer.position() + count * Long.BYTES);
+    return count;
+  }
+
+  @Override
+  public int readFloats(ByteBuffer buffer, float[] values, int offset, int length) {
+    int count = Math.min(length, buffer.remaining() / Float.BYTES);
+    buffer.asFloatBuffer().get(values, offset, count);
+    buffer.position(buffer.position() + count * Float.BYTES);
+    return count;
+  }
+
+  @Override
+  public int readDoubles(ByteBuffer buffer, double[] values, int offset, int length) {
+    int count = Math.min(length, buffer.remaining() / Double.BYTES);
+    buffer.asDoubleBuffer().get(values, offset, count);
+    buffer.position(buffer.position() + count * Double.BYTES);
+    return count;
+  }
+
   @Override
   public Binary readBinary(ByteBuffer buffer) {
     int length = readInt(buffer);
@@ -25,4 +25,11 @@ public interface FileInputFactory {
 
   TsFileInput getTsFileInput(String filePath);
 
+  /**
+   * get an input that maps the file into memory, which should only be used for sealed files. Falls
+   * back to the input of {@link #getTsFileInput(String)} if the file system or the file can not be
+   * mapped.
+   */
+  TsFileInput getMappedTsFileInput(String filePath);
+
 }
@@ -54,4 +54,9 @@ public class HDFSInputFactory implements FileInputFactory {
       return null;
     }
   }
+
+  public TsFileInput getMappedTsFileInput(String filePath) {
+    // files in HDFS can not be mapped into memory
+    return getTsFileInput(filePath);
+  }
 }
@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.iotdb.tsfile.read.reader.LocalTsFileInput;
+import org.apache.iotdb.tsfile.read.reader.MmapTsFileInput;
 import org.apache.iotdb.tsfile.read.reader.TsFileInput;
 
 public class LocalFSInputFactory implements FileInputFactory {
@@ -40,4 +41,13 @@ public class LocalFSInputFactory implements FileInputFactory {
       return null;
     }
   }
+
+  public TsFileInput getMappedTsFileInput(String filePath) {
+    try {
+      return new MmapTsFileInput(Paths.get(filePath));
+    } catch (IOException e) {
+      logger.warn("Failed to map TsFile: {}, read it without mapping, ", filePath, e);
+      return getTsFileInput(filePath);
+    }
+  }
 }
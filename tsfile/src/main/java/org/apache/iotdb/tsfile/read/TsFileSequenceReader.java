@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -152,6 +153,21 @@ public class TsFileSequenceReader implements AutoCloseable {
     }
   }
 
+  /**
+   * Create a file reader of the given file which reads through the given input, e.g. an input that
+   * maps the file into memory.
+   *
+   * @param file the data file
+   * @param input the input of the file
+   */
+  public TsFileSequenceReader(String file, TsFileInput input) throws IOException {
+    this(input, true);
+    if (resourceLogger.isDebugEnabled()) {
+      resourceLogger.debug("{} reader is opened. {}", file, getClass().getName());
+    }
+    this.file = file;
+  }
+
   /**
    * construct function for TsFileSequenceReader.
    *
@@ -329,6 +345,73 @@ public class TsFileSequenceReader implements AutoCloseable {
     MetadataIndexNode deviceMetadataIndexNode = tsFileMetaData.getMetadataIndex();
     Pair<MetadataIndexEntry, Long> metadataIndexPair = getMetadataAndEndOffset(
         deviceMetadataIndexNode, device, MetadataIndexNodeType.INTERNAL_DEVICE);
+    return readTimeseriesMetadataInDevice(metadataIndexPair, measurements);
+  }
+
+  /**
+   * read TimeseriesMetadata of the given measurements of several devices. Each device index node
+   * on the way to the devices is read once for all the devices under it, instead of once per
+   * device.
+   *
+   * @param deviceMeasurements device -> measurements to read
+   * @return device -> TimeseriesMetadata of its measurements in this file. Devices without any of
+   * the measurements in this file are absent.
+   */
+  public Map<String, List<TimeseriesMetadata>> readTimeseriesMetadata(
+      Map<String, Set<String>> deviceMeasurements) throws IOException {
+    readFileMetadata();
+    List<String> devices = new ArrayList<>(deviceMeasurements.keySet());
+    Collections.sort(devices);
+    Map<String, List<TimeseriesMetadata>> result = new HashMap<>();
+    readTimeseriesMetadataOfDevices(tsFileMetaData.getMetadataIndex(), devices,
+        deviceMeasurements, result);
+    return result;
+  }
+
+  /**
+   * @param devices sorted devices whose index is under metadataIndex
+   */
+  private void readTimeseriesMetadataOfDevices(MetadataIndexNode metadataIndex,
+      List<String> devices, Map<String, Set<String>> deviceMeasurements,
+      Map<String, List<TimeseriesMetadata>> result) throws IOException {
+    int i = 0;
+    while (i < devices.size()) {
+      Pair<MetadataIndexEntry, Long> childIndexEntry = metadataIndex
+          .getChildIndexEntry(devices.get(i));
+      // the devices are sorted, so the devices under the same child are adjacent
+      int j = i + 1;
+      while (j < devices.size()
+          && metadataIndex.getChildIndexEntry(devices.get(j)).left == childIndexEntry.left) {
+        j++;
+      }
+      if (metadataIndex.getNodeType().equals(MetadataIndexNodeType.INTERNAL_DEVICE)) {
+        ByteBuffer buffer = readData(childIndexEntry.left.getOffset(), childIndexEntry.right);
+        readTimeseriesMetadataOfDevices(MetadataIndexNode.deserializeFrom(buffer),
+            devices.subList(i, j), deviceMeasurements, result);
+      } else {
+        for (String device : devices.subList(i, j)) {
+          // the children here are the indexes of single devices, skip devices not in this file
+          if (!childIndexEntry.left.getName().equals(device)) {
+            continue;
+          }
+          List<TimeseriesMetadata> timeseriesMetadataList = readTimeseriesMetadataInDevice(
+              childIndexEntry, deviceMeasurements.get(device));
+          if (!timeseriesMetadataList.isEmpty()) {
+            result.put(device, timeseriesMetadataList);
+          }
+        }
+      }
+      i = j;
+    }
+  }
+
+  /**
+   * @param metadataIndexPair the index entry of a device and its end offset
+   */
+  private List<TimeseriesMetadata> readTimeseriesMetadataInDevice(
+      Pair<MetadataIndexEntry, Long> metadataIndexPair, Set<String> measurements)
+      throws IOException {
+    MetadataIndexNode deviceMetadataIndexNode = tsFileMetaData.getMetadataIndex();
     List<TimeseriesMetadata> resultTimeseriesMetadataList = new ArrayList<>();
     int maxDegreeOfIndexNode = config.getMaxDegreeOfIndexNode();
     if (measurements.size() > maxDegreeOfIndexNode / Math.log(maxDegreeOfIndexNode)) {
@@ -336,8 +419,10 @@ public class TsFileSequenceReader implements AutoCloseable {
           MetadataIndexNodeType.INTERNAL_MEASUREMENT, metadataIndexPair, measurements);
       return resultTimeseriesMetadataList;
     }
+    ByteBuffer deviceBuffer = readData(metadataIndexPair.left.getOffset(),
+        metadataIndexPair.right);
     for (String measurement : measurements) {
-      ByteBuffer buffer = readData(metadataIndexPair.left.getOffset(), metadataIndexPair.right);
+      ByteBuffer buffer = deviceBuffer.duplicate();
       Pair<MetadataIndexEntry, Long> measurementMetadataIndexPair = metadataIndexPair;
       List<TimeseriesMetadata> timeseriesMetadataList = new ArrayList<>();
       MetadataIndexNode metadataIndexNode = deviceMetadataIndexNode;
@@ -715,7 +800,13 @@ public class TsFileSequenceReader implements AutoCloseable {
     ByteBuffer uncompressedBuffer = ByteBuffer.allocate(header.getUncompressedSize());
     if (type == CompressionType.UNCOMPRESSED) {
       return buffer;
-    }// FIXME if the buffer is not array-implemented.
+    }
+    if (!buffer.hasArray()) {
+      // the bytes are shared with a mapped input
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      buffer = ByteBuffer.wrap(bytes);
+    }
     unCompressor.uncompress(buffer.array(), buffer.position(), buffer.remaining(),
         uncompressedBuffer.array(),
         0);
@@ -758,9 +849,16 @@ public class TsFileSequenceReader implements AutoCloseable {
    * @param position the start position of data in the tsFileInput, or the current position if
    * position = -1
    * @param size the size of data that want to read
-   * @return data that been read.
+   * @return data that been read, which may share memory with the input if it is read from the
+   * given position
    */
   private ByteBuffer readData(long position, int size) throws IOException {
+    if (position >= 0) {
+      ByteBuffer slice = tsFileInput.slice(position, size);
+      if (slice != null) {
+        return slice;
+      }
+    }
     ByteBuffer buffer = ByteBuffer.allocate(size);
     if (position < 0) {
       if (ReadWriteIOUtils.readAsPossible(tsFileInput, buffer) != size) {
@@ -63,12 +63,19 @@ public class Chunk implements Accountable {
   public void mergeChunk(Chunk chunk) {
     chunkHeader.mergeChunkHeader(chunk.chunkHeader);
     ByteBuffer newChunkData = ByteBuffer
-        .allocate(chunkData.array().length + chunk.chunkData.array().length);
-    newChunkData.put(chunkData.array());
-    newChunkData.put(chunk.chunkData.array());
+        .allocate(chunkData.capacity() + chunk.chunkData.capacity());
+    // the data may be a mapped buffer without a backing array
+    newChunkData.put(wholeData(chunkData));
+    newChunkData.put(wholeData(chunk.chunkData));
     chunkData = newChunkData;
   }
 
+  private static ByteBuffer wholeData(ByteBuffer data) {
+    ByteBuffer duplicate = data.duplicate();
+    duplicate.clear();
+    return duplicate;
+  }
+
   @Override
   public void setRamSize(long size) {
     this.ramSize = size;
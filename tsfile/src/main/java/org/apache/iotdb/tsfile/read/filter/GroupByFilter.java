@@ -59,6 +59,17 @@ public class GroupByFilter implements Filter, Serializable {
       return (time - startTime) % slidingStep <= interval;
   }
 
+  @Override
+  public void satisfyBatch(long[] times, Object values, int length, boolean[] selection) {
+    for (int i = 0; i < length; i++) {
+      if (selection[i]) {
+        long time = times[i];
+        selection[i] = time >= startTime && time <= endTime
+            && (time - startTime) % slidingStep <= interval;
+      }
+    }
+  }
+
   @Override
   public boolean satisfyStartEndTime(long startTime, long endTime) {
     if (endTime < this.startTime)
@@ -19,6 +19,7 @@
 package org.apache.iotdb.tsfile.read.filter.basic;
 
 import java.io.DataOutputStream;
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
 import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.filter.factory.FilterSerializeId;
@@ -37,6 +38,17 @@ public interface Filter {
    */
   boolean satisfy(Statistics statistics);
 
+  /**
+   * To examine whether all the points described by the statistics satisfy the filter, so that
+   * they can be taken without examining each point. It may return false when it cannot tell.
+   *
+   * @param statistics
+   *            statistics with min time, max time, min value, max value.
+   */
+  default boolean allSatisfy(Statistics statistics) {
+    return false;
+  }
+
   /**
    * To examine whether the single point(with time and value) is satisfied with the filter.
    *
@@ -47,6 +59,28 @@ public interface Filter {
    */
   boolean satisfy(long time, Object value);
 
+  /**
+   * To examine a batch of points at once. A point stays selected only if it was selected before
+   * and satisfies the filter, points not selected are not examined.
+   *
+   * @param times
+   *            time column of the batch
+   * @param values
+   *            value column of the batch, a boolean[], int[], long[], float[], double[] or
+   *            Binary[] according to the data type
+   * @param length
+   *            number of points in the batch
+   * @param selection
+   *            selection bitmap of the batch, updated in place
+   */
+  default void satisfyBatch(long[] times, Object values, int length, boolean[] selection) {
+    for (int i = 0; i < length; i++) {
+      if (selection[i]) {
+        selection[i] = satisfy(times[i], Array.get(values, i));
+      }
+    }
+  }
+
   /**
    * To examine whether the min time and max time are satisfied with the filter.
    *
@@ -58,6 +58,62 @@ public abstract class UnaryFilter<T extends Comparable<T>> implements Filter, Se
     return filterType;
   }
 
+  /**
+   * Whether a point satisfies the filter given the sign of comparing the point to the operand,
+   * which is negative, zero or positive as the point is less than, equal to or greater than it.
+   */
+  protected abstract boolean satisfyCompareResult(int compareResult);
+
+  @Override
+  public void satisfyBatch(long[] times, Object values, int length, boolean[] selection) {
+    if (filterType == FilterType.TIME_FILTER && value instanceof Long) {
+      long operand = (Long) value;
+      for (int i = 0; i < length; i++) {
+        if (selection[i]) {
+          selection[i] = satisfyCompareResult(Long.compare(times[i], operand));
+        }
+      }
+    } else if (filterType == FilterType.VALUE_FILTER && values instanceof long[]
+        && value instanceof Long) {
+      long[] column = (long[]) values;
+      long operand = (Long) value;
+      for (int i = 0; i < length; i++) {
+        if (selection[i]) {
+          selection[i] = satisfyCompareResult(Long.compare(column[i], operand));
+        }
+      }
+    } else if (filterType == FilterType.VALUE_FILTER && values instanceof int[]
+        && value instanceof Integer) {
+      int[] column = (int[]) values;
+      int operand = (Integer) value;
+      for (int i = 0; i < length; i++) {
+        if (selection[i]) {
+          selection[i] = satisfyCompareResult(Integer.compare(column[i], operand));
+        }
+      }
+    } else if (filterType == FilterType.VALUE_FILTER && values instanceof double[]
+        && value instanceof Double) {
+      double[] column = (double[]) values;
+      double operand = (Double) value;
+      for (int i = 0; i < length; i++) {
+        if (selection[i]) {
+          selection[i] = satisfyCompareResult(Double.compare(column[i], operand));
+        }
+      }
+    } else if (filterType == FilterType.VALUE_FILTER && values instanceof float[]
+        && value instanceof Float) {
+      float[] column = (float[]) values;
+      float operand = (Float) value;
+      for (int i = 0; i < length; i++) {
+        if (selection[i]) {
+          selection[i] = satisfyCompareResult(Float.compare(column[i], operand));
+        }
+      }
+    } else {
+      Filter.super.satisfyBatch(times, values, length, selection);
+    }
+  }
+
   @Override
   public abstract String toString();
 
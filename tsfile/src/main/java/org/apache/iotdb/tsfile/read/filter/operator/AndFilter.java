@@ -42,11 +42,22 @@ public class AndFilter extends BinaryFilter {
     return left.satisfy(statistics) && right.satisfy(statistics);
   }
 
+  @Override
+  public boolean allSatisfy(Statistics statistics) {
+    return left.allSatisfy(statistics) && right.allSatisfy(statistics);
+  }
+
   @Override
   public boolean satisfy(long time, Object value) {
     return left.satisfy(time, value) && right.satisfy(time, value);
   }
 
+  @Override
+  public void satisfyBatch(long[] times, Object values, int length, boolean[] selection) {
+    left.satisfyBatch(times, values, length, selection);
+    right.satisfyBatch(times, values, length, selection);
+  }
+
   @Override
   public boolean satisfyStartEndTime(long startTime, long endTime) {
     return left.satisfyStartEndTime(startTime, endTime) && right
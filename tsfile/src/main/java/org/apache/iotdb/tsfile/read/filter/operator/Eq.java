@@ -55,12 +55,31 @@ public class Eq<T extends Comparable<T>> extends UnaryFilter<T> {
     }
   }
 
+  @Override
+  public boolean allSatisfy(Statistics statistics) {
+    if (filterType == FilterType.TIME_FILTER) {
+      return ((Long) value) == statistics.getStartTime()
+          && ((Long) value) == statistics.getEndTime();
+    } else {
+      if (statistics.getType() == TSDataType.TEXT || statistics.getType() == TSDataType.BOOLEAN) {
+        return false;
+      }
+      return value.compareTo((T) statistics.getMinValue()) == 0
+          && value.compareTo((T) statistics.getMaxValue()) == 0;
+    }
+  }
+
   @Override
   public boolean satisfy(long time, Object value) {
     Object v = filterType == FilterType.TIME_FILTER ? time : value;
     return this.value.equals(v);
   }
 
+  @Override
+  protected boolean satisfyCompareResult(int compareResult) {
+    return compareResult == 0;
+  }
+
   @Override
   public boolean satisfyStartEndTime(long startTime, long endTime) {
     if (filterType == FilterType.TIME_FILTER) {
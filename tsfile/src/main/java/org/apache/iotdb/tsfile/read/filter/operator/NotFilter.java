@@ -22,6 +22,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.filter.basic.Filter;
@@ -43,8 +44,17 @@ public class NotFilter implements Filter, Serializable {
     this.that = that;
   }
 
+  /**
+   * that.satisfy(statistics) only tells whether some points may satisfy that filter, so a chunk or
+   * page can be skipped only when all its points satisfy that filter.
+   */
   @Override
   public boolean satisfy(Statistics statistics) {
+    return !that.allSatisfy(statistics);
+  }
+
+  @Override
+  public boolean allSatisfy(Statistics statistics) {
     return !that.satisfy(statistics);
   }
 
@@ -53,6 +63,15 @@ public class NotFilter implements Filter, Serializable {
     return !that.satisfy(time, value);
   }
 
+  @Override
+  public void satisfyBatch(long[] times, Object values, int length, boolean[] selection) {
+    boolean[] thatSelection = Arrays.copyOf(selection, length);
+    that.satisfyBatch(times, values, length, thatSelection);
+    for (int i = 0; i < length; i++) {
+      selection[i] = selection[i] && !thatSelection[i];
+    }
+  }
+
   /**
    * Notice that, if the not filter only contains value filter, this method may return false, this
    * may cause misunderstanding.
@@ -19,6 +19,7 @@
 package org.apache.iotdb.tsfile.read.filter.operator;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.filter.basic.BinaryFilter;
 import org.apache.iotdb.tsfile.read.filter.basic.Filter;
@@ -53,11 +54,31 @@ public class OrFilter extends BinaryFilter implements Serializable {
     return left.satisfy(statistics) || right.satisfy(statistics);
   }
 
+  @Override
+  public boolean allSatisfy(Statistics statistics) {
+    return left.allSatisfy(statistics) || right.allSatisfy(statistics);
+  }
+
   @Override
   public boolean satisfy(long time, Object value) {
     return left.satisfy(time, value) || right.satisfy(time, value);
   }
 
+  @Override
+  public void satisfyBatch(long[] times, Object values, int length, boolean[] selection) {
+    boolean[] leftSelection = Arrays.copyOf(selection, length);
+    left.satisfyBatch(times, values, length, leftSelection);
+    // the right filter only needs to examine the points rejected by the left one
+    boolean[] rightSelection = new boolean[length];
+    for (int i = 0; i < length; i++) {
+      rightSelection[i] = selection[i] && !leftSelection[i];
+    }
+    right.satisfyBatch(times, values, length, rightSelection);
+    for (int i = 0; i < length; i++) {
+      selection[i] = leftSelection[i] || rightSelection[i];
+    }
+  }
+
   @Override
   public boolean satisfyStartEndTime(long startTime, long endTime) {
     return left.satisfyStartEndTime(startTime, endTime) || right
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.read.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A TsFileInput that maps a sealed TsFile into memory. Positional reads copy from the mapping
+ * without a system call, and {@link #slice(long, int)} hands out the mapped bytes without copying
+ * them, so chunks and metadata are read straight from the page cache.
+ *
+ * <p>The file is mapped in regions of at most 1GB, a slice crossing two regions is not supported
+ * and should be read by copying. The file must not be modified while it is mapped. Java can not
+ * unmap a file explicitly, the mapping is released by the garbage collector once this input is
+ * closed and no slice of it is referenced any more.
+ */
+public class MmapTsFileInput implements TsFileInput {
+
+  private static final int REGION_SHIFT = 30;
+  private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+  /**
+   * the sequential reads and the channel based views go through the channel.
+   */
+  private FileChannel channel;
+  /**
+   * set to null when closed, so that the mapping can be released as soon as no slice refers to it.
+   */
+  private volatile MappedByteBuffer[] regions;
+  private long size;
+
+  public MmapTsFileInput(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      size = channel.size();
+      int regionNum = (int) ((size + REGION_MASK) >>> REGION_SHIFT);
+      MappedByteBuffer[] mapped = new MappedByteBuffer[regionNum];
+      for (int i = 0; i < regionNum; i++) {
+        long regionStart = (long) i << REGION_SHIFT;
+        mapped[i] = channel.map(MapMode.READ_ONLY, regionStart,
+            Math.min(size - regionStart, REGION_MASK + 1));
+      }
+      regions = mapped;
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public long position() throws IOException {
+    return channel.position();
+  }
+
+  @Override
+  public TsFileInput position(long newPosition) throws IOException {
+    channel.position(newPosition);
+    return this;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    return channel.read(dst);
+  }
+
+  @Override
+  public int read(ByteBuffer dst, long position) throws IOException {
+    if (position < 0) {
+      throw new IllegalArgumentException("Negative position: " + position);
+    }
+    if (position >= size) {
+      return -1;
+    }
+    // read at most to the end of the region, callers read again for the rest
+    ByteBuffer region = getRegion(position);
+    int offset = (int) (position & REGION_MASK);
+    int length = Math.min(dst.remaining(), region.limit() - offset);
+    region.position(offset);
+    region.limit(offset + length);
+    dst.put(region);
+    return length;
+  }
+
+  @Override
+  public ByteBuffer slice(long position, int size) throws IOException {
+    if (position < 0 || size <= 0 || position + size > this.size) {
+      return null;
+    }
+    ByteBuffer region = getRegion(position);
+    int offset = (int) (position & REGION_MASK);
+    if (offset + size > region.limit()) {
+      return null;
+    }
+    region.position(offset);
+    region.limit(offset + size);
+    return region.slice();
+  }
+
+  private ByteBuffer getRegion(long position) throws ClosedChannelException {
+    MappedByteBuffer[] mapped = regions;
+    if (mapped == null) {
+      throw new ClosedChannelException();
+    }
+    return mapped[(int) (position >>> REGION_SHIFT)].duplicate();
+  }
+
+  @Override
+  public int read() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public FileChannel wrapAsFileChannel() throws IOException {
+    return channel;
+  }
+
+  @Override
+  public InputStream wrapAsInputStream() throws IOException {
+    return Channels.newInputStream(channel);
+  }
+
+  @Override
+  public void close() throws IOException {
+    regions = null;
+    channel.close();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+}
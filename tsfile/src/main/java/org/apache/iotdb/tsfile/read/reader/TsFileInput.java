@@ -110,6 +110,21 @@ public interface TsFileInput {
    */
   int read(ByteBuffer dst, long position) throws IOException;
 
+  /**
+   * Returns the size bytes starting at the given position as a buffer sharing memory with this
+   * TsFileInput, so that they need not be copied. The position of this TsFileInput is not
+   * modified.
+   *
+   * @param position The position of the first byte; must be non-negative
+   * @param size     The number of bytes
+   * @return a buffer of which the position is 0 and the limit is size, or null if this TsFileInput
+   *         can not share the bytes, in which case they should be read into a buffer of the caller
+   * @throws IOException If some I/O error occurs
+   */
+  default ByteBuffer slice(long position, int size) throws IOException {
+    return null;
+  }
+
   /**
    * read a byte from the Input.
    */
@@ -34,9 +34,15 @@ import org.apache.iotdb.tsfile.utils.ReadWriteForEncodingUtils;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class PageReader implements IPageReader {
 
+  /**
+   * max number of points decoded and filtered together.
+   */
+  private static final int VECTOR_SIZE = 1024;
+
   private PageHeader pageHeader;
 
   private TSDataType dataType;
@@ -109,50 +115,139 @@ public class PageReader implements IPageReader {
 
     BatchData pageData = BatchDataFactory.createBatchData(dataType, ascending);
 
+    // decode the page vector by vector so that decoding, deletion and filtering each run in a
+    // tight loop over primitive arrays
+    int vectorSize = VECTOR_SIZE;
+    if (pageHeader != null && pageHeader.getStatistics() != null) {
+      vectorSize = (int) Math.max(1, Math.min(VECTOR_SIZE, pageHeader.getStatistics().getCount()));
+    }
+    long[] times = new long[vectorSize];
+    boolean[] selection = new boolean[vectorSize];
+    Object values = allocateValues(vectorSize);
+
     while (timeDecoder.hasNext(timeBuffer)) {
-      long timestamp = timeDecoder.readLong(timeBuffer);
-      switch (dataType) {
-        case BOOLEAN:
-          boolean aBoolean = valueDecoder.readBoolean(valueBuffer);
-          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aBoolean))) {
-            pageData.putBoolean(timestamp, aBoolean);
+      int length = timeDecoder.readLongs(timeBuffer, times, 0, vectorSize);
+      readValues(values, length);
+      selectUndeleted(times, length, selection);
+      if (filter != null) {
+        filter.satisfyBatch(times, values, length, selection);
+      }
+      putSelected(pageData, times, values, length, selection);
+    }
+    return pageData.flip();
+  }
+
+  private Object allocateValues(int size) {
+    switch (dataType) {
+      case BOOLEAN:
+        return new boolean[size];
+      case INT32:
+        return new int[size];
+      case INT64:
+        return new long[size];
+      case FLOAT:
+        return new float[size];
+      case DOUBLE:
+        return new double[size];
+      case TEXT:
+        return new Binary[size];
+      default:
+        throw new UnSupportedDataTypeException(String.valueOf(dataType));
+    }
+  }
+
+  private void readValues(Object values, int length) throws IOException {
+    switch (dataType) {
+      case BOOLEAN:
+        valueDecoder.readBooleans(valueBuffer, (boolean[]) values, 0, length);
+        break;
+      case INT32:
+        valueDecoder.readInts(valueBuffer, (int[]) values, 0, length);
+        break;
+      case INT64:
+        valueDecoder.readLongs(valueBuffer, (long[]) values, 0, length);
+        break;
+      case FLOAT:
+        valueDecoder.readFloats(valueBuffer, (float[]) values, 0, length);
+        break;
+      case DOUBLE:
+        valueDecoder.readDoubles(valueBuffer, (double[]) values, 0, length);
+        break;
+      case TEXT:
+        Binary[] binaries = (Binary[]) values;
+        for (int i = 0; i < length; i++) {
+          binaries[i] = valueDecoder.readBinary(valueBuffer);
+        }
+        break;
+      default:
+        throw new UnSupportedDataTypeException(String.valueOf(dataType));
+    }
+  }
+
+  private void selectUndeleted(long[] times, int length, boolean[] selection) {
+    if (deleteIntervalList == null || deleteCursor >= deleteIntervalList.size()) {
+      Arrays.fill(selection, 0, length, true);
+      return;
+    }
+    for (int i = 0; i < length; i++) {
+      selection[i] = !isDeleted(times[i]);
+    }
+  }
+
+  private void putSelected(BatchData pageData, long[] times, Object values, int length,
+      boolean[] selection) {
+    switch (dataType) {
+      case BOOLEAN:
+        boolean[] booleans = (boolean[]) values;
+        for (int i = 0; i < length; i++) {
+          if (selection[i]) {
+            pageData.putBoolean(times[i], booleans[i]);
           }
-          break;
-        case INT32:
-          int anInt = valueDecoder.readInt(valueBuffer);
-          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, anInt))) {
-            pageData.putInt(timestamp, anInt);
+        }
+        break;
+      case INT32:
+        int[] ints = (int[]) values;
+        for (int i = 0; i < length; i++) {
+          if (selection[i]) {
+            pageData.putInt(times[i], ints[i]);
           }
-          break;
-        case INT64:
-          long aLong = valueDecoder.readLong(valueBuffer);
-          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aLong))) {
-            pageData.putLong(timestamp, aLong);
+        }
+        break;
+      case INT64:
+        long[] longs = (long[]) values;
+        for (int i = 0; i < length; i++) {
+          if (selection[i]) {
+            pageData.putLong(times[i], longs[i]);
           }
-          break;
-        case FLOAT:
-          float aFloat = valueDecoder.readFloat(valueBuffer);
-          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aFloat))) {
-            pageData.putFloat(timestamp, aFloat);
+        }
+        break;
+      case FLOAT:
+        float[] floats = (float[]) values;
+        for (int i = 0; i < length; i++) {
+          if (selection[i]) {
+            pageData.putFloat(times[i], floats[i]);
           }
-          break;
-        case DOUBLE:
-          double aDouble = valueDecoder.readDouble(valueBuffer);
-          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aDouble))) {
-            pageData.putDouble(timestamp, aDouble);
+        }
+        break;
+      case DOUBLE:
+        double[] doubles = (double[]) values;
+        for (int i = 0; i < length; i++) {
+          if (selection[i]) {
+            pageData.putDouble(times[i], doubles[i]);
           }
-          break;
-        case TEXT:
-          Binary aBinary = valueDecoder.readBinary(valueBuffer);
-          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aBinary))) {
-            pageData.putBinary(timestamp, aBinary);
+        }
+        break;
+      case TEXT:
+        Binary[] binaries = (Binary[]) values;
+        for (int i = 0; i < length; i++) {
+          if (selection[i]) {
+            pageData.putBinary(times[i], binaries[i]);
           }
-          break;
-        default:
-          throw new UnSupportedDataTypeException(String.valueOf(dataType));
-      }
+        }
+        break;
+      default:
+        throw new UnSupportedDataTypeException(String.valueOf(dataType));
     }
-    return pageData.flip();
   }
 
   @Override
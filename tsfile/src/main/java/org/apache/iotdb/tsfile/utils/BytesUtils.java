@@ -181,15 +181,7 @@ public class BytesUtils {
    * @return integer variable
    */
   public static int bytesToInt(byte[] result, int pos, int width) {
-
-    int value = 0;
-    int temp = 0;
-
-    for (int i = 0; i < width; i++) {
-      temp = (pos + width - 1 - i) / 8;
-      value = setIntN(value, i, getByteN(result[temp], pos + width - 1 - i));
-    }
-    return value;
+    return (int) bytesToLong(result, pos, width);
   }
 
   /**
@@ -542,10 +534,14 @@ public class BytesUtils {
    */
   public static long bytesToLong(byte[] result, int pos, int width) {
     long value = 0;
-    int temp = 0;
-    for (int i = 0; i < width; i++) {
-      temp = (pos + width - 1 - i) / 8;
-      value = setLongN(value, i, getByteN(result[temp], pos + width - 1 - i));
+    // consume the bits byte by byte instead of bit by bit, the first bit read is the highest one
+    while (width > 0) {
+      int bitInByte = pos & 7;
+      int bits = Math.min(8 - bitInByte, width);
+      int b = ((result[pos >>> 3] & 0xff) >>> (8 - bitInByte - bits)) & ((1 << bits) - 1);
+      value = (value << bits) | b;
+      pos += bits;
+      width -= bits;
     }
     return value;
   }
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.encoding.decoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.apache.iotdb.tsfile.encoding.encoder.Encoder;
+import org.apache.iotdb.tsfile.encoding.encoder.TSEncodingBuilder;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.junit.Test;
+
+/**
+ * Check that the batch reads of each decoder return the same values as reading one by one.
+ */
+public class BatchDecodeTest {
+
+  private static final int POINT_NUM = 5000;
+  private static final int[] BATCH_SIZES = {1, 7, 128, 1000, 4096};
+
+  @Test
+  public void testPlain() throws IOException {
+    checkAllTypes(TSEncoding.PLAIN, new TSDataType[]{TSDataType.BOOLEAN, TSDataType.INT32,
+        TSDataType.INT64, TSDataType.FLOAT, TSDataType.DOUBLE});
+  }
+
+  @Test
+  public void testRle() throws IOException {
+    checkAllTypes(TSEncoding.RLE, new TSDataType[]{TSDataType.BOOLEAN, TSDataType.INT32,
+        TSDataType.INT64, TSDataType.FLOAT, TSDataType.DOUBLE});
+  }
+
+  @Test
+  public void testTs2Diff() throws IOException {
+    checkAllTypes(TSEncoding.TS_2DIFF, new TSDataType[]{TSDataType.INT32, TSDataType.INT64,
+        TSDataType.FLOAT, TSDataType.DOUBLE});
+  }
+
+  @Test
+  public void testGorilla() throws IOException {
+    checkAllTypes(TSEncoding.GORILLA, new TSDataType[]{TSDataType.FLOAT, TSDataType.DOUBLE});
+  }
+
+  private void checkAllTypes(TSEncoding encoding, TSDataType[] dataTypes) throws IOException {
+    for (TSDataType dataType : dataTypes) {
+      ByteBuffer encoded = encode(encoding, dataType);
+      for (int batchSize : BATCH_SIZES) {
+        check(encoding, dataType, encoded.duplicate(), encoded.duplicate(), batchSize);
+      }
+    }
+  }
+
+  /**
+   * @return values of runs, slow ramps and random jumps, so that rle and bit-packing are both
+   * used and delta packs have different widths
+   */
+  private ByteBuffer encode(TSEncoding encoding, TSDataType dataType) throws IOException {
+    Encoder encoder = TSEncodingBuilder.getEncodingBuilder(encoding).getEncoder(dataType);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Random random = new Random(0);
+    long value = 0;
+    for (int i = 0; i < POINT_NUM; i++) {
+      int pattern = (i / 300) % 3;
+      if (pattern == 1) {
+        value += random.nextInt(5);
+      } else if (pattern == 2) {
+        value = random.nextInt(100000) - 50000;
+      }
+      switch (dataType) {
+        case BOOLEAN:
+          encoder.encode(value % 2 == 0, out);
+          break;
+        case INT32:
+          encoder.encode((int) value, out);
+          break;
+        case INT64:
+          encoder.encode(value * 1000000L, out);
+          break;
+        case FLOAT:
+          encoder.encode(value / 100.0f, out);
+          break;
+        default:
+          encoder.encode(value / 100.0, out);
+          break;
+      }
+    }
+    encoder.flush(out);
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+
+  private void check(TSEncoding encoding, TSDataType dataType, ByteBuffer singleBuffer,
+      ByteBuffer batchBuffer, int batchSize) throws IOException {
+    Decoder singleDecoder = Decoder.getDecoderByType(encoding, dataType);
+    Decoder batchDecoder = Decoder.getDecoderByType(encoding, dataType);
+    int count = 0;
+    while (count < POINT_NUM) {
+      int length = Math.min(batchSize, POINT_NUM - count);
+      int read;
+      switch (dataType) {
+        case BOOLEAN:
+          boolean[] booleans = new boolean[length + 1];
+          read = batchDecoder.readBooleans(batchBuffer, booleans, 1, length);
+          for (int i = 0; i < read; i++) {
+            assertEquals(singleDecoder.readBoolean(singleBuffer), booleans[i + 1]);
+          }
+          break;
+        case INT32:
+          int[] ints = new int[length + 1];
+          read = batchDecoder.readInts(batchBuffer, ints, 1, length);
+          for (int i = 0; i < read; i++) {
+            assertEquals(singleDecoder.readInt(singleBuffer), ints[i + 1]);
+          }
+          break;
+        case INT64:
+          long[] longs = new long[length + 1];
+          read = batchDecoder.readLongs(batchBuffer, longs, 1, length);
+          for (int i = 0; i < read; i++) {
+            assertEquals(singleDecoder.readLong(singleBuffer), longs[i + 1]);
+          }
+          break;
+        case FLOAT:
+          float[] floats = new float[length + 1];
+          read = batchDecoder.readFloats(batchBuffer, floats, 1, length);
+          for (int i = 0; i < read; i++) {
+            assertEquals(singleDecoder.readFloat(singleBuffer), floats[i + 1], 0);
+          }
+          break;
+        default:
+          double[] doubles = new double[length + 1];
+          read = batchDecoder.readDoubles(batchBuffer, doubles, 1, length);
+          for (int i = 0; i < read; i++) {
+            assertEquals(singleDecoder.readDouble(singleBuffer), doubles[i + 1], 0);
+          }
+          break;
+      }
+      assertEquals(encoding + " " + dataType + " " + batchSize, length, read);
+      count += read;
+    }
+    assertFalse(batchDecoder.hasNext(batchBuffer));
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.encoding.decoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.apache.iotdb.tsfile.encoding.encoder.Encoder;
+import org.apache.iotdb.tsfile.encoding.encoder.TSEncodingBuilder;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+
+/**
+ * Decode benchmark. Compare decoding a page value by value with decoding it in batches of
+ * {@link #BATCH_SIZE}, for each encoding and page sizes from 1k to 100k points.
+ */
+public class DecodeBenchmark {
+
+  private static final int BATCH_SIZE = 1024;
+  private static int[] pointNums = {1000, 10000, 100000};
+  private static long totalPointNum = 20000000;
+
+  private static Object[][] cases = {
+      {TSEncoding.PLAIN, TSDataType.INT64},
+      {TSEncoding.PLAIN, TSDataType.DOUBLE},
+      {TSEncoding.RLE, TSDataType.INT32},
+      {TSEncoding.RLE, TSDataType.INT64},
+      {TSEncoding.TS_2DIFF, TSDataType.INT64},
+      {TSEncoding.TS_2DIFF, TSDataType.DOUBLE},
+      {TSEncoding.GORILLA, TSDataType.DOUBLE},
+  };
+
+  public static void main(String[] args) throws IOException {
+    for (Object[] c : cases) {
+      TSEncoding encoding = (TSEncoding) c[0];
+      TSDataType dataType = (TSDataType) c[1];
+      for (int pointNum : pointNums) {
+        byte[] page = encode(encoding, dataType, pointNum);
+        long rounds = totalPointNum / pointNum;
+        // warm up
+        decode(encoding, dataType, page, rounds, false);
+        decode(encoding, dataType, page, rounds, true);
+
+        long singleCost = decode(encoding, dataType, page, rounds, false);
+        long batchCost = decode(encoding, dataType, page, rounds, true);
+        System.out.println(String.format(
+            "%s %s, points per page: %d, single read: %.2f ns/point, batch read: %.2f ns/point",
+            encoding, dataType, pointNum, (double) singleCost / totalPointNum,
+            (double) batchCost / totalPointNum));
+      }
+    }
+  }
+
+  /**
+   * @return a page of a slowly increasing series with small noise, as a sensor would produce
+   */
+  private static byte[] encode(TSEncoding encoding, TSDataType dataType, int pointNum)
+      throws IOException {
+    Encoder encoder = TSEncodingBuilder.getEncodingBuilder(encoding).getEncoder(dataType);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Random random = new Random(0);
+    long value = 0;
+    for (int i = 0; i < pointNum; i++) {
+      value += random.nextInt(10);
+      switch (dataType) {
+        case INT32:
+          encoder.encode((int) value, out);
+          break;
+        case INT64:
+          encoder.encode(value, out);
+          break;
+        default:
+          encoder.encode(value / 100.0, out);
+          break;
+      }
+    }
+    encoder.flush(out);
+    return out.toByteArray();
+  }
+
+  /**
+   * @return nanoseconds used
+   */
+  private static long decode(TSEncoding encoding, TSDataType dataType, byte[] page, long rounds,
+      boolean batch) throws IOException {
+    int[] ints = new int[BATCH_SIZE];
+    long[] longs = new long[BATCH_SIZE];
+    double[] doubles = new double[BATCH_SIZE];
+    long checksum = 0;
+    long startTime = System.nanoTime();
+    for (long r = 0; r < rounds; r++) {
+      ByteBuffer buffer = ByteBuffer.wrap(page);
+      Decoder decoder = Decoder.getDecoderByType(encoding, dataType);
+      while (decoder.hasNext(buffer)) {
+        switch (dataType) {
+          case INT32:
+            if (batch) {
+              int n = decoder.readInts(buffer, ints, 0, BATCH_SIZE);
+              checksum += ints[n - 1];
+            } else {
+              checksum += decoder.readInt(buffer);
+            }
+            break;
+          case INT64:
+            if (batch) {
+              int n = decoder.readLongs(buffer, longs, 0, BATCH_SIZE);
+              checksum += longs[n - 1];
+            } else {
+              checksum += decoder.readLong(buffer);
+            }
+            break;
+          default:
+            if (batch) {
+              int n = decoder.readDoubles(buffer, doubles, 0, BATCH_SIZE);
+              checksum += (long) doubles[n - 1];
+            } else {
+              checksum += (long) decoder.readDouble(buffer);
+            }
+            break;
+        }
+      }
+    }
+    long cost = System.nanoTime() - startTime;
+    if (checksum == 42) {
+      // keep the decoded values alive
+      System.out.println();
+    }
+    return cost;
+  }
+}
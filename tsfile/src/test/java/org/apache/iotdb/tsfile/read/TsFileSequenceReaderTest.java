@@ -19,20 +19,40 @@
 
 package org.apache.iotdb.tsfile.read;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.iotdb.tsfile.common.conf.TSFileConfig;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.constant.TestConstant;
 import org.apache.iotdb.tsfile.file.MetaMarker;
 import org.apache.iotdb.tsfile.file.footer.ChunkGroupFooter;
 import org.apache.iotdb.tsfile.file.header.ChunkHeader;
 import org.apache.iotdb.tsfile.file.header.PageHeader;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.TimeseriesMetadata;
 import org.apache.iotdb.tsfile.file.metadata.TsFileMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.MmapTsFileInput;
+import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
 import org.apache.iotdb.tsfile.utils.FileGenerator;
 import org.apache.iotdb.tsfile.utils.Pair;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.LongDataPoint;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -108,4 +128,93 @@ public class TsFileSequenceReaderTest {
      */
     reader.close();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testReadThroughMappedInput() throws IOException {
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(FILE_PATH);
+        TsFileSequenceReader mappedReader = new TsFileSequenceReader(FILE_PATH,
+            new MmapTsFileInput(Paths.get(FILE_PATH)))) {
+      Assert.assertEquals(FILE_PATH, mappedReader.getFileName());
+      Assert.assertEquals(reader.getAllDevices(), mappedReader.getAllDevices());
+      for (String device : reader.getAllDevices()) {
+        Map<String, List<ChunkMetadata>> chunkMetadataMap = reader
+            .readChunkMetadataInDevice(device);
+        Map<String, List<ChunkMetadata>> mappedChunkMetadataMap = mappedReader
+            .readChunkMetadataInDevice(device);
+        Assert.assertEquals(chunkMetadataMap.keySet(), mappedChunkMetadataMap.keySet());
+        for (List<ChunkMetadata> chunkMetadataList : chunkMetadataMap.values()) {
+          for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+            Chunk chunk = reader.readMemChunk(chunkMetadata);
+            Chunk mappedChunk = mappedReader.readMemChunk(chunkMetadata);
+            // the chunk data is shared with the mapping rather than copied
+            Assert.assertTrue(mappedChunk.getData().isDirect());
+            Assert.assertEquals(chunk.getData(), mappedChunk.getData());
+            BatchData batchData = new ChunkReader(chunk, null).nextPageData();
+            BatchData mappedBatchData = new ChunkReader(mappedChunk, null).nextPageData();
+            Assert.assertEquals(batchData.length(), mappedBatchData.length());
+            while (batchData.hasCurrent()) {
+              Assert.assertEquals(batchData.currentTime(), mappedBatchData.currentTime());
+              Assert.assertEquals(batchData.currentValue(), mappedBatchData.currentValue());
+              batchData.next();
+              mappedBatchData.next();
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReadTimeseriesMetadataOfDevices() throws Exception {
+    String filePath = TestConstant.BASE_OUTPUT_PATH.concat("multiDevices.tsfile");
+    File file = new File(filePath);
+    // more devices than the max degree of index nodes, so there are device index nodes
+    int deviceNum = TSFileDescriptor.getInstance().getConfig().getMaxDegreeOfIndexNode() + 100;
+    try {
+      try (TsFileWriter writer = new TsFileWriter(file)) {
+        for (int d = 0; d < deviceNum; d++) {
+          for (int s = 0; s < 5; s++) {
+            writer.registerTimeseries(new Path("d" + d, "s" + s),
+                new MeasurementSchema("s" + s, TSDataType.INT64, TSEncoding.PLAIN));
+          }
+          TSRecord record = new TSRecord(d, "d" + d);
+          for (int s = 0; s < 5; s++) {
+            record.addTuple(new LongDataPoint("s" + s, d * 10L + s));
+          }
+          writer.write(record);
+        }
+      }
+
+      try (TsFileSequenceReader reader = new TsFileSequenceReader(filePath)) {
+        Map<String, Set<String>> deviceMeasurements = new HashMap<>();
+        for (int d = 0; d < deviceNum; d += 30) {
+          Set<String> measurements = new HashSet<>();
+          measurements.add("s" + (d % 5));
+          measurements.add("s4");
+          deviceMeasurements.put("d" + d, measurements);
+        }
+        Set<String> unknownMeasurements = new HashSet<>();
+        unknownMeasurements.add("s9");
+        deviceMeasurements.put("d1", unknownMeasurements);
+        deviceMeasurements.put("d" + deviceNum + "0", deviceMeasurements.get("d0"));
+
+        Map<String, List<TimeseriesMetadata>> result = reader
+            .readTimeseriesMetadata(deviceMeasurements);
+        Assert.assertEquals((deviceNum + 29) / 30, result.size());
+        for (int d = 0; d < deviceNum; d += 30) {
+          String device = "d" + d;
+          List<TimeseriesMetadata> timeseriesMetadataList = result.get(device);
+          Assert.assertEquals(deviceMeasurements.get(device).size(),
+              timeseriesMetadataList.size());
+          for (TimeseriesMetadata timeseriesMetadata : timeseriesMetadataList) {
+            Assert.assertTrue(deviceMeasurements.get(device)
+                .contains(timeseriesMetadata.getMeasurementId()));
+            Assert.assertEquals(d, timeseriesMetadata.getStatistics().getStartTime());
+          }
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -18,6 +18,9 @@
  */
 package org.apache.iotdb.tsfile.read.filter;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashSet;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -144,6 +147,50 @@ public class OperatorTest {
     Assert.assertTrue(andFilter2.satisfy(1000L, 51d));
   }
 
+  @Test
+  public void testSatisfyBatch() {
+    int length = 100;
+    long[] times = new long[length];
+    long[] longs = new long[length];
+    double[] doubles = new double[length];
+    Binary[] binaries = new Binary[length];
+    for (int i = 0; i < length; i++) {
+      times[i] = TESTED_TIMESTAMP + i;
+      longs[i] = i % 10;
+      doubles[i] = i % 7 == 0 ? Double.NaN : i * 0.5;
+      binaries[i] = new Binary("test" + i % 10);
+    }
+
+    Filter[] longFilters = {TimeFilter.gtEq(TESTED_TIMESTAMP + 50), ValueFilter.eq(3L),
+        ValueFilter.notEq(3L), FilterFactory.and(TimeFilter.lt(TESTED_TIMESTAMP + 80),
+        ValueFilter.ltEq(5L)), FilterFactory.or(TimeFilter.gt(TESTED_TIMESTAMP + 90),
+        ValueFilter.gt(7L)), FilterFactory.not(ValueFilter.lt(2L)), ValueFilter.in(
+        new HashSet<>(Arrays.asList(1L, 4L)), false), ValueFilter.eq(3)};
+    for (Filter filter : longFilters) {
+      checkSatisfyBatch(filter, times, longs, length);
+    }
+    Filter[] doubleFilters = {ValueFilter.gt(20.0), ValueFilter.eq(Double.NaN),
+        ValueFilter.ltEq(10.0)};
+    for (Filter filter : doubleFilters) {
+      checkSatisfyBatch(filter, times, doubles, length);
+    }
+    checkSatisfyBatch(ValueFilter.gt(new Binary("test5")), times, binaries, length);
+  }
+
+  private void checkSatisfyBatch(Filter filter, long[] times, Object values, int length) {
+    boolean[] selection = new boolean[length];
+    for (int i = 0; i < length; i++) {
+      // points not selected must stay unselected
+      selection[i] = i % 3 != 0;
+    }
+    filter.satisfyBatch(times, values, length, selection);
+    for (int i = 0; i < length; i++) {
+      Assert.assertEquals(filter.toString(),
+          i % 3 != 0 && filter.satisfy(times[i], Array.get(values, i)),
+          selection[i]);
+    }
+  }
+
   @Test
   public void testWrongUsage() {
     Filter andFilter = FilterFactory.and(TimeFilter.gt(100L), ValueFilter.lt(true));
@@ -107,4 +107,37 @@ public class StatisticsFilterTest {
     Assert.assertTrue(orFilter.satisfy(statistics2));
   }
 
+  @Test
+  public void testAllSatisfy() {
+    Assert.assertFalse(ValueFilter.gt(50L).allSatisfy(statistics1));
+    Assert.assertTrue(ValueFilter.gt(100L).allSatisfy(statistics2));
+    Assert.assertTrue(ValueFilter.gtEq(101L).allSatisfy(statistics2));
+    Assert.assertTrue(ValueFilter.lt(101L).allSatisfy(statistics1));
+    Assert.assertFalse(ValueFilter.ltEq(99L).allSatisfy(statistics1));
+    Assert.assertFalse(ValueFilter.eq(1L).allSatisfy(statistics1));
+    Assert.assertTrue(ValueFilter.notEq(150L).allSatisfy(statistics1));
+    Assert.assertFalse(ValueFilter.notEq(150L).allSatisfy(statistics2));
+    Assert.assertTrue(TimeFilter.gt(0L).allSatisfy(statistics1));
+    Assert.assertFalse(TimeFilter.lt(100L).allSatisfy(statistics1));
+
+    Filter andFilter = FilterFactory.and(TimeFilter.gt(100L), ValueFilter.ltEq(200L));
+    Assert.assertFalse(andFilter.allSatisfy(statistics1));
+    Assert.assertTrue(andFilter.allSatisfy(statistics2));
+    Filter orFilter = FilterFactory.or(ValueFilter.lt(50L), ValueFilter.gt(150L));
+    Assert.assertFalse(orFilter.allSatisfy(statistics1));
+  }
+
+  @Test
+  public void testNot() {
+    // some points of statistics1 are not greater than 50, so NOT (value > 50) may be satisfied
+    Filter notGt = FilterFactory.not(ValueFilter.gt(50L));
+    Assert.assertTrue(notGt.satisfy(statistics1));
+    Assert.assertFalse(notGt.satisfy(statistics2));
+    Assert.assertFalse(notGt.allSatisfy(statistics1));
+
+    Filter notLt = FilterFactory.not(ValueFilter.lt(101L));
+    Assert.assertFalse(notLt.satisfy(statistics1));
+    Assert.assertTrue(notLt.allSatisfy(statistics2));
+  }
+
 }